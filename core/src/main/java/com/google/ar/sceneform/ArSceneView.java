@@ -28,6 +28,7 @@ import com.google.ar.core.exceptions.NotYetAvailableException;
 import com.google.ar.sceneform.rendering.CameraStream;
 import com.google.ar.sceneform.rendering.GLHelper;
 import com.google.ar.sceneform.rendering.PlaneRenderer;
+import com.google.ar.sceneform.rendering.QualityLevel;
 import com.google.ar.sceneform.rendering.Renderer;
 import com.google.ar.sceneform.rendering.ThreadPools;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
@@ -78,6 +79,7 @@ public class ArSceneView extends SceneView {
     private Display display;
     private CameraStream cameraStream;
     private PlaneRenderer planeRenderer;
+    private boolean isPlaneRendererDisabledByQuality = false;
     @Nullable
     /**
      * Don't use it. Public until full moving to Kotlin.
@@ -552,6 +554,26 @@ public class ArSceneView extends SceneView {
         super.doFrame(frameTimeNanos);
     }
 
+    /**
+     * @hide
+     */
+    @Override
+    protected void applyQualityLevel(QualityLevel qualityLevel) {
+        super.applyQualityLevel(qualityLevel);
+
+        // Only restore the plane renderer if it was disabled by a previous level rather than by the
+        // app.
+        if (!qualityLevel.isPlaneRenderingEnabled()) {
+            if (planeRenderer.isEnabled()) {
+                planeRenderer.setEnabled(false);
+                isPlaneRendererDisabledByQuality = true;
+            }
+        } else if (isPlaneRendererDisabledByQuality) {
+            planeRenderer.setEnabled(true);
+            isPlaneRendererDisabledByQuality = false;
+        }
+    }
+
     private void initializeAr() {
         display = getContext().getSystemService(WindowManager.class).getDefaultDisplay();
 
@@ -0,0 +1,240 @@
+package com.google.ar.sceneform;
+
+import com.google.ar.sceneform.utilities.MovingAverage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the frames of a {@link SceneView} on the display refresh.
+ *
+ * <p>Frames are produced every {@code n} vsyncs, where {@code n} is the smallest interval that does
+ * not exceed the max frame rate, so frame intervals stay even instead of alternating between one
+ * and two refresh periods. Each frame has a deadline at the vsync of the next frame, one target
+ * frame interval later. Once a frame has missed its deadline, a callback that starts too late for
+ * the expected frame duration to meet its own is skipped in favor of the next vsync, at most once
+ * in a row, so that a scene that keeps up is never throttled. Callbacks for vsyncs that are not due
+ * can be avoided by posting the next callback with {@link #getNextFrameDelayMillis()}.
+ *
+ * <p>All timestamps are in the {@link System#nanoTime()} time base used by the {@link
+ * android.view.Choreographer}, the clock can be replaced to simulate it.
+ *
+ * @hide
+ */
+public class FramePacer {
+  private static final float DEFAULT_REFRESH_RATE = 60.0f;
+  // Tolerates refresh rates slightly off their nominal value, e.g. 59.94Hz for a 60fps target.
+  private static final float SWAP_INTERVAL_TOLERANCE = 0.05f;
+  private static final double NANOSECONDS_TO_MILLISECONDS = 0.000001;
+
+  /** Provides the current time, replaced by a simulated clock for testing. */
+  public interface Clock {
+    long getNanoseconds();
+  }
+
+  private static class DefaultClock implements Clock {
+    @Override
+    public long getNanoseconds() {
+      return System.nanoTime();
+    }
+  }
+
+  private final Clock clock;
+  private final Stats stats = new Stats();
+
+  private long refreshPeriodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / DEFAULT_REFRESH_RATE);
+  private float refreshRate = DEFAULT_REFRESH_RATE;
+  private float maxFramesPerSecond = DEFAULT_REFRESH_RATE;
+  private int swapInterval = 1;
+
+  private long lastFrameTimeNanos = 0;
+  private long frameStartNanos = 0;
+  private long frameDeadlineNanos = 0;
+  private boolean wasLastCallbackSkipped = false;
+  private boolean wasLastDeadlineMissed = false;
+
+  public FramePacer() {
+    this(new DefaultClock());
+  }
+
+  public FramePacer(Clock clock) {
+    this.clock = clock;
+  }
+
+  /** Sets the refresh rate of the display the frames are presented on. */
+  public void setRefreshRate(float refreshRate) {
+    if (refreshRate <= 0.0f || this.refreshRate == refreshRate) {
+      return;
+    }
+    this.refreshRate = refreshRate;
+    refreshPeriodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    updateSwapInterval();
+  }
+
+  /** Sets the upper bound of the frame rate. */
+  public void setMaxFramesPerSecond(float maxFramesPerSecond) {
+    if (maxFramesPerSecond <= 0.0f || this.maxFramesPerSecond == maxFramesPerSecond) {
+      return;
+    }
+    this.maxFramesPerSecond = maxFramesPerSecond;
+    updateSwapInterval();
+  }
+
+  /** Returns the number of vsyncs between two frames. */
+  public int getSwapInterval() {
+    return swapInterval;
+  }
+
+  /** Returns the interval between two frames. */
+  public long getTargetFrameIntervalNanos() {
+    return swapInterval * refreshPeriodNanos;
+  }
+
+  /** Returns the pacing statistics of the produced frames. */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /** Starts over from the next callback, for example after the view was paused. */
+  public void reset() {
+    lastFrameTimeNanos = 0;
+    wasLastCallbackSkipped = false;
+    wasLastDeadlineMissed = false;
+  }
+
+  /**
+   * Called at the beginning of each frame callback.
+   *
+   * @param frameTimeNanos the vsync timestamp given by the {@link android.view.Choreographer}
+   * @return true if a frame should be produced for this vsync, in which case {@link #endFrame()}
+   *     must be called once it is done
+   */
+  public boolean beginFrame(long frameTimeNanos) {
+    long now = clock.getNanoseconds();
+    long deadlineNanos = frameTimeNanos + getTargetFrameIntervalNanos();
+
+    if (lastFrameTimeNanos != 0) {
+      long vsyncs = Math.round((double) (frameTimeNanos - lastFrameTimeNanos) / refreshPeriodNanos);
+      if (vsyncs < swapInterval) {
+        return false;
+      }
+
+      double expectedFrameNanos = stats.frameDurationNanos.getAverage();
+      if (wasLastDeadlineMissed
+          && !wasLastCallbackSkipped
+          && now + expectedFrameNanos > deadlineNanos) {
+        wasLastCallbackSkipped = true;
+        stats.skippedFrameCount++;
+        return false;
+      }
+
+      long intervalNanos = frameTimeNanos - lastFrameTimeNanos;
+      stats.lastFrameIntervalNanos = intervalNanos;
+      stats.frameIntervalNanos.addSample(intervalNanos);
+      stats.jitterNanos.addSample(Math.abs(intervalNanos - getTargetFrameIntervalNanos()));
+    }
+
+    wasLastCallbackSkipped = false;
+    lastFrameTimeNanos = frameTimeNanos;
+    frameStartNanos = now;
+    frameDeadlineNanos = deadlineNanos;
+    return true;
+  }
+
+  /** Called once a frame started by {@link #beginFrame(long)} is done. */
+  public void endFrame() {
+    long now = clock.getNanoseconds();
+    stats.frameCount++;
+    stats.frameDurationNanos.addSample(now - frameStartNanos);
+    wasLastDeadlineMissed = now > frameDeadlineNanos;
+    if (wasLastDeadlineMissed) {
+      stats.missedDeadlineCount++;
+    }
+  }
+
+  /**
+   * Returns the delay, in milliseconds, to post the next frame callback with so that it is not
+   * called for vsyncs that are not due, or 0 to be called on the next vsync.
+   */
+  public long getNextFrameDelayMillis() {
+    if (lastFrameTimeNanos == 0 || swapInterval <= 1) {
+      return 0;
+    }
+    // A delayed callback runs on the first vsync after the delay, aim between the vsync before the
+    // next frame and the vsync of the next frame.
+    long nextFrameTimeNanos = lastFrameTimeNanos + getTargetFrameIntervalNanos();
+    long delayNanos = nextFrameTimeNanos - refreshPeriodNanos / 2 - clock.getNanoseconds();
+    return delayNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(delayNanos) : 0;
+  }
+
+  private void updateSwapInterval() {
+    swapInterval =
+        Math.max(1, (int) Math.ceil(refreshRate / maxFramesPerSecond - SWAP_INTERVAL_TOLERANCE));
+  }
+
+  /** Pacing statistics of the frames produced by a {@link FramePacer}. */
+  public static final class Stats {
+    private long frameCount = 0;
+    private long skippedFrameCount = 0;
+    private long missedDeadlineCount = 0;
+    private long lastFrameIntervalNanos = 0;
+    private final MovingAverage frameIntervalNanos = new MovingAverage(0.0);
+    private final MovingAverage jitterNanos = new MovingAverage(0.0);
+    private final MovingAverage frameDurationNanos = new MovingAverage(0.0);
+
+    private Stats() {}
+
+    /** Returns the number of frames produced. */
+    public long getFrameCount() {
+      return frameCount;
+    }
+
+    /** Returns the number of callbacks skipped because they started too late for the deadline. */
+    public long getSkippedFrameCount() {
+      return skippedFrameCount;
+    }
+
+    /** Returns the number of frames that completed after their deadline. */
+    public long getMissedDeadlineCount() {
+      return missedDeadlineCount;
+    }
+
+    /** Returns the interval between the vsyncs of the last two frames. */
+    public long getLastFrameIntervalNanos() {
+      return lastFrameIntervalNanos;
+    }
+
+    /** Returns the moving average of the interval between frames, in milliseconds. */
+    public double getAverageFrameIntervalMillis() {
+      return frameIntervalNanos.getAverage() * NANOSECONDS_TO_MILLISECONDS;
+    }
+
+    /**
+     * Returns the moving average of the difference between the frame intervals and the target
+     * interval, in milliseconds.
+     */
+    public double getAverageJitterMillis() {
+      return jitterNanos.getAverage() * NANOSECONDS_TO_MILLISECONDS;
+    }
+
+    /** Returns the moving average of the time spent producing a frame, in milliseconds. */
+    public double getAverageFrameDurationMillis() {
+      return frameDurationNanos.getAverage() * NANOSECONDS_TO_MILLISECONDS;
+    }
+
+    @Override
+    public String toString() {
+      return "FramePacer.Stats{frames="
+          + frameCount
+          + ", skipped="
+          + skippedFrameCount
+          + ", missedDeadlines="
+          + missedDeadlineCount
+          + ", interval="
+          + getAverageFrameIntervalMillis()
+          + "ms, jitter="
+          + getAverageJitterMillis()
+          + "ms, duration="
+          + getAverageFrameDurationMillis()
+          + "ms}";
+    }
+  }
+}
@@ -572,6 +572,10 @@ public class Node extends NodeParent implements TransformProvider {
     private final void markTransformChangedRecursively(int flagsToMark, Node originatingNode) {
         boolean needsRecursion = false;
 
+        if (originatingNode == this) {
+            requestRender();
+        }
+
         if ((dirtyTransformFlags & flagsToMark) != flagsToMark) {
             dirtyTransformFlags |= flagsToMark;
 
@@ -1619,6 +1623,20 @@ public class Node extends NodeParent implements TransformProvider {
         lightInstance = null;
     }
 
+    /**
+     * Requests the scene to be rendered again when it is rendered on demand.
+     */
+    private void requestRender() {
+        if (scene == null) {
+            return;
+        }
+
+        Renderer renderer = scene.getView().getRenderer();
+        if (renderer != null) {
+            renderer.requestRender();
+        }
+    }
+
     private Renderer getRendererOrDie() {
         if (scene == null) {
             throw new IllegalStateException("Unable to get Renderer.");
@@ -8,6 +8,7 @@ import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.Surface;
 import android.view.SurfaceView;
@@ -22,7 +23,11 @@ import com.google.android.filament.View;
 import com.google.android.filament.utils.KTXLoader;
 import com.google.ar.sceneform.rendering.Color;
 import com.google.ar.sceneform.rendering.EngineInstance;
+import com.google.ar.sceneform.rendering.GpuUploadQueue;
+import com.google.ar.sceneform.rendering.QualityGovernor;
+import com.google.ar.sceneform.rendering.QualityLevel;
 import com.google.ar.sceneform.rendering.Renderer;
+import com.google.ar.sceneform.rendering.ResourceManager;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.MovingAverageMillisecondsTracker;
 import com.google.ar.sceneform.utilities.Preconditions;
@@ -34,7 +39,6 @@ import com.gorisse.thomas.sceneform.util.ResourceLoaderKt;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.TimeUnit;
 
 import kotlin.jvm.functions.Function1;
 
@@ -50,7 +54,14 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
     private static final int DEFAULT_MAX_FRAMES_PER_SECONDS = 60;
     private FrameRate frameRate = FrameRate.FULL;
     private int maxFramesPerSeconds = DEFAULT_MAX_FRAMES_PER_SECONDS;
-    private Long lastTick = 0L;
+    private final FramePacer framePacer = new FramePacer();
+    private boolean isRenderOnDemand = false;
+    private boolean isDrainingGpuUploads = false;
+    @Nullable
+    private QualityGovernor qualityGovernor;
+    private int qualityMaxFramesPerSeconds = Integer.MAX_VALUE;
+    private final QualityGovernor.OnQualityChangedListener onQualityChangedListener =
+            (governor, level, stats) -> applyQualityLevel(level);
 
     @Nullable
     private Renderer renderer = null;
@@ -147,6 +158,7 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
         setZOrderOnTop(transparent);
         getHolder().setFormat(transparent ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE);
         renderer.getFilamentView().setBlendMode(transparent ? View.BlendMode.TRANSLUCENT : View.BlendMode.OPAQUE);
+        requestRender();
     }
 
     /**
@@ -155,6 +167,9 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
      *     to obtain the higher bound from the {@link com.google.ar.core.Session}.
      *     <code>session.getCameraConfig().getFpsRange().getUpper();</code>.
      *
+     *     Frames are paced on the display refresh: they are produced every n vsyncs, n
+     *     being the smallest interval that stays under this bound.
+     *
      *     The default value is 60.
      * </pre>
      *
@@ -180,6 +195,102 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
         this.frameRate = frameRateFactor;
     }
 
+    /**
+     * <pre>
+     *     Render only the frames where something changed instead of rendering continuously.
+     *
+     *     Changes to the scene graph, material parameters, running {@link
+     *     com.google.ar.sceneform.animation.ModelAnimator}s, new frames of an {@link
+     *     com.google.ar.sceneform.rendering.ExternalTexture} and renderables that are still
+     *     loading schedule a new frame automatically. Call {@link #requestRender()} for any other
+     *     change, for example after modifying Filament objects directly.
+     *
+     *     The scene is still updated on every frame, only the rendering is skipped.
+     *     The default value is false.
+     * </pre>
+     *
+     * @param renderOnDemand true to only render frames when something changed
+     */
+    public void setRenderOnDemand(boolean renderOnDemand) {
+        this.isRenderOnDemand = renderOnDemand;
+        requestRender();
+    }
+
+    /**
+     * Returns true if frames are only rendered when something changed.
+     *
+     * @see #setRenderOnDemand(boolean)
+     */
+    public boolean isRenderOnDemand() {
+        return isRenderOnDemand;
+    }
+
+    /**
+     * Requests the next frame to be rendered when rendering on demand.
+     *
+     * @see #setRenderOnDemand(boolean)
+     */
+    public void requestRender() {
+        if (renderer != null) {
+            renderer.requestRender();
+        }
+    }
+
+    /**
+     * <pre>
+     *     Adapt the rendering quality to the performance of the device.
+     *
+     *     The governor is given the duration of every rendered frame and the view applies
+     *     each {@link QualityLevel} it selects: resolution scale, anti-aliasing, shadows,
+     *     max frame rate and, on an ArSceneView, plane rendering. The frame rate of a level
+     *     never exceeds the one set with {@link #setMaxFramesPerSeconds(int)}.
+     *
+     *     Pass null to stop adapting the quality. The settings of the last level are kept.
+     * </pre>
+     *
+     * @param qualityGovernor the governor to use, for example
+     *                        <code>new QualityGovernor(context)</code>, or null
+     */
+    public void setQualityGovernor(@Nullable QualityGovernor qualityGovernor) {
+        if (this.qualityGovernor == qualityGovernor) {
+            return;
+        }
+        if (this.qualityGovernor != null) {
+            this.qualityGovernor.removeOnQualityChangedListener(onQualityChangedListener);
+        }
+        this.qualityGovernor = qualityGovernor;
+        if (qualityGovernor != null) {
+            qualityGovernor.addOnQualityChangedListener(onQualityChangedListener);
+            applyQualityLevel(qualityGovernor.getLevel());
+        }
+    }
+
+    /**
+     * Returns the governor adapting the rendering quality, or null if the quality is fixed.
+     *
+     * @see #setQualityGovernor(QualityGovernor)
+     */
+    @Nullable
+    public QualityGovernor getQualityGovernor() {
+        return qualityGovernor;
+    }
+
+    /**
+     * Applies the settings of a quality level selected by the {@link QualityGovernor}.
+     *
+     * @hide
+     */
+    protected void applyQualityLevel(QualityLevel qualityLevel) {
+        qualityMaxFramesPerSeconds = qualityLevel.getMaxFramesPerSeconds();
+        if (renderer != null) {
+            renderer.setQualityLevel(qualityLevel);
+        }
+    }
+
+    private int getEffectiveMaxFramesPerSeconds() {
+        return Math.min(maxFramesPerSeconds, qualityMaxFramesPerSeconds);
+    }
+
     /**
      * @hide
      */
@@ -192,6 +303,22 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
         Preconditions.checkNotNull(renderer).setDesiredSize(width, height);
     }
 
+    /**
+     * @hide
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateRefreshRate();
+    }
+
+    private void updateRefreshRate() {
+        Display display = getDisplay();
+        if (display != null) {
+            framePacer.setRefreshRate(display.getRefreshRate());
+        }
+    }
+
     /**
      * Resume Sceneform, which resumes the rendering thread.
      * <p>
@@ -209,6 +336,12 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
             throw new IllegalStateException("Sceneform requires Android N or later");
         }
         renderer.onResume();
+        framePacer.reset();
+        if (!isDrainingGpuUploads) {
+            GpuUploadQueue.getInstance().attachFrameLoop();
+            isDrainingGpuUploads = true;
+        }
+        updateRefreshRate();
         // Start the drawing when the renderer is resumed.  Remove and re-add the callback
         // to avoid getting called twice.
         Choreographer.getInstance().removeFrameCallback(this);
@@ -229,6 +362,10 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
      */
     protected void pauseScene() {
         Choreographer.getInstance().removeFrameCallback(this);
+        if (isDrainingGpuUploads) {
+            GpuUploadQueue.getInstance().detachFrameLoop();
+            isDrainingGpuUploads = false;
+        }
         if (renderer != null) {
             renderer.onPause();
         }
@@ -248,6 +385,10 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
      */
     protected void destroyScene() {
         Choreographer.getInstance().removeFrameCallback(this);
+        if (isDrainingGpuUploads) {
+            GpuUploadQueue.getInstance().detachFrameLoop();
+            isDrainingGpuUploads = false;
+        }
         if (renderer != null) {
             renderer.onPause();
         }
@@ -371,6 +512,7 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
             renderer = null;
         } else {
             renderer = new Renderer(this);
+            ResourceManager.getInstance().registerTrimMemoryCallbacks(getContext());
             if (backgroundColor != null) {
                 renderer.setClearColor(backgroundColor);
             }
@@ -436,18 +578,27 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
     @SuppressWarnings("AndroidApiChecker")
     @Override
     public void doFrame(long frameTimeNanos) {
-        // Always post the callback for the next frame.
-        Choreographer.getInstance().postFrameCallback(this);
+        framePacer.setMaxFramesPerSecond(
+                (float) getEffectiveMaxFramesPerSeconds() / frameRate.factor());
+        boolean isFrameDue = framePacer.beginFrame(frameTimeNanos);
 
-        // limit to max fps
-        long nanoTime = System.nanoTime();
-        long tick = nanoTime / (TimeUnit.SECONDS.toNanos(1) / maxFramesPerSeconds);
-        if (lastTick / frameRate.factor() == tick / frameRate.factor())
-            return;
+        // Always post the callback for the next frame, skipping the vsyncs that are not due.
+        Choreographer.getInstance()
+                .postFrameCallbackDelayed(this, framePacer.getNextFrameDelayMillis());
 
-        lastTick = tick;
+        if (isFrameDue) {
+            doFrameNoRepost(frameTimeNanos);
+            framePacer.endFrame();
+        }
+    }
 
-        doFrameNoRepost(frameTimeNanos);
+    /**
+     * Returns the pacing statistics of the frames produced by this view.
+     *
+     * @see #setMaxFramesPerSeconds(int)
+     */
+    public FramePacer.Stats getFramePacingStats() {
+        return framePacer.getStats();
     }
 
     /**
@@ -463,9 +614,24 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
             frameTotalTracker.beginSample();
         }
 
+        QualityGovernor qualityGovernor = this.qualityGovernor;
+        long frameStartNanos = qualityGovernor != null ? System.nanoTime() : 0;
+
         if (onBeginFrame(frameTimeNanos)) {
             doUpdate(frameTimeNanos);
-            doRender(frameTimeNanos);
+            // Create the GPU resources of the completed loads, within the budget of the frame.
+            GpuUploadQueue.getInstance().drain();
+            // Frames that are not rendered say nothing about the rendering cost.
+            if (doRender(frameTimeNanos)) {
+                if (qualityGovernor != null) {
+                    qualityGovernor.onFrameRendered(System.nanoTime() - frameStartNanos,
+                            framePacer.getTargetFrameIntervalNanos());
+                }
+            } else if (renderer != null) {
+                // Frames skipped by on demand rendering are idle, released resources are disposed
+                // with the idle budget.
+                ResourceManager.getInstance().reclaimReleasedResources(true);
+            }
         }
 
         if (debugEnabled) {
@@ -474,6 +640,11 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
                 Log.d(TAG, " PERF COUNTER: frameRender: " + frameRenderTracker.getAverage());
                 Log.d(TAG, " PERF COUNTER: frameTotal: " + frameTotalTracker.getAverage());
                 Log.d(TAG, " PERF COUNTER: frameUpdate: " + frameUpdateTracker.getAverage());
+                Log.d(TAG, " PERF COUNTER: framePacing: " + framePacer.getStats());
+                Log.d(TAG, " PERF COUNTER: materialInstances: "
+                        + ResourceManager.getInstance().getMaterialInstancePool());
+                Log.d(TAG, " PERF COUNTER: pendingReclaims: "
+                        + ResourceManager.getInstance().getPendingReclaimCounts());
             }
         }
     }
@@ -492,10 +663,14 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
         }
     }
 
-    private void doRender(long frameTimeNanos) {
+    private boolean doRender(long frameTimeNanos) {
         Renderer renderer = this.renderer;
         if (renderer == null) {
-            return;
+            return false;
+        }
+
+        if (isRenderOnDemand && !renderer.needsRender()) {
+            return false;
         }
 
         if (debugEnabled) {
@@ -507,6 +682,7 @@ public class SceneView extends SurfaceView implements Choreographer.FrameCallbac
         if (debugEnabled) {
             frameRenderTracker.endSample();
         }
+        return true;
     }
 
     /**
@@ -187,7 +187,7 @@ public class CameraStream {
                 .thenAccept(
                         material -> {
                             float[] uvTransform = Mat4.Companion.identity().toFloatArray();
-                            material.getFilamentMaterialInstance()
+                            material.getMutableFilamentMaterialInstance()
                                     .setParameter(
                                             "uvTransform",
                                             MaterialInstance.FloatElement.FLOAT4,
@@ -220,7 +220,7 @@ public class CameraStream {
                 .thenAccept(
                         material -> {
                             float[] uvTransform = Mat4.Companion.identity().toFloatArray();
-                            material.getFilamentMaterialInstance()
+                            material.getMutableFilamentMaterialInstance()
                                     .setParameter(
                                             "uvTransform",
                                             MaterialInstance.FloatElement.FLOAT4,
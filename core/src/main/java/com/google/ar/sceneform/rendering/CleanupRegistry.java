@@ -1,19 +1,36 @@
 package com.google.ar.sceneform.rendering;
 
+import androidx.annotation.GuardedBy;
+import com.google.ar.sceneform.resources.ReclaimBudget;
 import com.google.ar.sceneform.resources.ResourceHolder;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 
 /**
  * Maintains a {@link ReferenceQueue} and executes a {@link Runnable} after each object in the queue
  * is garbage collected.
+ *
+ * <p>Reclaiming with a {@link ReclaimBudget} only runs the callbacks that fit the budget, the
+ * callbacks of the other collected objects run in later calls.
+ *
+ * <p>Objects may be registered from any thread. The callbacks run on the thread reclaiming, they
+ * must not reference the tracked object or it will never be collected.
  */
 public class CleanupRegistry<T> implements ResourceHolder {
 
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
   private final java.util.HashSet<CleanupItem<T>> cleanupItemHashSet;
+
   private final ReferenceQueue<T> referenceQueue;
 
+  // Collected objects whose callback did not fit the budget of the previous calls.
+  @GuardedBy("lock")
+  private final ArrayDeque<CleanupItem<T>> pendingItems = new ArrayDeque<>();
+
   public CleanupRegistry() {
     this(new HashSet<>(), new ReferenceQueue<>());
   }
@@ -31,7 +48,10 @@ public class CleanupRegistry<T> implements ResourceHolder {
    * @param cleanupCallback Will be called after {@code trackedOBject} is disposed.
    */
   public void register(T trackedObject, Runnable cleanupCallback) {
-    cleanupItemHashSet.add(new CleanupItem<T>(trackedObject, referenceQueue, cleanupCallback));
+    CleanupItem<T> cleanupItem = new CleanupItem<T>(trackedObject, referenceQueue, cleanupCallback);
+    synchronized (lock) {
+      cleanupItemHashSet.add(cleanupItem);
+    }
   }
 
   /**
@@ -41,26 +61,61 @@ public class CleanupRegistry<T> implements ResourceHolder {
    * @return count of resources remaining.
    */
   @Override
-  @SuppressWarnings("unchecked") // safe cast from Reference to a CleanupItem
   public long reclaimReleasedResources() {
-    CleanupItem<T> ref = (CleanupItem<T>) referenceQueue.poll();
-    while (ref != null) {
-      if (cleanupItemHashSet.contains(ref)) {
-        ref.run();
-        cleanupItemHashSet.remove(ref);
+    return reclaimReleasedResources(ReclaimBudget.unlimited());
+  }
+
+  /**
+   * Polls the {@link ReferenceQueue} for garbage collected objects and runs the associated {@link
+   * Runnable}s that fit the budget, oldest first.
+   *
+   * @return count of resources remaining, including the ones waiting for their callback.
+   */
+  @Override
+  @SuppressWarnings("unchecked") // safe cast from Reference to a CleanupItem
+  public long reclaimReleasedResources(ReclaimBudget budget) {
+    // Polling is cheap, the callbacks destroying the filament objects are what is budgeted.
+    synchronized (lock) {
+      CleanupItem<T> ref = (CleanupItem<T>) referenceQueue.poll();
+      while (ref != null) {
+        pendingItems.add(ref);
+        ref = (CleanupItem<T>) referenceQueue.poll();
+      }
+    }
+
+    while (true) {
+      CleanupItem<T> ref;
+      synchronized (lock) {
+        if (pendingItems.isEmpty() || !budget.tryConsume()) {
+          return cleanupItemHashSet.size();
+        }
+        ref = pendingItems.poll();
+        if (!cleanupItemHashSet.remove(ref)) {
+          continue;
+        }
       }
-      ref = (CleanupItem<T>) referenceQueue.poll();
+      // Callbacks run without the lock, they may register other objects.
+      ref.run();
+    }
+  }
+
+  @Override
+  public int getPendingReclaimCount() {
+    synchronized (lock) {
+      return pendingItems.size();
     }
-    return cleanupItemHashSet.size();
   }
 
   /** Ignores reference count and releases any associated resources */
   @Override
   public void destroyAllResources() {
-    Iterator<CleanupItem<T>> iterator = cleanupItemHashSet.iterator();
-    while (iterator.hasNext()) {
-      CleanupItem<T> ref = iterator.next();
-      iterator.remove();
+    ArrayList<CleanupItem<T>> cleanupItems;
+    synchronized (lock) {
+      pendingItems.clear();
+      cleanupItems = new ArrayList<>(cleanupItemHashSet);
+      cleanupItemHashSet.clear();
+    }
+    for (CleanupItem<T> ref : cleanupItems) {
       ref.run();
     }
   }
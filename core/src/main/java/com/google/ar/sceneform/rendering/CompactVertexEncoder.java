@@ -0,0 +1,157 @@
+package com.google.ar.sceneform.rendering;
+
+import com.google.android.filament.VertexBuffer;
+import com.google.android.filament.VertexBuffer.VertexAttribute;
+import com.google.ar.sceneform.math.MathHelper;
+import com.google.ar.sceneform.math.Vector3;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Encodes the vertex attributes packed as floats by {@link RenderableDefinition} into the compact
+ * formats of {@link RenderableDefinition.CompactAttribute}:
+ *
+ * <ul>
+ *   <li>positions as HALF4, with a w of 1,
+ *   <li>tangent quaternions as normalized SHORT4,
+ *   <li>uv coordinates as normalized USHORT2, clamped to [0, 1],
+ *   <li>colors as normalized UBYTE4, clamped to [0, 1].
+ * </ul>
+ *
+ * <p>A compact vertex with all the attributes takes 24 bytes, instead of 52 bytes with floats.
+ */
+final class CompactVertexEncoder {
+  private static final int POSITION_BYTES = 8;
+  private static final int TANGENTS_BYTES = 8;
+  private static final int UV_BYTES = 4;
+  private static final int COLOR_BYTES = 4;
+  private static final short HALF_ONE = 0x3C00;
+  // Largest finite half float.
+  private static final float MAX_HALF = 65504.0f;
+
+  private CompactVertexEncoder() {}
+
+  /** Returns the bytes of the compact encoding of an attribute for one vertex. */
+  static int getBytesPerVertex(VertexAttribute attribute) {
+    switch (attribute) {
+      case POSITION:
+        return POSITION_BYTES;
+      case TANGENTS:
+        return TANGENTS_BYTES;
+      case UV0:
+        return UV_BYTES;
+      case COLOR:
+        return COLOR_BYTES;
+      default:
+        throw new IllegalArgumentException("No compact encoding for " + attribute);
+    }
+  }
+
+  static VertexBuffer.AttributeType getAttributeType(VertexAttribute attribute) {
+    switch (attribute) {
+      case POSITION:
+        return VertexBuffer.AttributeType.HALF4;
+      case TANGENTS:
+        return VertexBuffer.AttributeType.SHORT4;
+      case UV0:
+        return VertexBuffer.AttributeType.USHORT2;
+      case COLOR:
+        return VertexBuffer.AttributeType.UBYTE4;
+      default:
+        throw new IllegalArgumentException("No compact encoding for " + attribute);
+    }
+  }
+
+  /**
+   * Returns true if the positions within a bounding box can be encoded as half floats without
+   * overflowing to infinity.
+   */
+  static boolean canEncodePositions(Vector3 centerAabb, Vector3 extentsAabb) {
+    return Math.abs(centerAabb.x) + extentsAabb.x <= MAX_HALF
+        && Math.abs(centerAabb.y) + extentsAabb.y <= MAX_HALF
+        && Math.abs(centerAabb.z) + extentsAabb.z <= MAX_HALF;
+  }
+
+  /** Returns true if filament must map the integers of the attribute to [0, 1] or [-1, 1]. */
+  static boolean isNormalized(VertexAttribute attribute) {
+    return attribute != VertexAttribute.POSITION;
+  }
+
+  /**
+   * Encodes the floats of the vertices of an attribute, packed from the start of the source, into
+   * the destination from its position.
+   */
+  static void encode(
+      VertexAttribute attribute, FloatBuffer source, int numVertices, ByteBuffer destination) {
+    switch (attribute) {
+      case POSITION:
+        for (int i = 0; i < numVertices * 3; i += 3) {
+          destination.putShort(toHalf(source.get(i)));
+          destination.putShort(toHalf(source.get(i + 1)));
+          destination.putShort(toHalf(source.get(i + 2)));
+          destination.putShort(HALF_ONE);
+        }
+        break;
+      case TANGENTS:
+        for (int i = 0; i < numVertices * 4; i++) {
+          destination.putShort((short) Math.round(MathHelper.clamp(source.get(i), -1, 1) * 32767));
+        }
+        break;
+      case UV0:
+        for (int i = 0; i < numVertices * 2; i++) {
+          destination.putShort((short) Math.round(MathHelper.clamp(source.get(i), 0, 1) * 65535));
+        }
+        break;
+      case COLOR:
+        for (int i = 0; i < numVertices * 4; i++) {
+          destination.put((byte) Math.round(MathHelper.clamp(source.get(i), 0, 1) * 255));
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("No compact encoding for " + attribute);
+    }
+  }
+
+  /** Returns the bits of the half float nearest to a float, rounding ties to even. */
+  static short toHalf(float value) {
+    int bits = Float.floatToRawIntBits(value);
+    int sign = (bits >>> 16) & 0x8000;
+    int exponent = (bits >>> 23) & 0xFF;
+    int mantissa = bits & 0x7FFFFF;
+
+    if (exponent == 0xFF) {
+      // Infinity or NaN, keeping NaNs quiet.
+      return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+    }
+
+    int halfExponent = exponent - 127 + 15;
+    if (halfExponent >= 0x1F) {
+      // Too large for a half float.
+      return (short) (sign | 0x7C00);
+    }
+
+    if (halfExponent <= 0) {
+      // Too small for a normal half float, it is a subnormal or zero.
+      if (halfExponent < -10) {
+        return (short) sign;
+      }
+      int significand = mantissa | 0x800000;
+      int shift = 14 - halfExponent;
+      int halfMantissa = significand >> shift;
+      int remainder = significand & ((1 << shift) - 1);
+      int halfway = 1 << (shift - 1);
+      if (remainder > halfway || (remainder == halfway && (halfMantissa & 1) != 0)) {
+        halfMantissa++;
+      }
+      return (short) (sign | halfMantissa);
+    }
+
+    int halfBits = (halfExponent << 10) | (mantissa >> 13);
+    int remainder = mantissa & 0x1FFF;
+    // Rounding up may carry into the exponent, up to infinity, as it should.
+    if (remainder > 0x1000 || (remainder == 0x1000 && (halfBits & 1) != 0)) {
+      halfBits++;
+    }
+    return (short) (sign | halfBits);
+  }
+}
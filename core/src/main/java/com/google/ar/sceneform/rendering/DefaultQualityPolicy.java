@@ -0,0 +1,130 @@
+package com.google.ar.sceneform.rendering;
+
+import android.os.PowerManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link QualityPolicy} used by default.
+ *
+ * <p>The quality is lowered by one level once the 90th percentile frame time has been over the
+ * frame budget for {@link #DEFAULT_DOWNGRADE_DELAY_MILLIS}, and raised by one level once it has
+ * stayed well under the budget for the longer {@link #DEFAULT_UPGRADE_DELAY_MILLIS}. The frame
+ * times in between keep the current level, so the level does not oscillate around the budget.
+ *
+ * <p>The thermal status of the device bounds the highest quality allowed: from {@link
+ * PowerManager#THERMAL_STATUS_LIGHT} the quality is no longer raised, and higher statuses force
+ * lower levels immediately.
+ */
+public class DefaultQualityPolicy implements QualityPolicy {
+  public static final float DEFAULT_DOWNGRADE_THRESHOLD = 1.0f;
+  public static final float DEFAULT_UPGRADE_THRESHOLD = 0.6f;
+  public static final long DEFAULT_DOWNGRADE_DELAY_MILLIS = 1000;
+  public static final long DEFAULT_UPGRADE_DELAY_MILLIS = 5000;
+
+  private static final long UNSET = -1;
+
+  private final float downgradeThreshold;
+  private final float upgradeThreshold;
+  private final long downgradeDelayNanos;
+  private final long upgradeDelayNanos;
+
+  private long overBudgetSinceNanos = UNSET;
+  private long underBudgetSinceNanos = UNSET;
+
+  public DefaultQualityPolicy() {
+    this(
+        DEFAULT_DOWNGRADE_THRESHOLD,
+        DEFAULT_UPGRADE_THRESHOLD,
+        DEFAULT_DOWNGRADE_DELAY_MILLIS,
+        DEFAULT_UPGRADE_DELAY_MILLIS);
+  }
+
+  /**
+   * @param downgradeThreshold the fraction of the frame budget over which the frame time lowers
+   *     the quality
+   * @param upgradeThreshold the fraction of the frame budget under which the frame time raises the
+   *     quality, must be lower than the downgrade threshold
+   * @param downgradeDelayMillis how long the frame time must stay over budget before lowering the
+   *     quality
+   * @param upgradeDelayMillis how long the frame time must stay under budget before raising the
+   *     quality
+   */
+  public DefaultQualityPolicy(
+      float downgradeThreshold,
+      float upgradeThreshold,
+      long downgradeDelayMillis,
+      long upgradeDelayMillis) {
+    if (upgradeThreshold >= downgradeThreshold) {
+      throw new IllegalArgumentException(
+          "Upgrade threshold must be lower than the downgrade threshold.");
+    }
+    if (downgradeDelayMillis < 0 || upgradeDelayMillis < 0) {
+      throw new IllegalArgumentException("Delays must not be negative.");
+    }
+    this.downgradeThreshold = downgradeThreshold;
+    this.upgradeThreshold = upgradeThreshold;
+    this.downgradeDelayNanos = TimeUnit.MILLISECONDS.toNanos(downgradeDelayMillis);
+    this.upgradeDelayNanos = TimeUnit.MILLISECONDS.toNanos(upgradeDelayMillis);
+  }
+
+  @Override
+  public int selectLevel(QualityGovernor.FrameStats stats, int currentLevel, int levelCount) {
+    int thermalStatus = stats.getThermalStatus();
+    int highestAllowedLevel = getHighestAllowedLevel(thermalStatus, levelCount);
+    if (currentLevel < highestAllowedLevel) {
+      return highestAllowedLevel;
+    }
+
+    long now = stats.getTimestampNanos();
+    float frameTime = stats.getFrameTimeMillis(90);
+    float budget = stats.getTargetFrameTimeMillis();
+
+    if (frameTime > budget * downgradeThreshold) {
+      underBudgetSinceNanos = UNSET;
+      if (overBudgetSinceNanos == UNSET) {
+        overBudgetSinceNanos = now;
+      }
+      if (now - overBudgetSinceNanos >= downgradeDelayNanos && currentLevel < levelCount - 1) {
+        return currentLevel + 1;
+      }
+    } else if (frameTime < budget * upgradeThreshold
+        && thermalStatus < PowerManager.THERMAL_STATUS_LIGHT
+        && currentLevel > highestAllowedLevel) {
+      overBudgetSinceNanos = UNSET;
+      if (underBudgetSinceNanos == UNSET) {
+        underBudgetSinceNanos = now;
+      }
+      if (now - underBudgetSinceNanos >= upgradeDelayNanos) {
+        return currentLevel - 1;
+      }
+    } else {
+      overBudgetSinceNanos = UNSET;
+      underBudgetSinceNanos = UNSET;
+    }
+    return currentLevel;
+  }
+
+  @Override
+  public void reset() {
+    overBudgetSinceNanos = UNSET;
+    underBudgetSinceNanos = UNSET;
+  }
+
+  /**
+   * Returns the index of the highest quality level allowed for the given {@link PowerManager}
+   * thermal status.
+   */
+  protected int getHighestAllowedLevel(int thermalStatus, int levelCount) {
+    int level;
+    if (thermalStatus >= PowerManager.THERMAL_STATUS_CRITICAL) {
+      level = levelCount - 1;
+    } else if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+      level = 2;
+    } else if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+      level = 1;
+    } else {
+      level = 0;
+    }
+    return Math.max(0, Math.min(level, levelCount - 1));
+  }
+}
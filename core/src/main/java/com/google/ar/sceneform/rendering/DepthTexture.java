@@ -41,6 +41,13 @@ public class DepthTexture {
                 .format(Texture.InternalFormat.RG8)
                 .levels(1)
                 .build(EngineInstance.getEngine().getFilamentEngine());
+        Texture.InternalFormat format = Texture.InternalFormat.RG8;
+        ResourceAccounting.getInstance().track(
+                ResourceAccounting.Category.TEXTURE,
+                filamentTexture,
+                ResourceAccounting.estimateTextureBytes(width, height, 1, format),
+                "depth " + ResourceAccounting.describeTexture(width, height, 1, format),
+                null);
 
         ResourceManager.getInstance()
                 .getDepthTextureCleanupRegistry()
@@ -106,6 +113,8 @@ public class DepthTexture {
         @Override
         public void run() {
             AndroidPreconditions.checkUiThread();
+            ResourceAccounting.getInstance()
+                    .untrack(ResourceAccounting.Category.TEXTURE, filamentTexture);
 
             IEngine engine = EngineInstance.getEngine();
             if (engine == null || !engine.isValid()) {
@@ -0,0 +1,197 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.filament.VertexBuffer.VertexAttribute;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+/**
+ * Preallocated direct buffers of a renderable updated from a {@link RenderableDefinition} every
+ * frame, such as a plane or a face mesh.
+ *
+ * <p>The definitions are baked into a ring of {@link #RING_SIZE} slots. A slot is owned by a
+ * definition from the time it is acquired to bake it until the baked definition is committed or
+ * released, and is then kept from being written again until filament is done reading its buffers:
+ * the uploads of a slot are counted and their completion callbacks free it. When no slot is free,
+ * e.g. when bakes are queued faster than filament consumes them, {@link #acquireSlot()} returns
+ * null and the definition is baked into buffers of its own. The buffers, as well as the filament
+ * buffers created for a dynamic mesh, have some headroom so that a mesh growing a little doesn't
+ * reallocate them.
+ *
+ * <p>The slot committed last holds what the filament buffers contain, so that the next commit only
+ * uploads the attributes and the ranges of vertices that changed. It is never acquired.
+ */
+final class DynamicMeshBuffers {
+  // The slot being baked, and the ones of the two frames filament may still read.
+  static final int RING_SIZE = 3;
+
+  private final Object lock = new Object();
+
+  private final Slot[] slots = new Slot[RING_SIZE];
+
+  @GuardedBy("lock")
+  private int nextSlotIndex = 0;
+
+  @GuardedBy("lock")
+  @Nullable
+  private Slot committedSlot = null;
+
+  DynamicMeshBuffers() {
+    for (int i = 0; i < RING_SIZE; i++) {
+      slots[i] = new Slot();
+    }
+  }
+
+  /** Returns the number of elements to allocate for a count, with headroom. */
+  static int getCapacity(int count) {
+    return count + count / 2;
+  }
+
+  /**
+   * Returns the next free slot to bake a definition into, owned by the caller until it is passed
+   * to {@link #commitSlot(Slot)} or {@link #releaseSlot(Slot)}, or null if every slot is in use.
+   */
+  @Nullable
+  Slot acquireSlot() {
+    synchronized (lock) {
+      for (int i = 0; i < RING_SIZE; i++) {
+        Slot slot = slots[nextSlotIndex];
+        nextSlotIndex = (nextSlotIndex + 1) % RING_SIZE;
+        if (slot != committedSlot && !slot.isAcquired && slot.pendingUploadCount == 0) {
+          slot.isAcquired = true;
+          return slot;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** Gives back a slot whose baked definition is not committed, e.g. an update that is skipped. */
+  void releaseSlot(Slot slot) {
+    synchronized (lock) {
+      slot.isAcquired = false;
+    }
+  }
+
+  /** Returns the slot the filament buffers were last committed from, null if unknown. */
+  @Nullable
+  Slot getCommittedSlot() {
+    synchronized (lock) {
+      return committedSlot;
+    }
+  }
+
+  /**
+   * Records the slot the filament buffers were committed from, or null if they were committed from
+   * buffers outside of the ring, and gives back the ownership of the slot.
+   */
+  void commitSlot(@Nullable Slot slot) {
+    synchronized (lock) {
+      if (slot != null) {
+        slot.isAcquired = false;
+      }
+      committedSlot = slot;
+    }
+  }
+
+  /**
+   * Returns the callback to pass to an upload of the buffers of a slot, the slot is not written
+   * again until every such callback is called.
+   */
+  Runnable beginUpload(Slot slot) {
+    synchronized (lock) {
+      slot.pendingUploadCount++;
+    }
+    return () -> {
+      synchronized (lock) {
+        slot.pendingUploadCount--;
+      }
+    };
+  }
+
+  /** The buffers a definition is baked into, and what was baked into them. */
+  static final class Slot {
+    private static final int BYTES_PER_FLOAT = Float.SIZE / 8;
+
+    private final EnumMap<VertexAttribute, FloatBuffer> floatBuffers =
+        new EnumMap<>(VertexAttribute.class);
+    private final EnumMap<VertexAttribute, ByteBuffer> compactBuffers =
+        new EnumMap<>(VertexAttribute.class);
+    @Nullable private ByteBuffer indexBytes;
+    private EnumSet<VertexAttribute> attributes = EnumSet.noneOf(VertexAttribute.class);
+    private int numVertices = 0;
+    private int numIndices = 0;
+    // Guarded by the lock of the buffers.
+    private boolean isAcquired = false;
+    private int pendingUploadCount = 0;
+
+    /** Returns the buffer of an attribute, cleared and limited to the number of floats. */
+    FloatBuffer prepareFloatBuffer(VertexAttribute attribute, int floatCount) {
+      @Nullable FloatBuffer buffer = floatBuffers.get(attribute);
+      if (buffer == null || buffer.capacity() < floatCount) {
+        buffer =
+            ByteBuffer.allocateDirect(getCapacity(floatCount) * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        floatBuffers.put(attribute, buffer);
+      }
+      buffer.clear();
+      buffer.limit(floatCount);
+      return buffer;
+    }
+
+    /** Returns the encoded buffer of a compact attribute, cleared and limited to the bytes. */
+    ByteBuffer prepareCompactBuffer(VertexAttribute attribute, int byteCount) {
+      @Nullable ByteBuffer buffer = compactBuffers.get(attribute);
+      if (buffer == null || buffer.capacity() < byteCount) {
+        buffer = ByteBuffer.allocateDirect(getCapacity(byteCount)).order(ByteOrder.nativeOrder());
+        compactBuffers.put(attribute, buffer);
+      }
+      buffer.clear();
+      buffer.limit(byteCount);
+      return buffer;
+    }
+
+    /** Returns the buffer of the indices, cleared and limited to the number of bytes. */
+    ByteBuffer prepareIndexBytes(int byteCount) {
+      if (indexBytes == null || indexBytes.capacity() < byteCount) {
+        indexBytes = ByteBuffer.allocateDirect(getCapacity(byteCount)).order(ByteOrder.nativeOrder());
+      }
+      indexBytes.clear();
+      indexBytes.limit(byteCount);
+      return indexBytes;
+    }
+
+    /** Records what was baked into the slot, once its buffers are filled. */
+    void setContents(EnumSet<VertexAttribute> attributes, int numVertices, int numIndices) {
+      this.attributes = attributes;
+      this.numVertices = numVertices;
+      this.numIndices = numIndices;
+    }
+
+    FloatBuffer getFloatBuffer(VertexAttribute attribute) {
+      return Preconditions.checkNotNull(floatBuffers.get(attribute));
+    }
+
+    ByteBuffer getIndexBytes() {
+      return Preconditions.checkNotNull(indexBytes);
+    }
+
+    EnumSet<VertexAttribute> getAttributes() {
+      return attributes;
+    }
+
+    int getNumVertices() {
+      return numVertices;
+    }
+
+    int getNumIndices() {
+      return numIndices;
+    }
+  }
+}
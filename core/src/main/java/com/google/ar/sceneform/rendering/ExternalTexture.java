@@ -40,6 +40,8 @@ public class ExternalTexture {
     public ExternalTexture() {
         SurfaceTexture surfaceTexture = new SurfaceTexture(0);
         surfaceTexture.detachFromGLContext();
+        // Renderers in on-demand mode must render each new frame of the texture.
+        surfaceTexture.setOnFrameAvailableListener(texture -> RenderInvalidation.invalidate());
         this.surfaceTexture = surfaceTexture;
 
         // Create the Android surface.
@@ -121,6 +123,13 @@ public class ExternalTexture {
         filamentTexture.setExternalStream(
                 engine.getFilamentEngine(),
                 filamentStream);
+        // The texture is backed by the buffers of the stream producer, its size isn't known.
+        ResourceAccounting.getInstance().track(
+                ResourceAccounting.Category.EXTERNAL_TEXTURE,
+                filamentTexture,
+                0,
+                surfaceTexture != null ? "surface texture stream" : "texture id stream",
+                null);
         ResourceManager.getInstance()
                 .getExternalTextureCleanupRegistry()
                 .register(this, new CleanupCallback(filamentTexture, filamentStream));
@@ -165,6 +174,8 @@ public class ExternalTexture {
         @Override
         public void run() {
             AndroidPreconditions.checkUiThread();
+            ResourceAccounting.getInstance()
+                    .untrack(ResourceAccounting.Category.EXTERNAL_TEXTURE, filamentTexture);
 
             IEngine engine = EngineInstance.getEngine();
             if (engine == null || !engine.isValid()) {
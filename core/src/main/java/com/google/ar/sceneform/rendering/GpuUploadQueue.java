@@ -0,0 +1,177 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Main thread queue for the work creating GPU resources, e.g. filament materials, textures and
+ * buffers of loaded renderables.
+ *
+ * <p>Running all that work as soon as the loads complete makes the frames hitch when several
+ * renderables finish loading together. The queue is drained between the update and the render of
+ * each frame instead, and only runs as much work as fits the frame budget. Work of requests with a
+ * higher priority runs first. At least one task runs per frame, so that a task longer than the
+ * budget still runs.
+ *
+ * <p>While no view is drawing frames the queue is drained by messages of the main looper, with the
+ * same budget per message.
+ *
+ * @hide
+ */
+public final class GpuUploadQueue {
+  public static final float DEFAULT_FRAME_BUDGET_MILLIS = 4.0f;
+  // Weight of the last task in the moving average of the task durations.
+  private static final float DURATION_SMOOTHING = 0.2f;
+
+  @Nullable private static GpuUploadQueue instance = null;
+
+  private final PriorityBlockingQueue<Task> tasks = new PriorityBlockingQueue<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicBoolean isDrainPosted = new AtomicBoolean(false);
+  private volatile long frameBudgetNanos = millisToNanos(DEFAULT_FRAME_BUDGET_MILLIS);
+  private volatile long averageTaskNanos = 0;
+  private volatile int frameLoopCount = 0;
+
+  private GpuUploadQueue() {}
+
+  public static synchronized GpuUploadQueue getInstance() {
+    if (instance == null) {
+      instance = new GpuUploadQueue();
+    }
+    return instance;
+  }
+
+  /** Returns an {@link Executor} running tasks on the main thread within the frame budget. */
+  public Executor getExecutor(@Nullable LoadRequest request) {
+    return runnable -> execute(request, runnable);
+  }
+
+  /** Sets the time spent running queued work in each frame. */
+  public void setFrameBudgetMillis(float frameBudgetMillis) {
+    frameBudgetNanos = millisToNanos(frameBudgetMillis);
+  }
+
+  public float getFrameBudgetMillis() {
+    return frameBudgetNanos / 1_000_000.0f;
+  }
+
+  /** Returns the number of queued tasks. */
+  public int getPendingTaskCount() {
+    return tasks.size();
+  }
+
+  /**
+   * Returns an estimate of the time needed to run the queued work, from the average duration of
+   * the tasks that already ran.
+   */
+  public float getBacklogMillis() {
+    return tasks.size() * averageTaskNanos / 1_000_000.0f;
+  }
+
+  /**
+   * Runs queued work until the frame budget is spent or the queue is empty.
+   *
+   * @hide
+   */
+  public void drain() {
+    AndroidPreconditions.checkUiThread();
+    long startNanos = System.nanoTime();
+    long budgetNanos = frameBudgetNanos;
+    Task task;
+    while ((task = tasks.poll()) != null) {
+      long taskStartNanos = System.nanoTime();
+      try {
+        task.runnable.run();
+      } finally {
+        long taskEndNanos = System.nanoTime();
+        long taskNanos = taskEndNanos - taskStartNanos;
+        averageTaskNanos =
+            averageTaskNanos == 0
+                ? taskNanos
+                : (long) (averageTaskNanos + DURATION_SMOOTHING * (taskNanos - averageTaskNanos));
+        if (taskEndNanos - startNanos >= budgetNanos) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Called when a view starts drawing frames, the queue is then drained by its frames.
+   *
+   * @hide
+   */
+  public void attachFrameLoop() {
+    AndroidPreconditions.checkUiThread();
+    frameLoopCount++;
+  }
+
+  /**
+   * Called when a view stops drawing frames.
+   *
+   * @hide
+   */
+  public void detachFrameLoop() {
+    AndroidPreconditions.checkUiThread();
+    frameLoopCount--;
+    if (frameLoopCount == 0 && !tasks.isEmpty()) {
+      postDrain();
+    }
+  }
+
+  private void execute(@Nullable LoadRequest request, Runnable runnable) {
+    int priority = request != null ? request.getPriority() : LoadRequest.PRIORITY_DEFAULT;
+    tasks.add(new Task(runnable, priority, sequence.getAndIncrement()));
+    if (frameLoopCount == 0) {
+      postDrain();
+    }
+  }
+
+  private void postDrain() {
+    if (!isDrainPosted.compareAndSet(false, true)) {
+      return;
+    }
+    ThreadPools.getMainExecutor()
+        .execute(
+            () -> {
+              isDrainPosted.set(false);
+              if (frameLoopCount > 0) {
+                return;
+              }
+              drain();
+              if (!tasks.isEmpty()) {
+                postDrain();
+              }
+            });
+  }
+
+  private static long millisToNanos(float millis) {
+    return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  /** Queued work, ordered by priority then by the order it was queued. */
+  private static final class Task implements Comparable<Task> {
+    private final Runnable runnable;
+    private final int priority;
+    private final long order;
+
+    Task(Runnable runnable, int priority, long order) {
+      this.runnable = runnable;
+      this.priority = priority;
+      this.order = order;
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return Long.compare(order, other.order);
+    }
+  }
+}
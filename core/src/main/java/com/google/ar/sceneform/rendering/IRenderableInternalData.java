@@ -9,8 +9,7 @@ import com.google.android.filament.VertexBuffer;
 
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.RenderableInternalData.MeshData;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.Buffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,30 +48,30 @@ interface IRenderableInternalData {
   @Nullable
   VertexBuffer getVertexBuffer();
 
-  void setRawIndexBuffer(@Nullable IntBuffer rawIndexBuffer);
+  void setRawIndexBuffer(@Nullable Buffer rawIndexBuffer);
 
   @Nullable
-  IntBuffer getRawIndexBuffer();
+  Buffer getRawIndexBuffer();
 
-  void setRawPositionBuffer(@Nullable FloatBuffer rawPositionBuffer);
+  void setRawPositionBuffer(@Nullable Buffer rawPositionBuffer);
 
   @Nullable
-  FloatBuffer getRawPositionBuffer();
+  Buffer getRawPositionBuffer();
 
-  void setRawTangentsBuffer(@Nullable FloatBuffer rawTangentsBuffer);
+  void setRawTangentsBuffer(@Nullable Buffer rawTangentsBuffer);
 
   @Nullable
-  FloatBuffer getRawTangentsBuffer();
+  Buffer getRawTangentsBuffer();
 
-  void setRawUvBuffer(@Nullable FloatBuffer rawUvBuffer);
+  void setRawUvBuffer(@Nullable Buffer rawUvBuffer);
 
   @Nullable
-  FloatBuffer getRawUvBuffer();
+  Buffer getRawUvBuffer();
 
-  void setRawColorBuffer(@Nullable FloatBuffer rawColorBuffer);
+  void setRawColorBuffer(@Nullable Buffer rawColorBuffer);
 
   @Nullable
-  FloatBuffer getRawColorBuffer();
+  Buffer getRawColorBuffer();
 
   void setAnimationNames(@NonNull List<String> animationNames);
 
@@ -90,6 +89,19 @@ interface IRenderableInternalData {
 
 
   void buildInstanceData(RenderableInstance instance, @Entity int renderedEntity);
+
+  /** Sets the registry id or uri the data was created for, to attribute its resources. */
+  void setSource(@Nullable Object source);
+
+  @Nullable
+  Object getSource();
+
+  /** Sets the buffers of the data when it is updated every frame, null if it is not. */
+  void setDynamicMeshBuffers(@Nullable DynamicMeshBuffers dynamicMeshBuffers);
+
+  @Nullable
+  DynamicMeshBuffers getDynamicMeshBuffers();
+
   /**
    * Removes any memory used by the object.
    *
@@ -1,7 +1,6 @@
 package com.google.ar.sceneform.rendering;
 
 import androidx.annotation.Nullable;
-import android.util.Log;
 import com.google.android.filament.Entity;
 import com.google.android.filament.EntityManager;
 import com.google.android.filament.LightManager;
@@ -9,6 +8,7 @@ import com.google.ar.sceneform.common.TransformProvider;
 import com.google.ar.sceneform.math.Matrix;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import java.util.Locale;
 
 /**
  * Wraps a Filament Light.
@@ -16,12 +16,13 @@ import com.google.ar.sceneform.utilities.AndroidPreconditions;
  * @hide This class is not part of the user facing API.
  */
 public class LightInstance {
-  private static final String TAG = LightInstance.class.getSimpleName();
-
   private class LightInstanceChangeListener implements Light.LightChangedListener {
     @Override
     public void onChange() {
       dirty = true;
+      if (renderer != null) {
+        renderer.requestRender();
+      }
     }
   }
 
@@ -36,6 +37,7 @@ public class LightInstance {
   private boolean dirty;
 
   private LightInstanceChangeListener changeListener = new LightInstanceChangeListener();
+  private final CleanupCallback cleanupCallback;
 
   LightInstance(Light light, TransformProvider transformProvider) {
     this.light = light;
@@ -98,6 +100,16 @@ public class LightInstance {
     } else {
       throw new UnsupportedOperationException("Unsupported light type.");
     }
+
+    ResourceAccounting.getInstance()
+        .track(
+            ResourceAccounting.Category.ENTITY,
+            entity,
+            0,
+            "light " + light.getType().name().toLowerCase(Locale.US),
+            null);
+    cleanupCallback = new CleanupCallback(entity);
+    ResourceManager.getInstance().getLightInstanceCleanupRegistry().register(this, cleanupCallback);
   }
 
   public void updateTransform() {
@@ -154,26 +166,7 @@ public class LightInstance {
       changeListener = null;
     }
 
-    IEngine engine = EngineInstance.getEngine();
-    if (engine != null && engine.isValid()) {
-      LightManager lightManager = engine.getLightManager();
-      lightManager.destroy(entity);
-
-      EntityManager entityManager = EntityManager.get();
-      entityManager.destroy(entity);
-    }
-  }
-
-  /** @hide */
-  @Override
-  protected void finalize() throws Throwable {
-    try {
-      ThreadPools.getMainExecutor().execute(() -> dispose());
-    } catch (Exception e) {
-      Log.e(TAG, "Error while Finalizing Light Instance.", e);
-    } finally {
-      super.finalize();
-    }
+    cleanupCallback.run();
   }
 
   /*
@@ -228,4 +221,33 @@ public class LightInstance {
         || type == Light.Type.FOCUSED_SPOTLIGHT
         || type == Light.Type.DIRECTIONAL;
   }
+
+  /** Destroys the filament light when disposed or after garbage collection. */
+  private static final class CleanupCallback implements Runnable {
+    @Entity private final int entity;
+    private boolean isDestroyed = false;
+
+    CleanupCallback(@Entity int entity) {
+      this.entity = entity;
+    }
+
+    @Override
+    public void run() {
+      AndroidPreconditions.checkUiThread();
+      if (isDestroyed) {
+        return;
+      }
+      isDestroyed = true;
+      ResourceAccounting.getInstance().untrack(ResourceAccounting.Category.ENTITY, entity);
+
+      IEngine engine = EngineInstance.getEngine();
+      if (engine != null && engine.isValid()) {
+        LightManager lightManager = engine.getLightManager();
+        lightManager.destroy(entity);
+
+        EntityManager entityManager = EntityManager.get();
+        entityManager.destroy(entity);
+      }
+    }
+  }
 }
@@ -2,29 +2,59 @@ package com.google.ar.sceneform.rendering;
 
 import android.content.Context;
 import android.net.Uri;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.android.filament.gltfio.ResourceLoader;
+import com.google.ar.sceneform.utilities.LoadHelper;
+import com.google.ar.sceneform.utilities.ModelCache;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.function.Function;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /** Task for initializing a renderable with glTF data loaded with gltfio. */
 @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"}) // CompletableFuture
 public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
   private static final String TAG = LoadRenderableFromFilamentGltfTask.class.getSimpleName();
+  private static final int GLB_HEADER_SIZE = 12;
+  private static final int GLB_CHUNK_HEADER_SIZE = 8;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
   private final T renderable;
   private final RenderableInternalFilamentAssetData renderableData;
+  private final Uri sourceUri;
+  private final LoadRequest loadRequest;
+  @Nullable private final Map<String, String> requestProperties;
+  private final boolean isCachingEnabled;
 
   LoadRenderableFromFilamentGltfTask(
-      T renderable, Context context, Uri sourceUri, @Nullable Function<String, Uri> urlResolver) {
+      T renderable,
+      Context context,
+      Uri sourceUri,
+      @Nullable Function<String, Uri> urlResolver,
+      @Nullable Map<String, String> requestProperties,
+      boolean isCachingEnabled,
+      LoadRequest loadRequest) {
     this.renderable = renderable;
+    this.sourceUri = sourceUri;
+    this.requestProperties = requestProperties;
+    this.isCachingEnabled = isCachingEnabled;
+    this.loadRequest = loadRequest;
     IRenderableInternalData data = renderable.getRenderableData();
     if (data instanceof RenderableInternalFilamentAssetData) {
       this.renderableData =
@@ -44,28 +74,136 @@ public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
   @SuppressWarnings({"AndroidApiChecker"})
   public CompletableFuture<T> downloadAndProcessRenderable(
       Callable<InputStream> inputStreamCreator) {
+    LoadScheduler scheduler = LoadScheduler.getInstance();
+    @Nullable ModelCache modelCache = ModelCache.getInstalled();
+    String sourceUriString = sourceUri.toString();
+    // Every stage is tracked by the request, so that cancelling it stops the chain.
+    if (modelCache != null && isCachingEnabled && ModelCache.isCacheable(sourceUriString)) {
+      CompletableFuture<CachedModel> cachedModelFuture =
+          scheduler.supplyIoAsync(
+              loadRequest,
+              // Load the model from the cache or download it via the I/O pool
+              () -> {
+                try {
+                  return fetchModel(modelCache, sourceUriString);
+                } catch (IOException e) {
+                  throw new CompletionException(e);
+                }
+              });
+      return loadRequest.track(
+          cachedModelFuture.thenApplyAsync(
+              cachedModel -> {
+                // The resolved resources are not resolved nor downloaded again by the instances.
+                this.renderableData.resolvedResources = cachedModel.resources;
+                return setGltfBuffer(cachedModel.entry.getMainBuffer());
+              },
+              ThreadPools.getMainExecutor()));
+    }
+
+    CompletableFuture<ByteBuffer> gltfByteBufferFuture =
+        scheduler.supplyIoAsync(
+            loadRequest,
+            // Download byte buffer via the I/O pool
+            () -> SceneformBufferUtils.inputStreamToDirectByteBuffer(inputStreamCreator));
+    return loadRequest.track(
+        gltfByteBufferFuture.thenApplyAsync(this::setGltfBuffer, ThreadPools.getMainExecutor()));
+  }
+
+  /**
+   * Fetches the model from the cache or the network. The resources of a downloaded model are
+   * resolved and downloaded as well, then the model is written to the cache as soon as it is
+   * loaded, whether or not an instance of it is ever created.
+   */
+  private CachedModel fetchModel(ModelCache modelCache, String sourceUriString)
+      throws IOException {
+    ModelCache.Entry entry = modelCache.fetch(sourceUriString, requestProperties);
+    if (entry.isFromCache()) {
+      return new CachedModel(entry, entry.getResources());
+    }
+
+    @Nullable Map<String, ByteBuffer> resources = downloadResources(entry.getMainBuffer());
+    if (resources != null) {
+      modelCache.put(entry, resources);
+    }
+    return new CachedModel(entry, resources);
+  }
+
+  /**
+   * Downloads the external resources of a model by their uri as written in the model, returns
+   * null if one of them can't be downloaded, in which case they are downloaded by the instances.
+   */
+  @Nullable
+  private Map<String, ByteBuffer> downloadResources(ByteBuffer gltfByteBuffer) {
+    List<String> resourceUris;
+    try {
+      resourceUris = getResourceUris(gltfByteBuffer);
+    } catch (JSONException | RuntimeException e) {
+      Log.w(TAG, "Unable to read the resources of " + sourceUri, e);
+      return null;
+    }
+
+    Function<String, Uri> urlResolver = Preconditions.checkNotNull(renderableData.urlResolver);
+    HashMap<String, ByteBuffer> resources = new HashMap<>();
+    for (String uri : resourceUris) {
+      Uri dataUri = urlResolver.apply(uri);
+      try {
+        Callable<InputStream> callable = LoadHelper.fromUri(renderableData.context, dataUri);
+        resources.put(uri, SceneformBufferUtils.inputStreamToDirectByteBuffer(callable));
+      } catch (Exception e) {
+        Log.w(TAG, "Failed to download data uri " + dataUri, e);
+        return null;
+      }
+    }
+    return resources;
+  }
+
+  /**
+   * Returns the uris of the external buffers and images of a glTF or glb model, as returned by
+   * {@link com.google.android.filament.gltfio.FilamentAsset#getResourceUris()}.
+   */
+  private static List<String> getResourceUris(ByteBuffer gltfByteBuffer) throws JSONException {
+    ByteBuffer json = gltfByteBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (isGltfBinary(json)) {
+      // The JSON chunk follows the 12 bytes header, after its own length and type.
+      int jsonLength = json.getInt(json.position() + GLB_HEADER_SIZE);
+      json.position(json.position() + GLB_HEADER_SIZE + GLB_CHUNK_HEADER_SIZE);
+      json.limit(json.position() + jsonLength);
+    }
+    byte[] jsonBytes = new byte[json.remaining()];
+    json.get(jsonBytes);
+    JSONObject root = new JSONObject(new String(jsonBytes, UTF_8));
+
+    ArrayList<String> resourceUris = new ArrayList<>();
+    for (String property : new String[] {"buffers", "images"}) {
+      @Nullable JSONArray elements = root.optJSONArray(property);
+      if (elements == null) {
+        continue;
+      }
+      for (int i = 0; i < elements.length(); i++) {
+        @Nullable String uri = elements.getJSONObject(i).optString("uri", null);
+        // Data uris are embedded in the model.
+        if (uri != null && !uri.startsWith("data:")) {
+          resourceUris.add(uri);
+        }
+      }
+    }
+    return resourceUris;
+  }
 
-    return CompletableFuture.supplyAsync(
-            // Download byte buffer via thread pool
-            () -> {
-              try {
-                return SceneformBufferUtils.inputStreamCallableToByteArray(inputStreamCreator);
-              } catch (Exception e) {
-                throw new CompletionException(e);
-              }
-            },
-            ThreadPools.getThreadPoolExecutor())
-        .thenApplyAsync(
-            gltfByteBuffer -> {
-              // Check for glb header
-              this.renderableData.isGltfBinary = gltfByteBuffer[0] == 0x67
-                      && gltfByteBuffer[1] == 0x6C
-                      && gltfByteBuffer[2] == 0x54
-                      && gltfByteBuffer[3] == 0x46;
-              this.renderableData.gltfByteBuffer = ByteBuffer.wrap(gltfByteBuffer);
-              return renderable;
-            },
-            ThreadPools.getMainExecutor());
+  private static boolean isGltfBinary(ByteBuffer gltfByteBuffer) {
+    int start = gltfByteBuffer.position();
+    return gltfByteBuffer.remaining() >= 4
+        && gltfByteBuffer.get(start) == 0x67
+        && gltfByteBuffer.get(start + 1) == 0x6C
+        && gltfByteBuffer.get(start + 2) == 0x54
+        && gltfByteBuffer.get(start + 3) == 0x46;
+  }
+
+  private T setGltfBuffer(ByteBuffer gltfByteBuffer) {
+    // Check for glb header
+    this.renderableData.isGltfBinary = isGltfBinary(gltfByteBuffer);
+    this.renderableData.gltfByteBuffer = gltfByteBuffer;
+    return renderable;
   }
 
   @NonNull
@@ -99,4 +237,15 @@ public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
     // Normalize and return Uri.
     return Uri.parse(Uri.decode(URI.create(uri.toString()).normalize().toString()));
   }
+
+  /** A model fetched through the cache, with its resolved resources or null if unresolved. */
+  private static final class CachedModel {
+    final ModelCache.Entry entry;
+    @Nullable final Map<String, ByteBuffer> resources;
+
+    CachedModel(ModelCache.Entry entry, @Nullable Map<String, ByteBuffer> resources) {
+      this.entry = entry;
+      this.resources = resources;
+    }
+  }
 }
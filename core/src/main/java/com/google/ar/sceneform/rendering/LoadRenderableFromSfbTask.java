@@ -9,6 +9,7 @@ import com.google.android.filament.VertexBuffer;
 
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.SceneformBundle.VersionException;
+import com.google.ar.sceneform.utilities.ContentHash;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 import com.google.ar.schemas.lull.ModelDef;
@@ -33,6 +34,7 @@ import com.google.ar.schemas.sceneform.ParameterInitDef;
 import com.google.ar.schemas.sceneform.ParameterInitDefType;
 import com.google.ar.schemas.sceneform.SamplerDef;
 import com.google.ar.schemas.sceneform.SamplerInit;
+import com.google.ar.schemas.sceneform.SamplerParamsDef;
 import com.google.ar.schemas.sceneform.ScalarInit;
 import com.google.ar.schemas.sceneform.SceneformBundleDef;
 import com.google.ar.schemas.sceneform.TransformDef;
@@ -66,6 +68,7 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
   private final T renderable;
   private final RenderableInternalData renderableData;
   @Nullable private final Uri renderableUri;
+  private final LoadRequest loadRequest;
 
   private ModelDef modelDef;
   private ModelInstanceDef modelInstanceDef;
@@ -87,12 +90,16 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
   private final ArrayList<Integer> compiledMaterialIndex = new ArrayList<>();
   private final ArrayList<MaterialParameters> materialParameters = new ArrayList<>();
   private final ArrayList<String> materialNames = new ArrayList<>();
+  // Registry ids derived from the content of the embedded textures and compiled materials, so that
+  // identical resources of different models are only loaded once.
+  private final ArrayList<String> textureRegistryIds = new ArrayList<>();
+  private final ArrayList<String> compiledMaterialRegistryIds = new ArrayList<>();
 
   private static final int BYTES_PER_FLOAT = Float.SIZE / 8;
   private static final int BYTES_PER_SHORT = 2;
   private static final int BYTES_PER_INT = 4;
 
-  LoadRenderableFromSfbTask(T renderable, @Nullable Uri renderableUri) {
+  LoadRenderableFromSfbTask(T renderable, @Nullable Uri renderableUri, LoadRequest loadRequest) {
     this.renderable = renderable;
     IRenderableInternalData data = renderable.getRenderableData();
     if (data instanceof RenderableInternalData) {
@@ -101,6 +108,7 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
       throw new IllegalStateException("Expected task type " + TAG);
     }
     this.renderableUri = renderableUri;
+    this.loadRequest = loadRequest;
   }
 
   /**
@@ -110,37 +118,54 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
   public CompletableFuture<T> downloadAndProcessRenderable(
       Callable<InputStream> inputStreamCreator) {
 
-    CompletableFuture<T> result =
-        CompletableFuture.supplyAsync(
-                // Download byte buffer via thread pool
-                () -> {
-                  ByteBuffer assetData =
-                      SceneformBufferUtils.inputStreamToByteBuffer(inputStreamCreator);
-
-                  // Parse byte buffer via thread pool
-                  SceneformBundleDef sfb = byteBufferToSfb(assetData);
-                  setCollisionShape(sfb);
-                  // Create sub-assets including material parameters, textures and geometry
-                  loadModel(sfb);
-                  return sfb;
-                },
-                ThreadPools.getThreadPoolExecutor())
-            .thenComposeAsync(
+    LoadScheduler scheduler = LoadScheduler.getInstance();
+    // Every stage is tracked by the request, so that cancelling it stops the chain.
+    CompletableFuture<ByteBuffer> assetDataFuture =
+        scheduler.supplyIoAsync(
+            loadRequest,
+            // Download byte buffer via the I/O pool. The bundle is read into a direct or
+            // memory-mapped buffer and parsed in place, the geometry given to filament is sliced
+            // from it.
+            () -> SceneformBufferUtils.inputStreamToDirectByteBuffer(inputStreamCreator));
+
+    CompletableFuture<SceneformBundleDef> sfbFuture =
+        loadRequest.track(
+            assetDataFuture.thenCompose(
+                assetData ->
+                    scheduler.supplyCpuAsync(
+                        loadRequest,
+                        () -> {
+                          // Parse byte buffer via the CPU pool
+                          SceneformBundleDef sfb = byteBufferToSfb(assetData);
+                          setCollisionShape(sfb);
+                          // Create sub-assets including material parameters, textures and geometry
+                          loadModel(sfb);
+                          computeRegistryIds(sfb);
+                          return sfb;
+                        })));
+
+    CompletableFuture<SceneformBundleDef> texturesFuture =
+        loadRequest.track(
+            sfbFuture.thenComposeAsync(
                 sfb -> {
                   loadAnimations(sfb);
 
                   // Load textures and wait for them to finish.
                   return loadTexturesAsync(sfb);
                 },
-                ThreadPools.getMainExecutor())
-            .thenApplyAsync(
+                ThreadPools.getMainExecutor()));
+
+    CompletableFuture<T> result =
+        loadRequest.track(
+            texturesFuture.thenApplyAsync(
                 sfb -> {
                   // Fill in the material parameters. could be done on another thread, but kept here
                   // to reduce switching.
                   buildMaterialParameters(sfb);
                   return setupFilament(sfb);
                 },
-                ThreadPools.getMainExecutor());
+                // Creates the filament buffers, within the frame budget.
+                GpuUploadQueue.getInstance().getExecutor(loadRequest)));
 
     result.exceptionally(
         // Log Exception if there was one.
@@ -215,6 +240,42 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     return sfb;
   }
 
+  /** Hashes the embedded textures and compiled materials, done on the loader thread. */
+  private void computeRegistryIds(SceneformBundleDef sfb) {
+    int samplerCount = sfb.samplersLength();
+    for (int t = 0; t < samplerCount; ++t) {
+      SamplerDef samplerDef = sfb.samplers(t);
+      if (samplerDef.dataLength() == 0) {
+        textureRegistryIds.add(null);
+        continue;
+      }
+      // The same image used with other sampler parameters makes another texture.
+      SamplerParamsDef params = samplerDef.params();
+      textureRegistryIds.add(
+          "sfb-texture:"
+              + ContentHash.of(samplerDef.dataAsByteBuffer())
+              + ":"
+              + params.usageType()
+              + ":"
+              + params.minFilter()
+              + ":"
+              + params.magFilter()
+              + ":"
+              + params.wrapS()
+              + ":"
+              + params.wrapT()
+              + ":"
+              + params.wrapR());
+    }
+
+    int compiledMaterialCount = sfb.compiledMaterialsLength();
+    for (int i = 0; i < compiledMaterialCount; ++i) {
+      CompiledMaterialDef compiledMaterial = sfb.compiledMaterials(i);
+      compiledMaterialRegistryIds.add(
+          "sfb-material:" + ContentHash.of(compiledMaterial.compiledMaterialAsByteBuffer()));
+    }
+  }
+
   private T setupFilament(SceneformBundleDef sfb) {
     Preconditions.checkNotNull(sfb);
     setupFilamentGeometryBuffers();
@@ -233,6 +294,13 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
             .bufferType(indexType)
             .build(engine.getFilamentEngine());
     indexBuffer.setBuffer(engine.getFilamentEngine(), indexBufferData);
+    ResourceAccounting.getInstance()
+        .track(
+            ResourceAccounting.Category.INDEX_BUFFER,
+            indexBuffer,
+            indexBufferData.capacity(),
+            indexType + " indices=" + indexCount,
+            renderableData.getSource() != null ? renderableData.getSource() : renderableUri);
     renderableData.setIndexBuffer(indexBuffer);
 
     VertexBuffer.Builder vertexBufferBuilder =
@@ -261,6 +329,13 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
 
     VertexBuffer vertexBuffer = vertexBufferBuilder.build(engine.getFilamentEngine());
     vertexBuffer.setBufferAt(engine.getFilamentEngine(), 0, vertexBufferData);
+    ResourceAccounting.getInstance()
+        .track(
+            ResourceAccounting.Category.VERTEX_BUFFER,
+            vertexBuffer,
+            (long) vertexCount * vertexStride,
+            "stride=" + vertexStride + " vertices=" + vertexCount,
+            renderableData.getSource() != null ? renderableData.getSource() : renderableUri);
     renderableData.setVertexBuffer(vertexBuffer);
 
     setupAnimation();
@@ -285,18 +360,15 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
 
       // If the same material buffer exists in multiple places this will ensure we
       // only load it into graphics memory once.
-      int materialId = compiledMaterial.compiledMaterialAsByteBuffer().hashCode();
-
-      // use the registry to get the material or create it if needed
-      ByteBuffer copy;
-      try {
-        copy = SceneformBufferUtils.copyByteBuffer(compiledMaterial.compiledMaterialAsByteBuffer());
-      } catch (IOException e) {
-        throw new CompletionException("Failed to create material", e);
-      }
+      String materialId = compiledMaterialRegistryIds.get(i);
+
+      // use the registry to get the material or create it if needed. The material is sliced from
+      // the bundle without copying, the slice starts at 0 and ends with the material, which is
+      // what filament reads when the material is created.
+      ByteBuffer source = compiledMaterial.compiledMaterialAsByteBuffer().slice();
 
       CompletableFuture<Material> materialFuture =
-          Material.builder().setSource(copy).setRegistryId(materialId).build();
+          Material.builder().setSource(source).setRegistryId(materialId).build();
 
       @SuppressWarnings("nullness")
       Material material = materialFuture.getNow(null);
@@ -363,31 +435,24 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     int bytesPerVertex = LullModel.getByteCountPerVertex(modelInstanceDef);
     vertexCount = vertexDataCount / bytesPerVertex;
 
-    // TODO: Fix crash in filament when using flatbuffer buffers directly.
     if (modelInstanceDef.indices32Length() > 0) {
       // 32 bit indices
       indexCount = modelInstanceDef.indices32Length();
       indexType = IndexBuffer.Builder.IndexType.UINT;
-      indexBufferData = ByteBuffer.allocateDirect(indexCount * BYTES_PER_INT);
-      indexBufferData.put(modelInstanceDef.indices32AsByteBuffer());
+      indexBufferData = toDirectBuffer(modelInstanceDef.indices32AsByteBuffer(), BYTES_PER_INT);
     } else if (modelInstanceDef.indices16Length() > 0) {
       // 16 bit indices
       indexCount = modelInstanceDef.indices16Length();
       indexType = IndexBuffer.Builder.IndexType.USHORT;
-      indexBufferData = ByteBuffer.allocateDirect(indexCount * BYTES_PER_SHORT);
-      indexBufferData.put(modelInstanceDef.indices16AsByteBuffer());
+      indexBufferData = toDirectBuffer(modelInstanceDef.indices16AsByteBuffer(), BYTES_PER_SHORT);
     } else {
       throw new AssertionError(
           "Model Instance geometry data is invalid (model has no index data).");
     }
-    indexBufferData.flip();
 
-    vertexBufferData = ByteBuffer.allocateDirect(vertexData.remaining());
+    vertexBufferData = toDirectBuffer(vertexData, BYTES_PER_FLOAT);
     Preconditions.checkNotNull(vertexBufferData, "Failed to allocate geometry for FilamentModel.");
 
-    vertexBufferData.put(vertexData);
-    vertexBufferData.flip();
-
     // Calculate vertex stride
     vertexStride = 0;
     int vertexAttributeCount = modelInstanceDef.vertexAttributesLength();
@@ -399,6 +464,28 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     }
   }
 
+  /**
+   * Returns a buffer filament can read the given flatbuffer data from.
+   *
+   * <p>Data of a direct or mapped bundle is sliced without copying. Filament holds a reference to
+   * the buffer it is given until the upload is done, and the slice keeps the bundle buffer, and so
+   * its mapping, alive. Data at an offset of the bundle that isn't aligned to its elements is
+   * copied, flatbuffers aligns vectors to their elements but the bundle may be mapped from any
+   * offset of a file.
+   *
+   * <p>Data of a heap bundle is copied to a direct buffer as it always was, the flatbuffer vectors
+   * of heap bundles are never given to filament directly.
+   */
+  private static ByteBuffer toDirectBuffer(ByteBuffer data, int alignment) {
+    if (data.isDirect() && data.position() % alignment == 0) {
+      return data.slice();
+    }
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(data.remaining());
+    directBuffer.put(data);
+    directBuffer.flip();
+    return directBuffer;
+  }
+
   // TODO: Return a future for all texture loads, use theComposeAsync to
   // combine it in downloadAndProcessRenderable
   private CompletableFuture<SceneformBundleDef> loadTexturesAsync(SceneformBundleDef sfb) {
@@ -422,16 +509,24 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
       if (samplerDef.dataLength() != 0) {
         // loading texture from RCB
         ByteBuffer data = samplerDef.dataAsByteBuffer();
-        // BUG(b/74619992): An extra copy to input stream is made here to avoid a JNI crash
-        ByteArrayInputStream wrappedInputStream =
-            new ByteArrayInputStream(data.array(), data.arrayOffset(), data.capacity());
-        // position the stream to the image buffer
+        InputStream wrappedInputStream;
+        if (data.hasArray()) {
+          // BUG(b/74619992): An extra copy to input stream is made here to avoid a JNI crash
+          ByteArrayInputStream arrayInputStream =
+              new ByteArrayInputStream(data.array(), data.arrayOffset(), data.capacity());
+          // position the stream to the image buffer
+          arrayInputStream.skip(data.position());
+          wrappedInputStream = arrayInputStream;
+        } else {
+          // Images of direct or mapped bundles are decoded from the bundle buffer.
+          wrappedInputStream = SceneformBufferUtils.newInputStream(data);
+        }
         boolean premultiplyAlpha = (usage == Texture.Usage.COLOR_MAP);
-        wrappedInputStream.skip(data.position());
-        // TODO: The registryId should be populated with a sha1sum
 
+        // Textures with the same content and sampler parameters are only decoded and uploaded once.
         textureFuture =
             Texture.builder()
+                .setRegistryId(Preconditions.checkNotNull(textureRegistryIds.get(t)))
                 .setUsage(usage)
                 .setSampler(samplerDefToSampler(samplerDef))
                 .setPremultiplied(premultiplyAlpha)
@@ -0,0 +1,218 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Priority and cancellation of the background work of a load.
+ *
+ * <p>Work of requests with a higher priority is started first by the {@link LoadScheduler}, e.g.
+ * models that are visible or close to the camera before the ones that are off screen. The priority
+ * can be changed while the work is queued.
+ *
+ * <p>Cancelling a request removes its queued work and cancels the stages of its {@link
+ * CompletableFuture} chain, so that stale loads do not occupy the loader threads.
+ *
+ * <p>The load of a renderable is shared by the builds of the same renderable, it runs with a
+ * request of its own whose priority is the highest of the requests given to {@link
+ * Renderable.Builder#setLoadRequest(LoadRequest)} by these builds. Cancelling the request of a
+ * build only cancels the future returned for it by {@link Renderable.Builder#build()}, the load is
+ * cancelled once every future returned for it is cancelled, e.g. when the coroutines awaiting them
+ * are cancelled.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"}) // CompletableFuture
+public final class LoadRequest {
+  public static final int PRIORITY_LOW = -10;
+  public static final int PRIORITY_DEFAULT = 0;
+  public static final int PRIORITY_HIGH = 10;
+
+  private final Object lock = new Object();
+  private volatile int priority;
+  private volatile boolean cancelled = false;
+
+  @GuardedBy("lock")
+  private final ArrayList<LoadScheduler.Task> pendingTasks = new ArrayList<>();
+
+  @GuardedBy("lock")
+  private final ArrayList<CompletableFuture<?>> stages = new ArrayList<>();
+
+  @GuardedBy("lock")
+  private int consumerCount = 0;
+
+  // The requests of the builds sharing the load of this request, null for a build without one.
+  @GuardedBy("lock")
+  private final ArrayList<LoadRequest> consumerRequests = new ArrayList<>();
+
+  // The shared loads this request is given to a build of, which follow its priority.
+  @GuardedBy("lock")
+  private final ArrayList<LoadRequest> sharedRequests = new ArrayList<>();
+
+  public LoadRequest() {
+    this(PRIORITY_DEFAULT);
+  }
+
+  /** @param priority work of requests with a higher priority is started first */
+  public LoadRequest(int priority) {
+    this.priority = priority;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+
+  /** Changes the priority of the request, including the work that is already queued. */
+  public void setPriority(int priority) {
+    ArrayList<LoadScheduler.Task> tasks;
+    ArrayList<LoadRequest> sharedRequests;
+    synchronized (lock) {
+      if (this.priority == priority) {
+        return;
+      }
+      this.priority = priority;
+      tasks = new ArrayList<>(pendingTasks);
+      sharedRequests = new ArrayList<>(this.sharedRequests);
+    }
+
+    for (LoadScheduler.Task task : tasks) {
+      task.reschedule();
+    }
+    for (LoadRequest sharedRequest : sharedRequests) {
+      sharedRequest.updatePriority();
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Cancels the stages of the load that are not complete and removes its queued work. Work that is
+   * already running is not interrupted, but the stages depending on it are not started.
+   */
+  public void cancel() {
+    ArrayList<LoadScheduler.Task> tasks;
+    ArrayList<CompletableFuture<?>> cancelledStages;
+    synchronized (lock) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      tasks = new ArrayList<>(pendingTasks);
+      pendingTasks.clear();
+      cancelledStages = new ArrayList<>(stages);
+      stages.clear();
+    }
+
+    // The stages are cancelled first, the queued work of a cancelled stage does nothing.
+    for (CompletableFuture<?> stage : cancelledStages) {
+      stage.cancel(false);
+    }
+    for (LoadScheduler.Task task : tasks) {
+      task.discard();
+    }
+  }
+
+  /**
+   * Adds a stage of the load, cancelled along with the request. The work queued for a request by
+   * the {@link LoadScheduler} completes a stage of its own, which is added here.
+   */
+  <U> CompletableFuture<U> track(CompletableFuture<U> stage) {
+    synchronized (lock) {
+      if (!cancelled) {
+        stages.add(stage);
+        stage.whenComplete(
+            (result, throwable) -> {
+              synchronized (lock) {
+                stages.remove(stage);
+              }
+            });
+        return stage;
+      }
+    }
+
+    stage.cancel(false);
+    return stage;
+  }
+
+  /**
+   * Adds a future returned for the load of this request to a build. The future is cancelled along
+   * with the request of the build if any, which the priority of this request then follows. This
+   * request is cancelled once all the futures added here are cancelled.
+   */
+  void addConsumer(CompletableFuture<?> consumer, @Nullable LoadRequest consumerRequest) {
+    synchronized (lock) {
+      consumerCount++;
+      consumerRequests.add(consumerRequest);
+    }
+    if (consumerRequest != null) {
+      consumerRequest.addSharedRequest(this);
+      consumerRequest.track(consumer);
+    }
+    updatePriority();
+
+    consumer.whenComplete(
+        (result, throwable) -> {
+          boolean wasLastConsumer = false;
+          synchronized (lock) {
+            consumerRequests.remove(consumerRequest);
+            if (consumer.isCancelled()) {
+              wasLastConsumer = --consumerCount == 0;
+            }
+          }
+          if (consumerRequest != null) {
+            consumerRequest.removeSharedRequest(this);
+          }
+          if (wasLastConsumer) {
+            cancel();
+          } else {
+            updatePriority();
+          }
+        });
+  }
+
+  /** Sets the priority to the highest of the requests of the builds sharing the load. */
+  private void updatePriority() {
+    int priority = Integer.MIN_VALUE;
+    synchronized (lock) {
+      for (LoadRequest consumerRequest : consumerRequests) {
+        int consumerPriority =
+            consumerRequest != null ? consumerRequest.getPriority() : PRIORITY_DEFAULT;
+        priority = Math.max(priority, consumerPriority);
+      }
+    }
+    if (priority != Integer.MIN_VALUE) {
+      setPriority(priority);
+    }
+  }
+
+  private void addSharedRequest(LoadRequest sharedRequest) {
+    synchronized (lock) {
+      sharedRequests.add(sharedRequest);
+    }
+  }
+
+  private void removeSharedRequest(LoadRequest sharedRequest) {
+    synchronized (lock) {
+      sharedRequests.remove(sharedRequest);
+    }
+  }
+
+  /** Returns false if the request is cancelled and the task should not be queued. */
+  boolean addPendingTask(LoadScheduler.Task task) {
+    synchronized (lock) {
+      if (cancelled) {
+        return false;
+      }
+      pendingTasks.add(task);
+      return true;
+    }
+  }
+
+  void removePendingTask(LoadScheduler.Task task) {
+    synchronized (lock) {
+      pendingTasks.remove(task);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+package com.google.ar.sceneform.rendering;
+
+import android.os.Process;
+import androidx.annotation.Nullable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the background work of loads on bounded pools ordered by the priority of their {@link
+ * LoadRequest}.
+ *
+ * <p>Reading and downloading run on the I/O pool, parsing and decoding on the CPU pool, so that
+ * slow downloads do not hold back the work of loads that are already downloaded. Work of the same
+ * priority runs in the order it was queued.
+ *
+ * <p>The work of a load completes a stage of its own, tracked by its request, so that the stage
+ * still completes when the work is discarded because the request is cancelled.
+ *
+ * @hide
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"}) // CompletableFuture
+public final class LoadScheduler {
+  private static final int IO_THREAD_COUNT = 4;
+  private static final int CPU_THREAD_COUNT =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  @Nullable private static LoadScheduler instance = null;
+
+  private final ThreadPoolExecutor ioPool;
+  private final ThreadPoolExecutor cpuPool;
+  private final LoadRequest defaultRequest = new LoadRequest();
+  // The requests of the loads in progress, to share them between the builds of the same resource.
+  private final ConcurrentHashMap<CompletableFuture<?>, LoadRequest> pendingLoads =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLong startedTaskCount = new AtomicLong();
+  private final AtomicLong discardedTaskCount = new AtomicLong();
+  private final AtomicLong totalQueueNanos = new AtomicLong();
+  private final AtomicLong maxQueueNanos = new AtomicLong();
+
+  private LoadScheduler() {
+    ioPool = createPool(IO_THREAD_COUNT, "sceneform-io-");
+    cpuPool = createPool(CPU_THREAD_COUNT, "sceneform-cpu-");
+  }
+
+  public static synchronized LoadScheduler getInstance() {
+    if (instance == null) {
+      instance = new LoadScheduler();
+    }
+    return instance;
+  }
+
+  /** Returns an {@link Executor} for reading and downloading data outside of a load. */
+  public Executor getIoExecutor() {
+    return runnable -> execute(ioPool, defaultRequest, runnable, null);
+  }
+
+  /** Returns an {@link Executor} for parsing and decoding data outside of a load. */
+  public Executor getCpuExecutor() {
+    return runnable -> execute(cpuPool, defaultRequest, runnable, null);
+  }
+
+  /**
+   * Reads or downloads data on the I/O pool as a stage of the load of the request. The stage is
+   * cancelled along with the request.
+   */
+  <U> CompletableFuture<U> supplyIoAsync(LoadRequest request, Supplier<U> supplier) {
+    return supplyAsync(ioPool, request, supplier);
+  }
+
+  /**
+   * Parses or decodes data on the CPU pool as a stage of the load of the request. The stage is
+   * cancelled along with the request.
+   */
+  <U> CompletableFuture<U> supplyCpuAsync(LoadRequest request, Supplier<U> supplier) {
+    return supplyAsync(cpuPool, request, supplier);
+  }
+
+  /** Returns the number of tasks waiting for an I/O thread. */
+  public int getIoQueueDepth() {
+    return ioPool.getQueue().size();
+  }
+
+  /** Returns the number of tasks waiting for a CPU thread. */
+  public int getCpuQueueDepth() {
+    return cpuPool.getQueue().size();
+  }
+
+  /** Returns the number of tasks that were started. */
+  public long getStartedTaskCount() {
+    return startedTaskCount.get();
+  }
+
+  /** Returns the number of queued tasks that were discarded because their request was cancelled. */
+  public long getDiscardedTaskCount() {
+    return discardedTaskCount.get();
+  }
+
+  /** Returns the average time the started tasks waited in a queue. */
+  public float getAverageQueueLatencyMillis() {
+    long count = startedTaskCount.get();
+    return count > 0 ? totalQueueNanos.get() / (count * 1_000_000.0f) : 0.0f;
+  }
+
+  /** Returns the longest time a started task waited in a queue. */
+  public float getMaxQueueLatencyMillis() {
+    return maxQueueNanos.get() / 1_000_000.0f;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadScheduler{ioQueue="
+        + getIoQueueDepth()
+        + ", cpuQueue="
+        + getCpuQueueDepth()
+        + ", started="
+        + getStartedTaskCount()
+        + ", discarded="
+        + getDiscardedTaskCount()
+        + ", averageQueueLatencyMs="
+        + getAverageQueueLatencyMillis()
+        + ", maxQueueLatencyMs="
+        + getMaxQueueLatencyMillis()
+        + "}";
+  }
+
+  /** Keeps the request of a load in progress until the load completes. */
+  void registerLoad(CompletableFuture<?> load, LoadRequest request) {
+    pendingLoads.put(load, request);
+    load.whenComplete((result, throwable) -> pendingLoads.remove(load));
+  }
+
+  /** Returns the request of a load in progress, or null if the load is complete or unknown. */
+  @Nullable
+  LoadRequest getPendingLoad(CompletableFuture<?> load) {
+    return pendingLoads.get(load);
+  }
+
+  private <U> CompletableFuture<U> supplyAsync(
+      ThreadPoolExecutor pool, LoadRequest request, Supplier<U> supplier) {
+    CompletableFuture<U> stage = request.track(new CompletableFuture<>());
+    execute(
+        pool,
+        request,
+        () -> {
+          if (stage.isDone()) {
+            return;
+          }
+          try {
+            stage.complete(supplier.get());
+          } catch (Throwable throwable) {
+            stage.completeExceptionally(throwable);
+          }
+        },
+        stage);
+    return stage;
+  }
+
+  private void execute(
+      ThreadPoolExecutor pool,
+      LoadRequest request,
+      Runnable runnable,
+      @Nullable CompletableFuture<?> stage) {
+    Task task = new Task(pool, request, runnable, stage);
+    if (request.addPendingTask(task)) {
+      pool.execute(task);
+    } else {
+      task.onDiscarded();
+    }
+  }
+
+  private static ThreadPoolExecutor createPool(int threadCount, String threadNamePrefix) {
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            new LoaderThreadFactory(threadNamePrefix));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /** Queued work of a request, ordered by priority then by the order it was queued. */
+  final class Task implements Runnable, Comparable<Task> {
+    private final ThreadPoolExecutor pool;
+    private final LoadRequest request;
+    private final Runnable runnable;
+    // The stage completed by the task, null for work outside of a load, which is never discarded.
+    @Nullable private final CompletableFuture<?> stage;
+    private final long queuedNanos = System.nanoTime();
+    private volatile int priority;
+    private final long order;
+
+    Task(
+        ThreadPoolExecutor pool,
+        LoadRequest request,
+        Runnable runnable,
+        @Nullable CompletableFuture<?> stage) {
+      this.pool = pool;
+      this.request = request;
+      this.runnable = runnable;
+      this.stage = stage;
+      this.priority = request.getPriority();
+      this.order = sequence.getAndIncrement();
+    }
+
+    @Override
+    public void run() {
+      request.removePendingTask(this);
+      long queueNanos = System.nanoTime() - queuedNanos;
+      startedTaskCount.incrementAndGet();
+      totalQueueNanos.addAndGet(queueNanos);
+      long max;
+      while (queueNanos > (max = maxQueueNanos.get())
+          && !maxQueueNanos.compareAndSet(max, queueNanos)) {}
+      runnable.run();
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return Long.compare(order, other.order);
+    }
+
+    /** Queues the task again with the current priority of its request. */
+    void reschedule() {
+      // The priority of a queued task can't change, the task is taken out of the queue first.
+      if (pool.remove(this)) {
+        priority = request.getPriority();
+        pool.execute(this);
+      }
+    }
+
+    /** Removes the task from the queue without running it. */
+    void discard() {
+      if (pool.remove(this)) {
+        onDiscarded();
+      }
+    }
+
+    /** Completes the stage of the task, which is not run. */
+    private void onDiscarded() {
+      discardedTaskCount.incrementAndGet();
+      if (stage != null) {
+        stage.completeExceptionally(new CancellationException("The load request was cancelled."));
+      }
+    }
+  }
+
+  private static final class LoaderThreadFactory implements ThreadFactory {
+    private final String threadNamePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    LoaderThreadFactory(String threadNamePrefix) {
+      this.threadNamePrefix = threadNamePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      return new Thread(
+          () -> {
+            // Loads should not compete with the rendering and UI threads.
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+          },
+          threadNamePrefix + threadCount.incrementAndGet());
+    }
+  }
+}
@@ -10,16 +10,21 @@ import androidx.annotation.RequiresApi;
 import com.google.android.filament.MaterialInstance;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.resources.ResourceRegistry;
+import com.google.ar.sceneform.resources.SharedReference;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import com.google.ar.sceneform.utilities.ChangeId;
 import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * Represents a reference to a material.
@@ -28,11 +33,16 @@ import java.util.concurrent.CompletionException;
 public class Material {
     private static final String TAG = Material.class.getSimpleName();
 
-    private final MaterialParameters materialParameters = new MaterialParameters();
+    // The filament material instance and the parameters, shared with the copies of this material
+    // until one of them is changed.
+    private final SharedMaterialInstanceHolder instanceHolder = new SharedMaterialInstanceHolder();
+    // Change ids of the renderables this material is bound to, held weakly as a material is not
+    // told when it is unbound.
+    private final Set<ChangeId> ownerIds = Collections.newSetFromMap(new WeakHashMap<>());
+    private int editDepth = 0;
 
     @Nullable
     private final MaterialInternalData materialData;
-    final IMaterialInstance internalMaterialInstance;
 
     /**
      * Creates a new instance of this Material.
@@ -40,121 +50,97 @@ public class Material {
      * <p>The new material will have a unique copy of the material parameters that can be changed
      * independently. The getFilamentEngine material resource is immutable and will be shared between
      * instances.
+     *
+     * <p>The copy shares the filament material instance and the parameters of this material until
+     * either material is changed, at which point the changed material takes its own copy.
      */
     public Material makeCopy() {
+        SharedMaterialInstance sharedInstance = instanceHolder.sharedInstance;
+        if (sharedInstance.materialInstance instanceof InternalGltfMaterialInstance) {
+            // glTF material instances belong to an asset, a copy gets its instance when bound to one.
+            return new Material(this, sharedInstance.materialParameters);
+        }
         return new Material(this);
     }
 
     public void setBoolean(String name, boolean x) {
-        materialParameters.setBoolean(name, x);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setBoolean(name, x);
+        applyChangedParameters();
     }
 
     public void setBoolean2(String name, boolean x, boolean y) {
-        materialParameters.setBoolean2(name, x, y);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setBoolean2(name, x, y);
+        applyChangedParameters();
     }
 
     public void setBoolean3(String name, boolean x, boolean y, boolean z) {
-        materialParameters.setBoolean3(name, x, y, z);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setBoolean3(name, x, y, z);
+        applyChangedParameters();
     }
 
     public void setBoolean4(String name, boolean x, boolean y, boolean z, boolean w) {
-        materialParameters.setBoolean4(name, x, y, z, w);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setBoolean4(name, x, y, z, w);
+        applyChangedParameters();
     }
 
     public void setFloat(String name, float x) {
-        materialParameters.setFloat(name, x);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat(name, x);
+        applyChangedParameters();
     }
 
     public void setFloat2(String name, float x, float y) {
-        materialParameters.setFloat2(name, x, y);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat2(name, x, y);
+        applyChangedParameters();
     }
 
     public void setFloat3(String name, float x, float y, float z) {
-        materialParameters.setFloat3(name, x, y, z);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat3(name, x, y, z);
+        applyChangedParameters();
     }
 
     public void setFloat3(String name, Vector3 value) {
-        materialParameters.setFloat3(name, value);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat3(name, value);
+        applyChangedParameters();
     }
 
     public void setFloat3(String name, Color color) {
-        materialParameters.setFloat3(name, color.r, color.g, color.b);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat3(name, color.r, color.g, color.b);
+        applyChangedParameters();
     }
 
     public void setFloat4(String name, float x, float y, float z, float w) {
-        materialParameters.setFloat4(name, x, y, z, w);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat4(name, x, y, z, w);
+        applyChangedParameters();
     }
 
     public void setFloat4(String name, Color color) {
-        materialParameters.setFloat4(name, color.r, color.g, color.b, color.a);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setFloat4(name, color.r, color.g, color.b, color.a);
+        applyChangedParameters();
     }
 
     public void setInt(String name, int x) {
-        materialParameters.setInt(name, x);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setInt(name, x);
+        applyChangedParameters();
     }
 
     public void setInt2(String name, int x, int y) {
-        materialParameters.setInt2(name, x, y);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setInt2(name, x, y);
+        applyChangedParameters();
     }
 
     public void setInt3(String name, int x, int y, int z) {
-        materialParameters.setInt3(name, x, y, z);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setInt3(name, x, y, z);
+        applyChangedParameters();
     }
 
     public void setInt4(String name, int x, int y, int z, int w) {
-        materialParameters.setInt4(name, x, y, z, w);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setInt4(name, x, y, z, w);
+        applyChangedParameters();
     }
 
     public void setTexture(String name, Texture texture) {
-        materialParameters.setTexture(name, texture);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setTexture(name, texture);
+        applyChangedParameters();
     }
 
     public void setBaseColorTexture(Texture texture) {
@@ -172,10 +158,8 @@ public class Material {
      * @param depthTexture the texture to set
      */
     public void setDepthTexture(String name, DepthTexture depthTexture) {
-        materialParameters.setDepthTexture(name, depthTexture);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyParameterTo(internalMaterialInstance.getInstance(), name);
-        }
+        getMutableParameters().setDepthTexture(name, depthTexture);
+        applyChangedParameters();
     }
 
     /**
@@ -185,15 +169,116 @@ public class Material {
      * @param externalTexture the texture to set
      */
     public void setExternalTexture(String name, ExternalTexture externalTexture) {
-        materialParameters.setExternalTexture(name, externalTexture);
-        if (internalMaterialInstance.isValidInstance()) {
-            materialParameters.applyTo(internalMaterialInstance.getInstance());
-        }
+        getMutableParameters().setExternalTexture(name, externalTexture);
+        applyChangedParameters();
     }
 
     @Nullable
     public ExternalTexture getExternalTexture(String name) {
-        return materialParameters.getExternalTexture(name);
+        return instanceHolder.sharedInstance.materialParameters.getExternalTexture(name);
+    }
+
+    /**
+     * Returns a handle to the parameter with the given name.
+     *
+     * <p>Setters taking a handle do not look up the parameter name and do not allocate, which
+     * makes them suited to parameters changed on every frame. The handle is valid for this
+     * material and its copies.
+     *
+     * @param name the name of the parameter in the material
+     */
+    public MaterialParameterHandle getParameterHandle(String name) {
+        Preconditions.checkNotNull(name, "Parameter \"name\" was null.");
+        return instanceHolder.sharedInstance.materialParameters.getHandle(name);
+    }
+
+    public void setBoolean(MaterialParameterHandle handle, boolean x) {
+        getMutableParameters().setBoolean(handle, x);
+        applyChangedParameters();
+    }
+
+    public void setFloat(MaterialParameterHandle handle, float x) {
+        getMutableParameters().setFloat(handle, x);
+        applyChangedParameters();
+    }
+
+    public void setFloat2(MaterialParameterHandle handle, float x, float y) {
+        getMutableParameters().setFloat2(handle, x, y);
+        applyChangedParameters();
+    }
+
+    public void setFloat3(MaterialParameterHandle handle, float x, float y, float z) {
+        getMutableParameters().setFloat3(handle, x, y, z);
+        applyChangedParameters();
+    }
+
+    public void setFloat3(MaterialParameterHandle handle, Color color) {
+        getMutableParameters().setFloat3(handle, color.r, color.g, color.b);
+        applyChangedParameters();
+    }
+
+    public void setFloat4(MaterialParameterHandle handle, float x, float y, float z, float w) {
+        getMutableParameters().setFloat4(handle, x, y, z, w);
+        applyChangedParameters();
+    }
+
+    public void setFloat4(MaterialParameterHandle handle, Color color) {
+        getMutableParameters().setFloat4(handle, color.r, color.g, color.b, color.a);
+        applyChangedParameters();
+    }
+
+    public void setInt(MaterialParameterHandle handle, int x) {
+        getMutableParameters().setInt(handle, x);
+        applyChangedParameters();
+    }
+
+    public void setTexture(MaterialParameterHandle handle, Texture texture) {
+        getMutableParameters().setTexture(handle, texture);
+        applyChangedParameters();
+    }
+
+    /**
+     * <pre>
+     *     Defers the parameter changes until the matching {@link #endEdit()}.
+     *
+     *     Each setter otherwise applies its parameter to the filament material instance
+     *     immediately. Grouping the changes made during a frame applies each changed parameter
+     *     once, when the outermost edit ends. Edits can be nested.
+     * </pre>
+     *
+     * @see #edit(Consumer)
+     */
+    public void beginEdit() {
+        editDepth++;
+    }
+
+    /**
+     * Ends an edit started with {@link #beginEdit()}, applying the changed parameters when it is
+     * the outermost edit.
+     *
+     * @throws IllegalStateException if no edit was started
+     */
+    public void endEdit() {
+        if (editDepth == 0) {
+            throw new IllegalStateException("endEdit() called without a matching beginEdit().");
+        }
+        editDepth--;
+        applyChangedParameters();
+    }
+
+    /**
+     * Runs the given block within {@link #beginEdit()} and {@link #endEdit()}, for example
+     * <code>material.edit(m -> { m.setFloat3("color", color); m.setFloat("roughness", 0.5f); })</code>.
+     *
+     * @param editor the block changing the parameters of this material
+     */
+    public void edit(Consumer<Material> editor) {
+        beginEdit();
+        try {
+            editor.accept(this);
+        } finally {
+            endEdit();
+        }
     }
 
     /**
@@ -208,51 +293,192 @@ public class Material {
         return new Builder();
     }
 
+    private void applyChangedParameters() {
+        SharedMaterialInstance sharedInstance = instanceHolder.sharedInstance;
+        if (editDepth == 0 && sharedInstance.materialInstance.isValidInstance()) {
+            sharedInstance.materialParameters.applyChangedTo(
+                    sharedInstance.materialInstance.getInstance());
+        }
+    }
+
+    /**
+     * Returns the parameters of this material to change them, first taking a copy of the filament
+     * material instance and the parameters if they are shared with other materials.
+     */
+    private MaterialParameters getMutableParameters() {
+        return getOwnInstance(true).materialParameters;
+    }
+
+    private SharedMaterialInstance getOwnInstance(boolean copyParameters) {
+        SharedMaterialInstance sharedInstance = instanceHolder.sharedInstance;
+        if (!sharedInstance.isShared()) {
+            // No other material uses the pooled instance, it leaves the pool instead of being copied.
+            ResourceManager.getInstance().getMaterialInstancePool().remove(sharedInstance);
+            return sharedInstance;
+        }
+
+        SharedMaterialInstance ownInstance =
+                createSharedInstance(Preconditions.checkNotNull(materialData));
+        if (copyParameters) {
+            ownInstance.materialParameters.copyFrom(sharedInstance.materialParameters);
+            if (ownInstance.materialInstance.isValidInstance()) {
+                ownInstance.materialParameters.applyTo(ownInstance.materialInstance.getInstance());
+            }
+        }
+        ownInstance.retain();
+        instanceHolder.sharedInstance = ownInstance;
+        sharedInstance.release();
+        onInstanceReplaced();
+        return ownInstance;
+    }
+
+    /**
+     * Changes the parameters of this material and gives it the pooled instance holding the
+     * resulting parameters, so that materials with identical parameters share a single instance.
+     * The pool is looked up before a filament material instance is created, which only happens
+     * when the pool has none. The material takes its own copy again when it is changed.
+     *
+     * <p>Used to create materials with given parameters, e.g. by the {@link MaterialFactory}.
+     *
+     * @param editor the block setting the parameters, given a copy of the current ones
+     */
+    void setInternedParameters(Consumer<MaterialParameters> editor) {
+        SharedMaterialInstance sharedInstance = instanceHolder.sharedInstance;
+        if (editDepth > 0
+                || !(sharedInstance.materialInstance instanceof InternalMaterialInstance)) {
+            // Edited and glTF materials keep their own instance.
+            editor.accept(getMutableParameters());
+            applyChangedParameters();
+            return;
+        }
+
+        MaterialInternalData materialData = Preconditions.checkNotNull(this.materialData);
+        com.google.android.filament.Material filamentMaterial = materialData.getFilamentMaterial();
+        MaterialParameters materialParameters = new MaterialParameters();
+        materialParameters.setLayout(MaterialParameterLayout.get(filamentMaterial));
+        materialParameters.copyFrom(sharedInstance.materialParameters);
+        editor.accept(materialParameters);
+
+        MaterialInstancePool pool = ResourceManager.getInstance().getMaterialInstancePool();
+        @Nullable
+        SharedMaterialInstance pooledInstance = pool.find(filamentMaterial, materialParameters);
+        if (pooledInstance == null) {
+            pooledInstance = createSharedInstance(materialData);
+            pooledInstance.materialParameters.copyFrom(materialParameters);
+            pooledInstance.materialParameters.applyTo(
+                    pooledInstance.materialInstance.getInstance());
+            pool.add(filamentMaterial, pooledInstance);
+        }
+        if (pooledInstance == sharedInstance) {
+            return;
+        }
+        pooledInstance.retain();
+        instanceHolder.sharedInstance = pooledInstance;
+        sharedInstance.release();
+        onInstanceReplaced();
+    }
+
+    /**
+     * Updates the given change id whenever the filament material instance of this material is
+     * replaced, until the owner of the id is garbage collected.
+     */
+    void addOwnerId(ChangeId ownerId) {
+        ownerIds.add(ownerId);
+    }
+
+    private void onInstanceReplaced() {
+        // Renderables using this material have to bind the new filament material instance.
+        for (ChangeId ownerId : ownerIds) {
+            ownerId.update();
+        }
+    }
+
     void copyMaterialParameters(MaterialParameters materialParameters) {
-        this.materialParameters.copyFrom(materialParameters);
-        if (internalMaterialInstance.isValidInstance()) {
-            this.materialParameters.applyTo(internalMaterialInstance.getInstance());
+        // The parameters are replaced, there is no need to copy the shared ones.
+        SharedMaterialInstance ownInstance = getOwnInstance(false);
+        ownInstance.materialParameters.copyFrom(materialParameters);
+        if (ownInstance.materialInstance.isValidInstance()) {
+            ownInstance.materialParameters.applyTo(ownInstance.materialInstance.getInstance());
         }
     }
 
     com.google.android.filament.MaterialInstance getFilamentMaterialInstance() {
         // Filament Material Instance is only set to null when it is disposed or destroyed, so any
         // usage after that point is an internal error.
+        IMaterialInstance internalMaterialInstance = instanceHolder.sharedInstance.materialInstance;
         if (!internalMaterialInstance.isValidInstance()) {
             throw new AssertionError("Filament Material Instance is null.");
         }
         return internalMaterialInstance.getInstance();
     }
 
+    /**
+     * Returns the filament material instance to change it directly, first taking a copy if it is
+     * shared with other materials.
+     */
+    com.google.android.filament.MaterialInstance getMutableFilamentMaterialInstance() {
+        getMutableParameters();
+        return getFilamentMaterialInstance();
+    }
+
     @SuppressWarnings("initialization")
     Material(MaterialInternalData materialData) {
+        this(materialData, createSharedInstance(materialData));
+    }
+
+    @SuppressWarnings("initialization")
+    private Material(MaterialInternalData materialData, SharedMaterialInstance sharedInstance) {
         this.materialData = materialData;
         materialData.retain();
+        sharedInstance.retain();
+        instanceHolder.sharedInstance = sharedInstance;
+
+        ResourceManager.getInstance()
+                .getMaterialCleanupRegistry()
+                .register(this, new CleanupCallback(instanceHolder, materialData));
+    }
+
+    private static SharedMaterialInstance createSharedInstance(MaterialInternalData materialData) {
+        IMaterialInstance internalMaterialInstance;
         if (materialData instanceof MaterialInternalDataImpl) {
             // Do the legacy thing.
-            internalMaterialInstance =
-                    new InternalMaterialInstance(materialData.getFilamentMaterial().createInstance());
+            MaterialInstance instance = materialData.getFilamentMaterial().createInstance();
+            // The size of the parameters of an instance isn't known.
+            ResourceAccounting.getInstance().track(
+                    ResourceAccounting.Category.MATERIAL_INSTANCE,
+                    instance,
+                    0,
+                    "material=" + materialData.getFilamentMaterial().getName(),
+                    null);
+            internalMaterialInstance = new InternalMaterialInstance(instance);
         } else {
             // Do the glTF thing.
             internalMaterialInstance = new InternalGltfMaterialInstance();
         }
-
-        ResourceManager.getInstance()
-                .getMaterialCleanupRegistry()
-                .register(this, new CleanupCallback(internalMaterialInstance, materialData));
+        MaterialParameters materialParameters = new MaterialParameters();
+        materialParameters.setLayout(
+                MaterialParameterLayout.get(materialData.getFilamentMaterial()));
+        return new SharedMaterialInstance(internalMaterialInstance, materialParameters);
     }
 
     void updateGltfMaterialInstance(MaterialInstance instance) {
-        if (internalMaterialInstance instanceof InternalGltfMaterialInstance) {
-            ((InternalGltfMaterialInstance) internalMaterialInstance).setMaterialInstance(instance);
-            materialParameters.applyTo(instance);
+        SharedMaterialInstance sharedInstance = instanceHolder.sharedInstance;
+        if (sharedInstance.materialInstance instanceof InternalGltfMaterialInstance) {
+            ((InternalGltfMaterialInstance) sharedInstance.materialInstance)
+                    .setMaterialInstance(instance);
+            sharedInstance.materialParameters.applyTo(instance);
         }
     }
 
     @SuppressWarnings("initialization")
     private Material(Material other) {
+        this(other.materialData, other.instanceHolder.sharedInstance);
+    }
+
+    @SuppressWarnings("initialization")
+    private Material(Material other, MaterialParameters materialParameters) {
         this(other.materialData);
-        copyMaterialParameters(other.materialParameters);
+        copyMaterialParameters(materialParameters);
     }
 
     /**
@@ -386,6 +612,19 @@ public class Material {
 
             // For static-analysis check.
             Object registryId = this.registryId;
+            if (sourceBuffer == null && existingMaterial == null) {
+                CompletableFuture<Material> result;
+                if (registryId != null) {
+                    // See if a material has already been registered by this id, if so re-use it.
+                    // Concurrent builds of the same id share a single load.
+                    ResourceRegistry<Material> registry = ResourceManager.getInstance().getMaterialRegistry();
+                    result = registry.getOrLoad(registryId, this::loadFromStream);
+                } else {
+                    result = loadFromStream();
+                }
+                return result.thenApply(material -> material.makeCopy());
+            }
+
             if (registryId != null) {
                 // See if a material has already been registered by this id, if so re-use it.
                 ResourceRegistry<Material> registry = ResourceManager.getInstance().getMaterialRegistry();
@@ -428,7 +667,10 @@ public class Material {
                         TAG, result, "Unable to load Material registryId='" + registryId + "'");
                 return result;
             }
+            throw new AssertionError("Material must have a source.");
+        }
 
+        private CompletableFuture<Material> loadFromStream() {
             // For static-analysis check. Must be final for the lambda to accept the parameter.
             final Callable<InputStream> inputStreamCallable = this.inputStreamCreator;
             if (inputStreamCallable == null) {
@@ -439,21 +681,10 @@ public class Material {
 
             CompletableFuture<Material> result =
                     CompletableFuture.supplyAsync(
-                            () -> {
-                                @Nullable ByteBuffer byteBuffer;
-                                // Open and read the material file.
-                                try (InputStream inputStream = inputStreamCallable.call()) {
-                                    byteBuffer = SceneformBufferUtils.readStream(inputStream);
-                                } catch (Exception e) {
-                                    throw new CompletionException(e);
-                                }
-
-                                if (byteBuffer == null) {
-                                    throw new IllegalStateException("Unable to read data from input stream.");
-                                }
-
-                                return byteBuffer;
-                            },
+                            // Open and read the material file, filament reads direct buffers
+                            // without copying.
+                            () -> SceneformBufferUtils.inputStreamToDirectByteBuffer(
+                                    inputStreamCallable),
                             ThreadPools.getThreadPoolExecutor())
                             .thenApplyAsync(
                                     byteBuffer -> {
@@ -462,14 +693,8 @@ public class Material {
                                         Material material = new Material(materialData);
                                         return material;
                                     },
-                                    ThreadPools.getMainExecutor());
-
-            if (registryId != null) {
-                ResourceRegistry<Material> registry = ResourceManager.getInstance().getMaterialRegistry();
-                registry.register(registryId, result);
-            }
-
-            return result.thenApply(material -> material.makeCopy());
+                                    GpuUploadQueue.getInstance().getExecutor(null));
+            return result;
         }
 
         private void checkPreconditions() {
@@ -524,6 +749,8 @@ public class Material {
 
         @Override
         public void dispose() {
+            ResourceAccounting.getInstance()
+                    .untrack(ResourceAccounting.Category.MATERIAL_INSTANCE, instance);
             IEngine engine = EngineInstance.getEngine();
             if (engine != null && engine.isValid()) {
                 engine.destroyMaterialInstance(instance);
@@ -558,27 +785,76 @@ public class Material {
         }
     }
 
+    /**
+     * A filament material instance with its parameters, shared by a material and its unchanged
+     * copies. The instance is destroyed when the last of them is finalized.
+     */
+    static final class SharedMaterialInstance extends SharedReference {
+        final IMaterialInstance materialInstance;
+        final MaterialParameters materialParameters;
+        // Set while the instance is in the material instance pool.
+        @Nullable
+        MaterialInstancePool.Key poolKey;
+        private int ownerCount = 0;
+
+        SharedMaterialInstance(
+                IMaterialInstance materialInstance, MaterialParameters materialParameters) {
+            this.materialInstance = materialInstance;
+            this.materialParameters = materialParameters;
+        }
+
+        boolean isShared() {
+            return ownerCount > 1;
+        }
+
+        @Override
+        public void retain() {
+            ownerCount++;
+            super.retain();
+        }
+
+        @Override
+        public void release() {
+            ownerCount--;
+            super.release();
+        }
+
+        @Override
+        protected void onDispose() {
+            ResourceManager.getInstance().getMaterialInstancePool().remove(this);
+            materialInstance.dispose();
+        }
+    }
+
+    /**
+     * Holds the current shared instance of a material, which its cleanup callback releases without
+     * referencing the material.
+     */
+    private static final class SharedMaterialInstanceHolder {
+        SharedMaterialInstance sharedInstance;
+    }
+
     /**
      * Cleanup filament objects after garbage collection
      */
     private static final class CleanupCallback implements Runnable {
         @Nullable
         private final MaterialInternalData materialInternalData;
-        @Nullable
-        private final IMaterialInstance materialInstance;
+        private final SharedMaterialInstanceHolder instanceHolder;
 
         CleanupCallback(
-                @Nullable IMaterialInstance materialInstance,
+                SharedMaterialInstanceHolder instanceHolder,
                 @Nullable MaterialInternalData materialInternalData) {
-            this.materialInstance = materialInstance;
+            this.instanceHolder = instanceHolder;
             this.materialInternalData = materialInternalData;
         }
 
         @Override
         public void run() {
             AndroidPreconditions.checkUiThread();
-            if (materialInstance != null) {
-                materialInstance.dispose();
+            if (instanceHolder.sharedInstance != null) {
+                instanceHolder.sharedInstance.release();
+                instanceHolder.sharedInstance = null;
             }
 
             if (materialInternalData != null) {
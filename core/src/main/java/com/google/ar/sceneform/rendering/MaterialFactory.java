@@ -6,7 +6,12 @@ import androidx.annotation.RequiresApi;
 
 import java.util.concurrent.CompletableFuture;
 
-/** Utility class used to construct default {@link Material}s. */
+/**
+ * Utility class used to construct default {@link Material}s.
+ *
+ * <p>Materials created with identical parameters share a filament material instance until one of
+ * them is changed.
+ */
 @RequiresApi(api = Build.VERSION_CODES.N)
 
 public final class MaterialFactory {
@@ -89,8 +94,11 @@ public final class MaterialFactory {
 
     return materialFuture.thenApply(
         material -> {
-          material.setFloat3(MATERIAL_COLOR, color);
-          applyDefaultPbrParams(material);
+          material.setInternedParameters(
+              parameters -> {
+                parameters.setFloat3(MATERIAL_COLOR, color.r, color.g, color.b);
+                applyDefaultPbrParams(parameters);
+              });
           return material;
         });
   }
@@ -121,8 +129,11 @@ public final class MaterialFactory {
 
     return materialFuture.thenApply(
         material -> {
-          material.setFloat4(MATERIAL_COLOR, color);
-          applyDefaultPbrParams(material);
+          material.setInternedParameters(
+              parameters -> {
+                parameters.setFloat4(MATERIAL_COLOR, color.r, color.g, color.b, color.a);
+                applyDefaultPbrParams(parameters);
+              });
           return material;
         });
   }
@@ -154,8 +165,11 @@ public final class MaterialFactory {
 
     return materialFuture.thenApply(
         material -> {
-          material.setTexture(MATERIAL_TEXTURE, texture);
-          applyDefaultPbrParams(material);
+          material.setInternedParameters(
+              parameters -> {
+                parameters.setTexture(MATERIAL_TEXTURE, texture);
+                applyDefaultPbrParams(parameters);
+              });
           return material;
         });
   }
@@ -187,15 +201,18 @@ public final class MaterialFactory {
 
     return materialFuture.thenApply(
         material -> {
-          material.setTexture(MATERIAL_TEXTURE, texture);
-          applyDefaultPbrParams(material);
+          material.setInternedParameters(
+              parameters -> {
+                parameters.setTexture(MATERIAL_TEXTURE, texture);
+                applyDefaultPbrParams(parameters);
+              });
           return material;
         });
   }
 
-  private static void applyDefaultPbrParams(Material material) {
-    material.setFloat(MATERIAL_METALLIC, DEFAULT_METALLIC_PROPERTY);
-    material.setFloat(MATERIAL_ROUGHNESS, DEFAULT_ROUGHNESS_PROPERTY);
-    material.setFloat(MATERIAL_REFLECTANCE, DEFAULT_REFLECTANCE_PROPERTY);
+  private static void applyDefaultPbrParams(MaterialParameters parameters) {
+    parameters.setFloat(MATERIAL_METALLIC, DEFAULT_METALLIC_PROPERTY);
+    parameters.setFloat(MATERIAL_ROUGHNESS, DEFAULT_ROUGHNESS_PROPERTY);
+    parameters.setFloat(MATERIAL_REFLECTANCE, DEFAULT_REFLECTANCE_PROPERTY);
   }
 }
@@ -0,0 +1,141 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.Nullable;
+import java.util.HashMap;
+
+/**
+ * Interns filament material instances by filament material and parameter values.
+ *
+ * <p>Materials holding the same parameters for the same filament material can use a single
+ * material instance, which lets filament batch them and keeps a single uniform buffer. A pooled
+ * instance is never changed: a material changing its parameters first takes its own copy, or
+ * removes the instance from the pool when it is its only user. Instances leave the pool when they
+ * are disposed.
+ *
+ * <p>The pool is only accessed from the main thread.
+ *
+ * @hide
+ */
+public final class MaterialInstancePool {
+  private final HashMap<Key, Material.SharedMaterialInstance> instances = new HashMap<>();
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  MaterialInstancePool() {}
+
+  /**
+   * Returns the pooled instance holding the given parameters for the filament material, or null if
+   * there is none, in which case the caller creates one and adds it.
+   */
+  @Nullable
+  Material.SharedMaterialInstance find(
+      com.google.android.filament.Material material, MaterialParameters materialParameters) {
+    @Nullable
+    Material.SharedMaterialInstance pooledInstance =
+        instances.get(new Key(material, materialParameters));
+    if (pooledInstance != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return pooledInstance;
+  }
+
+  /** Adds an instance to the pool, its parameters must not be changed while it is pooled. */
+  void add(
+      com.google.android.filament.Material material, Material.SharedMaterialInstance instance) {
+    Key key = new Key(material, instance.materialParameters);
+    instances.put(key, instance);
+    instance.poolKey = key;
+  }
+
+  /** Removes an instance from the pool, before it is changed or once it is disposed. */
+  void remove(Material.SharedMaterialInstance instance) {
+    Key key = instance.poolKey;
+    if (key == null) {
+      return;
+    }
+    instance.poolKey = null;
+    if (instances.get(key) == instance) {
+      instances.remove(key);
+    }
+  }
+
+  /** Forgets the pooled instances, used when all the resources are destroyed. */
+  void clear() {
+    for (Material.SharedMaterialInstance instance : instances.values()) {
+      instance.poolKey = null;
+    }
+    instances.clear();
+  }
+
+  /** Returns the number of instances currently pooled. */
+  public int getPooledInstanceCount() {
+    return instances.size();
+  }
+
+  /** Returns the number of lookups that found an existing pooled instance. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of lookups that found no pooled instance. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the fraction of the lookups that found an existing pooled instance. */
+  public float getHitRate() {
+    long lookupCount = hitCount + missCount;
+    return lookupCount > 0 ? (float) hitCount / lookupCount : 0.0f;
+  }
+
+  @Override
+  public String toString() {
+    return "MaterialInstancePool{pooled="
+        + instances.size()
+        + ", hits="
+        + hitCount
+        + ", misses="
+        + missCount
+        + ", hitRate="
+        + getHitRate()
+        + "}";
+  }
+
+  /**
+   * Identifies the values of pooled parameters. The parameters of a pooled instance are not
+   * changed, so the hash is computed once.
+   */
+  static final class Key {
+    private final com.google.android.filament.Material material;
+    private final MaterialParameters materialParameters;
+    private final int hash;
+
+    Key(com.google.android.filament.Material material, MaterialParameters materialParameters) {
+      this.material = material;
+      this.materialParameters = materialParameters;
+      // Filament materials do not override hashCode, they are compared by identity.
+      hash = 31 * System.identityHashCode(material) + materialParameters.valuesHashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return hash == other.hash
+          && material == other.material
+          && materialParameters.hasSameValues(other.materialParameters);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
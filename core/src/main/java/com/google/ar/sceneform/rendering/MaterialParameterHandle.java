@@ -0,0 +1,31 @@
+package com.google.ar.sceneform.rendering;
+
+/**
+ * Refers to a parameter of a {@link Material} by its slot rather than by its name.
+ *
+ * <p>Setting a parameter through a handle avoids looking up its name, which matters when a
+ * parameter is changed on every frame. Obtain a handle once with {@link
+ * Material#getParameterHandle(String)} and reuse it: a handle is valid for the material it was
+ * obtained from and for every material sharing the same source, such as its copies.
+ */
+public final class MaterialParameterHandle {
+  final MaterialParameterLayout layout;
+  final int slot;
+  private final String name;
+
+  MaterialParameterHandle(MaterialParameterLayout layout, int slot, String name) {
+    this.layout = layout;
+    this.slot = slot;
+    this.name = name;
+  }
+
+  /** Returns the name of the parameter. */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return "MaterialParameterHandle{" + name + "}";
+  }
+}
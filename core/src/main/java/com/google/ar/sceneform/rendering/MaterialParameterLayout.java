@@ -0,0 +1,136 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Maps material parameter names to integer slots.
+ *
+ * <p>The layout of a filament material is compiled once from the parameters it declares and is
+ * shared by all the instances of the material, so parameters are only looked up once per material
+ * and {@link MaterialParameters} can store their values in packed arrays indexed by slot. A
+ * compiled layout never changes: names that the material does not declare are given slots in an
+ * {@link #extend() extension} owned by the parameters using them, these are stored but never
+ * applied.
+ *
+ * <p>Layouts of filament materials are only accessed from the main thread.
+ *
+ * @hide
+ */
+final class MaterialParameterLayout {
+  // Filament materials do not override equals, the layouts are kept as long as the material is.
+  private static final WeakHashMap<com.google.android.filament.Material, MaterialParameterLayout>
+      layouts = new WeakHashMap<>();
+
+  private final HashMap<String, Integer> slots = new HashMap<>();
+  private final ArrayList<String> names = new ArrayList<>();
+  private final BitSet declaredSlots = new BitSet();
+  private final boolean isCompiled;
+  // The compiled layout this layout extends, null if this layout is not an extension.
+  @Nullable private final MaterialParameterLayout base;
+
+  private MaterialParameterLayout(@Nullable com.google.android.filament.Material material) {
+    isCompiled = material != null;
+    base = null;
+    if (material != null) {
+      List<com.google.android.filament.Material.Parameter> parameters = material.getParameters();
+      for (com.google.android.filament.Material.Parameter parameter : parameters) {
+        declaredSlots.set(addSlot(parameter.name));
+      }
+    }
+  }
+
+  private MaterialParameterLayout(MaterialParameterLayout base) {
+    isCompiled = false;
+    this.base = base;
+    slots.putAll(base.slots);
+    names.addAll(base.names);
+    declaredSlots.or(base.declaredSlots);
+  }
+
+  /** Returns the layout of the given filament material, compiling it on first use. */
+  static MaterialParameterLayout get(com.google.android.filament.Material material) {
+    MaterialParameterLayout layout = layouts.get(material);
+    if (layout == null) {
+      layout = new MaterialParameterLayout(material);
+      layouts.put(material, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Creates a layout that is not bound to a material yet, used to store parameters before the
+   * material they are applied to is known.
+   */
+  static MaterialParameterLayout createUnbound() {
+    return new MaterialParameterLayout(null);
+  }
+
+  /**
+   * Creates a layout with the slots of this compiled layout, to which the names the material does
+   * not declare can be added. The extension belongs to a single {@link MaterialParameters}.
+   */
+  MaterialParameterLayout extend() {
+    if (!isCompiled) {
+      throw new IllegalStateException("Only the layout of a filament material can be extended.");
+    }
+    return new MaterialParameterLayout(this);
+  }
+
+  /** Returns true if this is the layout of a filament material. */
+  boolean isCompiled() {
+    return isCompiled;
+  }
+
+  /** Returns the compiled layout this layout extends, or this layout if it is not an extension. */
+  MaterialParameterLayout getBase() {
+    return base != null ? base : this;
+  }
+
+  /** Returns the slot of the given name, or -1 if the name has no slot. */
+  int getSlot(String name) {
+    Integer slot = slots.get(name);
+    return slot != null ? slot : -1;
+  }
+
+  /**
+   * Returns the slot of the given name, adding one if the name has no slot yet. Compiled layouts
+   * are shared and cannot be added to, use an {@link #extend() extension} instead.
+   */
+  int getOrAddSlot(String name) {
+    int slot = getSlot(name);
+    if (slot >= 0) {
+      return slot;
+    }
+    if (isCompiled) {
+      throw new IllegalStateException("The layout of a filament material cannot be added to.");
+    }
+    return addSlot(name);
+  }
+
+  /** Returns the number of slots, every slot is lower than this number. */
+  int getSlotCount() {
+    return names.size();
+  }
+
+  /** Returns the parameter name of the given slot. */
+  String getName(int slot) {
+    return names.get(slot);
+  }
+
+  /** Returns true if the material declares the parameter of the given slot. */
+  boolean isDeclared(int slot) {
+    return declaredSlots.get(slot);
+  }
+
+  private int addSlot(String name) {
+    int slot = names.size();
+    names.add(name);
+    slots.put(name, slot);
+    return slot;
+  }
+}
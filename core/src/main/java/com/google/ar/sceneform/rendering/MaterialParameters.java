@@ -7,25 +7,51 @@ import com.google.android.filament.TextureSampler;
 
 import com.google.ar.core.annotations.UsedByNative;
 import com.google.ar.sceneform.math.Vector3;
-import java.util.HashMap;
-import java.util.Optional;
-
-/** Material property store. */
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Material property store.
+ *
+ * <p>Values are stored in packed arrays indexed by the slots of a {@link MaterialParameterLayout}:
+ * four floats and four ints per slot for scalars and vectors, booleans being stored as ints, and
+ * one object per slot for textures. Setting a value does not allocate once the slot exists.
+ */
 @UsedByNative("material_java_wrappers.h")
 final class MaterialParameters {
-  private final HashMap<String, MaterialParameters.Parameter> namedParameters = new HashMap<>();
+  private static final byte KIND_NONE = 0;
+  private static final byte KIND_BOOLEAN = 1;
+  private static final byte KIND_FLOAT = 2;
+  private static final byte KIND_INT = 3;
+  private static final byte KIND_TEXTURE = 4;
+  private static final byte KIND_DEPTH_TEXTURE = 5;
+  private static final byte KIND_EXTERNAL_TEXTURE = 6;
+
+  private static final int COMPONENTS = 4;
+
+  private MaterialParameterLayout layout = MaterialParameterLayout.createUnbound();
+  private byte[] kinds = new byte[0];
+  private byte[] componentCounts = new byte[0];
+  private float[] floatValues = new float[0];
+  private int[] intValues = new int[0];
+  private Object[] objectValues = new Object[0];
+  // Slots changed since they were last applied to the material instance.
+  private final BitSet dirtySlots = new BitSet();
 
 
   @UsedByNative("material_java_wrappers.h")
   void setBoolean(String name, boolean x) {
-    namedParameters.put(name, new MaterialParameters.BooleanParameter(name, x));
+    setInts(slotOf(name), KIND_BOOLEAN, 1, x ? 1 : 0, 0, 0, 0);
+  }
+
+  void setBoolean(MaterialParameterHandle handle, boolean x) {
+    setInts(slotOf(handle), KIND_BOOLEAN, 1, x ? 1 : 0, 0, 0, 0);
   }
 
   boolean getBoolean(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof BooleanParameter) {
-      BooleanParameter booleanParam = (BooleanParameter) param;
-      return booleanParam.x;
+    int slot = getSlot(name, KIND_BOOLEAN, 1);
+    if (slot >= 0) {
+      return intValues[slot * COMPONENTS] != 0;
     }
 
     return false;
@@ -33,15 +59,15 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setBoolean2(String name, boolean x, boolean y) {
-    namedParameters.put(name, new MaterialParameters.Boolean2Parameter(name, x, y));
+    setInts(slotOf(name), KIND_BOOLEAN, 2, x ? 1 : 0, y ? 1 : 0, 0, 0);
   }
 
   @Nullable
   boolean[] getBoolean2(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Boolean2Parameter) {
-      Boolean2Parameter boolean2 = (Boolean2Parameter) param;
-      return new boolean[] {boolean2.x, boolean2.y};
+    int slot = getSlot(name, KIND_BOOLEAN, 2);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new boolean[] {intValues[offset] != 0, intValues[offset + 1] != 0};
     }
 
     return null;
@@ -49,15 +75,17 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setBoolean3(String name, boolean x, boolean y, boolean z) {
-    namedParameters.put(name, new MaterialParameters.Boolean3Parameter(name, x, y, z));
+    setInts(slotOf(name), KIND_BOOLEAN, 3, x ? 1 : 0, y ? 1 : 0, z ? 1 : 0, 0);
   }
 
   @Nullable
   boolean[] getBoolean3(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Boolean3Parameter) {
-      Boolean3Parameter boolean3 = (Boolean3Parameter) param;
-      return new boolean[] {boolean3.x, boolean3.y, boolean3.z};
+    int slot = getSlot(name, KIND_BOOLEAN, 3);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new boolean[] {
+        intValues[offset] != 0, intValues[offset + 1] != 0, intValues[offset + 2] != 0
+      };
     }
 
     return null;
@@ -65,15 +93,20 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setBoolean4(String name, boolean x, boolean y, boolean z, boolean w) {
-    namedParameters.put(name, new MaterialParameters.Boolean4Parameter(name, x, y, z, w));
+    setInts(slotOf(name), KIND_BOOLEAN, 4, x ? 1 : 0, y ? 1 : 0, z ? 1 : 0, w ? 1 : 0);
   }
 
   @Nullable
   boolean[] getBoolean4(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Boolean4Parameter) {
-      Boolean4Parameter boolean4 = (Boolean4Parameter) param;
-      return new boolean[] {boolean4.x, boolean4.y, boolean4.z, boolean4.w};
+    int slot = getSlot(name, KIND_BOOLEAN, 4);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new boolean[] {
+        intValues[offset] != 0,
+        intValues[offset + 1] != 0,
+        intValues[offset + 2] != 0,
+        intValues[offset + 3] != 0
+      };
     }
 
     return null;
@@ -81,14 +114,17 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setFloat(String name, float x) {
-    namedParameters.put(name, new MaterialParameters.FloatParameter(name, x));
+    setFloats(slotOf(name), 1, x, 0.0f, 0.0f, 0.0f);
+  }
+
+  void setFloat(MaterialParameterHandle handle, float x) {
+    setFloats(slotOf(handle), 1, x, 0.0f, 0.0f, 0.0f);
   }
 
   float getFloat(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof FloatParameter) {
-      FloatParameter floatParam = (FloatParameter) param;
-      return floatParam.x;
+    int slot = getSlot(name, KIND_FLOAT, 1);
+    if (slot >= 0) {
+      return floatValues[slot * COMPONENTS];
     }
 
     return 0.0f;
@@ -96,15 +132,19 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setFloat2(String name, float x, float y) {
-    namedParameters.put(name, new MaterialParameters.Float2Parameter(name, x, y));
+    setFloats(slotOf(name), 2, x, y, 0.0f, 0.0f);
+  }
+
+  void setFloat2(MaterialParameterHandle handle, float x, float y) {
+    setFloats(slotOf(handle), 2, x, y, 0.0f, 0.0f);
   }
 
   @Nullable
   float[] getFloat2(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Float2Parameter) {
-      Float2Parameter float2 = (Float2Parameter) param;
-      return new float[] {float2.x, float2.y};
+    int slot = getSlot(name, KIND_FLOAT, 2);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new float[] {floatValues[offset], floatValues[offset + 1]};
     }
 
     return null;
@@ -112,20 +152,23 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setFloat3(String name, float x, float y, float z) {
-    namedParameters.put(name, new MaterialParameters.Float3Parameter(name, x, y, z));
+    setFloats(slotOf(name), 3, x, y, z, 0.0f);
   }
 
   void setFloat3(String name, Vector3 value) {
-    namedParameters.put(
-        name, new MaterialParameters.Float3Parameter(name, value.x, value.y, value.z));
+    setFloats(slotOf(name), 3, value.x, value.y, value.z, 0.0f);
+  }
+
+  void setFloat3(MaterialParameterHandle handle, float x, float y, float z) {
+    setFloats(slotOf(handle), 3, x, y, z, 0.0f);
   }
 
   @Nullable
   float[] getFloat3(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Float3Parameter) {
-      Float3Parameter float3 = (Float3Parameter) param;
-      return new float[] {float3.x, float3.y, float3.z};
+    int slot = getSlot(name, KIND_FLOAT, 3);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new float[] {floatValues[offset], floatValues[offset + 1], floatValues[offset + 2]};
     }
 
     return null;
@@ -133,15 +176,21 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setFloat4(String name, float x, float y, float z, float w) {
-    namedParameters.put(name, new MaterialParameters.Float4Parameter(name, x, y, z, w));
+    setFloats(slotOf(name), 4, x, y, z, w);
+  }
+
+  void setFloat4(MaterialParameterHandle handle, float x, float y, float z, float w) {
+    setFloats(slotOf(handle), 4, x, y, z, w);
   }
 
   @Nullable
   float[] getFloat4(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Float4Parameter) {
-      Float4Parameter float4 = (Float4Parameter) param;
-      return new float[] {float4.x, float4.y, float4.z, float4.w};
+    int slot = getSlot(name, KIND_FLOAT, 4);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new float[] {
+        floatValues[offset], floatValues[offset + 1], floatValues[offset + 2], floatValues[offset + 3]
+      };
     }
 
     return null;
@@ -149,14 +198,17 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setInt(String name, int x) {
-    namedParameters.put(name, new MaterialParameters.IntParameter(name, x));
+    setInts(slotOf(name), KIND_INT, 1, x, 0, 0, 0);
+  }
+
+  void setInt(MaterialParameterHandle handle, int x) {
+    setInts(slotOf(handle), KIND_INT, 1, x, 0, 0, 0);
   }
 
   int getInt(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof IntParameter) {
-      IntParameter intParam = (IntParameter) param;
-      return intParam.x;
+    int slot = getSlot(name, KIND_INT, 1);
+    if (slot >= 0) {
+      return intValues[slot * COMPONENTS];
     }
 
     return 0;
@@ -164,15 +216,15 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setInt2(String name, int x, int y) {
-    namedParameters.put(name, new MaterialParameters.Int2Parameter(name, x, y));
+    setInts(slotOf(name), KIND_INT, 2, x, y, 0, 0);
   }
 
   @Nullable
   int[] getInt2(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Int2Parameter) {
-      Int2Parameter int2 = (Int2Parameter) param;
-      return new int[] {int2.x, int2.y};
+    int slot = getSlot(name, KIND_INT, 2);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new int[] {intValues[offset], intValues[offset + 1]};
     }
 
     return null;
@@ -180,15 +232,15 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setInt3(String name, int x, int y, int z) {
-    namedParameters.put(name, new MaterialParameters.Int3Parameter(name, x, y, z));
+    setInts(slotOf(name), KIND_INT, 3, x, y, z, 0);
   }
 
   @Nullable
   int[] getInt3(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Int3Parameter) {
-      Int3Parameter int3 = (Int3Parameter) param;
-      return new int[] {int3.x, int3.y, int3.z};
+    int slot = getSlot(name, KIND_INT, 3);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new int[] {intValues[offset], intValues[offset + 1], intValues[offset + 2]};
     }
 
     return null;
@@ -196,15 +248,17 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setInt4(String name, int x, int y, int z, int w) {
-    namedParameters.put(name, new MaterialParameters.Int4Parameter(name, x, y, z, w));
+    setInts(slotOf(name), KIND_INT, 4, x, y, z, w);
   }
 
   @Nullable
   int[] getInt4(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof Int4Parameter) {
-      Int4Parameter int4 = (Int4Parameter) param;
-      return new int[] {int4.x, int4.y, int4.z, int4.w};
+    int slot = getSlot(name, KIND_INT, 4);
+    if (slot >= 0) {
+      int offset = slot * COMPONENTS;
+      return new int[] {
+        intValues[offset], intValues[offset + 1], intValues[offset + 2], intValues[offset + 3]
+      };
     }
 
     return null;
@@ -212,395 +266,442 @@ final class MaterialParameters {
 
   @UsedByNative("material_java_wrappers.h")
   void setTexture(String name, Texture texture) {
-    namedParameters.put(name, new MaterialParameters.TextureParameter(name, texture));
+    setObject(slotOf(name), KIND_TEXTURE, texture);
+  }
+
+  void setTexture(MaterialParameterHandle handle, Texture texture) {
+    setObject(slotOf(handle), KIND_TEXTURE, texture);
   }
 
   @Nullable
   Texture getTexture(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof TextureParameter) {
-      return ((TextureParameter) param).texture;
+    int slot = getSlot(name, KIND_TEXTURE, 1);
+    if (slot >= 0) {
+      return (Texture) objectValues[slot];
     }
 
     return null;
   }
 
   void setDepthTexture(String name, DepthTexture depthTexture) {
-    namedParameters.put(name, new MaterialParameters.DepthTextureParameter(name, depthTexture));
+    setObject(slotOf(name), KIND_DEPTH_TEXTURE, depthTexture);
   }
 
   @Nullable
   DepthTexture getDepthTexture(String name) {
-    Parameter param = namedParameters.get(name);
-    if(param instanceof DepthTextureParameter) {
-      return ((DepthTextureParameter) param).depthTexture;
+    int slot = getSlot(name, KIND_DEPTH_TEXTURE, 1);
+    if (slot >= 0) {
+      return (DepthTexture) objectValues[slot];
     }
     return null;
   }
 
   void setExternalTexture(String name, ExternalTexture externalTexture) {
-    namedParameters.put(
-        name, new MaterialParameters.ExternalTextureParameter(name, externalTexture));
+    setObject(slotOf(name), KIND_EXTERNAL_TEXTURE, externalTexture);
   }
 
   @Nullable
   ExternalTexture getExternalTexture(String name) {
-    Parameter param = namedParameters.get(name);
-    if (param instanceof ExternalTextureParameter) {
-      return ((ExternalTextureParameter) param).externalTexture;
+    int slot = getSlot(name, KIND_EXTERNAL_TEXTURE, 1);
+    if (slot >= 0) {
+      return (ExternalTexture) objectValues[slot];
     }
 
     return null;
   }
 
-  void applyTo(MaterialInstance materialInstance) {
-    com.google.android.filament.Material material = materialInstance.getMaterial();
-
-    for (MaterialParameters.Parameter value : namedParameters.values()) {
-      if (material.hasParameter(value.name)) {
-        value.applyTo(materialInstance);
-      }
-    }
-  }
-
-  void applyParameterTo(MaterialInstance materialInstance, String name) {
-    com.google.android.filament.Material material = materialInstance.getMaterial();
-
-    if(material.hasParameter(name)) {
-      Optional
-              .ofNullable(namedParameters.get(name))
-              .ifPresent(parameter -> parameter.applyTo(materialInstance));
-    }
-  }
-
-  void copyFrom(MaterialParameters other) {
-    namedParameters.clear();
-    merge(other);
-  }
-
-  void merge(MaterialParameters other) {
-    for (MaterialParameters.Parameter value : other.namedParameters.values()) {
-      MaterialParameters.Parameter clonedValue = value.clone();
-      namedParameters.put(clonedValue.name, clonedValue);
-    }
-  }
-
-  void mergeIfAbsent(MaterialParameters other) {
-    for (MaterialParameters.Parameter value : other.namedParameters.values()) {
-      if (!namedParameters.containsKey(value.name)) {
-        MaterialParameters.Parameter clonedValue = value.clone();
-        namedParameters.put(clonedValue.name, clonedValue);
+  /**
+   * Returns a handle to the parameter with the given name, which sets the parameter without
+   * looking up its name.
+   */
+  MaterialParameterHandle getHandle(String name) {
+    // Looks the slot up first, as it may extend the layout.
+    int slot = slotOf(name);
+    return new MaterialParameterHandle(layout, slot, name);
+  }
+
+  /**
+   * Stores the parameters in the slots of the given layout, usually the layout of the material the
+   * parameters are applied to.
+   */
+  void setLayout(MaterialParameterLayout layout) {
+    if (this.layout.getBase() == layout) {
+      return;
+    }
+
+    MaterialParameters previous = new MaterialParameters();
+    previous.layout = this.layout;
+    previous.kinds = kinds;
+    previous.componentCounts = componentCounts;
+    previous.floatValues = floatValues;
+    previous.intValues = intValues;
+    previous.objectValues = objectValues;
+    previous.dirtySlots.or(dirtySlots);
+
+    this.layout = layout;
+    kinds = new byte[0];
+    componentCounts = new byte[0];
+    floatValues = new float[0];
+    intValues = new int[0];
+    objectValues = new Object[0];
+    dirtySlots.clear();
+    ensureCapacity(layout.getSlotCount());
+
+    for (int slot = 0; slot < previous.kinds.length; slot++) {
+      if (previous.kinds[slot] != KIND_NONE) {
+        int newSlot = copySlot(previous, slot);
+        if (!previous.dirtySlots.get(slot)) {
+          dirtySlots.clear(newSlot);
+        }
       }
     }
   }
 
+  /** Applies every parameter to the material instance. */
+  void applyTo(MaterialInstance materialInstance) {
+    setLayout(MaterialParameterLayout.get(materialInstance.getMaterial()));
+    RenderInvalidation.invalidate();
 
-  abstract static class Parameter implements Cloneable {
-    String name;
-
-    abstract void applyTo(MaterialInstance materialInstance);
-
-    @Override
-    public MaterialParameters.Parameter clone() {
-      try {
-        return (MaterialParameters.Parameter) super.clone();
-      } catch (CloneNotSupportedException e) {
-        throw new AssertionError(e);
+    for (int slot = 0; slot < kinds.length; slot++) {
+      if (kinds[slot] != KIND_NONE && layout.isDeclared(slot)) {
+        applySlotTo(materialInstance, slot);
       }
     }
+    dirtySlots.clear();
   }
 
-
-  static class BooleanParameter extends MaterialParameters.Parameter {
-    boolean x;
-
-    BooleanParameter(String name, boolean x) {
-      this.name = name;
-      this.x = x;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x);
-    }
-  }
-
-
-  static class Boolean2Parameter extends MaterialParameters.Parameter {
-    boolean x;
-    boolean y;
-
-    Boolean2Parameter(String name, boolean x, boolean y) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y);
-    }
-  }
-
-
-  static class Boolean3Parameter extends MaterialParameters.Parameter {
-    boolean x;
-    boolean y;
-    boolean z;
-
-    Boolean3Parameter(String name, boolean x, boolean y, boolean z) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z);
-    }
-  }
-
-
-  static class Boolean4Parameter extends MaterialParameters.Parameter {
-    boolean x;
-    boolean y;
-    boolean z;
-    boolean w;
-
-    Boolean4Parameter(String name, boolean x, boolean y, boolean z, boolean w) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
-      this.w = w;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z, w);
-    }
-  }
-
-
-  static class FloatParameter extends MaterialParameters.Parameter {
-    float x;
-
-    FloatParameter(String name, float x) {
-      this.name = name;
-      this.x = x;
+  /** Applies the parameters changed since they were last applied to the material instance. */
+  void applyChangedTo(MaterialInstance materialInstance) {
+    if (dirtySlots.isEmpty()) {
+      return;
     }
 
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x);
-    }
-  }
-
+    setLayout(MaterialParameterLayout.get(materialInstance.getMaterial()));
+    RenderInvalidation.invalidate();
 
-  static class Float2Parameter extends MaterialParameters.Parameter {
-    float x;
-    float y;
-
-    Float2Parameter(String name, float x, float y) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y);
+    for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1)) {
+      if (kinds[slot] != KIND_NONE && layout.isDeclared(slot)) {
+        applySlotTo(materialInstance, slot);
+      }
     }
+    dirtySlots.clear();
   }
 
-
-  static class Float3Parameter extends MaterialParameters.Parameter {
-    float x;
-    float y;
-    float z;
-
-    Float3Parameter(String name, float x, float y, float z) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
+  void copyFrom(MaterialParameters other) {
+    if (other.layout == layout.getBase()) {
+      // Copies between materials sharing a filament material copy the packed values directly. The
+      // extension of this layout, if any, is dropped as all of its values are replaced.
+      layout = other.layout;
+      ensureCapacity(other.kinds.length);
+      Arrays.fill(kinds, KIND_NONE);
+      Arrays.fill(objectValues, null);
+      System.arraycopy(other.kinds, 0, kinds, 0, other.kinds.length);
+      System.arraycopy(other.componentCounts, 0, componentCounts, 0, other.kinds.length);
+      System.arraycopy(other.floatValues, 0, floatValues, 0, other.floatValues.length);
+      System.arraycopy(other.intValues, 0, intValues, 0, other.intValues.length);
+      System.arraycopy(other.objectValues, 0, objectValues, 0, other.objectValues.length);
+      dirtySlots.clear();
+      for (int slot = 0; slot < kinds.length; slot++) {
+        if (kinds[slot] != KIND_NONE) {
+          dirtySlots.set(slot);
+        }
+      }
+      return;
     }
 
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z);
-    }
+    Arrays.fill(kinds, KIND_NONE);
+    Arrays.fill(objectValues, null);
+    dirtySlots.clear();
+    merge(other);
   }
 
-
-  static class Float4Parameter extends MaterialParameters.Parameter {
-    float x;
-    float y;
-    float z;
-    float w;
-
-    Float4Parameter(String name, float x, float y, float z, float w) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
-      this.w = w;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z, w);
+  void merge(MaterialParameters other) {
+    for (int slot = 0; slot < other.kinds.length; slot++) {
+      if (other.kinds[slot] != KIND_NONE) {
+        copySlot(other, slot);
+      }
     }
   }
 
-
-  static class IntParameter extends MaterialParameters.Parameter {
-    int x;
-
-    IntParameter(String name, int x) {
-      this.name = name;
-      this.x = x;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x);
+  void mergeIfAbsent(MaterialParameters other) {
+    for (int slot = 0; slot < other.kinds.length; slot++) {
+      if (other.kinds[slot] != KIND_NONE && !hasValue(other.layout.getName(slot))) {
+        copySlot(other, slot);
+      }
     }
   }
 
-
-  static class Int2Parameter extends MaterialParameters.Parameter {
-    int x;
-    int y;
-
-    Int2Parameter(String name, int x, int y) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y);
+  /**
+   * Returns a hash of the parameter values, consistent with {@link #hasSameValues}. Textures are
+   * hashed by identity.
+   */
+  int valuesHashCode() {
+    int hash = layout.hashCode();
+    for (int slot = 0; slot < kinds.length; slot++) {
+      byte kind = kinds[slot];
+      if (kind == KIND_NONE) {
+        continue;
+      }
+      int componentCount = componentCounts[slot];
+      int offset = slot * COMPONENTS;
+      hash = 31 * hash + slot;
+      hash = 31 * hash + kind;
+      hash = 31 * hash + componentCount;
+      for (int component = 0; component < componentCount; component++) {
+        switch (kind) {
+          case KIND_FLOAT:
+            hash = 31 * hash + Float.floatToIntBits(floatValues[offset + component]);
+            break;
+          case KIND_BOOLEAN:
+          case KIND_INT:
+            hash = 31 * hash + intValues[offset + component];
+            break;
+          default:
+            hash = 31 * hash + System.identityHashCode(objectValues[slot]);
+            break;
+        }
+      }
     }
+    return hash;
   }
 
-
-  static class Int3Parameter extends MaterialParameters.Parameter {
-    int x;
-    int y;
-    int z;
-
-    Int3Parameter(String name, int x, int y, int z) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
+  /**
+   * Returns true if the other parameters are stored in the same layout and hold the same values.
+   */
+  boolean hasSameValues(MaterialParameters other) {
+    if (other.layout != layout) {
+      return false;
     }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z);
+    int slotCount = Math.max(kinds.length, other.kinds.length);
+    for (int slot = 0; slot < slotCount; slot++) {
+      byte kind = slot < kinds.length ? kinds[slot] : KIND_NONE;
+      byte otherKind = slot < other.kinds.length ? other.kinds[slot] : KIND_NONE;
+      if (kind != otherKind) {
+        return false;
+      }
+      if (kind == KIND_NONE) {
+        continue;
+      }
+      int componentCount = componentCounts[slot];
+      if (componentCount != other.componentCounts[slot]) {
+        return false;
+      }
+      int offset = slot * COMPONENTS;
+      for (int component = 0; component < componentCount; component++) {
+        switch (kind) {
+          case KIND_FLOAT:
+            if (Float.floatToIntBits(floatValues[offset + component])
+                != Float.floatToIntBits(other.floatValues[offset + component])) {
+              return false;
+            }
+            break;
+          case KIND_BOOLEAN:
+          case KIND_INT:
+            if (intValues[offset + component] != other.intValues[offset + component]) {
+              return false;
+            }
+            break;
+          default:
+            if (objectValues[slot] != other.objectValues[slot]) {
+              return false;
+            }
+            break;
+        }
+      }
     }
+    return true;
   }
 
-
-  static class Int4Parameter extends MaterialParameters.Parameter {
-    int x;
-    int y;
-    int z;
-    int w;
-
-    Int4Parameter(String name, int x, int y, int z, int w) {
-      this.name = name;
-      this.x = x;
-      this.y = y;
-      this.z = z;
-      this.w = w;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(name, x, y, z, w);
-    }
+  private boolean hasValue(String name) {
+    int slot = layout.getSlot(name);
+    return slot >= 0 && slot < kinds.length && kinds[slot] != KIND_NONE;
   }
 
-
-  static class TextureParameter extends MaterialParameters.Parameter {
-    final Texture texture;
-
-    TextureParameter(String name, Texture texture) {
-      this.name = name;
-      this.texture = texture;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      materialInstance.setParameter(
-          name, texture.getFilamentTexture(), convertTextureSampler(texture.getSampler()));
-    }
-
-    @Override
-    public MaterialParameters.Parameter clone() {
-      return new MaterialParameters.TextureParameter(name, texture);
-    }
+  /** Copies a slot of other parameters to the slot of the same name and returns that slot. */
+  private int copySlot(MaterialParameters other, int otherSlot) {
+    int slot = slotOf(other.layout.getName(otherSlot));
+    int offset = slot * COMPONENTS;
+    int otherOffset = otherSlot * COMPONENTS;
+    kinds[slot] = other.kinds[otherSlot];
+    componentCounts[slot] = other.componentCounts[otherSlot];
+    System.arraycopy(other.floatValues, otherOffset, floatValues, offset, COMPONENTS);
+    System.arraycopy(other.intValues, otherOffset, intValues, offset, COMPONENTS);
+    objectValues[slot] = other.objectValues[otherSlot];
+    dirtySlots.set(slot);
+    return slot;
   }
 
-
-  static class DepthTextureParameter extends MaterialParameters.Parameter {
-    private final DepthTexture depthTexture;
-
-    DepthTextureParameter(String name, DepthTexture depthTexture) {
-      this.name = name;
-      this.depthTexture = depthTexture;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      TextureSampler depthTextureSampler = new TextureSampler(
-              TextureSampler.MinFilter.LINEAR_MIPMAP_LINEAR,
-              TextureSampler.MagFilter.LINEAR,
-              TextureSampler.WrapMode.REPEAT);
-
-      materialInstance.setParameter(name, depthTexture.getFilamentTexture(), depthTextureSampler);
+  private int slotOf(String name) {
+    int slot = layout.getSlot(name);
+    if (slot < 0) {
+      if (layout.isCompiled()) {
+        // Names the material does not declare go to a layout of these parameters only, the layout
+        // of the material is shared with all its instances.
+        layout = layout.extend();
+      }
+      slot = layout.getOrAddSlot(name);
+    }
+    ensureCapacity(slot + 1);
+    return slot;
+  }
+
+  private int slotOf(MaterialParameterHandle handle) {
+    // Handles of another layout, e.g. from a material using another filament material, fall back
+    // to their name. An extension keeps the slots of the layout it extends.
+    if (handle.layout == layout || handle.layout == layout.getBase()) {
+      ensureCapacity(handle.slot + 1);
+      return handle.slot;
+    }
+    return slotOf(handle.getName());
+  }
+
+  /** Returns the slot of the name if it holds a value of the given kind and size, -1 otherwise. */
+  private int getSlot(String name, byte kind, int componentCount) {
+    int slot = layout.getSlot(name);
+    if (slot < 0
+        || slot >= kinds.length
+        || kinds[slot] != kind
+        || componentCounts[slot] != componentCount) {
+      return -1;
+    }
+    return slot;
+  }
+
+  private void ensureCapacity(int slotCount) {
+    if (slotCount <= kinds.length) {
+      return;
+    }
+    int capacity = Math.max(Math.max(slotCount, kinds.length * 2), layout.getSlotCount());
+    kinds = Arrays.copyOf(kinds, capacity);
+    componentCounts = Arrays.copyOf(componentCounts, capacity);
+    floatValues = Arrays.copyOf(floatValues, capacity * COMPONENTS);
+    intValues = Arrays.copyOf(intValues, capacity * COMPONENTS);
+    objectValues = Arrays.copyOf(objectValues, capacity);
+  }
+
+  private void setFloats(int slot, int componentCount, float x, float y, float z, float w) {
+    int offset = slot * COMPONENTS;
+    kinds[slot] = KIND_FLOAT;
+    componentCounts[slot] = (byte) componentCount;
+    floatValues[offset] = x;
+    floatValues[offset + 1] = y;
+    floatValues[offset + 2] = z;
+    floatValues[offset + 3] = w;
+    objectValues[slot] = null;
+    dirtySlots.set(slot);
+  }
+
+  private void setInts(int slot, byte kind, int componentCount, int x, int y, int z, int w) {
+    int offset = slot * COMPONENTS;
+    kinds[slot] = kind;
+    componentCounts[slot] = (byte) componentCount;
+    intValues[offset] = x;
+    intValues[offset + 1] = y;
+    intValues[offset + 2] = z;
+    intValues[offset + 3] = w;
+    objectValues[slot] = null;
+    dirtySlots.set(slot);
+  }
+
+  private void setObject(int slot, byte kind, Object value) {
+    kinds[slot] = kind;
+    componentCounts[slot] = 1;
+    objectValues[slot] = value;
+    dirtySlots.set(slot);
+  }
+
+  private void applySlotTo(MaterialInstance materialInstance, int slot) {
+    String name = layout.getName(slot);
+    int offset = slot * COMPONENTS;
+    float[] f = floatValues;
+    int[] i = intValues;
+    switch (kinds[slot]) {
+      case KIND_BOOLEAN:
+        switch (componentCounts[slot]) {
+          case 1:
+            materialInstance.setParameter(name, i[offset] != 0);
+            break;
+          case 2:
+            materialInstance.setParameter(name, i[offset] != 0, i[offset + 1] != 0);
+            break;
+          case 3:
+            materialInstance.setParameter(
+                name, i[offset] != 0, i[offset + 1] != 0, i[offset + 2] != 0);
+            break;
+          default:
+            materialInstance.setParameter(
+                name, i[offset] != 0, i[offset + 1] != 0, i[offset + 2] != 0, i[offset + 3] != 0);
+            break;
+        }
+        break;
+      case KIND_FLOAT:
+        switch (componentCounts[slot]) {
+          case 1:
+            materialInstance.setParameter(name, f[offset]);
+            break;
+          case 2:
+            materialInstance.setParameter(name, f[offset], f[offset + 1]);
+            break;
+          case 3:
+            materialInstance.setParameter(name, f[offset], f[offset + 1], f[offset + 2]);
+            break;
+          default:
+            materialInstance.setParameter(
+                name, f[offset], f[offset + 1], f[offset + 2], f[offset + 3]);
+            break;
+        }
+        break;
+      case KIND_INT:
+        switch (componentCounts[slot]) {
+          case 1:
+            materialInstance.setParameter(name, i[offset]);
+            break;
+          case 2:
+            materialInstance.setParameter(name, i[offset], i[offset + 1]);
+            break;
+          case 3:
+            materialInstance.setParameter(name, i[offset], i[offset + 1], i[offset + 2]);
+            break;
+          default:
+            materialInstance.setParameter(
+                name, i[offset], i[offset + 1], i[offset + 2], i[offset + 3]);
+            break;
+        }
+        break;
+      case KIND_TEXTURE:
+        Texture texture = (Texture) objectValues[slot];
+        materialInstance.setParameter(
+            name, texture.getFilamentTexture(), convertTextureSampler(texture.getSampler()));
+        break;
+      case KIND_DEPTH_TEXTURE:
+        DepthTexture depthTexture = (DepthTexture) objectValues[slot];
+        TextureSampler depthTextureSampler = new TextureSampler(
+                TextureSampler.MinFilter.LINEAR_MIPMAP_LINEAR,
+                TextureSampler.MagFilter.LINEAR,
+                TextureSampler.WrapMode.REPEAT);
+        materialInstance.setParameter(name, depthTexture.getFilamentTexture(), depthTextureSampler);
+        break;
+      case KIND_EXTERNAL_TEXTURE:
+        ExternalTexture externalTexture = (ExternalTexture) objectValues[slot];
+        materialInstance.setParameter(
+            name, externalTexture.getFilamentTexture(), getExternalFilamentSampler());
+        break;
+      default:
+        break;
     }
   }
 
-
-  static class ExternalTextureParameter extends MaterialParameters.Parameter {
-    private final ExternalTexture externalTexture;
-
-    ExternalTextureParameter(String name, ExternalTexture externalTexture) {
-      this.name = name;
-      this.externalTexture = externalTexture;
-    }
-
-    @Override
-    void applyTo(MaterialInstance materialInstance) {
-      com.google.android.filament.TextureSampler filamentSampler = getExternalFilamentSampler();
-
-      materialInstance.setParameter(name, externalTexture.getFilamentTexture(), filamentSampler);
-    }
-
-    private com.google.android.filament.TextureSampler getExternalFilamentSampler() {
-      com.google.android.filament.TextureSampler filamentSampler =
-          new com.google.android.filament.TextureSampler();
-      filamentSampler.setMinFilter(TextureSampler.MinFilter.LINEAR);
-      filamentSampler.setMagFilter(TextureSampler.MagFilter.LINEAR);
-      filamentSampler.setWrapModeS(TextureSampler.WrapMode.CLAMP_TO_EDGE);
-      filamentSampler.setWrapModeT(TextureSampler.WrapMode.CLAMP_TO_EDGE);
-      filamentSampler.setWrapModeR(TextureSampler.WrapMode.CLAMP_TO_EDGE);
-      return filamentSampler;
-    }
-
-    @Override
-    public MaterialParameters.Parameter clone() {
-      return new ExternalTextureParameter(name, externalTexture);
-    }
+  private static com.google.android.filament.TextureSampler getExternalFilamentSampler() {
+    com.google.android.filament.TextureSampler filamentSampler =
+        new com.google.android.filament.TextureSampler();
+    filamentSampler.setMinFilter(TextureSampler.MinFilter.LINEAR);
+    filamentSampler.setMagFilter(TextureSampler.MagFilter.LINEAR);
+    filamentSampler.setWrapModeS(TextureSampler.WrapMode.CLAMP_TO_EDGE);
+    filamentSampler.setWrapModeT(TextureSampler.WrapMode.CLAMP_TO_EDGE);
+    filamentSampler.setWrapModeR(TextureSampler.WrapMode.CLAMP_TO_EDGE);
+    return filamentSampler;
   }
 
-
   private static com.google.android.filament.TextureSampler convertTextureSampler(
       Texture.Sampler sampler) {
     com.google.android.filament.TextureSampler convertedSampler =
@@ -6,6 +6,11 @@ import androidx.annotation.RequiresApi;
 
 import com.google.ar.sceneform.resources.ResourceRegistry;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import com.google.ar.sceneform.utilities.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -19,6 +24,12 @@ import com.google.ar.sceneform.utilities.AndroidPreconditions;
  */
 @RequiresApi(api = Build.VERSION_CODES.N)
 public class ModelRenderable extends Renderable {
+  /** The default hysteresis applied to the level of detail screen coverage thresholds. */
+  public static final float DEFAULT_LOD_HYSTERESIS = 0.1f;
+
+  // Coarser levels of detail, ordered from the most to the least detailed.
+  private final ArrayList<LodLevel> lodLevels = new ArrayList<>();
+  private float lodHysteresis = DEFAULT_LOD_HYSTERESIS;
   
 
 
@@ -36,6 +47,7 @@ public class ModelRenderable extends Renderable {
     super(other);
 
     copyAnimationFrom(other);
+    copyLodLevelsFrom(other);
   }
 
   
@@ -83,6 +95,36 @@ public class ModelRenderable extends Renderable {
   
   private void copyAnimationFrom(ModelRenderable other) {return ;}
 
+  private void copyLodLevelsFrom(ModelRenderable other) {
+    for (LodLevel lodLevel : other.lodLevels) {
+      lodLevels.add(new LodLevel(lodLevel.renderable.makeCopy(), lodLevel.screenCoverage));
+    }
+    lodHysteresis = other.lodHysteresis;
+  }
+
+  /**
+   * Returns the number of levels of detail of this ModelRenderable, including the level defined by
+   * its own source. A ModelRenderable without levels of detail returns 1.
+   */
+  public int getLodCount() {
+    return lodLevels.size() + 1;
+  }
+
+  /**
+   * Returns the coarser levels of detail, ordered from the most to the least detailed.
+   */
+  List<LodLevel> getLodLevels() {
+    return lodLevels;
+  }
+
+  /**
+   * Returns the hysteresis applied to the screen coverage thresholds when switching between
+   * levels of detail.
+   */
+  float getLodHysteresis() {
+    return lodHysteresis;
+  }
+
 
 
 
@@ -175,9 +217,128 @@ public class ModelRenderable extends Renderable {
 
 
 
+
+  /** A coarser level of detail and the screen coverage below which it is displayed. */
+  static final class LodLevel {
+    final ModelRenderable renderable;
+    final float screenCoverage;
+
+    LodLevel(ModelRenderable renderable, float screenCoverage) {
+      this.renderable = renderable;
+      this.screenCoverage = screenCoverage;
+    }
+  }
 
   /** Factory class for {@link ModelRenderable}. */
   public static final class Builder extends Renderable.Builder<ModelRenderable, Builder> {
+    private final ArrayList<Builder> lodBuilders = new ArrayList<>();
+    private final ArrayList<Float> lodScreenCoverages = new ArrayList<>();
+    private float lodHysteresis = DEFAULT_LOD_HYSTERESIS;
+
+    /**
+     * Adds a coarser level of detail to the ModelRenderable.
+     *
+     * <p>The source of this builder is the most detailed level. Each added level is displayed
+     * instead of the previous ones when the model covers less than {@code screenCoverage} of the
+     * view height. Levels must be added from the most to the least detailed, with decreasing screen
+     * coverages. All levels are loaded with the ModelRenderable and stay resident while it is used.
+     *
+     * <pre>{@code
+     * ModelRenderable.builder()
+     *     .setSource(context, highDetailUri)
+     *     .setIsFilamentGltf(true)
+     *     .addLodLevel(ModelRenderable.builder()
+     *         .setSource(context, lowDetailUri)
+     *         .setIsFilamentGltf(true), 0.2f)
+     *     .build();
+     * }</pre>
+     *
+     * @param lodBuilder the builder of the level, it must have a source
+     * @param screenCoverage the fraction of the view height, between 0 and 1, below which this level
+     *     is displayed
+     */
+    public Builder addLodLevel(Builder lodBuilder, float screenCoverage) {
+      Preconditions.checkNotNull(lodBuilder, "Parameter \"lodBuilder\" was null.");
+      lodBuilders.add(lodBuilder);
+      lodScreenCoverages.add(screenCoverage);
+      return this;
+    }
+
+    /**
+     * Sets the fraction by which the screen coverage must go past a threshold before the level of
+     * detail switches, to avoid popping back and forth around the threshold. The default is 0.1.
+     */
+    public Builder setLodHysteresis(float lodHysteresis) {
+      this.lodHysteresis = lodHysteresis;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link ModelRenderable} with the parameters of the builder. When levels of detail
+     * were added, the returned future completes once all of them are loaded.
+     *
+     * @return the constructed {@link ModelRenderable}
+     */
+    @Override
+    public CompletableFuture<ModelRenderable> build() {
+      if (lodBuilders.isEmpty()) {
+        return super.build();
+      }
+
+      // Checked before the model is loaded, so that an invalid configuration doesn't load it.
+      try {
+        checkLodPreconditions();
+      } catch (Throwable failedPrecondition) {
+        CompletableFuture<ModelRenderable> failed = new CompletableFuture<>();
+        failed.completeExceptionally(failedPrecondition);
+        FutureHelper.logOnException(
+            ModelRenderable.class.getSimpleName(),
+            failed,
+            "Unable to load Renderable registryId='" + registryId + "'");
+        return failed;
+      }
+
+      CompletableFuture<ModelRenderable> result = super.build();
+
+      ArrayList<CompletableFuture<ModelRenderable>> lodFutures = new ArrayList<>();
+      for (Builder lodBuilder : lodBuilders) {
+        lodFutures.add(lodBuilder.build());
+      }
+      // The levels are copied so that further changes to this builder don't affect the result.
+      ArrayList<Float> screenCoverages = new ArrayList<>(lodScreenCoverages);
+      float hysteresis = lodHysteresis;
+
+      CompletableFuture<?>[] allFutures = new CompletableFuture<?>[lodFutures.size() + 1];
+      allFutures[0] = result;
+      for (int i = 0; i < lodFutures.size(); i++) {
+        allFutures[i + 1] = lodFutures.get(i);
+      }
+      return CompletableFuture.allOf(allFutures)
+          .thenApply(
+              unused -> {
+                ModelRenderable renderable = result.join();
+                for (int i = 0; i < lodFutures.size(); i++) {
+                  renderable.lodLevels.add(
+                      new LodLevel(lodFutures.get(i).join(), screenCoverages.get(i)));
+                }
+                renderable.lodHysteresis = hysteresis;
+                return renderable;
+              });
+    }
+
+    private void checkLodPreconditions() {
+      if (lodHysteresis < 0.0f || lodHysteresis >= 1.0f) {
+        throw new IllegalArgumentException("The level of detail hysteresis must be in [0, 1).");
+      }
+      float previousScreenCoverage = Float.MAX_VALUE;
+      for (float screenCoverage : lodScreenCoverages) {
+        if (screenCoverage <= 0.0f || screenCoverage >= previousScreenCoverage) {
+          throw new IllegalArgumentException(
+              "Levels of detail must be added with positive and decreasing screen coverages.");
+        }
+        previousScreenCoverage = screenCoverage;
+      }
+    }
 
     /** @hide */
     @Override
@@ -153,7 +153,13 @@ class PlaneVisualizer implements TransformProvider {
 
     if (planeRenderable == null) {
       try {
-        planeRenderable = ModelRenderable.builder().setSource(renderableDefinition).build().get();
+        // The plane is updated from its definition every frame.
+        planeRenderable =
+            ModelRenderable.builder()
+                .setSource(renderableDefinition)
+                .setDynamicMeshEnabled(true)
+                .build()
+                .get();
         planeRenderable.setShadowCaster(false);
         // Creating a Renderable is immediate when using RenderableDefinition.
       } catch (InterruptedException | ExecutionException ex) {
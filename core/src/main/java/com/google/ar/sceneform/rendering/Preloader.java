@@ -0,0 +1,381 @@
+package com.google.ar.sceneform.rendering;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.resources.ResourceRegistry;
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads models, textures and materials ahead of their first use, e.g. behind a loading screen.
+ *
+ * <p>The loaded resources are pinned in their registries until {@link #release()}, so that building
+ * them later with the same source is served from the registry instead of loading them again.
+ *
+ * <pre>{@code
+ * Preloader preloader = new Preloader(context)
+ *     .addBuiltInResources()
+ *     .addModel(modelUri, true)
+ *     .addTexture(textureUri)
+ *     .setOnProgressListener(progress -> progressBar.setProgress(progress.getItemFraction()));
+ * preloader.start().thenAccept(progress -> hideLoadingScreen());
+ * }</pre>
+ *
+ * <p>Items are loaded in the order they were added, with at most {@link
+ * #setMaxConcurrentLoads(int)} loads at once. Byte progress is counted from the sizes given when
+ * the items are added, items without a size only count in the item progress.
+ *
+ * <p>The preloader must be used from the main thread, the progress listener is called on the main
+ * thread.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"}) // CompletableFuture
+public final class Preloader {
+  private static final String TAG = Preloader.class.getSimpleName();
+  public static final int DEFAULT_MAX_CONCURRENT_LOADS = 4;
+
+  /** Called on the main thread each time an item finished loading. */
+  public interface OnProgressListener {
+    void onProgress(Progress progress);
+  }
+
+  private enum ItemType {
+    MODEL,
+    TEXTURE,
+    MATERIAL
+  }
+
+  private final Context context;
+  private final ArrayList<Item> items = new ArrayList<>();
+  private final ArrayList<Item> pinnedItems = new ArrayList<>();
+  private final ArrayList<LoadRequest> loadRequests = new ArrayList<>();
+  private final CompletableFuture<Progress> result = new CompletableFuture<>();
+  private int maxConcurrentLoads = DEFAULT_MAX_CONCURRENT_LOADS;
+  private int loadPriority = LoadRequest.PRIORITY_DEFAULT;
+  @Nullable private OnProgressListener onProgressListener = null;
+
+  private boolean isStarted = false;
+  private boolean isCancelled = false;
+  private int nextItemIndex = 0;
+  private int runningLoadCount = 0;
+  private int completedItemCount = 0;
+  private int failedItemCount = 0;
+  private long totalBytes = 0;
+  private long loadedBytes = 0;
+
+  public Preloader(Context context) {
+    Preconditions.checkNotNull(context, "Parameter \"context\" was null.");
+    this.context = context.getApplicationContext();
+  }
+
+  /** Adds a model, loaded as {@code ModelRenderable.builder().setSource(context, sourceUri)}. */
+  public Preloader addModel(Uri sourceUri, boolean isFilamentGltf) {
+    return addModel(sourceUri, isFilamentGltf, 0);
+  }
+
+  /** @param byteSize the size of the model, counted in the byte progress once it is loaded */
+  public Preloader addModel(Uri sourceUri, boolean isFilamentGltf, long byteSize) {
+    return addItem(new Item(ItemType.MODEL, sourceUri, byteSize).setIsFilamentGltf(isFilamentGltf));
+  }
+
+  /** Adds a texture, loaded as {@code Texture.builder().setSource(context, sourceUri)}. */
+  public Preloader addTexture(Uri sourceUri) {
+    return addTexture(sourceUri, 0);
+  }
+
+  /** @param byteSize the size of the texture, counted in the byte progress once it is loaded */
+  public Preloader addTexture(Uri sourceUri, long byteSize) {
+    return addItem(new Item(ItemType.TEXTURE, sourceUri, byteSize));
+  }
+
+  /** Adds a material, loaded as {@code Material.builder().setSource(context, sourceUri)}. */
+  public Preloader addMaterial(Uri sourceUri) {
+    return addMaterial(sourceUri, 0);
+  }
+
+  /** @param byteSize the size of the material, counted in the byte progress once it is loaded */
+  public Preloader addMaterial(Uri sourceUri, long byteSize) {
+    return addItem(new Item(ItemType.MATERIAL, sourceUri, byteSize));
+  }
+
+  /**
+   * Adds the materials and textures used by the {@link MaterialFactory}, the plane renderer and
+   * {@link ViewRenderable}s, and warms up the shaders of filament glTF models.
+   */
+  public Preloader addBuiltInResources() {
+    for (RenderingResources.Resource resource : RenderingResources.Resource.values()) {
+      @Nullable
+      Uri sourceUri = RenderingResources.GetSceneformSourceResourceUri(context, resource);
+      if (sourceUri == null) {
+        continue;
+      }
+      if (resource == RenderingResources.Resource.PLANE) {
+        // Registered with the sampler used by the plane renderer.
+        addItem(
+            new Item(ItemType.TEXTURE, sourceUri, 0)
+                .setSampler(
+                    Texture.Sampler.builder()
+                        .setMinMagFilter(Texture.Sampler.MagFilter.LINEAR)
+                        .setWrapMode(Texture.Sampler.WrapMode.REPEAT)
+                        .build()));
+      } else {
+        addMaterial(sourceUri);
+      }
+    }
+    // Compiled once, when the first filament glTF model is loaded otherwise.
+    RenderableInternalFilamentAssetData.getUberShaderLoader();
+    return this;
+  }
+
+  /** Sets the number of items loading at once, {@link #DEFAULT_MAX_CONCURRENT_LOADS} by default. */
+  public Preloader setMaxConcurrentLoads(int maxConcurrentLoads) {
+    if (maxConcurrentLoads <= 0) {
+      throw new IllegalArgumentException("maxConcurrentLoads must be positive.");
+    }
+    this.maxConcurrentLoads = maxConcurrentLoads;
+    return this;
+  }
+
+  /** Sets the {@link LoadRequest} priority of the models. */
+  public Preloader setLoadPriority(int loadPriority) {
+    this.loadPriority = loadPriority;
+    return this;
+  }
+
+  public Preloader setOnProgressListener(@Nullable OnProgressListener onProgressListener) {
+    this.onProgressListener = onProgressListener;
+    return this;
+  }
+
+  /**
+   * Starts loading the items. The returned future completes once every item is loaded or failed to
+   * load, items failing to load are logged and counted in the progress.
+   */
+  public CompletableFuture<Progress> start() {
+    AndroidPreconditions.checkUiThread();
+    if (isStarted) {
+      return result;
+    }
+    isStarted = true;
+    startNextLoads();
+    return result;
+  }
+
+  /** Stops starting new loads and cancels the models being loaded. */
+  public void cancel() {
+    AndroidPreconditions.checkUiThread();
+    if (isCancelled) {
+      return;
+    }
+    isCancelled = true;
+    for (LoadRequest loadRequest : new ArrayList<>(loadRequests)) {
+      loadRequest.cancel();
+    }
+    result.cancel(false);
+  }
+
+  /** Unpins the loaded resources, they are then collected once they are no longer used. */
+  public void release() {
+    AndroidPreconditions.checkUiThread();
+    for (Item item : pinnedItems) {
+      item.getRegistry().unpin(item.sourceUri);
+    }
+    pinnedItems.clear();
+  }
+
+  public Progress getProgress() {
+    return new Progress(
+        items.size(), completedItemCount, failedItemCount, totalBytes, loadedBytes);
+  }
+
+  private Preloader addItem(Item item) {
+    AndroidPreconditions.checkUiThread();
+    if (isStarted) {
+      throw new IllegalStateException("Items must be added before the preloader is started.");
+    }
+    items.add(item);
+    totalBytes += item.byteSize;
+    return this;
+  }
+
+  private void startNextLoads() {
+    while (!isCancelled && runningLoadCount < maxConcurrentLoads && nextItemIndex < items.size()) {
+      startLoad(items.get(nextItemIndex++));
+    }
+    if (runningLoadCount == 0 && !result.isDone()) {
+      result.complete(getProgress());
+    }
+  }
+
+  private void startLoad(Item item) {
+    @Nullable LoadRequest loadRequest = null;
+    CompletableFuture<?> future;
+    try {
+      switch (item.type) {
+        case MODEL:
+          loadRequest = new LoadRequest(loadPriority);
+          loadRequests.add(loadRequest);
+          future =
+              ModelRenderable.builder()
+                  .setSource(context, item.sourceUri)
+                  .setIsFilamentGltf(item.isFilamentGltf)
+                  .setLoadRequest(loadRequest)
+                  .build();
+          break;
+        case TEXTURE:
+          Texture.Builder textureBuilder = Texture.builder().setSource(context, item.sourceUri);
+          if (item.sampler != null) {
+            textureBuilder.setSampler(item.sampler);
+          }
+          future = textureBuilder.build();
+          break;
+        default:
+          future = Material.builder().setSource(context, item.sourceUri).build();
+          break;
+      }
+    } catch (RuntimeException e) {
+      CompletableFuture<Object> failedFuture = new CompletableFuture<>();
+      failedFuture.completeExceptionally(e);
+      future = failedFuture;
+    }
+
+    item.getRegistry().pin(item.sourceUri);
+    pinnedItems.add(item);
+    runningLoadCount++;
+
+    @Nullable LoadRequest itemLoadRequest = loadRequest;
+    future.whenCompleteAsync(
+        (loaded, throwable) -> {
+          runningLoadCount--;
+          if (itemLoadRequest != null) {
+            loadRequests.remove(itemLoadRequest);
+          }
+          if (throwable != null) {
+            Log.e(TAG, "Unable to preload " + item.sourceUri, throwable);
+            failedItemCount++;
+            item.getRegistry().unpin(item.sourceUri);
+            pinnedItems.remove(item);
+          } else {
+            completedItemCount++;
+            loadedBytes += item.byteSize;
+          }
+
+          OnProgressListener onProgressListener = this.onProgressListener;
+          if (onProgressListener != null) {
+            onProgressListener.onProgress(getProgress());
+          }
+          startNextLoads();
+        },
+        ThreadPools.getMainExecutor());
+  }
+
+  /** Progress of a {@link Preloader}. */
+  public static final class Progress {
+    private final int itemCount;
+    private final int completedItemCount;
+    private final int failedItemCount;
+    private final long totalBytes;
+    private final long loadedBytes;
+
+    Progress(
+        int itemCount,
+        int completedItemCount,
+        int failedItemCount,
+        long totalBytes,
+        long loadedBytes) {
+      this.itemCount = itemCount;
+      this.completedItemCount = completedItemCount;
+      this.failedItemCount = failedItemCount;
+      this.totalBytes = totalBytes;
+      this.loadedBytes = loadedBytes;
+    }
+
+    public int getItemCount() {
+      return itemCount;
+    }
+
+    /** Returns the number of items that were loaded. */
+    public int getCompletedItemCount() {
+      return completedItemCount;
+    }
+
+    /** Returns the number of items that failed to load. */
+    public int getFailedItemCount() {
+      return failedItemCount;
+    }
+
+    /** Returns the sum of the sizes given for the items. */
+    public long getTotalBytes() {
+      return totalBytes;
+    }
+
+    /** Returns the sum of the sizes given for the items that were loaded. */
+    public long getLoadedBytes() {
+      return loadedBytes;
+    }
+
+    /** Returns the fraction of the items that were loaded or failed to load, between 0 and 1. */
+    public float getItemFraction() {
+      return itemCount > 0 ? (float) (completedItemCount + failedItemCount) / itemCount : 1.0f;
+    }
+
+    /** Returns the fraction of the total bytes that were loaded, between 0 and 1. */
+    public float getByteFraction() {
+      return totalBytes > 0 ? (float) loadedBytes / totalBytes : getItemFraction();
+    }
+
+    @Override
+    public String toString() {
+      return "Preloader.Progress{items="
+          + completedItemCount
+          + "/"
+          + itemCount
+          + ", failed="
+          + failedItemCount
+          + ", bytes="
+          + loadedBytes
+          + "/"
+          + totalBytes
+          + "}";
+    }
+  }
+
+  private static final class Item {
+    private final ItemType type;
+    private final Uri sourceUri;
+    private final long byteSize;
+    private boolean isFilamentGltf = false;
+    @Nullable private Texture.Sampler sampler = null;
+
+    Item(ItemType type, Uri sourceUri, long byteSize) {
+      this.type = type;
+      this.sourceUri = Preconditions.checkNotNull(sourceUri, "Parameter \"sourceUri\" was null.");
+      this.byteSize = Math.max(0, byteSize);
+    }
+
+    Item setIsFilamentGltf(boolean isFilamentGltf) {
+      this.isFilamentGltf = isFilamentGltf;
+      return this;
+    }
+
+    Item setSampler(Texture.Sampler sampler) {
+      this.sampler = sampler;
+      return this;
+    }
+
+    ResourceRegistry<?> getRegistry() {
+      ResourceManager resourceManager = ResourceManager.getInstance();
+      switch (type) {
+        case MODEL:
+          return resourceManager.getModelRenderableRegistry();
+        case TEXTURE:
+          return resourceManager.getTextureRegistry();
+        default:
+          return resourceManager.getMaterialRegistry();
+      }
+    }
+  }
+}
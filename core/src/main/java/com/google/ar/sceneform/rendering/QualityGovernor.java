@@ -0,0 +1,346 @@
+package com.google.ar.sceneform.rendering;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts the rendering quality to the performance of the device.
+ *
+ * <p>The governor is given the duration of each rendered frame along with the frame budget. At a
+ * fixed interval it computes frame time percentiles over the latest frames, reads the {@link
+ * PowerManager} thermal status when available, and lets its {@link QualityPolicy} decide whether to
+ * step to another {@link QualityLevel}. Changes are reported to the {@link
+ * OnQualityChangedListener}s.
+ *
+ * <p>Attach a governor to a view with {@link com.google.ar.sceneform.SceneView#setQualityGovernor}
+ * which feeds it and applies its levels.
+ */
+public class QualityGovernor {
+  private static final String TAG = QualityGovernor.class.getSimpleName();
+
+  public static final long DEFAULT_EVALUATION_INTERVAL_MILLIS = 500;
+  private static final int SAMPLE_WINDOW_SIZE = 120;
+  private static final int MIN_SAMPLE_COUNT = 10;
+  private static final float NANOSECONDS_TO_MILLISECONDS = 0.000001f;
+
+  /** Provides the current time, replaced by a fake clock for testing. */
+  public interface Clock {
+    long getNanoseconds();
+  }
+
+  /** Provides the thermal status of the device, as defined by {@link PowerManager}. */
+  public interface ThermalStatusProvider {
+    int getThermalStatus();
+  }
+
+  /** Interface definition for a callback to be invoked when the quality level changes. */
+  public interface OnQualityChangedListener {
+    /**
+     * Called when the quality level changed.
+     *
+     * @param governor the governor that changed level
+     * @param level the new quality level
+     * @param stats the statistics the decision was made from, or null if the level was set
+     *     explicitly
+     */
+    void onQualityChanged(
+        QualityGovernor governor, QualityLevel level, @Nullable FrameStats stats);
+  }
+
+  private static class DefaultClock implements Clock {
+    @Override
+    public long getNanoseconds() {
+      return System.nanoTime();
+    }
+  }
+
+  private final List<QualityLevel> levels;
+  private final QualityPolicy policy;
+  private final Clock clock;
+  @Nullable private final ThermalStatusProvider thermalStatusProvider;
+  private final ArrayList<OnQualityChangedListener> onQualityChangedListeners = new ArrayList<>();
+
+  private final float[] frameTimes = new float[SAMPLE_WINDOW_SIZE];
+  private int frameTimeCount = 0;
+  private int nextFrameTimeIndex = 0;
+  private float targetFrameTimeMillis = 0.0f;
+
+  private long evaluationIntervalNanos =
+      TimeUnit.MILLISECONDS.toNanos(DEFAULT_EVALUATION_INTERVAL_MILLIS);
+  private long lastEvaluationNanos;
+  private int currentLevel = 0;
+  private boolean isEnabled = true;
+  @Nullable private FrameStats lastFrameStats;
+
+  /**
+   * Creates a governor using the {@link QualityLevel#createDefaultLevels() default levels}, the
+   * {@link DefaultQualityPolicy} and the thermal status of the device when available.
+   */
+  public QualityGovernor(Context context) {
+    this(
+        QualityLevel.createDefaultLevels(),
+        new DefaultQualityPolicy(),
+        new DefaultClock(),
+        createThermalStatusProvider(context));
+  }
+
+  /**
+   * Creates a governor with the given levels and policy.
+   *
+   * @param levels the levels ordered from the highest to the lowest quality
+   * @param policy decides which level to use
+   * @param clock the time source used to schedule evaluations
+   * @param thermalStatusProvider the thermal status of the device, or null if unavailable
+   */
+  public QualityGovernor(
+      List<QualityLevel> levels,
+      QualityPolicy policy,
+      Clock clock,
+      @Nullable ThermalStatusProvider thermalStatusProvider) {
+    Preconditions.checkNotNull(levels, "Parameter \"levels\" was null.");
+    Preconditions.checkNotNull(policy, "Parameter \"policy\" was null.");
+    Preconditions.checkNotNull(clock, "Parameter \"clock\" was null.");
+    if (levels.isEmpty()) {
+      throw new IllegalArgumentException("At least one quality level is required.");
+    }
+    this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+    this.policy = policy;
+    this.clock = clock;
+    this.thermalStatusProvider = thermalStatusProvider;
+    lastEvaluationNanos = clock.getNanoseconds();
+  }
+
+  /** Returns the levels, ordered from the highest to the lowest quality. */
+  public List<QualityLevel> getLevels() {
+    return levels;
+  }
+
+  /** Returns the index of the current level, 0 being the highest quality. */
+  public int getLevelIndex() {
+    return currentLevel;
+  }
+
+  /** Returns the current level. */
+  public QualityLevel getLevel() {
+    return levels.get(currentLevel);
+  }
+
+  /**
+   * Sets the current level. The policy starts over from this level on the next evaluations.
+   *
+   * @param levelIndex the index of the level, 0 being the highest quality
+   */
+  public void setLevelIndex(int levelIndex) {
+    if (levelIndex < 0 || levelIndex >= levels.size()) {
+      throw new IllegalArgumentException("Level index out of range: " + levelIndex);
+    }
+    changeLevel(levelIndex, null);
+  }
+
+  /** Returns true if the governor changes the level from the frame statistics. */
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Enables or disables the automatic level changes. When disabled, the current level is kept until
+   * it is changed with {@link #setLevelIndex(int)}.
+   */
+  public void setEnabled(boolean isEnabled) {
+    if (this.isEnabled != isEnabled) {
+      this.isEnabled = isEnabled;
+      clearFrameTimes();
+      policy.reset();
+    }
+  }
+
+  /** Sets how often the frame statistics are evaluated. The default is 500 milliseconds. */
+  public void setEvaluationIntervalMillis(long evaluationIntervalMillis) {
+    if (evaluationIntervalMillis <= 0) {
+      throw new IllegalArgumentException("Evaluation interval must be positive.");
+    }
+    evaluationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(evaluationIntervalMillis);
+  }
+
+  /** Returns the statistics of the last evaluation, or null if none occurred yet. */
+  @Nullable
+  public FrameStats getLastFrameStats() {
+    return lastFrameStats;
+  }
+
+  /** Registers a callback to be invoked when the quality level changes. */
+  public void addOnQualityChangedListener(OnQualityChangedListener onQualityChangedListener) {
+    if (!onQualityChangedListeners.contains(onQualityChangedListener)) {
+      onQualityChangedListeners.add(onQualityChangedListener);
+    }
+  }
+
+  /** Removes a callback previously added with {@link #addOnQualityChangedListener}. */
+  public void removeOnQualityChangedListener(OnQualityChangedListener onQualityChangedListener) {
+    onQualityChangedListeners.remove(onQualityChangedListener);
+  }
+
+  /**
+   * Records the duration of a rendered frame and evaluates the policy when the evaluation interval
+   * elapsed.
+   *
+   * @param frameTimeNanos the time spent producing the frame
+   * @param targetFrameTimeNanos the frame budget at the current frame rate
+   * @return true if the level changed
+   */
+  public boolean onFrameRendered(long frameTimeNanos, long targetFrameTimeNanos) {
+    frameTimes[nextFrameTimeIndex] = frameTimeNanos * NANOSECONDS_TO_MILLISECONDS;
+    nextFrameTimeIndex = (nextFrameTimeIndex + 1) % frameTimes.length;
+    frameTimeCount = Math.min(frameTimeCount + 1, frameTimes.length);
+    targetFrameTimeMillis = targetFrameTimeNanos * NANOSECONDS_TO_MILLISECONDS;
+
+    long now = clock.getNanoseconds();
+    if (now - lastEvaluationNanos < evaluationIntervalNanos) {
+      return false;
+    }
+    lastEvaluationNanos = now;
+    return evaluate(now);
+  }
+
+  private boolean evaluate(long now) {
+    if (frameTimeCount < MIN_SAMPLE_COUNT) {
+      return false;
+    }
+
+    float[] sortedFrameTimes = Arrays.copyOf(frameTimes, frameTimeCount);
+    Arrays.sort(sortedFrameTimes);
+    int thermalStatus =
+        thermalStatusProvider != null
+            ? thermalStatusProvider.getThermalStatus()
+            : PowerManager.THERMAL_STATUS_NONE;
+    FrameStats stats = new FrameStats(now, sortedFrameTimes, targetFrameTimeMillis, thermalStatus);
+    lastFrameStats = stats;
+
+    if (!isEnabled) {
+      return false;
+    }
+
+    int level = policy.selectLevel(stats, currentLevel, levels.size());
+    level = Math.max(0, Math.min(level, levels.size() - 1));
+    if (level == currentLevel) {
+      return false;
+    }
+    changeLevel(level, stats);
+    return true;
+  }
+
+  private void changeLevel(int level, @Nullable FrameStats stats) {
+    currentLevel = level;
+    // Frame times measured at the previous level no longer apply.
+    clearFrameTimes();
+    policy.reset();
+
+    QualityLevel qualityLevel = levels.get(level);
+    Log.d(TAG, "Quality level changed to " + qualityLevel);
+    for (OnQualityChangedListener onQualityChangedListener :
+        new ArrayList<>(onQualityChangedListeners)) {
+      onQualityChangedListener.onQualityChanged(this, qualityLevel, stats);
+    }
+  }
+
+  private void clearFrameTimes() {
+    frameTimeCount = 0;
+    nextFrameTimeIndex = 0;
+  }
+
+  @Nullable
+  private static ThermalStatusProvider createThermalStatusProvider(Context context) {
+    Preconditions.checkNotNull(context, "Parameter \"context\" was null.");
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+      return null;
+    }
+    PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    if (powerManager == null) {
+      return null;
+    }
+    return powerManager::getCurrentThermalStatus;
+  }
+
+  /** Frame statistics evaluated by a {@link QualityPolicy}. */
+  public static final class FrameStats {
+    private final long timestampNanos;
+    private final float[] sortedFrameTimes;
+    private final float targetFrameTimeMillis;
+    private final int thermalStatus;
+
+    @VisibleForTesting
+    public FrameStats(
+        long timestampNanos,
+        float[] sortedFrameTimes,
+        float targetFrameTimeMillis,
+        int thermalStatus) {
+      Preconditions.checkNotNull(sortedFrameTimes, "Parameter \"sortedFrameTimes\" was null.");
+      if (sortedFrameTimes.length == 0) {
+        throw new IllegalArgumentException("At least one frame time is required.");
+      }
+      this.timestampNanos = timestampNanos;
+      this.sortedFrameTimes = sortedFrameTimes;
+      this.targetFrameTimeMillis = targetFrameTimeMillis;
+      this.thermalStatus = thermalStatus;
+    }
+
+    /** Returns the clock time at which the statistics were evaluated. */
+    public long getTimestampNanos() {
+      return timestampNanos;
+    }
+
+    /** Returns the number of frames the statistics were computed from. */
+    public int getFrameCount() {
+      return sortedFrameTimes.length;
+    }
+
+    /**
+     * Returns the frame time, in milliseconds, under which the given percentage of the frames
+     * were produced.
+     *
+     * @param percentile the percentile, between 0 and 100
+     */
+    public float getFrameTimeMillis(float percentile) {
+      int rank = (int) Math.ceil(percentile / 100.0f * sortedFrameTimes.length);
+      return sortedFrameTimes[Math.max(0, Math.min(rank - 1, sortedFrameTimes.length - 1))];
+    }
+
+    /** Returns the frame budget in milliseconds. */
+    public float getTargetFrameTimeMillis() {
+      return targetFrameTimeMillis;
+    }
+
+    /**
+     * Returns the {@link PowerManager} thermal status, {@link PowerManager#THERMAL_STATUS_NONE} if
+     * it is unavailable.
+     */
+    public int getThermalStatus() {
+      return thermalStatus;
+    }
+
+    @Override
+    public String toString() {
+      return "FrameStats{p50="
+          + getFrameTimeMillis(50)
+          + "ms, p90="
+          + getFrameTimeMillis(90)
+          + "ms, p99="
+          + getFrameTimeMillis(99)
+          + "ms, target="
+          + targetFrameTimeMillis
+          + "ms, thermalStatus="
+          + thermalStatus
+          + "}";
+    }
+  }
+}
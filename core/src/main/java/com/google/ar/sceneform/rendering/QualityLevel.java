@@ -0,0 +1,190 @@
+package com.google.ar.sceneform.rendering;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of rendering settings that trade visual quality for performance, applied as a whole by a
+ * {@link QualityGovernor}.
+ *
+ * <p>Levels are immutable and are created with {@link #builder()}. A governor orders its levels
+ * from the highest quality at index 0 to the lowest quality at the last index.
+ */
+public final class QualityLevel {
+  private final String name;
+  private final float resolutionScale;
+  private final int msaaSampleCount;
+  private final boolean isFxaaEnabled;
+  private final boolean isShadowingEnabled;
+  private final int maxFramesPerSeconds;
+  private final boolean isPlaneRenderingEnabled;
+
+  private QualityLevel(Builder builder) {
+    name = builder.name;
+    resolutionScale = builder.resolutionScale;
+    msaaSampleCount = builder.msaaSampleCount;
+    isFxaaEnabled = builder.isFxaaEnabled;
+    isShadowingEnabled = builder.isShadowingEnabled;
+    maxFramesPerSeconds = builder.maxFramesPerSeconds;
+    isPlaneRenderingEnabled = builder.isPlaneRenderingEnabled;
+  }
+
+  /** Returns the name of this level, used for logging and debugging. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the scale, between 0 and 1, applied to the resolution of each axis of the view. */
+  public float getResolutionScale() {
+    return resolutionScale;
+  }
+
+  /** Returns the number of MSAA samples. A value of 1 disables MSAA. */
+  public int getMsaaSampleCount() {
+    return msaaSampleCount;
+  }
+
+  /** Returns true if FXAA post-process anti-aliasing is enabled. */
+  public boolean isFxaaEnabled() {
+    return isFxaaEnabled;
+  }
+
+  /** Returns true if shadows are rendered. */
+  public boolean isShadowingEnabled() {
+    return isShadowingEnabled;
+  }
+
+  /** Returns the upper bound of the frame rate. */
+  public int getMaxFramesPerSeconds() {
+    return maxFramesPerSeconds;
+  }
+
+  /** Returns true if detected AR planes are rendered. */
+  public boolean isPlaneRenderingEnabled() {
+    return isPlaneRenderingEnabled;
+  }
+
+  @Override
+  public String toString() {
+    return "QualityLevel{"
+        + name
+        + ", resolutionScale="
+        + resolutionScale
+        + ", msaaSampleCount="
+        + msaaSampleCount
+        + ", fxaa="
+        + isFxaaEnabled
+        + ", shadows="
+        + isShadowingEnabled
+        + ", maxFramesPerSeconds="
+        + maxFramesPerSeconds
+        + ", planes="
+        + isPlaneRenderingEnabled
+        + "}";
+  }
+
+  /**
+   * Returns the levels used by default, from the highest to the lowest quality.
+   *
+   * <p>The highest level matches the default settings of the {@link Renderer}. Lower levels first
+   * reduce the resolution, then disable anti-aliasing and shadows, and finally halve the frame rate
+   * and hide the AR planes.
+   */
+  public static List<QualityLevel> createDefaultLevels() {
+    List<QualityLevel> levels = new ArrayList<>();
+    levels.add(builder().setName("high").build());
+    levels.add(builder().setName("medium").setResolutionScale(0.8f).build());
+    levels.add(
+        builder()
+            .setName("low")
+            .setResolutionScale(0.65f)
+            .setFxaaEnabled(false)
+            .setShadowingEnabled(false)
+            .build());
+    levels.add(
+        builder()
+            .setName("lowest")
+            .setResolutionScale(0.5f)
+            .setFxaaEnabled(false)
+            .setShadowingEnabled(false)
+            .setMaxFramesPerSeconds(30)
+            .setPlaneRenderingEnabled(false)
+            .build());
+    return Collections.unmodifiableList(levels);
+  }
+
+  /** Constructs a {@link QualityLevel} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Factory class for {@link QualityLevel} */
+  public static final class Builder {
+    private String name = "";
+    private float resolutionScale = 1.0f;
+    private int msaaSampleCount = 1;
+    private boolean isFxaaEnabled = true;
+    private boolean isShadowingEnabled = true;
+    private int maxFramesPerSeconds = 60;
+    private boolean isPlaneRenderingEnabled = true;
+
+    private Builder() {}
+
+    public Builder setName(String name) {
+      Preconditions.checkNotNull(name, "Parameter \"name\" was null.");
+      this.name = name;
+      return this;
+    }
+
+    /** Sets the scale, greater than 0 and at most 1, applied to each axis of the view. */
+    public Builder setResolutionScale(float resolutionScale) {
+      this.resolutionScale = resolutionScale;
+      return this;
+    }
+
+    /** Sets the number of MSAA samples, a value of 1 disables MSAA. */
+    public Builder setMsaaSampleCount(int msaaSampleCount) {
+      this.msaaSampleCount = msaaSampleCount;
+      return this;
+    }
+
+    public Builder setFxaaEnabled(boolean isFxaaEnabled) {
+      this.isFxaaEnabled = isFxaaEnabled;
+      return this;
+    }
+
+    public Builder setShadowingEnabled(boolean isShadowingEnabled) {
+      this.isShadowingEnabled = isShadowingEnabled;
+      return this;
+    }
+
+    public Builder setMaxFramesPerSeconds(int maxFramesPerSeconds) {
+      this.maxFramesPerSeconds = maxFramesPerSeconds;
+      return this;
+    }
+
+    public Builder setPlaneRenderingEnabled(boolean isPlaneRenderingEnabled) {
+      this.isPlaneRenderingEnabled = isPlaneRenderingEnabled;
+      return this;
+    }
+
+    /** Creates a new {@link QualityLevel} based on the parameters set previously */
+    public QualityLevel build() {
+      if (!(resolutionScale > 0.0f && resolutionScale <= 1.0f)) {
+        throw new IllegalArgumentException(
+            "Resolution scale must be greater than 0 and at most 1, was " + resolutionScale);
+      }
+      if (msaaSampleCount < 1) {
+        throw new IllegalArgumentException(
+            "MSAA sample count must be at least 1, was " + msaaSampleCount);
+      }
+      if (maxFramesPerSeconds < 1) {
+        throw new IllegalArgumentException(
+            "Max frames per seconds must be at least 1, was " + maxFramesPerSeconds);
+      }
+      return new QualityLevel(this);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.google.ar.sceneform.rendering;
+
+/**
+ * Decides which {@link QualityLevel} a {@link QualityGovernor} should use from the latest frame
+ * statistics.
+ *
+ * <p>Policies are only given the statistics and the timestamp in {@link
+ * QualityGovernor.FrameStats}, so they can be driven by a fake clock.
+ *
+ * @see DefaultQualityPolicy
+ */
+public interface QualityPolicy {
+  /**
+   * Returns the index of the level to use, where 0 is the highest quality and {@code levelCount -
+   * 1} is the lowest quality. Returning {@code currentLevel} keeps the current level.
+   */
+  int selectLevel(QualityGovernor.FrameStats stats, int currentLevel, int levelCount);
+
+  /**
+   * Called when the level changed, or was set explicitly, so that any state accumulated for the
+   * previous level can be discarded.
+   */
+  void reset();
+}
@@ -0,0 +1,29 @@
+package com.google.ar.sceneform.rendering;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts changes made to rendering resources that are shared between renderers, such as material
+ * parameters and external texture frames. A {@link Renderer} in on-demand mode compares the count
+ * with the one of its last rendered frame to know whether it has to render again.
+ *
+ * <p>Changes to the scene graph of a single renderer are tracked by {@link
+ * Renderer#requestRender()} instead.
+ *
+ * @hide
+ */
+public final class RenderInvalidation {
+  // Incremented from the UI thread and from SurfaceTexture frame listeners.
+  private static final AtomicInteger changeCount = new AtomicInteger();
+
+  private RenderInvalidation() {}
+
+  /** Notifies every renderer that a shared rendering resource has changed. */
+  public static void invalidate() {
+    changeCount.incrementAndGet();
+  }
+
+  static int getChangeCount() {
+    return changeCount.get();
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /**
@@ -40,6 +41,8 @@ public abstract class Renderable {
     // Data that is unique per-Renderable.
     private final ArrayList<Material> materialBindings = new ArrayList<>();
     private final ArrayList<String> materialNames = new ArrayList<>();
+    // The change id at which the materials bound to this renderable were last given its change id.
+    private int materialOwnerId = ChangeId.EMPTY_ID;
     private int renderPriority = RENDER_PRIORITY_DEFAULT;
     private boolean isShadowCaster = true;
     private boolean isShadowReceiver = true;
@@ -49,6 +52,8 @@ public abstract class Renderable {
     protected CollisionShape collisionShape;
 
     private final ChangeId changeId = new ChangeId();
+    // Incremented by each update from a definition, so that stale baked definitions are skipped.
+    private final AtomicLong definitionUpdateCount = new AtomicLong();
 
     public static final int RENDER_PRIORITY_DEFAULT = 4;
     public static final int RENDER_PRIORITY_FIRST = 0;
@@ -71,7 +76,12 @@ public abstract class Renderable {
         } else {
             renderableData = new RenderableInternalData();
         }
-        if (builder.definition != null) {
+        renderableData.setSource(builder.registryId);
+        if (builder.isDynamicMeshEnabled) {
+            renderableData.setDynamicMeshBuffers(new DynamicMeshBuffers());
+        }
+        // Definitions baked in the background are committed once the renderable is constructed.
+        if (builder.definition != null && !builder.isAsyncBakingEnabled) {
             updateFromDefinition(builder.definition);
         }
         asyncLoadEnabled = builder.asyncLoadEnabled;
@@ -257,6 +267,7 @@ public abstract class Renderable {
     public void updateFromDefinition(RenderableDefinition definition) {
         Preconditions.checkState(!definition.getSubmeshes().isEmpty());
 
+        definitionUpdateCount.incrementAndGet();
         changeId.update();
 
         definition.applyDefinitionToData(renderableData, materialBindings, materialNames);
@@ -264,6 +275,45 @@ public abstract class Renderable {
         collisionShape = new Box(renderableData.getSizeAabb(), renderableData.getCenterAabb());
     }
 
+    /**
+     * Updates the renderable from a definition like {@link #updateFromDefinition}, but packs the
+     * vertices and indices on a background thread. Only the filament buffers are updated on the
+     * main thread, within the frame budget of the GPU uploads.
+     *
+     * <p>The definition must not be modified until the returned future completes. When the
+     * renderable is updated again before then, this update is skipped.
+     *
+     * @return a future completing on the main thread once the update is applied or skipped
+     */
+    public CompletableFuture<Void> updateFromDefinitionAsync(RenderableDefinition definition) {
+        Preconditions.checkState(!definition.getSubmeshes().isEmpty());
+
+        long updateCount = definitionUpdateCount.incrementAndGet();
+        @Nullable DynamicMeshBuffers dynamicMeshBuffers = renderableData.getDynamicMeshBuffers();
+        return CompletableFuture.supplyAsync(
+                () -> definition.bake(dynamicMeshBuffers),
+                LoadScheduler.getInstance().getCpuExecutor())
+                .thenAcceptAsync(
+                        bakedDefinition -> {
+                            if (definitionUpdateCount.get() == updateCount) {
+                                commitBakedDefinition(bakedDefinition);
+                            } else {
+                                // Frees the slot of the dynamic mesh buffers baked into.
+                                bakedDefinition.release();
+                            }
+                        },
+                        GpuUploadQueue.getInstance().getExecutor(null));
+    }
+
+    /** Copies a definition baked on another thread to the filament buffers. */
+    void commitBakedDefinition(RenderableDefinition.BakedDefinition bakedDefinition) {
+        changeId.update();
+
+        bakedDefinition.commit(renderableData, materialBindings, materialNames);
+
+        collisionShape = new Box(renderableData.getSizeAabb(), renderableData.getCenterAabb());
+    }
+
     /**
      * Creates a new instance of this Renderable.
      *
@@ -297,6 +347,26 @@ public abstract class Renderable {
             // Allow the resource loader to finalize textures that have become ready.
             renderableData.resourceLoader.asyncUpdateLoad();
         }
+
+        // A material shared with other copies gets its own filament material instance when it is
+        // first changed, which the instances of this renderable then have to bind. The material
+        // updates the change id of this renderable when it does. Bindings only change along with
+        // the change id, so the materials are only registered after a change.
+        int id = changeId.get();
+        if (id != materialOwnerId) {
+            materialOwnerId = id;
+            for (int i = 0; i < materialBindings.size(); i++) {
+                materialBindings.get(i).addOwnerId(changeId);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the render bounds of this Renderable can be used to skip its per-frame work
+     * while it is outside of the camera frustum.
+     */
+    boolean hasCullingBounds() {
+        return true;
     }
 
     void attachToRenderer(Renderer renderer) {
@@ -353,16 +423,23 @@ public abstract class Renderable {
         @Nullable
         private Callable<InputStream> inputStreamCreator = null;
         @Nullable
+        private Map<String, String> connectionProperties = null;
+        private boolean isCachingEnabled = true;
+        @Nullable
         private RenderableDefinition definition = null;
         private boolean isGltf = false;
         private boolean isFilamentAsset = false;
         private boolean asyncLoadEnabled = false;
+        private boolean isAsyncBakingEnabled = false;
+        private boolean isDynamicMeshEnabled = false;
         @Nullable
         private LoadGltfListener loadGltfListener;
         @Nullable
         private Function<String, Uri> uriResolver = null;
         @Nullable
         private byte[] materialsBytes = null;
+        @Nullable
+        private LoadRequest loadRequest = null;
 
         private int animationFrameRate = DEFAULT_ANIMATION_FRAME_RATE;
 
@@ -376,6 +453,8 @@ public abstract class Renderable {
             Preconditions.checkNotNull(inputStreamCreator);
             this.sourceUri = null;
             this.inputStreamCreator = inputStreamCreator;
+            this.connectionProperties = null;
+            this.isCachingEnabled = true;
             this.context = context;
             return getSelf();
         }
@@ -385,11 +464,13 @@ public abstract class Renderable {
         }
 
         public B setSource(Context context, Uri sourceUri, boolean enableCaching) {
-            return null;
+            return setRemoteSourceHelper(context, sourceUri, enableCaching);
         }
 
         public B setSource(Context context, int resource) {
             this.inputStreamCreator = LoadHelper.fromResource(context, resource);
+            this.connectionProperties = null;
+            this.isCachingEnabled = true;
             this.context = context;
 
             Uri uri = LoadHelper.resourceToUri(context, resource);
@@ -427,6 +508,42 @@ public abstract class Renderable {
             return getSelf();
         }
 
+        /**
+         * Packs the vertices and indices of a {@link RenderableDefinition} source on a background
+         * thread, so that building large procedural meshes doesn't block the main thread. The
+         * returned future then completes on the main thread once the filament buffers are created.
+         * The definition must not be modified until it completes.
+         * Default is false, the renderable is built synchronously.
+         */
+        public B setAsyncBakingEnabled(boolean isAsyncBakingEnabled) {
+            this.isAsyncBakingEnabled = isAsyncBakingEnabled;
+            return getSelf();
+        }
+
+        /**
+         * Keeps preallocated, ring-buffered vertex and index buffers for a renderable updated from
+         * a {@link RenderableDefinition} every frame, e.g. a plane or a face mesh. The updates then
+         * reuse the filament buffers while their capacity suffices, and only upload the attributes
+         * and the ranges of vertices that changed.
+         * Default is false, each update packs new buffers and uploads all of them.
+         */
+        public B setDynamicMeshEnabled(boolean isDynamicMeshEnabled) {
+            this.isDynamicMeshEnabled = isDynamicMeshEnabled;
+            return getSelf();
+        }
+
+        /**
+         * Sets the request controlling the priority and the cancellation of the load.
+         *
+         * <p>The load is shared with the other builds of the same renderable and runs with the
+         * highest priority of their requests. Cancelling the request only cancels the future
+         * returned for this build, the load is cancelled once every build sharing it is cancelled.
+         */
+        public B setLoadRequest(@Nullable LoadRequest loadRequest) {
+            this.loadRequest = loadRequest;
+            return getSelf();
+        }
+
         /**
          * Sets the number of frames per seconds defined in the asset.
          *
@@ -466,21 +583,84 @@ public abstract class Renderable {
 
             // For static-analysis check.
             Object registryId = this.registryId;
-            if (registryId != null) {
-                // See if a renderable has already been registered by this id, if so re-use it.
-                ResourceRegistry<T> registry = getRenderableRegistry();
-                CompletableFuture<T> renderableFuture = registry.get(registryId);
-                if (renderableFuture != null) {
-                    return renderableFuture.thenApply(
-                            renderable -> getRenderableClass().cast(renderable.makeCopy()));
+            if (definition != null) {
+                if (registryId != null) {
+                    // See if a renderable has already been registered by this id, if so re-use it.
+                    CompletableFuture<T> renderableFuture = getRenderableRegistry().get(registryId);
+                    if (renderableFuture != null) {
+                        return renderableFuture.thenApply(
+                                renderable -> getRenderableClass().cast(renderable.makeCopy()));
+                    }
                 }
+                if (isAsyncBakingEnabled) {
+                    return bakeDefinition(definition);
+                }
+                return CompletableFuture.completedFuture(makeRenderable());
             }
 
-            T renderable = makeRenderable();
+            // The load has a request of its own, shared by the builds of the same renderable.
+            @Nullable LoadRequest loadRequest = this.loadRequest;
+            CompletableFuture<T> result;
+            @Nullable LoadRequest sharedRequest;
+            if (registryId != null) {
+                // Re-use a renderable registered by this id. Concurrent builds of the same id
+                // share a single load.
+                LoadRequest[] startedRequest = {null};
+                result = getRenderableRegistry().getOrLoad(
+                        registryId,
+                        () -> {
+                            startedRequest[0] = newSharedRequest();
+                            return load(registryId, startedRequest[0]);
+                        });
+                sharedRequest = startedRequest[0] != null
+                        ? startedRequest[0]
+                        : LoadScheduler.getInstance().getPendingLoad(result);
+            } else {
+                sharedRequest = newSharedRequest();
+                result = load(null, sharedRequest);
+            }
 
-            if (definition != null) {
-                return CompletableFuture.completedFuture(renderable);
+            CompletableFuture<T> copyFuture = result.thenApply(
+                    resultRenderable -> getRenderableClass().cast(resultRenderable.makeCopy()));
+            if (sharedRequest != null) {
+                sharedRequest.addConsumer(copyFuture, loadRequest);
+            } else if (loadRequest != null) {
+                // The renderable is already loaded.
+                loadRequest.track(copyFuture);
             }
+            return copyFuture;
+        }
+
+        /** Returns the request of a load, which follows the requests of the builds sharing it. */
+        private LoadRequest newSharedRequest() {
+            return new LoadRequest(
+                    loadRequest != null ? loadRequest.getPriority() : LoadRequest.PRIORITY_DEFAULT);
+        }
+
+        /** Bakes the definition on a background thread, then commits it to a new renderable. */
+        private CompletableFuture<T> bakeDefinition(RenderableDefinition definition) {
+            T renderable = makeRenderable();
+            LoadRequest bakeRequest = newSharedRequest();
+            CompletableFuture<RenderableDefinition.BakedDefinition> bakedFuture =
+                    LoadScheduler.getInstance().supplyCpuAsync(bakeRequest, definition::bake);
+            CompletableFuture<T> result =
+                    bakeRequest.track(bakedFuture.thenApplyAsync(
+                            bakedDefinition -> {
+                                renderable.commitBakedDefinition(bakedDefinition);
+                                return renderable;
+                            },
+                            GpuUploadQueue.getInstance().getExecutor(bakeRequest)));
+            bakeRequest.addConsumer(result, loadRequest);
+            FutureHelper.logOnException(
+                    getRenderableClass().getSimpleName(),
+                    result,
+                    "Unable to bake Renderable definition");
+            return result;
+        }
+
+        /** Starts loading the renderable from its source. */
+        private CompletableFuture<T> load(@Nullable Object registryId, LoadRequest loadRequest) {
+            T renderable = makeRenderable();
 
             // For static-analysis check.
             Callable<InputStream> inputStreamCreator = this.inputStreamCreator;
@@ -497,7 +677,7 @@ public abstract class Renderable {
             CompletableFuture<T> result = null;
             if (isFilamentAsset) {
                 if (context != null) {
-                    result = loadRenderableFromFilamentGltf(context, renderable);
+                    result = loadRenderableFromFilamentGltf(context, renderable, loadRequest);
                 } else {
                     throw new AssertionError("Gltf Renderable.Builder must have a valid context.");
                 }
@@ -509,21 +689,16 @@ public abstract class Renderable {
                 }
             } else {
                 LoadRenderableFromSfbTask<T> loader =
-                        new LoadRenderableFromSfbTask<>(renderable, sourceUri);
+                        new LoadRenderableFromSfbTask<>(renderable, sourceUri, loadRequest);
                 result = loader.downloadAndProcessRenderable(inputStreamCreator);
             }
 
-            if (registryId != null) {
-                ResourceRegistry<T> registry = getRenderableRegistry();
-                registry.register(registryId, result);
-            }
-
             FutureHelper.logOnException(
                     getRenderableClass().getSimpleName(),
                     result,
                     "Unable to load Renderable registryId='" + registryId + "'");
-            return result.thenApply(
-                    resultRenderable -> getRenderableClass().cast(resultRenderable.makeCopy()));
+            LoadScheduler.getInstance().registerLoad(result, loadRequest);
+            return result;
         }
 
         protected void checkPreconditions() {
@@ -553,6 +728,9 @@ public abstract class Renderable {
             this.inputStreamCreator =
                     LoadHelper.fromUri(
                             context, Preconditions.checkNotNull(this.sourceUri), connectionProperties);
+            // The model cache sends the same properties and is skipped when caching is disabled.
+            this.connectionProperties = connectionProperties;
+            this.isCachingEnabled = enableCaching;
             return getSelf();
         }
 
@@ -562,10 +740,16 @@ public abstract class Renderable {
         }
 
         private CompletableFuture<T> loadRenderableFromFilamentGltf(
-                @NonNull Context context, T renderable) {
+                @NonNull Context context, T renderable, LoadRequest loadRequest) {
             LoadRenderableFromFilamentGltfTask<T> loader =
                     new LoadRenderableFromFilamentGltfTask<>(
-                            renderable, context, Preconditions.checkNotNull(sourceUri), uriResolver);
+                            renderable,
+                            context,
+                            Preconditions.checkNotNull(sourceUri),
+                            uriResolver,
+                            connectionProperties,
+                            isCachingEnabled,
+                            loadRequest);
             return loader.downloadAndProcessRenderable(Preconditions.checkNotNull(inputStreamCreator));
         }
 
@@ -12,11 +12,19 @@ import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.Vertex.UvCoordinate;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.Preconditions;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents the visual information of a {@link Renderable}. Can be used to construct and modify
@@ -26,8 +34,6 @@ import java.util.List;
  * @see ViewRenderable.Builder
  */
 public class RenderableDefinition {
-  private static final Matrix scratchMatrix = new Matrix();
-
   /**
    * Represents a Submesh for a RenderableDefinition. Each RenderableDefinition may have multiple
    * Submeshes.
@@ -41,6 +47,22 @@ public class RenderableDefinition {
       this.triangleIndices = triangleIndices;
     }
 
+    /**
+     * Sets the triangle indices from the position to the limit of a buffer. The buffer is not
+     * copied, its content is read each time the definition is applied.
+     */
+    public void setTriangleIndices(IntBuffer triangleIndices) {
+      this.triangleIndices = new IndexBufferList(triangleIndices);
+    }
+
+    /**
+     * Sets the triangle indices from the position to the limit of a buffer of unsigned 16-bit
+     * indices. The buffer is not copied, its content is read each time the definition is applied.
+     */
+    public void setTriangleIndices(ShortBuffer triangleIndices) {
+      this.triangleIndices = new IndexBufferList(triangleIndices);
+    }
+
     public List<Integer> getTriangleIndices() {
       return triangleIndices;
     }
@@ -83,6 +105,18 @@ public class RenderableDefinition {
         return this;
       }
 
+      /** @see Submesh#setTriangleIndices(IntBuffer) */
+      public Builder setTriangleIndices(IntBuffer triangleIndices) {
+        this.triangleIndices = new IndexBufferList(triangleIndices);
+        return this;
+      }
+
+      /** @see Submesh#setTriangleIndices(ShortBuffer) */
+      public Builder setTriangleIndices(ShortBuffer triangleIndices) {
+        this.triangleIndices = new IndexBufferList(triangleIndices);
+        return this;
+      }
+
       public Builder setName(String name) {
         this.name = name;
         return this;
@@ -99,23 +133,127 @@ public class RenderableDefinition {
     }
   }
 
+  /**
+   * Vertex attributes that can be stored with a compact encoding instead of 32-bit floats, which
+   * cuts the GPU memory and the upload bandwidth of large meshes at the cost of precision.
+   */
+  public enum CompactAttribute {
+    /**
+     * Positions as half floats. Their precision decreases with the distance to the origin of the
+     * renderable: under 1 mm up to 2 m, under 1 cm up to 16 m, 6 cm up to 128 m and 50 cm up to
+     * 1024 m. Positions of a definition with a coordinate beyond the 65504 m range of half floats
+     * are stored as floats.
+     */
+    POSITION,
+    /** Tangent frames computed from the normals as normalized 16-bit integers. */
+    NORMAL,
+    /** Uv coordinates as normalized unsigned 16-bit integers, clamped to [0, 1]. */
+    UV,
+    /** Colors as normalized unsigned bytes, clamped to [0, 1]. */
+    COLOR
+  }
+
   private List<Vertex> vertices;
   private List<Submesh> submeshes;
+  private EnumSet<CompactAttribute> compactAttributes = EnumSet.noneOf(CompactAttribute.class);
+  // The attributes of the vertices when they are given as arrays of floats instead of vertices.
+  @Nullable private FloatAttribute positions;
+  @Nullable private FloatAttribute normals;
+  @Nullable private FloatAttribute uvs;
+  @Nullable private FloatAttribute colors;
 
   private static final int BYTES_PER_FLOAT = Float.SIZE / 8;
+  private static final int BYTES_PER_INT = Integer.SIZE / 8;
+  private static final int BYTES_PER_SHORT = Short.SIZE / 8;
   private static final int POSITION_SIZE = 3; // x, y, z
+  private static final int NORMAL_SIZE = 3; // x, y, z
   private static final int UV_SIZE = 2;
   private static final int TANGENTS_SIZE = 4; // quaternion
   private static final int COLOR_SIZE = 4; // RGBA
+  // Largest number of vertices that 16-bit indices can address. The index 0xFFFF is left out, it
+  // restarts the primitive on GLES 3 where the fixed primitive restart index is enabled.
+  private static final int MAX_USHORT_VERTEX_COUNT = 0xFFFF;
 
+  /** Sets the vertices, replacing the attributes set as arrays of floats. */
   public void setVertices(List<Vertex> vertices) {
     this.vertices = vertices;
+    positions = null;
+    normals = null;
+    uvs = null;
+    colors = null;
   }
 
   List<Vertex> getVertices() {
     return vertices;
   }
 
+  /**
+   * Sets the positions of the vertices as packed x, y, z floats, replacing the list of {@link
+   * Vertex}. The number of vertices is given by the positions.
+   */
+  public void setPositions(float[] positions) {
+    Preconditions.checkNotNull(positions, "Parameter \"positions\" was null.");
+    setPositions(FloatBuffer.wrap(positions), POSITION_SIZE);
+  }
+
+  /**
+   * Sets the positions of the vertices as x, y, z floats from the position of a buffer, replacing
+   * the list of {@link Vertex}. The buffer is not copied, its content is read each time the
+   * definition is applied. Direct buffers in native order without padding are given to filament
+   * as they are.
+   *
+   * @param stride the number of floats from a vertex to the next one, at least 3
+   */
+  public void setPositions(FloatBuffer positions, int stride) {
+    this.positions = new FloatAttribute(positions, POSITION_SIZE, stride);
+    vertices = Collections.emptyList();
+  }
+
+  /** Sets the normals of the vertices as packed x, y, z floats. */
+  public void setNormals(@Nullable float[] normals) {
+    setNormals(normals != null ? FloatBuffer.wrap(normals) : null, NORMAL_SIZE);
+  }
+
+  /**
+   * Sets the normals of the vertices as x, y, z floats from the position of a buffer, or removes
+   * them if null.
+   *
+   * @param stride the number of floats from a vertex to the next one, at least 3
+   */
+  public void setNormals(@Nullable FloatBuffer normals, int stride) {
+    this.normals = normals != null ? new FloatAttribute(normals, NORMAL_SIZE, stride) : null;
+  }
+
+  /** Sets the uv coordinates of the vertices as packed u, v floats. */
+  public void setUvs(@Nullable float[] uvs) {
+    setUvs(uvs != null ? FloatBuffer.wrap(uvs) : null, UV_SIZE);
+  }
+
+  /**
+   * Sets the uv coordinates of the vertices as u, v floats from the position of a buffer, or
+   * removes them if null.
+   *
+   * @param stride the number of floats from a vertex to the next one, at least 2
+   */
+  public void setUvs(@Nullable FloatBuffer uvs, int stride) {
+    this.uvs = uvs != null ? new FloatAttribute(uvs, UV_SIZE, stride) : null;
+  }
+
+  /** Sets the colors of the vertices as packed r, g, b, a floats. */
+  public void setColors(@Nullable float[] colors) {
+    setColors(colors != null ? FloatBuffer.wrap(colors) : null, COLOR_SIZE);
+  }
+
+  /**
+   * Sets the colors of the vertices as r, g, b, a floats from the position of a buffer, or removes
+   * them if null.
+   *
+   * @param stride the number of floats from a vertex to the next one, at least 4
+   */
+  public void setColors(@Nullable FloatBuffer colors, int stride) {
+    this.colors = colors != null ? new FloatAttribute(colors, COLOR_SIZE, stride) : null;
+  }
+
   public void setSubmeshes(List<Submesh> submeshes) {
     this.submeshes = submeshes;
   }
@@ -124,6 +262,24 @@ public class RenderableDefinition {
     return submeshes;
   }
 
+  /**
+   * Sets the attributes stored with a compact encoding, see {@link CompactAttribute}. None by
+   * default, all the attributes are stored as floats.
+   *
+   * <p>Compact uv coordinates and colors are clamped to [0, 1]: the uv coordinates of a tiled
+   * texture, which repeat beyond 1, or HDR colors must be stored as floats.
+   */
+  public void setCompactAttributes(Set<CompactAttribute> compactAttributes) {
+    Preconditions.checkNotNull(compactAttributes, "Parameter \"compactAttributes\" was null.");
+    this.compactAttributes = EnumSet.noneOf(CompactAttribute.class);
+    this.compactAttributes.addAll(compactAttributes);
+  }
+
+  /**
+   * Applies the definition to the renderable data. Must be called on the main thread, use {@link
+   * #bake(DynamicMeshBuffers)} and {@link BakedDefinition#commit} to pack the vertices on another
+   * thread.
+   */
   void applyDefinitionToData(
       // TODO: Split into RenderableInternalSfbData & RenderableInternalDefinitionData
       IRenderableInternalData data,
@@ -131,85 +287,134 @@ public class RenderableDefinition {
       ArrayList<String> materialNames) {
     AndroidPreconditions.checkUiThread();
 
-    applyDefinitionToDataIndexBuffer(data);
-    applyDefinitionToDataVertexBuffer(data);
+    bake(data.getDynamicMeshBuffers()).commit(data, materialBindings, materialNames);
+  }
 
-    // Update/Add mesh data.
-    int indexStart = 0;
-    materialBindings.clear();
-    materialNames.clear();
-    for (int i = 0; i < submeshes.size(); i++) {
-      Submesh submesh = submeshes.get(i);
+  /**
+   * Packs the vertices and indices of the definition into direct buffers and computes its bounds,
+   * without creating any filament resource. Can be called from any thread, as long as the
+   * definition and its vertices are not modified meanwhile.
+   */
+  BakedDefinition bake() {
+    return bake(null);
+  }
 
-      RenderableInternalData.MeshData meshData;
-      if (i < data.getMeshes().size()) {
-        meshData = data.getMeshes().get(i);
-      } else {
-        meshData = new RenderableInternalData.MeshData();
-        data.getMeshes().add(meshData);
+  /**
+   * Packs the definition like {@link #bake()}, into a free slot of the buffers of a dynamic mesh if
+   * it is not null. The baked definition owns the slot until it is committed or released.
+   */
+  BakedDefinition bake(@Nullable DynamicMeshBuffers dynamicMeshBuffers) {
+    @Nullable
+    DynamicMeshBuffers.Slot slot =
+        dynamicMeshBuffers != null ? dynamicMeshBuffers.acquireSlot() : null;
+    try {
+      return bake(dynamicMeshBuffers, slot);
+    } catch (RuntimeException e) {
+      if (slot != null) {
+        dynamicMeshBuffers.releaseSlot(slot);
       }
-
-      meshData.indexStart = indexStart;
-      meshData.indexEnd = indexStart + submesh.getTriangleIndices().size();
-      indexStart = meshData.indexEnd;
-      materialBindings.add(submesh.getMaterial());
-      final String name = submesh.getName();
-      materialNames.add(name != null ? name : "");
-    }
-
-    // Remove old mesh data.
-    while (data.getMeshes().size() > submeshes.size()) {
-      data.getMeshes().remove(data.getMeshes().size() - 1);
+      throw e;
     }
   }
 
-  private void applyDefinitionToDataIndexBuffer(IRenderableInternalData data) {
+  private BakedDefinition bake(
+      @Nullable DynamicMeshBuffers dynamicMeshBuffers, @Nullable DynamicMeshBuffers.Slot slot) {
+    BakedVertices bakedVertices =
+        positions != null ? bakeAttributes(positions, slot) : bakeVertices(slot);
+    int numVertices = bakedVertices.numVertices;
+
     // Determine how many indices there are.
     int numIndices = 0;
     for (int i = 0; i < submeshes.size(); i++) {
-      Submesh submesh = submeshes.get(i);
-      numIndices += submesh.getTriangleIndices().size();
+      numIndices += submeshes.get(i).getTriangleIndices().size();
     }
 
-    // Create the raw index buffer if needed.
-    IntBuffer rawIndexBuffer = data.getRawIndexBuffer();
-    if (rawIndexBuffer == null || rawIndexBuffer.capacity() < numIndices) {
-      rawIndexBuffer = IntBuffer.allocate(numIndices);
-      data.setRawIndexBuffer(rawIndexBuffer);
-    } else {
-      rawIndexBuffer.rewind();
-    }
+    // 16-bit indices take half the memory, they are used whenever they can address every vertex.
+    IndexType indexType =
+        numVertices <= MAX_USHORT_VERTEX_COUNT ? IndexType.USHORT : IndexType.UINT;
+    int indexByteCount = numIndices * getIndexSize(indexType);
+    ByteBuffer indexBytes =
+        slot != null
+            ? slot.prepareIndexBytes(indexByteCount)
+            : ByteBuffer.allocateDirect(indexByteCount).order(ByteOrder.nativeOrder());
+    @Nullable
+    ShortBuffer shortIndexBuffer =
+        indexType == IndexType.USHORT ? indexBytes.asShortBuffer() : null;
+    @Nullable
+    IntBuffer intIndexBuffer = indexType == IndexType.UINT ? indexBytes.asIntBuffer() : null;
 
-    // Fill the index buffer with the data.
+    // Fill the index buffer and the ranges of the submeshes.
+    int[] submeshIndexCounts = new int[submeshes.size()];
+    ArrayList<Material> materials = new ArrayList<>(submeshes.size());
+    ArrayList<String> materialNames = new ArrayList<>(submeshes.size());
     for (int i = 0; i < submeshes.size(); i++) {
       Submesh submesh = submeshes.get(i);
       List<Integer> triangleIndices = submesh.getTriangleIndices();
       for (int j = 0; j < triangleIndices.size(); j++) {
-        rawIndexBuffer.put(triangleIndices.get(j));
+        int index = getTriangleIndex(triangleIndices, j);
+        if (index < 0 || index >= numVertices) {
+          throw new IllegalArgumentException(
+              "Triangle index " + index + " is out of range of the " + numVertices + " vertices.");
+        }
+
+        if (shortIndexBuffer != null) {
+          shortIndexBuffer.put((short) index);
+        } else {
+          intIndexBuffer.put(index);
+        }
       }
+      submeshIndexCounts[i] = triangleIndices.size();
+      materials.add(submesh.getMaterial());
+      final String name = submesh.getName();
+      materialNames.add(name != null ? name : "");
     }
-    rawIndexBuffer.rewind();
 
-    // Create the filament index buffer if needed.
-    IndexBuffer indexBuffer = data.getIndexBuffer();
-    IEngine engine = EngineInstance.getEngine();
-    if (indexBuffer == null || indexBuffer.getIndexCount() < numIndices) {
-      if (indexBuffer != null) {
-        engine.destroyIndexBuffer(indexBuffer);
+    Buffer indexBuffer = shortIndexBuffer != null ? shortIndexBuffer : intIndexBuffer;
+    indexBuffer.rewind();
+
+    // Encode the attributes stored compactly from their packed floats.
+    EnumMap<VertexAttribute, ByteBuffer> compactBuffers = new EnumMap<>(VertexAttribute.class);
+    for (CompactAttribute compactAttribute : compactAttributes) {
+      VertexAttribute attribute = toVertexAttribute(compactAttribute);
+      @Nullable FloatBuffer floatBuffer = bakedVertices.getFloatBuffer(attribute);
+      if (floatBuffer == null) {
+        continue;
+      }
+      if (attribute == VertexAttribute.POSITION
+          && !CompactVertexEncoder.canEncodePositions(
+              bakedVertices.centerAabb, bakedVertices.extentsAabb)) {
+        // Out of the range of half floats, the positions are kept as floats.
+        continue;
       }
 
-      indexBuffer =
-          new IndexBuffer.Builder()
-              .indexCount(numIndices)
-              .bufferType(IndexType.UINT)
-              .build(engine.getFilamentEngine());
-      data.setIndexBuffer(indexBuffer);
+      int byteCount = numVertices * CompactVertexEncoder.getBytesPerVertex(attribute);
+      ByteBuffer compactBuffer =
+          slot != null
+              ? slot.prepareCompactBuffer(attribute, byteCount)
+              : ByteBuffer.allocateDirect(byteCount).order(ByteOrder.nativeOrder());
+      CompactVertexEncoder.encode(attribute, floatBuffer, numVertices, compactBuffer);
+      compactBuffer.rewind();
+      compactBuffers.put(attribute, compactBuffer);
+    }
+    if (slot != null) {
+      slot.setContents(bakedVertices.attributes, numVertices, numIndices);
     }
 
-    indexBuffer.setBuffer(engine.getFilamentEngine(), rawIndexBuffer, 0, numIndices);
+    return new BakedDefinition(
+        bakedVertices,
+        compactBuffers,
+        dynamicMeshBuffers,
+        slot,
+        numIndices,
+        indexBuffer,
+        indexType,
+        submeshIndexCounts,
+        materials,
+        materialNames);
   }
 
-  private void applyDefinitionToDataVertexBuffer(IRenderableInternalData data) {
+  /** Packs the attributes of the list of {@link Vertex}. */
+  private BakedVertices bakeVertices(@Nullable DynamicMeshBuffers.Slot slot) {
     if (vertices.isEmpty()) {
       throw new IllegalArgumentException("RenderableDescription must have at least one vertex.");
     }
@@ -218,100 +423,59 @@ public class RenderableDefinition {
     Vertex firstVertex = vertices.get(0);
 
     // Determine which attributes this VertexBuffer needs.
-    EnumSet<VertexAttribute> descriptionAttributes = EnumSet.of(VertexAttribute.POSITION);
+    EnumSet<VertexAttribute> attributes = EnumSet.of(VertexAttribute.POSITION);
     if (firstVertex.getNormal() != null) {
-      descriptionAttributes.add(VertexAttribute.TANGENTS);
+      attributes.add(VertexAttribute.TANGENTS);
     }
     if (firstVertex.getUvCoordinate() != null) {
-      descriptionAttributes.add(VertexAttribute.UV0);
+      attributes.add(VertexAttribute.UV0);
     }
     if (firstVertex.getColor() != null) {
-      descriptionAttributes.add(VertexAttribute.COLOR);
-    }
-
-    // Determine if the filament vertex buffer needs to be re-created.
-    VertexBuffer vertexBuffer = data.getVertexBuffer();
-    boolean createVertexBuffer = true;
-    if (vertexBuffer != null) {
-      EnumSet<VertexAttribute> oldAttributes = EnumSet.of(VertexAttribute.POSITION);
-      if (data.getRawTangentsBuffer() != null) {
-        oldAttributes.add(VertexAttribute.TANGENTS);
-      }
-      if (data.getRawUvBuffer() != null) {
-        oldAttributes.add(VertexAttribute.UV0);
-      }
-      if (data.getRawColorBuffer() != null) {
-        oldAttributes.add(VertexAttribute.COLOR);
-      }
-
-      createVertexBuffer =
-          !oldAttributes.equals(descriptionAttributes)
-              || vertexBuffer.getVertexCount() < numVertices;
-
-      if (createVertexBuffer) {
-        EngineInstance.getEngine().destroyVertexBuffer(vertexBuffer);
-      }
-    }
-
-    if (createVertexBuffer) {
-      vertexBuffer = createVertexBuffer(numVertices, descriptionAttributes);
-      data.setVertexBuffer(vertexBuffer);
-    }
-
-    // Create position Buffer if needed.
-    FloatBuffer positionBuffer = data.getRawPositionBuffer();
-    if (positionBuffer == null || positionBuffer.capacity() < numVertices * POSITION_SIZE) {
-      positionBuffer = FloatBuffer.allocate(numVertices * POSITION_SIZE);
-      data.setRawPositionBuffer(positionBuffer);
-    } else {
-      positionBuffer.rewind();
-    }
-
-    // Create tangents Buffer if needed.
-    FloatBuffer tangentsBuffer = data.getRawTangentsBuffer();
-    if (descriptionAttributes.contains(VertexAttribute.TANGENTS)
-        && (tangentsBuffer == null || tangentsBuffer.capacity() < numVertices * TANGENTS_SIZE)) {
-      tangentsBuffer = FloatBuffer.allocate(numVertices * TANGENTS_SIZE);
-      data.setRawTangentsBuffer(tangentsBuffer);
-    } else if (tangentsBuffer != null) {
-      tangentsBuffer.rewind();
+      attributes.add(VertexAttribute.COLOR);
     }
 
-    // Create uv Buffer if needed.
-    FloatBuffer uvBuffer = data.getRawUvBuffer();
-    if (descriptionAttributes.contains(VertexAttribute.UV0)
-        && (uvBuffer == null || uvBuffer.capacity() < numVertices * UV_SIZE)) {
-      uvBuffer = FloatBuffer.allocate(numVertices * UV_SIZE);
-      data.setRawUvBuffer(uvBuffer);
-    } else if (uvBuffer != null) {
-      uvBuffer.rewind();
-    }
-
-    // Create color Buffer if needed.
-    FloatBuffer colorBuffer = data.getRawColorBuffer();
-    if (descriptionAttributes.contains(VertexAttribute.COLOR)
-        && (colorBuffer == null || colorBuffer.capacity() < numVertices * COLOR_SIZE)) {
-      colorBuffer = FloatBuffer.allocate(numVertices * COLOR_SIZE);
-      data.setRawColorBuffer(colorBuffer);
-    } else if (colorBuffer != null) {
-      colorBuffer.rewind();
-    }
+    FloatBuffer positionBuffer =
+        allocateFloatBuffer(slot, VertexAttribute.POSITION, numVertices * POSITION_SIZE);
+    @Nullable
+    FloatBuffer tangentsBuffer =
+        attributes.contains(VertexAttribute.TANGENTS)
+            ? allocateFloatBuffer(slot, VertexAttribute.TANGENTS, numVertices * TANGENTS_SIZE)
+            : null;
+    @Nullable
+    FloatBuffer uvBuffer =
+        attributes.contains(VertexAttribute.UV0)
+            ? allocateFloatBuffer(slot, VertexAttribute.UV0, numVertices * UV_SIZE)
+            : null;
+    @Nullable
+    FloatBuffer colorBuffer =
+        attributes.contains(VertexAttribute.COLOR)
+            ? allocateFloatBuffer(slot, VertexAttribute.COLOR, numVertices * COLOR_SIZE)
+            : null;
 
     // Variables for calculating the Aabb of the renderable.
-    Vector3 minAabb = new Vector3();
-    Vector3 maxAabb = new Vector3();
     Vector3 firstPosition = firstVertex.getPosition();
-    minAabb.set(firstPosition);
-    maxAabb.set(firstPosition);
-
-    // Update the raw buffers and calculate the Aabb in one pass through the vertices.
-    for (int i = 0; i < vertices.size(); i++) {
+    float minX = firstPosition.x;
+    float minY = firstPosition.y;
+    float minZ = firstPosition.z;
+    float maxX = minX;
+    float maxY = minY;
+    float maxZ = minZ;
+    // Each bake has its own scratch objects, so that definitions can be baked concurrently.
+    Matrix scratchMatrix = new Matrix();
+    Quaternion scratchQuaternion = new Quaternion();
+
+    // Fill the buffers and calculate the Aabb in one pass through the vertices.
+    for (int i = 0; i < numVertices; i++) {
       Vertex vertex = vertices.get(i);
 
       // Aabb.
       Vector3 position = vertex.getPosition();
-      minAabb.set(Vector3.min(minAabb, position));
-      maxAabb.set(Vector3.max(maxAabb, position));
+      minX = Math.min(minX, position.x);
+      minY = Math.min(minY, position.y);
+      minZ = Math.min(minZ, position.z);
+      maxX = Math.max(maxX, position.x);
+      maxY = Math.max(maxY, position.y);
+      maxZ = Math.max(maxZ, position.z);
 
       // Position attribute.
       addVector3ToBuffer(position, positionBuffer);
@@ -325,8 +489,8 @@ public class RenderableDefinition {
                   + "RenderableDescription has a normal, all vertices must have one.");
         }
 
-        Quaternion tangent = normalToTangent(normal);
-        addQuaternionToBuffer(tangent, tangentsBuffer);
+        normalToTangent(normal.x, normal.y, normal.z, scratchMatrix, scratchQuaternion);
+        addQuaternionToBuffer(scratchQuaternion, tangentsBuffer);
       }
 
       // Uv attribute.
@@ -354,104 +518,698 @@ public class RenderableDefinition {
       }
     }
 
-    // Set the Aabb in the renderable data.
-    Vector3 extentsAabb = Vector3.subtract(maxAabb, minAabb).scaled(0.5f);
-    Vector3 centerAabb = Vector3.add(minAabb, extentsAabb);
-    data.setExtentsAabb(extentsAabb);
-    data.setCenterAabb(centerAabb);
-
-    if (vertexBuffer == null) {
-      throw new AssertionError("VertexBuffer is null.");
-    }
-
-    IEngine engine = EngineInstance.getEngine();
     positionBuffer.rewind();
-    int bufferIndex = 0;
-    vertexBuffer.setBufferAt(
-        engine.getFilamentEngine(), bufferIndex, positionBuffer, 0, numVertices * POSITION_SIZE);
-
     if (tangentsBuffer != null) {
       tangentsBuffer.rewind();
-      bufferIndex++;
-      vertexBuffer.setBufferAt(
-          engine.getFilamentEngine(), bufferIndex, tangentsBuffer, 0, numVertices * TANGENTS_SIZE);
     }
-
     if (uvBuffer != null) {
       uvBuffer.rewind();
-      bufferIndex++;
-      vertexBuffer.setBufferAt(
-          engine.getFilamentEngine(), bufferIndex, uvBuffer, 0, numVertices * UV_SIZE);
     }
-
     if (colorBuffer != null) {
       colorBuffer.rewind();
-      bufferIndex++;
+    }
+
+    return new BakedVertices(
+        attributes,
+        numVertices,
+        positionBuffer,
+        tangentsBuffer,
+        uvBuffer,
+        colorBuffer,
+        new Vector3(minX, minY, minZ),
+        new Vector3(maxX, maxY, maxZ));
+  }
+
+  /**
+   * Packs the attributes set as arrays of floats, without copying the ones already packed unless
+   * they are baked into a slot.
+   */
+  private BakedVertices bakeAttributes(
+      FloatAttribute positions, @Nullable DynamicMeshBuffers.Slot slot) {
+    int numVertices = positions.getVertexCount();
+    if (numVertices == 0) {
+      throw new IllegalArgumentException("RenderableDescription must have at least one vertex.");
+    }
+    checkVertexCount(normals, numVertices, "normals");
+    checkVertexCount(uvs, numVertices, "uvs");
+    checkVertexCount(colors, numVertices, "colors");
+
+    EnumSet<VertexAttribute> attributes = EnumSet.of(VertexAttribute.POSITION);
+    if (normals != null) {
+      attributes.add(VertexAttribute.TANGENTS);
+    }
+    if (uvs != null) {
+      attributes.add(VertexAttribute.UV0);
+    }
+    if (colors != null) {
+      attributes.add(VertexAttribute.COLOR);
+    }
+
+    // Calculate the Aabb of the renderable.
+    float minX = positions.get(0, 0);
+    float minY = positions.get(0, 1);
+    float minZ = positions.get(0, 2);
+    float maxX = minX;
+    float maxY = minY;
+    float maxZ = minZ;
+    for (int i = 1; i < numVertices; i++) {
+      float x = positions.get(i, 0);
+      float y = positions.get(i, 1);
+      float z = positions.get(i, 2);
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      minZ = Math.min(minZ, z);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+      maxZ = Math.max(maxZ, z);
+    }
+
+    // Filament takes the orientation of the tangent frame, it is computed from the normals.
+    @Nullable FloatBuffer tangentsBuffer = null;
+    if (normals != null) {
+      tangentsBuffer =
+          allocateFloatBuffer(slot, VertexAttribute.TANGENTS, numVertices * TANGENTS_SIZE);
+      Matrix scratchMatrix = new Matrix();
+      Quaternion scratchQuaternion = new Quaternion();
+      for (int i = 0; i < numVertices; i++) {
+        normalToTangent(
+            normals.get(i, 0),
+            normals.get(i, 1),
+            normals.get(i, 2),
+            scratchMatrix,
+            scratchQuaternion);
+        addQuaternionToBuffer(scratchQuaternion, tangentsBuffer);
+      }
+      tangentsBuffer.rewind();
+    }
+
+    return new BakedVertices(
+        attributes,
+        numVertices,
+        positions.pack(numVertices, slot, VertexAttribute.POSITION),
+        tangentsBuffer,
+        uvs != null ? uvs.pack(numVertices, slot, VertexAttribute.UV0) : null,
+        colors != null ? colors.pack(numVertices, slot, VertexAttribute.COLOR) : null,
+        new Vector3(minX, minY, minZ),
+        new Vector3(maxX, maxY, maxZ));
+  }
+
+  private static void checkVertexCount(
+      @Nullable FloatAttribute attribute, int numVertices, String name) {
+    if (attribute != null && attribute.getVertexCount() < numVertices) {
+      throw new IllegalArgumentException(
+          "Missing " + name + ": There must be as many " + name + " as positions.");
+    }
+  }
+
+  private static int getTriangleIndex(List<Integer> triangleIndices, int index) {
+    if (triangleIndices instanceof IndexBufferList) {
+      return ((IndexBufferList) triangleIndices).getIndex(index);
+    }
+    return triangleIndices.get(index);
+  }
+
+  /** The vertex buffers packed by {@link #bake(DynamicMeshBuffers)}, with their bounds. */
+  private static final class BakedVertices {
+    private final EnumSet<VertexAttribute> attributes;
+    private final int numVertices;
+    private final FloatBuffer positionBuffer;
+    @Nullable private final FloatBuffer tangentsBuffer;
+    @Nullable private final FloatBuffer uvBuffer;
+    @Nullable private final FloatBuffer colorBuffer;
+    private final Vector3 centerAabb;
+    private final Vector3 extentsAabb;
+
+    BakedVertices(
+        EnumSet<VertexAttribute> attributes,
+        int numVertices,
+        FloatBuffer positionBuffer,
+        @Nullable FloatBuffer tangentsBuffer,
+        @Nullable FloatBuffer uvBuffer,
+        @Nullable FloatBuffer colorBuffer,
+        Vector3 minAabb,
+        Vector3 maxAabb) {
+      this.attributes = attributes;
+      this.numVertices = numVertices;
+      this.positionBuffer = positionBuffer;
+      this.tangentsBuffer = tangentsBuffer;
+      this.uvBuffer = uvBuffer;
+      this.colorBuffer = colorBuffer;
+      extentsAabb = Vector3.subtract(maxAabb, minAabb).scaled(0.5f);
+      centerAabb = Vector3.add(minAabb, extentsAabb);
+    }
+
+    @Nullable
+    FloatBuffer getFloatBuffer(VertexAttribute attribute) {
+      switch (attribute) {
+        case POSITION:
+          return positionBuffer;
+        case TANGENTS:
+          return tangentsBuffer;
+        case UV0:
+          return uvBuffer;
+        case COLOR:
+          return colorBuffer;
+        default:
+          return null;
+      }
+    }
+  }
+
+  /**
+   * The vertices and indices of a {@link RenderableDefinition} packed by {@link
+   * #bake(DynamicMeshBuffers)}, ready to be copied to the filament buffers of a renderable.
+   */
+  static final class BakedDefinition {
+    private final EnumSet<VertexAttribute> attributes;
+    private final int numVertices;
+    private final FloatBuffer positionBuffer;
+    @Nullable private final FloatBuffer tangentsBuffer;
+    @Nullable private final FloatBuffer uvBuffer;
+    @Nullable private final FloatBuffer colorBuffer;
+    // The attributes stored compactly, encoded from their float buffers.
+    private final EnumMap<VertexAttribute, ByteBuffer> compactBuffers;
+    private final int numIndices;
+    // A ShortBuffer for IndexType.USHORT, an IntBuffer for IndexType.UINT.
+    private final Buffer indexBuffer;
+    private final IndexType indexType;
+    private final int[] submeshIndexCounts;
+    private final ArrayList<Material> materials;
+    private final ArrayList<String> materialNames;
+    private final Vector3 centerAabb;
+    private final Vector3 extentsAabb;
+    // The buffers of the dynamic mesh the definition was baked for, null if not dynamic.
+    @Nullable private final DynamicMeshBuffers dynamicMeshBuffers;
+    // The slot of the dynamic mesh buffers the definition was baked into, null if none was free.
+    @Nullable private final DynamicMeshBuffers.Slot slot;
+
+    private BakedDefinition(
+        BakedVertices bakedVertices,
+        EnumMap<VertexAttribute, ByteBuffer> compactBuffers,
+        @Nullable DynamicMeshBuffers dynamicMeshBuffers,
+        @Nullable DynamicMeshBuffers.Slot slot,
+        int numIndices,
+        Buffer indexBuffer,
+        IndexType indexType,
+        int[] submeshIndexCounts,
+        ArrayList<Material> materials,
+        ArrayList<String> materialNames) {
+      attributes = bakedVertices.attributes;
+      numVertices = bakedVertices.numVertices;
+      positionBuffer = bakedVertices.positionBuffer;
+      tangentsBuffer = bakedVertices.tangentsBuffer;
+      uvBuffer = bakedVertices.uvBuffer;
+      colorBuffer = bakedVertices.colorBuffer;
+      centerAabb = bakedVertices.centerAabb;
+      extentsAabb = bakedVertices.extentsAabb;
+      this.compactBuffers = compactBuffers;
+      this.dynamicMeshBuffers = dynamicMeshBuffers;
+      this.slot = slot;
+      this.numIndices = numIndices;
+      this.indexBuffer = indexBuffer;
+      this.indexType = indexType;
+      this.submeshIndexCounts = submeshIndexCounts;
+      this.materials = materials;
+      this.materialNames = materialNames;
+    }
+
+    /**
+     * Copies the baked buffers to the filament buffers of the renderable data, creating them only
+     * when the existing ones are too small or have other attributes. Must be called on the main
+     * thread.
+     *
+     * <p>A definition baked for a dynamic mesh only uploads what changed since the slot committed
+     * last. The slot of the definition becomes the committed one, and is freed once filament is
+     * done reading it after a later commit.
+     */
+    void commit(
+        IRenderableInternalData data,
+        ArrayList<Material> materialBindings,
+        ArrayList<String> materialNames) {
+      AndroidPreconditions.checkUiThread();
+
+      // The filament buffers hold the contents of the committed slot.
+      @Nullable
+      DynamicMeshBuffers.Slot committedSlot =
+          dynamicMeshBuffers != null ? dynamicMeshBuffers.getCommittedSlot() : null;
+      if (committedSlot == slot) {
+        committedSlot = null;
+      }
+
+      commitIndexBuffer(data, committedSlot);
+      commitVertexBuffer(data, committedSlot);
+      if (dynamicMeshBuffers != null) {
+        dynamicMeshBuffers.commitSlot(slot);
+      }
+
+      data.setExtentsAabb(extentsAabb);
+      data.setCenterAabb(centerAabb);
+
+      // Update/Add mesh data.
+      int indexStart = 0;
+      for (int i = 0; i < submeshIndexCounts.length; i++) {
+        RenderableInternalData.MeshData meshData;
+        if (i < data.getMeshes().size()) {
+          meshData = data.getMeshes().get(i);
+        } else {
+          meshData = new RenderableInternalData.MeshData();
+          data.getMeshes().add(meshData);
+        }
+
+        meshData.indexStart = indexStart;
+        meshData.indexEnd = indexStart + submeshIndexCounts[i];
+        indexStart = meshData.indexEnd;
+      }
+
+      // Remove old mesh data.
+      while (data.getMeshes().size() > submeshIndexCounts.length) {
+        data.getMeshes().remove(data.getMeshes().size() - 1);
+      }
+
+      materialBindings.clear();
+      materialBindings.addAll(materials);
+      materialNames.clear();
+      materialNames.addAll(this.materialNames);
+    }
+
+    /** Gives back the slot of a baked definition that is not committed, e.g. a skipped update. */
+    void release() {
+      if (dynamicMeshBuffers != null && slot != null) {
+        dynamicMeshBuffers.releaseSlot(slot);
+      }
+    }
+
+    /** Returns the handler of the upload callbacks of the slot, null if there is no slot. */
+    @Nullable
+    private Object getUploadHandler() {
+      return slot != null ? ThreadPools.getMainExecutor() : null;
+    }
+
+    /** Returns the callback freeing the slot once filament has read an upload, if any. */
+    @Nullable
+    private Runnable beginUpload() {
+      return dynamicMeshBuffers != null && slot != null
+          ? dynamicMeshBuffers.beginUpload(slot)
+          : null;
+    }
+
+    private void commitIndexBuffer(
+        IRenderableInternalData data, @Nullable DynamicMeshBuffers.Slot committedSlot) {
+      // Create the filament index buffer if needed. The raw index buffer tells the type of the
+      // indices of the existing one.
+      IndexBuffer indexBuffer = data.getIndexBuffer();
+      IEngine engine = EngineInstance.getEngine();
+      @Nullable Buffer oldRawIndexBuffer = data.getRawIndexBuffer();
+      boolean isIndexTypeChanged =
+          oldRawIndexBuffer == null
+              || (oldRawIndexBuffer instanceof ShortBuffer) != (indexType == IndexType.USHORT);
+      boolean createIndexBuffer =
+          indexBuffer == null || isIndexTypeChanged || indexBuffer.getIndexCount() < numIndices;
+      if (createIndexBuffer) {
+        if (indexBuffer != null) {
+          ResourceAccounting.getInstance()
+              .untrack(ResourceAccounting.Category.INDEX_BUFFER, indexBuffer);
+          engine.destroyIndexBuffer(indexBuffer);
+        }
+
+        int indexCapacity =
+            dynamicMeshBuffers != null ? DynamicMeshBuffers.getCapacity(numIndices) : numIndices;
+        indexBuffer =
+            new IndexBuffer.Builder()
+                .indexCount(indexCapacity)
+                .bufferType(indexType)
+                .build(engine.getFilamentEngine());
+        ResourceAccounting.getInstance()
+            .track(
+                ResourceAccounting.Category.INDEX_BUFFER,
+                indexBuffer,
+                (long) indexCapacity * getIndexSize(indexType),
+                indexType + " indices=" + indexCapacity,
+                data.getSource());
+        data.setIndexBuffer(indexBuffer);
+      }
+
+      data.setRawIndexBuffer(this.indexBuffer);
+      // The indices of dynamic meshes seldom change, e.g. the face mesh only moves its vertices.
+      if (!createIndexBuffer && committedSlot != null && hasSameIndices(committedSlot)) {
+        return;
+      }
+      indexBuffer.setBuffer(
+          engine.getFilamentEngine(),
+          this.indexBuffer,
+          0,
+          numIndices,
+          getUploadHandler(),
+          beginUpload());
+    }
+
+    private boolean hasSameIndices(DynamicMeshBuffers.Slot committedSlot) {
+      if (slot == null || committedSlot.getNumIndices() != numIndices) {
+        return false;
+      }
+      int indexByteCount = numIndices * getIndexSize(indexType);
+      ByteBuffer indexBytes = slot.getIndexBytes().duplicate();
+      indexBytes.clear();
+      indexBytes.limit(indexByteCount);
+      ByteBuffer committedIndexBytes = committedSlot.getIndexBytes().duplicate();
+      committedIndexBytes.clear();
+      committedIndexBytes.limit(indexByteCount);
+      return indexBytes.equals(committedIndexBytes);
+    }
+
+    private void commitVertexBuffer(
+        IRenderableInternalData data, @Nullable DynamicMeshBuffers.Slot committedSlot) {
+      // Determine if the filament vertex buffer needs to be re-created.
+      VertexBuffer vertexBuffer = data.getVertexBuffer();
+      boolean createVertexBuffer = true;
+      if (vertexBuffer != null) {
+        EnumSet<VertexAttribute> oldAttributes = EnumSet.of(VertexAttribute.POSITION);
+        if (data.getRawTangentsBuffer() != null) {
+          oldAttributes.add(VertexAttribute.TANGENTS);
+        }
+        if (data.getRawUvBuffer() != null) {
+          oldAttributes.add(VertexAttribute.UV0);
+        }
+        if (data.getRawColorBuffer() != null) {
+          oldAttributes.add(VertexAttribute.COLOR);
+        }
+
+        // The raw buffers of the compact attributes are their encoded bytes.
+        EnumSet<VertexAttribute> oldCompactAttributes = EnumSet.noneOf(VertexAttribute.class);
+        addIfCompact(oldCompactAttributes, VertexAttribute.POSITION, data.getRawPositionBuffer());
+        addIfCompact(oldCompactAttributes, VertexAttribute.TANGENTS, data.getRawTangentsBuffer());
+        addIfCompact(oldCompactAttributes, VertexAttribute.UV0, data.getRawUvBuffer());
+        addIfCompact(oldCompactAttributes, VertexAttribute.COLOR, data.getRawColorBuffer());
+
+        createVertexBuffer =
+            !oldAttributes.equals(attributes)
+                || !oldCompactAttributes.equals(compactBuffers.keySet())
+                || vertexBuffer.getVertexCount() < numVertices;
+
+        if (createVertexBuffer) {
+          ResourceAccounting.getInstance()
+              .untrack(ResourceAccounting.Category.VERTEX_BUFFER, vertexBuffer);
+          EngineInstance.getEngine().destroyVertexBuffer(vertexBuffer);
+        }
+      }
+
+      if (createVertexBuffer) {
+        int vertexCapacity =
+            dynamicMeshBuffers != null ? DynamicMeshBuffers.getCapacity(numVertices) : numVertices;
+        vertexBuffer = createVertexBuffer(vertexCapacity, attributes, compactBuffers.keySet());
+        ResourceAccounting.getInstance()
+            .track(
+                ResourceAccounting.Category.VERTEX_BUFFER,
+                vertexBuffer,
+                (long) vertexCapacity * getVertexStride(attributes, compactBuffers.keySet()),
+                attributes + " vertices=" + vertexCapacity,
+                data.getSource());
+        data.setVertexBuffer(vertexBuffer);
+      }
+
+      // The raw buffers tell the attributes of the vertex buffer to the next commit.
+      data.setRawPositionBuffer(getUploadBuffer(VertexAttribute.POSITION, positionBuffer));
+      data.setRawTangentsBuffer(getUploadBuffer(VertexAttribute.TANGENTS, tangentsBuffer));
+      data.setRawUvBuffer(getUploadBuffer(VertexAttribute.UV0, uvBuffer));
+      data.setRawColorBuffer(getUploadBuffer(VertexAttribute.COLOR, colorBuffer));
+
+      // Only the changes since the committed slot are uploaded to an existing vertex buffer.
+      @Nullable
+      DynamicMeshBuffers.Slot baseSlot =
+          !createVertexBuffer
+                  && committedSlot != null
+                  && committedSlot.getAttributes().equals(attributes)
+              ? committedSlot
+              : null;
+
+      int bufferIndex = 0;
+      uploadAttribute(
+          vertexBuffer,
+          bufferIndex,
+          VertexAttribute.POSITION,
+          positionBuffer,
+          POSITION_SIZE,
+          baseSlot);
+
+      if (tangentsBuffer != null) {
+        bufferIndex++;
+        uploadAttribute(
+            vertexBuffer,
+            bufferIndex,
+            VertexAttribute.TANGENTS,
+            tangentsBuffer,
+            TANGENTS_SIZE,
+            baseSlot);
+      }
+
+      if (uvBuffer != null) {
+        bufferIndex++;
+        uploadAttribute(
+            vertexBuffer, bufferIndex, VertexAttribute.UV0, uvBuffer, UV_SIZE, baseSlot);
+      }
+
+      if (colorBuffer != null) {
+        bufferIndex++;
+        uploadAttribute(
+            vertexBuffer, bufferIndex, VertexAttribute.COLOR, colorBuffer, COLOR_SIZE, baseSlot);
+      }
+    }
+
+    /**
+     * Uploads the vertices of an attribute to the filament vertex buffer. When the buffer holds the
+     * contents of a base slot, only the range of vertices that differs from it is uploaded, if any.
+     */
+    private void uploadAttribute(
+        VertexBuffer vertexBuffer,
+        int bufferIndex,
+        VertexAttribute attribute,
+        FloatBuffer buffer,
+        int size,
+        @Nullable DynamicMeshBuffers.Slot baseSlot) {
+      int floatCount = numVertices * size;
+      int firstFloat = 0;
+      int endFloat = floatCount;
+      if (baseSlot != null) {
+        FloatBuffer baseBuffer = baseSlot.getFloatBuffer(attribute);
+        int baseFloatCount = baseSlot.getNumVertices() * size;
+        int commonFloatCount = Math.min(floatCount, baseFloatCount);
+        while (firstFloat < commonFloatCount
+            && buffer.get(firstFloat) == baseBuffer.get(firstFloat)) {
+          firstFloat++;
+        }
+        // The vertices added since the base slot are always uploaded.
+        if (floatCount <= baseFloatCount) {
+          while (endFloat > firstFloat
+              && buffer.get(endFloat - 1) == baseBuffer.get(endFloat - 1)) {
+            endFloat--;
+          }
+        }
+        if (firstFloat == endFloat) {
+          return;
+        }
+      }
+
+      int firstVertex = firstFloat / size;
+      int endVertex = (endFloat + size - 1) / size;
+      @Nullable ByteBuffer compactBuffer = compactBuffers.get(attribute);
+      if (compactBuffer != null) {
+        int bytesPerVertex = CompactVertexEncoder.getBytesPerVertex(attribute);
+        ByteBuffer compactRange = compactBuffer.duplicate();
+        compactRange.position(firstVertex * bytesPerVertex);
+        vertexBuffer.setBufferAt(
+            EngineInstance.getEngine().getFilamentEngine(),
+            bufferIndex,
+            compactRange,
+            firstVertex * bytesPerVertex,
+            (endVertex - firstVertex) * bytesPerVertex,
+            getUploadHandler(),
+            beginUpload());
+        return;
+      }
+
+      FloatBuffer range = buffer.duplicate();
+      range.position(firstVertex * size);
       vertexBuffer.setBufferAt(
-          engine.getFilamentEngine(), bufferIndex, colorBuffer, 0, numVertices * COLOR_SIZE);
+          EngineInstance.getEngine().getFilamentEngine(),
+          bufferIndex,
+          range,
+          firstVertex * size * BYTES_PER_FLOAT,
+          (endVertex - firstVertex) * size,
+          getUploadHandler(),
+          beginUpload());
+    }
+
+    /** Returns the buffer uploaded for an attribute, its encoded bytes if it is compact. */
+    @Nullable
+    private Buffer getUploadBuffer(VertexAttribute attribute, @Nullable FloatBuffer floatBuffer) {
+      @Nullable ByteBuffer compactBuffer = compactBuffers.get(attribute);
+      return compactBuffer != null ? compactBuffer : floatBuffer;
+    }
+
+    private static void addIfCompact(
+        EnumSet<VertexAttribute> compactAttributes,
+        VertexAttribute attribute,
+        @Nullable Buffer rawBuffer) {
+      if (rawBuffer instanceof ByteBuffer) {
+        compactAttributes.add(attribute);
+      }
     }
   }
 
   private RenderableDefinition(Builder builder) {
-    vertices = Preconditions.checkNotNull(builder.vertices);
     submeshes = Preconditions.checkNotNull(builder.submeshes);
+    if (builder.positions != null) {
+      vertices = Collections.emptyList();
+      positions = builder.positions;
+      normals = builder.normals;
+      uvs = builder.uvs;
+      colors = builder.colors;
+    } else {
+      vertices = Preconditions.checkNotNull(builder.vertices);
+    }
+    compactAttributes.addAll(builder.compactAttributes);
   }
 
   public static Builder builder() {
     return new Builder();
   }
 
+  private static int getIndexSize(IndexType indexType) {
+    return indexType == IndexType.USHORT ? BYTES_PER_SHORT : BYTES_PER_INT;
+  }
+
+  private static VertexAttribute toVertexAttribute(CompactAttribute compactAttribute) {
+    switch (compactAttribute) {
+      case POSITION:
+        return VertexAttribute.POSITION;
+      case NORMAL:
+        return VertexAttribute.TANGENTS;
+      case UV:
+        return VertexAttribute.UV0;
+      case COLOR:
+        return VertexAttribute.COLOR;
+    }
+    throw new IllegalArgumentException("Unsupported CompactAttribute value: " + compactAttribute);
+  }
+
+  /** Returns the number of floats of an attribute for one vertex. */
+  private static int getFloatCount(VertexAttribute attribute) {
+    switch (attribute) {
+      case TANGENTS:
+        return TANGENTS_SIZE;
+      case UV0:
+        return UV_SIZE;
+      case COLOR:
+        return COLOR_SIZE;
+      default:
+        return POSITION_SIZE;
+    }
+  }
+
+  /** Returns the bytes of a vertex with the given attributes and encodings. */
+  private static int getVertexStride(
+      EnumSet<VertexAttribute> attributes, Set<VertexAttribute> compactAttributes) {
+    int stride = 0;
+    for (VertexAttribute attribute : attributes) {
+      stride +=
+          compactAttributes.contains(attribute)
+              ? CompactVertexEncoder.getBytesPerVertex(attribute)
+              : getFloatCount(attribute) * BYTES_PER_FLOAT;
+    }
+    return stride;
+  }
+
+  /** Returns the buffer of an attribute in the slot, or a new one if there is no slot. */
+  private static FloatBuffer allocateFloatBuffer(
+      @Nullable DynamicMeshBuffers.Slot slot, VertexAttribute attribute, int floatCount) {
+    return slot != null
+        ? slot.prepareFloatBuffer(attribute, floatCount)
+        : allocateFloatBuffer(floatCount);
+  }
+
+  /** Allocates a buffer that filament can read without copying it. */
+  private static FloatBuffer allocateFloatBuffer(int floatCount) {
+    return ByteBuffer.allocateDirect(floatCount * BYTES_PER_FLOAT)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+
   private static VertexBuffer createVertexBuffer(
-      int vertexCount, EnumSet<VertexAttribute> attributes) {
+      int vertexCount,
+      EnumSet<VertexAttribute> attributes,
+      Set<VertexAttribute> compactAttributes) {
     VertexBuffer.Builder builder = new VertexBuffer.Builder();
 
     builder.vertexCount(vertexCount).bufferCount(attributes.size());
 
     // Position Attribute.
     int bufferIndex = 0;
-    builder.attribute(
-        VertexBuffer.VertexAttribute.POSITION,
+    addAttribute(
+        builder,
+        VertexAttribute.POSITION,
         bufferIndex,
         VertexBuffer.AttributeType.FLOAT3,
-        0,
-        POSITION_SIZE * BYTES_PER_FLOAT);
+        compactAttributes);
 
     // Tangents Attribute.
     if (attributes.contains(VertexAttribute.TANGENTS)) {
       bufferIndex++;
-      builder.attribute(
-          VertexBuffer.VertexAttribute.TANGENTS,
+      addAttribute(
+          builder,
+          VertexAttribute.TANGENTS,
           bufferIndex,
           VertexBuffer.AttributeType.FLOAT4,
-          0,
-          TANGENTS_SIZE * BYTES_PER_FLOAT);
+          compactAttributes);
     }
 
     // Uv Attribute.
     if (attributes.contains(VertexAttribute.UV0)) {
       bufferIndex++;
-      builder.attribute(
-          VertexBuffer.VertexAttribute.UV0,
+      addAttribute(
+          builder,
+          VertexAttribute.UV0,
           bufferIndex,
           VertexBuffer.AttributeType.FLOAT2,
-          0,
-          UV_SIZE * BYTES_PER_FLOAT);
+          compactAttributes);
     }
 
     // Color Attribute.
     if (attributes.contains(VertexAttribute.COLOR)) {
       bufferIndex++;
-      builder.attribute(
+      addAttribute(
+          builder,
           VertexAttribute.COLOR,
           bufferIndex,
           VertexBuffer.AttributeType.FLOAT4,
-          0,
-          COLOR_SIZE * BYTES_PER_FLOAT);
+          compactAttributes);
     }
 
     return builder.build(EngineInstance.getEngine().getFilamentEngine());
   }
 
+  /** Adds an attribute in its own buffer, as floats or with its compact encoding. */
+  private static void addAttribute(
+      VertexBuffer.Builder builder,
+      VertexAttribute attribute,
+      int bufferIndex,
+      VertexBuffer.AttributeType floatType,
+      Set<VertexAttribute> compactAttributes) {
+    if (compactAttributes.contains(attribute)) {
+      builder.attribute(
+          attribute,
+          bufferIndex,
+          CompactVertexEncoder.getAttributeType(attribute),
+          0,
+          CompactVertexEncoder.getBytesPerVertex(attribute));
+      if (CompactVertexEncoder.isNormalized(attribute)) {
+        builder.normalized(attribute);
+      }
+    } else {
+      builder.attribute(
+          attribute, bufferIndex, floatType, 0, getFloatCount(attribute) * BYTES_PER_FLOAT);
+    }
+  }
+
   private static void addVector3ToBuffer(Vector3 vector3, FloatBuffer buffer) {
     buffer.put(vector3.x);
     buffer.put(vector3.y);
@@ -477,50 +1235,242 @@ public class RenderableDefinition {
     buffer.put(color.a);
   }
 
-  private static Quaternion normalToTangent(Vector3 normal) {
-    Vector3 tangent;
-    Vector3 bitangent;
-
-    // Calculate basis vectors (+x = tangent, +y = bitangent, +z = normal).
-    tangent = Vector3.cross(Vector3.up(), normal);
+  /**
+   * Computes the orientation of the tangent frame of a normal (+x = tangent, +y = bitangent, +z =
+   * normal) without allocating, as it is called for every vertex.
+   */
+  private static void normalToTangent(
+      float normalX, float normalY, float normalZ, Matrix scratchMatrix, Quaternion result) {
+    // Calculate basis vectors, starting with tangent = up x normal.
+    float tangentX = normalZ;
+    float tangentY = 0.0f;
+    float tangentZ = -normalX;
+    float bitangentX;
+    float bitangentY;
+    float bitangentZ;
 
     // Uses almostEqualRelativeAndAbs for equality checks that account for float inaccuracy.
-    if (MathHelper.almostEqualRelativeAndAbs(Vector3.dot(tangent, tangent), 0.0f)) {
-      bitangent = Vector3.cross(normal, Vector3.right()).normalized();
-      tangent = Vector3.cross(bitangent, normal).normalized();
+    if (MathHelper.almostEqualRelativeAndAbs(tangentX * tangentX + tangentZ * tangentZ, 0.0f)) {
+      // bitangent = normalize(normal x right).
+      float scale = getNormalizationScale(0.0f, normalZ, -normalY);
+      bitangentX = 0.0f;
+      bitangentY = normalZ * scale;
+      bitangentZ = -normalY * scale;
+
+      // tangent = normalize(bitangent x normal).
+      tangentX = bitangentY * normalZ - bitangentZ * normalY;
+      tangentY = bitangentZ * normalX - bitangentX * normalZ;
+      tangentZ = bitangentX * normalY - bitangentY * normalX;
+      scale = getNormalizationScale(tangentX, tangentY, tangentZ);
+      tangentX *= scale;
+      tangentY *= scale;
+      tangentZ *= scale;
     } else {
-      tangent.set(tangent.normalized());
-      bitangent = Vector3.cross(normal, tangent).normalized();
+      float scale = getNormalizationScale(tangentX, tangentY, tangentZ);
+      tangentX *= scale;
+      tangentY *= scale;
+      tangentZ *= scale;
+
+      // bitangent = normalize(normal x tangent).
+      bitangentX = normalY * tangentZ - normalZ * tangentY;
+      bitangentY = normalZ * tangentX - normalX * tangentZ;
+      bitangentZ = normalX * tangentY - normalY * tangentX;
+      scale = getNormalizationScale(bitangentX, bitangentY, bitangentZ);
+      bitangentX *= scale;
+      bitangentY *= scale;
+      bitangentZ *= scale;
     }
 
     // Rotation of a 4x4 Transformation Matrix is represented by the top-left 3x3 elements.
     final int rowOne = 0;
-    scratchMatrix.data[rowOne] = tangent.x;
-    scratchMatrix.data[rowOne + 1] = tangent.y;
-    scratchMatrix.data[rowOne + 2] = tangent.z;
+    scratchMatrix.data[rowOne] = tangentX;
+    scratchMatrix.data[rowOne + 1] = tangentY;
+    scratchMatrix.data[rowOne + 2] = tangentZ;
 
     final int rowTwo = 4;
-    scratchMatrix.data[rowTwo] = bitangent.x;
-    scratchMatrix.data[rowTwo + 1] = bitangent.y;
-    scratchMatrix.data[rowTwo + 2] = bitangent.z;
+    scratchMatrix.data[rowTwo] = bitangentX;
+    scratchMatrix.data[rowTwo + 1] = bitangentY;
+    scratchMatrix.data[rowTwo + 2] = bitangentZ;
 
     final int rowThree = 8;
-    scratchMatrix.data[rowThree] = normal.x;
-    scratchMatrix.data[rowThree + 1] = normal.y;
-    scratchMatrix.data[rowThree + 2] = normal.z;
+    scratchMatrix.data[rowThree] = normalX;
+    scratchMatrix.data[rowThree + 1] = normalY;
+    scratchMatrix.data[rowThree + 2] = normalZ;
 
-    Quaternion orientationQuaternion = new Quaternion();
-    scratchMatrix.extractQuaternion(orientationQuaternion);
-    return orientationQuaternion;
+    scratchMatrix.extractQuaternion(result);
+  }
+
+  /** Returns the scale normalizing a vector like {@link Vector3#normalized()}, or zero. */
+  private static float getNormalizationScale(float x, float y, float z) {
+    float normSquared = x * x + y * y + z * z;
+    if (MathHelper.almostEqualRelativeAndAbs(normSquared, 0.0f)) {
+      return 0.0f;
+    }
+    return normSquared == 1 ? 1.0f : (float) (1.0 / Math.sqrt(normSquared));
+  }
+
+  /** A vertex attribute read from a buffer of floats, with a stride between the vertices. */
+  private static final class FloatAttribute {
+    private final FloatBuffer buffer;
+    private final int size;
+    private final int stride;
+
+    FloatAttribute(FloatBuffer buffer, int size, int stride) {
+      Preconditions.checkNotNull(buffer, "Parameter \"buffer\" was null.");
+      if (stride < size) {
+        throw new IllegalArgumentException(
+            "The stride of an attribute of " + size + " floats must be at least " + size + ".");
+      }
+      // The duplicate keeps the position and limit the attribute was set with.
+      this.buffer = buffer.duplicate();
+      this.size = size;
+      this.stride = stride;
+    }
+
+    int getVertexCount() {
+      int remaining = buffer.remaining();
+      return remaining < size ? 0 : (remaining - size) / stride + 1;
+    }
+
+    float get(int vertex, int component) {
+      return buffer.get(buffer.position() + vertex * stride + component);
+    }
+
+    /**
+     * Returns the floats of the vertices packed in a direct buffer in native order, the buffer
+     * itself when it is already packed so, unless they are packed into a slot.
+     */
+    FloatBuffer pack(
+        int numVertices, @Nullable DynamicMeshBuffers.Slot slot, VertexAttribute attribute) {
+      if (slot == null
+          && stride == size
+          && buffer.isDirect()
+          && buffer.order() == ByteOrder.nativeOrder()) {
+        FloatBuffer packedBuffer = buffer.duplicate();
+        packedBuffer.limit(packedBuffer.position() + numVertices * size);
+        return packedBuffer.slice();
+      }
+
+      FloatBuffer packedBuffer = allocateFloatBuffer(slot, attribute, numVertices * size);
+      for (int i = 0; i < numVertices; i++) {
+        for (int j = 0; j < size; j++) {
+          packedBuffer.put(get(i, j));
+        }
+      }
+      packedBuffer.rewind();
+      return packedBuffer;
+    }
+  }
+
+  /** The triangle indices of a buffer seen as a list, without copying them. */
+  private static final class IndexBufferList extends AbstractList<Integer> {
+    @Nullable private final IntBuffer intIndices;
+    @Nullable private final ShortBuffer shortIndices;
+
+    IndexBufferList(IntBuffer triangleIndices) {
+      Preconditions.checkNotNull(triangleIndices, "Parameter \"triangleIndices\" was null.");
+      // The duplicate keeps the position and limit the indices were set with.
+      intIndices = triangleIndices.duplicate();
+      shortIndices = null;
+    }
+
+    IndexBufferList(ShortBuffer triangleIndices) {
+      Preconditions.checkNotNull(triangleIndices, "Parameter \"triangleIndices\" was null.");
+      intIndices = null;
+      shortIndices = triangleIndices.duplicate();
+    }
+
+    /** Returns the index without boxing it. */
+    int getIndex(int index) {
+      if (intIndices != null) {
+        return intIndices.get(intIndices.position() + index);
+      }
+      ShortBuffer shortIndices = Preconditions.checkNotNull(this.shortIndices);
+      // The 16-bit indices are unsigned.
+      return shortIndices.get(shortIndices.position() + index) & 0xFFFF;
+    }
+
+    @Override
+    public Integer get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of " + size() + " indices.");
+      }
+      return getIndex(index);
+    }
+
+    @Override
+    public int size() {
+      if (intIndices != null) {
+        return intIndices.remaining();
+      }
+      return Preconditions.checkNotNull(shortIndices).remaining();
+    }
   }
 
   /** Factory class for {@link RenderableDefinition}. */
   public static final class Builder {
     @Nullable private List<Vertex> vertices;
     @Nullable private List<Submesh> submeshes = new ArrayList<>();
-
+    @Nullable private FloatAttribute positions;
+    @Nullable private FloatAttribute normals;
+    @Nullable private FloatAttribute uvs;
+    @Nullable private FloatAttribute colors;
+    private final EnumSet<CompactAttribute> compactAttributes =
+        EnumSet.noneOf(CompactAttribute.class);
+
+    /** Sets the vertices, replacing the attributes set as arrays of floats. */
     public Builder setVertices(List<Vertex> vertices) {
       this.vertices = vertices;
+      positions = null;
+      normals = null;
+      uvs = null;
+      colors = null;
+      return this;
+    }
+
+    /** @see RenderableDefinition#setPositions(float[]) */
+    public Builder setPositions(float[] positions) {
+      Preconditions.checkNotNull(positions, "Parameter \"positions\" was null.");
+      return setPositions(FloatBuffer.wrap(positions), POSITION_SIZE);
+    }
+
+    /** @see RenderableDefinition#setPositions(FloatBuffer, int) */
+    public Builder setPositions(FloatBuffer positions, int stride) {
+      this.positions = new FloatAttribute(positions, POSITION_SIZE, stride);
+      vertices = null;
+      return this;
+    }
+
+    /** @see RenderableDefinition#setNormals(float[]) */
+    public Builder setNormals(@Nullable float[] normals) {
+      return setNormals(normals != null ? FloatBuffer.wrap(normals) : null, NORMAL_SIZE);
+    }
+
+    /** @see RenderableDefinition#setNormals(FloatBuffer, int) */
+    public Builder setNormals(@Nullable FloatBuffer normals, int stride) {
+      this.normals = normals != null ? new FloatAttribute(normals, NORMAL_SIZE, stride) : null;
+      return this;
+    }
+
+    /** @see RenderableDefinition#setUvs(float[]) */
+    public Builder setUvs(@Nullable float[] uvs) {
+      return setUvs(uvs != null ? FloatBuffer.wrap(uvs) : null, UV_SIZE);
+    }
+
+    /** @see RenderableDefinition#setUvs(FloatBuffer, int) */
+    public Builder setUvs(@Nullable FloatBuffer uvs, int stride) {
+      this.uvs = uvs != null ? new FloatAttribute(uvs, UV_SIZE, stride) : null;
+      return this;
+    }
+
+    /** @see RenderableDefinition#setColors(float[]) */
+    public Builder setColors(@Nullable float[] colors) {
+      return setColors(colors != null ? FloatBuffer.wrap(colors) : null, COLOR_SIZE);
+    }
+
+    /** @see RenderableDefinition#setColors(FloatBuffer, int) */
+    public Builder setColors(@Nullable FloatBuffer colors, int stride) {
+      this.colors = colors != null ? new FloatAttribute(colors, COLOR_SIZE, stride) : null;
       return this;
     }
 
@@ -529,6 +1479,14 @@ public class RenderableDefinition {
       return this;
     }
 
+    /** @see RenderableDefinition#setCompactAttributes(Set) */
+    public Builder setCompactAttributes(Set<CompactAttribute> compactAttributes) {
+      Preconditions.checkNotNull(compactAttributes, "Parameter \"compactAttributes\" was null.");
+      this.compactAttributes.clear();
+      this.compactAttributes.addAll(compactAttributes);
+      return this;
+    }
+
     public RenderableDefinition build() {
       return new RenderableDefinition(this);
     }
@@ -14,6 +14,7 @@ import com.google.android.filament.EntityInstance;
 import com.google.android.filament.EntityManager;
 import com.google.android.filament.MaterialInstance;
 import com.google.android.filament.RenderableManager;
+import com.google.android.filament.Scene;
 import com.google.android.filament.TransformManager;
 import com.google.android.filament.gltfio.Animator;
 import com.google.android.filament.gltfio.AssetLoader;
@@ -27,6 +28,7 @@ import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.ChangeId;
 import com.google.ar.sceneform.utilities.LoadHelper;
+import com.google.ar.sceneform.utilities.ModelCache;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 
@@ -34,6 +36,9 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
 
@@ -89,6 +94,18 @@ public class RenderableInstance implements AnimatableModel {
     private int renderPriority = Renderable.RENDER_PRIORITY_DEFAULT;
     private boolean isShadowCaster = true;
     private boolean isShadowReceiver = true;
+    private boolean isInFrustum = true;
+    // The bounds of the rendered geometry in the space of the node, the relative transform
+    // applied, updated when the renderable changes. Empty until the renderable is built.
+    private final Vector3 boundsCenter = new Vector3();
+    private final Vector3 boundsExtents = new Vector3();
+    private boolean hasBounds = false;
+
+    // Instances of the coarser levels of detail of a ModelRenderable, parented to this instance.
+    private final ArrayList<RenderableInstance> lodInstances = new ArrayList<>();
+    private int lodLevel = 0;
+    // True when the displayed level of detail has not received the latest animation state.
+    private boolean isLodAnimationStale = false;
 
     private ArrayList<Material> materialBindings;
     private ArrayList<String> materialNames;
@@ -107,6 +124,9 @@ public class RenderableInstance implements AnimatableModel {
         this.materialBindings = new ArrayList<>(renderable.getMaterialBindings());
         this.materialNames = new ArrayList<>(renderable.getMaterialNames());
         entity = createFilamentEntity(EngineInstance.getEngine());
+        @Nullable Object source = renderable.getRenderableData().getSource();
+        ResourceAccounting.getInstance().track(
+                ResourceAccounting.Category.ENTITY, entity, 0, "renderable instance", source);
 
         // SFB's can be imported with re-centering or scaling; rather than perform those operations to
         // the vertices (and bones, &c) at import time, we keep vertex data in the same unit as the
@@ -116,15 +136,23 @@ public class RenderableInstance implements AnimatableModel {
         if (relativeTransform != null) {
             childEntity =
                     createFilamentChildEntity(EngineInstance.getEngine(), entity, relativeTransform);
+            ResourceAccounting.getInstance().track(
+                    ResourceAccounting.Category.ENTITY,
+                    childEntity,
+                    0,
+                    "renderable instance relative transform",
+                    source);
         }
 
         createGltfModelInstance();
 
         createFilamentAssetModelInstance();
 
+        createLodInstances();
+
         ResourceManager.getInstance()
                 .getRenderableInstanceCleanupRegistry()
-                .register(this, new CleanupCallback(entity, childEntity));
+                .register(this, new CleanupCallback(childEntity, entity, filamentAsset));
     }
 
     void createFilamentAssetModelInstance() {
@@ -147,31 +175,28 @@ public class RenderableInstance implements AnimatableModel {
                 throw new IllegalStateException("Failed to load gltf");
             }
 
+            com.google.android.filament.Box box = createdAsset.getBoundingBox();
+            float[] halfExtent = box.getHalfExtent();
+            float[] center = box.getCenter();
+            // The bounds of the asset are the render bounds, used to cull its instances.
+            renderableData.setExtentsAabb(new Vector3(halfExtent[0], halfExtent[1], halfExtent[2]));
+            renderableData.setCenterAabb(new Vector3(center[0], center[1], center[2]));
             if (renderable.collisionShape == null) {
-                com.google.android.filament.Box box = createdAsset.getBoundingBox();
-                float[] halfExtent = box.getHalfExtent();
-                float[] center = box.getCenter();
                 renderable.collisionShape =
                         new Box(
                                 new Vector3(halfExtent[0], halfExtent[1], halfExtent[2]).scaled(2.0f),
                                 new Vector3(center[0], center[1], center[2]));
             }
 
-            Function<String, Uri> urlResolver = renderableData.urlResolver;
-            for (String uri : createdAsset.getResourceUris()) {
-                if (urlResolver == null) {
-                    Log.e(TAG, "Failed to download uri " + uri + " no url resolver.");
-                    continue;
-                }
-                Uri dataUri = urlResolver.apply(uri);
-                try {
-                    Callable<InputStream> callable = LoadHelper.fromUri(renderableData.context, dataUri);
-                    renderableData.resourceLoader.addResourceData(
-                            uri, ByteBuffer.wrap(SceneformBufferUtils.inputStreamCallableToByteArray(callable)));
-                } catch (Exception e) {
-                    Log.e(TAG, "Failed to download data uri " + dataUri, e);
-                }
-            }
+            ResourceAccounting.getInstance().track(
+                    ResourceAccounting.Category.GLTF_ASSET,
+                    createdAsset,
+                    ResourceManager.estimateRenderableBytes(renderable),
+                    (renderableData.isGltfBinary ? "glb" : "gltf")
+                            + " entities=" + createdAsset.getEntities().length,
+                    renderableData.getSource());
+
+            addResourceData(renderableData, createdAsset);
 
             if(renderable.asyncLoadEnabled) {
                 renderableData.resourceLoader.asyncBeginLoad(createdAsset);
@@ -225,6 +250,71 @@ public class RenderableInstance implements AnimatableModel {
         return;
     }
 
+    /**
+     * Gives the external resources of the asset to the resource loader. The resources resolved
+     * when the model was loaded, e.g. from the {@link ModelCache}, are used as they are, the others
+     * are resolved and downloaded.
+     */
+    private void addResourceData(
+            RenderableInternalFilamentAssetData renderableData, FilamentAsset createdAsset) {
+        @Nullable Map<String, ByteBuffer> resolvedResources = renderableData.resolvedResources;
+        if (resolvedResources != null) {
+            for (String uri : createdAsset.getResourceUris()) {
+                @Nullable ByteBuffer buffer = resolvedResources.get(uri);
+                if (buffer == null) {
+                    Log.e(TAG, "Missing resolved data for uri " + uri);
+                    continue;
+                }
+                renderableData.resourceLoader.addResourceData(uri, buffer);
+            }
+            return;
+        }
+
+        HashMap<String, ByteBuffer> downloadedResources = new HashMap<>();
+        boolean downloadedAll = true;
+        Function<String, Uri> urlResolver = renderableData.urlResolver;
+        for (String uri : createdAsset.getResourceUris()) {
+            if (urlResolver == null) {
+                Log.e(TAG, "Failed to download uri " + uri + " no url resolver.");
+                downloadedAll = false;
+                continue;
+            }
+            Uri dataUri = urlResolver.apply(uri);
+            try {
+                Callable<InputStream> callable = LoadHelper.fromUri(renderableData.context, dataUri);
+                ByteBuffer buffer = SceneformBufferUtils.inputStreamToDirectByteBuffer(callable);
+                renderableData.resourceLoader.addResourceData(uri, buffer);
+                downloadedResources.put(uri, buffer);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to download data uri " + dataUri, e);
+                downloadedAll = false;
+            }
+        }
+
+        if (downloadedAll) {
+            // Other instances of the renderable reuse the downloaded resources.
+            renderableData.resolvedResources = downloadedResources;
+        }
+    }
+
+    private void createLodInstances() {
+        if (!(renderable instanceof ModelRenderable)) {
+            return;
+        }
+
+        TransformManager transformManager = EngineInstance.getEngine().getTransformManager();
+        @EntityInstance int parentInstance = transformManager.getInstance(entity);
+        for (ModelRenderable.LodLevel lodLevel : ((ModelRenderable) renderable).getLodLevels()) {
+            RenderableInstance lodInstance =
+                    new RenderableInstance(transformProvider, lodLevel.renderable);
+            // The level follows this instance in the transform hierarchy, so its own transform never
+            // needs to be updated.
+            transformManager.setParent(
+                    transformManager.getInstance(lodInstance.getEntity()), parentInstance);
+            lodInstances.add(lodInstance);
+        }
+    }
+
     @Nullable
     public FilamentAsset getFilamentAsset() {
         return filamentAsset;
@@ -291,6 +381,9 @@ public class RenderableInstance implements AnimatableModel {
                 renderableManager.setPriority(renderableInstance, this.renderPriority);
             }
         }
+        for (RenderableInstance lodInstance : lodInstances) {
+            lodInstance.setRenderPriority(renderPriority);
+        }
     }
 
     /**
@@ -346,6 +439,9 @@ public class RenderableInstance implements AnimatableModel {
         if (renderableInstance != 0) {
             renderableManager.setCastShadows(renderableInstance, isShadowCaster);
         }
+        for (RenderableInstance lodInstance : lodInstances) {
+            lodInstance.setShadowCaster(isShadowCaster);
+        }
         //TODO : Verify if we don't need to apply the parameter to child entities
 //        int[] entities = getFilamentAsset().getEntities();
 //        for (int i = 0; i < entities.length; i++) {
@@ -373,6 +469,9 @@ public class RenderableInstance implements AnimatableModel {
         if (renderableInstance != 0) {
             renderableManager.setReceiveShadows(renderableInstance, isShadowReceiver);
         }
+        for (RenderableInstance lodInstance : lodInstances) {
+            lodInstance.setShadowReceiver(isShadowReceiver);
+        }
         //TODO : Verify if we don't need to apply the parameter to child entities
 //        for (int i = 0; i < entities.length; i++) {
 //            @EntityInstance int renderableInstance = renderableManager.getInstance(entities[i]);
@@ -503,6 +602,26 @@ public class RenderableInstance implements AnimatableModel {
     // false (not applied)
     @Override
     public boolean applyAnimationChange(ModelAnimation animation) {
+        if (attachedRenderer != null) {
+            attachedRenderer.requestRender();
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if this instance has changes that were not rendered yet or is still loading
+     * resources asynchronously.
+     */
+    boolean hasPendingChanges() {
+        if (renderable.getId().checkChanged(renderableId)) {
+            return true;
+        }
+        if (renderable.asyncLoadEnabled
+                && renderable.getRenderableData() instanceof RenderableInternalFilamentAssetData) {
+            RenderableInternalFilamentAssetData renderableData =
+                    (RenderableInternalFilamentAssetData) renderable.getRenderableData();
+            return renderableData.resourceLoader.asyncGetLoadProgress() < 1.0f;
+        }
         return false;
     }
 
@@ -510,6 +629,126 @@ public class RenderableInstance implements AnimatableModel {
         return;
     }
 
+    /**
+     * Returns true if this instance was inside the camera frustum during the last rendered frame.
+     *
+     * <p>Instances outside of the frustum don't update their animations or skinning until they
+     * become visible again.
+     */
+    public boolean isInFrustum() {
+        return isInFrustum;
+    }
+
+    /**
+     * Tests the render bounds of this instance against the frustum and keeps the result. The render
+     * bounds are those of the geometry, not the collision shape, which the application may set to
+     * anything.
+     *
+     * @param frustum the camera frustum, or null to consider the instance visible
+     * @return true if the instance is visible and should be prepared for draw
+     */
+    boolean updateFrustumVisibility(@Nullable ViewFrustum frustum) {
+        // Always prepare an instance whose renderable was not built since it changed, so that it
+        // gets its bounds and renderable components.
+        if (frustum == null
+                || renderable.getId().checkChanged(renderableId)
+                || !hasBounds
+                || !renderable.hasCullingBounds()) {
+            isInFrustum = true;
+        } else {
+            isInFrustum = frustum.intersectsBox(boundsCenter, boundsExtents, getWorldModelMatrix());
+        }
+        return isInFrustum;
+    }
+
+    /** Updates the render bounds from the renderable data, in the space of the node. */
+    private void updateBounds(IRenderableInternalData renderableData) {
+        boundsCenter.set(renderableData.getCenterAabb());
+        boundsExtents.set(renderableData.getExtentsAabb());
+        @Nullable Matrix relativeTransform = getRelativeTransform();
+        if (relativeTransform != null) {
+            boundsCenter.set(relativeTransform.transformPoint(boundsCenter));
+            boundsExtents.set(boundsExtents.scaled(renderableData.getTransformScale()));
+        }
+        hasBounds = boundsExtents.x > 0.0f || boundsExtents.y > 0.0f || boundsExtents.z > 0.0f;
+    }
+
+    /**
+     * Returns the level of detail currently displayed, 0 being the most detailed.
+     *
+     * @see ModelRenderable.Builder#addLodLevel(ModelRenderable.Builder, float)
+     */
+    public int getLodLevel() {
+        return lodLevel;
+    }
+
+    /**
+     * Selects the level of detail to display from the screen coverage of the render bounds of this
+     * instance.
+     */
+    void updateLodLevel(ViewFrustum frustum) {
+        if (lodInstances.isEmpty() || !hasBounds) {
+            return;
+        }
+
+        ModelRenderable modelRenderable = (ModelRenderable) renderable;
+        List<ModelRenderable.LodLevel> lodLevels = modelRenderable.getLodLevels();
+        float hysteresis = modelRenderable.getLodHysteresis();
+        float screenCoverage =
+                frustum.getScreenCoverage(boundsCenter, boundsExtents, getWorldModelMatrix());
+
+        // The coverage must go past a threshold by the hysteresis before switching, which prevents
+        // popping between two levels around it.
+        int level = lodLevel;
+        while (level < lodLevels.size()
+                && screenCoverage < lodLevels.get(level).screenCoverage * (1.0f - hysteresis)) {
+            level++;
+        }
+        while (level > 0
+                && screenCoverage > lodLevels.get(level - 1).screenCoverage * (1.0f + hysteresis)) {
+            level--;
+        }
+        if (level != lodLevel) {
+            setLodLevel(level);
+        }
+    }
+
+    private void setLodLevel(int lodLevel) {
+        if (attachedRenderer != null) {
+            Scene scene = attachedRenderer.getFilamentScene();
+            getLodInstance(this.lodLevel).removeEntitiesFromScene(scene);
+            getLodInstance(lodLevel).addEntitiesToScene(scene);
+        }
+        this.lodLevel = lodLevel;
+        isLodAnimationStale = true;
+    }
+
+    private RenderableInstance getLodInstance(int lodLevel) {
+        return lodLevel == 0 ? this : lodInstances.get(lodLevel - 1);
+    }
+
+    /**
+     * Applies the animation state of the source instance to this one, for the animations they have
+     * in common.
+     *
+     * @return true if any animation update has been made.
+     */
+    private boolean applyAnimationsFrom(RenderableInstance source, boolean force) {
+        boolean hasUpdate = false;
+        int count = Math.min(source.getAnimationCount(), getAnimationCount());
+        for (int i = 0; i < count; i++) {
+            ModelAnimation animation = source.getAnimation(i);
+            if (force || animation.isDirty()) {
+                if (getFilamentAnimator() != null) {
+                    getFilamentAnimator().applyAnimation(i, animation.getTimePosition());
+                }
+                animation.setDirty(false);
+                hasUpdate = true;
+            }
+        }
+        return hasUpdate;
+    }
+
     /**
      * @hide
      */
@@ -521,16 +760,49 @@ public class RenderableInstance implements AnimatableModel {
             IRenderableInternalData renderableInternalData = renderable.getRenderableData();
             setupSkeleton(renderableInternalData);
             renderableInternalData.buildInstanceData(this, getRenderedEntity());
+            updateBounds(renderableInternalData);
             renderableId = changeId.get();
             // First time we're rendering, so always update the skinning even if we aren't animating and
             // there is no skinModifier.
             updateSkinning();
-        } else {
+        } else if (lodLevel == 0) {
             // Will only update the skinning if the renderable is animating or there is a skinModifier
             // that has been changed since the last draw.
-            if (updateAnimations(false)) {
+            if (updateAnimations(isLodAnimationStale)) {
                 updateSkinning();
             }
+            isLodAnimationStale = false;
+        }
+
+        if (lodLevel != 0) {
+            // Only the displayed level of detail is animated, with the animation state of this
+            // instance.
+            RenderableInstance lodInstance = lodInstances.get(lodLevel - 1);
+            lodInstance.prepareForDraw();
+            if (lodInstance.applyAnimationsFrom(this, isLodAnimationStale)) {
+                lodInstance.updateSkinning();
+            }
+            isLodAnimationStale = false;
+        }
+    }
+
+    private void addEntitiesToScene(Scene scene) {
+        scene.addEntity(getRenderedEntity());
+        FilamentAsset currentFilamentAsset = filamentAsset;
+        if (currentFilamentAsset != null) {
+            scene.addEntity(currentFilamentAsset.getRoot());
+            scene.addEntities(currentFilamentAsset.getEntities());
+        }
+    }
+
+    private void removeEntitiesFromScene(Scene scene) {
+        scene.removeEntity(getRenderedEntity());
+        FilamentAsset currentFilamentAsset = filamentAsset;
+        if (currentFilamentAsset != null) {
+            for (int entity : currentFilamentAsset.getEntities()) {
+                scene.removeEntity(entity);
+            }
+            scene.removeEntity(currentFilamentAsset.getRoot());
         }
     }
 
@@ -556,6 +828,15 @@ public class RenderableInstance implements AnimatableModel {
         attachedRenderer = renderer;
         renderable.attachToRenderer(renderer);
         attachFilamentAssetToRenderer();
+
+        for (RenderableInstance lodInstance : lodInstances) {
+            lodInstance.attachedRenderer = renderer;
+            lodInstance.renderable.attachToRenderer(renderer);
+        }
+        if (lodLevel != 0) {
+            removeEntitiesFromScene(renderer.getFilamentScene());
+            lodInstances.get(lodLevel - 1).addEntitiesToScene(renderer.getFilamentScene());
+        }
     }
 
     public void detachFromRenderer() {
@@ -571,6 +852,12 @@ public class RenderableInstance implements AnimatableModel {
             }
             attachedRenderer.removeInstance(this);
             renderable.detatchFromRenderer();
+
+            for (RenderableInstance lodInstance : lodInstances) {
+                lodInstance.removeEntitiesFromScene(attachedRenderer.getFilamentScene());
+                lodInstance.renderable.detatchFromRenderer();
+                lodInstance.attachedRenderer = null;
+            }
         }
     }
 
@@ -585,6 +872,10 @@ public class RenderableInstance implements AnimatableModel {
                     (RenderableInternalFilamentAssetData) renderable.getRenderableData();
             renderableData.resourceLoader.evictResourceData();
         }
+
+        for (RenderableInstance lodInstance : lodInstances) {
+            lodInstance.destroy();
+        }
     }
 
     /**
@@ -700,15 +991,22 @@ public class RenderableInstance implements AnimatableModel {
     private static final class CleanupCallback implements Runnable {
         private final int childEntity;
         private final int entity;
+        // The asset created for the instance, accounted until the instance is released.
+        @Nullable private final FilamentAsset filamentAsset;
 
-        CleanupCallback(int childEntity, int entity) {
+        CleanupCallback(int childEntity, int entity, @Nullable FilamentAsset filamentAsset) {
             this.childEntity = childEntity;
             this.entity = entity;
+            this.filamentAsset = filamentAsset;
         }
 
         @Override
         public void run() {
             AndroidPreconditions.checkUiThread();
+            ResourceAccounting accounting = ResourceAccounting.getInstance();
+            accounting.untrack(ResourceAccounting.Category.ENTITY, childEntity);
+            accounting.untrack(ResourceAccounting.Category.ENTITY, entity);
+            accounting.untrack(ResourceAccounting.Category.GLTF_ASSET, filamentAsset);
 
             IEngine engine = EngineInstance.getEngine();
 
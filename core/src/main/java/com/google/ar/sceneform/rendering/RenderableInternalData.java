@@ -2,7 +2,6 @@ package com.google.ar.sceneform.rendering;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import com.google.android.filament.Box;
 import com.google.android.filament.Entity;
 import com.google.android.filament.EntityInstance;
@@ -13,8 +12,7 @@ import com.google.android.filament.VertexBuffer;
 
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.Buffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -23,10 +21,9 @@ import java.util.List;
 /**
  * Represents the data used by a {@link Renderable} for rendering. All filament resources and
  * materials contained here will be disposed when the {@link RenderableInternalData#dispose()}
- * function is called.
+ * function is called, or after the data is garbage collected.
  */
 class RenderableInternalData implements IRenderableInternalData {
-  private static final String TAG = RenderableInternalData.class.getSimpleName();
 
   /** Represents the data used to render each mesh of the renderable. */
   static class MeshData {
@@ -45,19 +42,28 @@ class RenderableInternalData implements IRenderableInternalData {
   private final Vector3 transformOffset = Vector3.zero();
 
   // Raw buffers.
-  @Nullable private IntBuffer rawIndexBuffer;
-  @Nullable private FloatBuffer rawPositionBuffer;
-  @Nullable private FloatBuffer rawTangentsBuffer;
-  @Nullable private FloatBuffer rawUvBuffer;
-  @Nullable private FloatBuffer rawColorBuffer;
+  @Nullable private Buffer rawIndexBuffer;
+  @Nullable private Buffer rawPositionBuffer;
+  @Nullable private Buffer rawTangentsBuffer;
+  @Nullable private Buffer rawUvBuffer;
+  @Nullable private Buffer rawColorBuffer;
 
-  // Filament Geometry buffers.
-  @Nullable private IndexBuffer indexBuffer;
-  @Nullable private VertexBuffer vertexBuffer;
+  // Filament Geometry buffers, kept apart so that they can be destroyed once this is collected.
+  private final GeometryBuffers geometryBuffers = new GeometryBuffers();
 
   // Represents the set of meshes to render.
   private final ArrayList<MeshData> meshes = new ArrayList<>();
 
+  @Nullable private Object source;
+  @Nullable private DynamicMeshBuffers dynamicMeshBuffers;
+
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
+  RenderableInternalData() {
+    ResourceManager.getInstance()
+        .getRenderableDataCleanupRegistry()
+        .register(this, geometryBuffers);
+  }
+
 
 
 
@@ -114,78 +120,78 @@ class RenderableInternalData implements IRenderableInternalData {
 
   @Override
   public void setIndexBuffer(@Nullable IndexBuffer indexBuffer) {
-    this.indexBuffer = indexBuffer;
+    geometryBuffers.indexBuffer = indexBuffer;
   }
 
   @Override
   @Nullable
   public IndexBuffer getIndexBuffer() {
-    return indexBuffer;
+    return geometryBuffers.indexBuffer;
   }
 
   @Override
   public void setVertexBuffer(@Nullable VertexBuffer vertexBuffer) {
-    this.vertexBuffer = vertexBuffer;
+    geometryBuffers.vertexBuffer = vertexBuffer;
   }
 
   @Override
   @Nullable
   public VertexBuffer getVertexBuffer() {
-    return vertexBuffer;
+    return geometryBuffers.vertexBuffer;
   }
 
   @Override
-  public void setRawIndexBuffer(@Nullable IntBuffer rawIndexBuffer) {
+  public void setRawIndexBuffer(@Nullable Buffer rawIndexBuffer) {
     this.rawIndexBuffer = rawIndexBuffer;
   }
 
   @Override
   @Nullable
-  public IntBuffer getRawIndexBuffer() {
+  public Buffer getRawIndexBuffer() {
     return rawIndexBuffer;
   }
 
   @Override
-  public void setRawPositionBuffer(@Nullable FloatBuffer rawPositionBuffer) {
+  public void setRawPositionBuffer(@Nullable Buffer rawPositionBuffer) {
     this.rawPositionBuffer = rawPositionBuffer;
   }
 
   @Override
   @Nullable
-  public FloatBuffer getRawPositionBuffer() {
+  public Buffer getRawPositionBuffer() {
     return rawPositionBuffer;
   }
 
   @Override
-  public void setRawTangentsBuffer(@Nullable FloatBuffer rawTangentsBuffer) {
+  public void setRawTangentsBuffer(@Nullable Buffer rawTangentsBuffer) {
     this.rawTangentsBuffer = rawTangentsBuffer;
   }
 
   @Override
   @Nullable
-  public FloatBuffer getRawTangentsBuffer() {
+  public Buffer getRawTangentsBuffer() {
     return rawTangentsBuffer;
   }
 
   @Override
-  public void setRawUvBuffer(@Nullable FloatBuffer rawUvBuffer) {
+  public void setRawUvBuffer(@Nullable Buffer rawUvBuffer) {
     this.rawUvBuffer = rawUvBuffer;
   }
 
   @Override
   @Nullable
-  public FloatBuffer getRawUvBuffer() {
+  public Buffer getRawUvBuffer() {
     return rawUvBuffer;
   }
 
   @Override
-  public void setRawColorBuffer(@Nullable FloatBuffer rawColorBuffer) {
+  public void setRawColorBuffer(@Nullable Buffer rawColorBuffer) {
     this.rawColorBuffer = rawColorBuffer;
   }
 
   @Override
   @Nullable
-  public FloatBuffer getRawColorBuffer() {
+  public Buffer getRawColorBuffer() {
     return rawColorBuffer;
   }
 
@@ -270,6 +276,28 @@ class RenderableInternalData implements IRenderableInternalData {
     }
   }
 
+  @Override
+  public void setSource(@Nullable Object source) {
+    this.source = source;
+  }
+
+  @Override
+  @Nullable
+  public Object getSource() {
+    return source;
+  }
+
+  @Override
+  public void setDynamicMeshBuffers(@Nullable DynamicMeshBuffers dynamicMeshBuffers) {
+    this.dynamicMeshBuffers = dynamicMeshBuffers;
+  }
+
+  @Override
+  @Nullable
+  public DynamicMeshBuffers getDynamicMeshBuffers() {
+    return dynamicMeshBuffers;
+  }
+
   @Override
   public void setAnimationNames(@NonNull List<String> animationNames) {}
 
@@ -296,18 +324,6 @@ class RenderableInternalData implements IRenderableInternalData {
 
 
 
-  /** @hide */
-  @Override
-  protected void finalize() throws Throwable {
-    try {
-      ThreadPools.getMainExecutor().execute(() -> dispose());
-    } catch (Exception e) {
-      Log.e(TAG, "Error while Finalizing Renderable Internal Data.", e);
-    } finally {
-      super.finalize();
-    }
-  }
-
   /**
    * Removes any memory used by the object.
    *
@@ -315,21 +331,37 @@ class RenderableInternalData implements IRenderableInternalData {
    */
   @Override
   public void dispose() {
-    AndroidPreconditions.checkUiThread();
+    geometryBuffers.run();
+  }
 
-    IEngine engine = EngineInstance.getEngine();
-    if (engine == null || !engine.isValid()) {
-      return;
-    }
+  /** Destroys the filament buffers when disposed or after garbage collection. */
+  private static final class GeometryBuffers implements Runnable {
+    @Nullable private volatile IndexBuffer indexBuffer;
+    @Nullable private volatile VertexBuffer vertexBuffer;
+
+    @Override
+    public void run() {
+      AndroidPreconditions.checkUiThread();
+      ResourceAccounting accounting = ResourceAccounting.getInstance();
+      accounting.untrack(ResourceAccounting.Category.VERTEX_BUFFER, vertexBuffer);
+      accounting.untrack(ResourceAccounting.Category.INDEX_BUFFER, indexBuffer);
+
+      IEngine engine = EngineInstance.getEngine();
+      if (engine == null || !engine.isValid()) {
+        return;
+      }
 
-    if (vertexBuffer != null) {
-      engine.destroyVertexBuffer(vertexBuffer);
-      vertexBuffer = null;
-    }
+      VertexBuffer vertexBuffer = this.vertexBuffer;
+      if (vertexBuffer != null) {
+        engine.destroyVertexBuffer(vertexBuffer);
+        this.vertexBuffer = null;
+      }
 
-    if (indexBuffer != null) {
-      engine.destroyIndexBuffer(indexBuffer);
-      indexBuffer = null;
+      IndexBuffer indexBuffer = this.indexBuffer;
+      if (indexBuffer != null) {
+        engine.destroyIndexBuffer(indexBuffer);
+        this.indexBuffer = null;
+      }
     }
   }
 }
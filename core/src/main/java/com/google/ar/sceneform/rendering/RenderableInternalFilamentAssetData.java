@@ -14,10 +14,10 @@ import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.RenderableInternalData.MeshData;
 
 import java.nio.Buffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 /** Represents the data used by a {@link Renderable} for rendering natively loaded glTF data. */
@@ -29,6 +29,13 @@ public class RenderableInternalFilamentAssetData implements IRenderableInternalD
   boolean isGltfBinary;
   ResourceLoader resourceLoader;
   @Nullable Function<String, Uri> urlResolver;
+  // The resolved resources by their uri in the model, once they are loaded from the cache or
+  // downloaded, so that they are not resolved again.
+  @Nullable Map<String, ByteBuffer> resolvedResources;
+  @Nullable private Object source;
+  // The bounds of the asset, set when its first instance is created.
+  private final Vector3 centerAabb = Vector3.zero();
+  private final Vector3 extentsAabb = Vector3.zero();
   static UbershaderLoader ubershaderLoader;
 
   static UbershaderLoader getUberShaderLoader() {
@@ -40,29 +47,50 @@ public class RenderableInternalFilamentAssetData implements IRenderableInternalD
 
   @Override
   public void setCenterAabb(Vector3 center) {
-    // Not Implemented
+    this.centerAabb.set(center);
   }
 
   @Override
   public Vector3 getCenterAabb() {
+    return new Vector3(centerAabb);
+  }
+
+  @Override
+  public void setSource(@Nullable Object source) {
+    this.source = source;
+  }
+
+  @Override
+  @Nullable
+  public Object getSource() {
+    return source;
+  }
+
+  @Override
+  public void setDynamicMeshBuffers(@Nullable DynamicMeshBuffers dynamicMeshBuffers) {
     // Not Implemented
-    return Vector3.zero();
   }
 
   @Override
-  public void setExtentsAabb(Vector3 halfExtents) {
+  @Nullable
+  public DynamicMeshBuffers getDynamicMeshBuffers() {
     // Not Implemented
+    return null;
+  }
+
+  @Override
+  public void setExtentsAabb(Vector3 halfExtents) {
+    this.extentsAabb.set(halfExtents);
   }
 
   @Override
   public Vector3 getExtentsAabb() {
-    throw new IllegalStateException("Not Implemented");
+    return new Vector3(extentsAabb);
   }
 
   @Override
   public Vector3 getSizeAabb() {
-    // Not Implemented
-    return Vector3.zero();
+    return extentsAabb.scaled(2.0f);
   }
 
   @Override
@@ -123,61 +151,61 @@ public class RenderableInternalFilamentAssetData implements IRenderableInternalD
   }
 
   @Override
-  public void setRawIndexBuffer(@Nullable IntBuffer rawIndexBuffer) {
+  public void setRawIndexBuffer(@Nullable Buffer rawIndexBuffer) {
     // Not Implemented
   }
 
   @Nullable
   @Override
-  public IntBuffer getRawIndexBuffer() {
+  public Buffer getRawIndexBuffer() {
     // Not Implemented
     return null;
   }
 
   @Override
-  public void setRawPositionBuffer(@Nullable FloatBuffer rawPositionBuffer) {
+  public void setRawPositionBuffer(@Nullable Buffer rawPositionBuffer) {
     // Not Implemented
   }
 
   @Nullable
   @Override
-  public FloatBuffer getRawPositionBuffer() {
+  public Buffer getRawPositionBuffer() {
     // Not Implemented
     return null;
   }
 
   @Override
-  public void setRawTangentsBuffer(@Nullable FloatBuffer rawTangentsBuffer) {
+  public void setRawTangentsBuffer(@Nullable Buffer rawTangentsBuffer) {
     // Not Implemented
   }
 
   @Nullable
   @Override
-  public FloatBuffer getRawTangentsBuffer() {
+  public Buffer getRawTangentsBuffer() {
     // Not Implemented
     return null;
   }
 
   @Override
-  public void setRawUvBuffer(@Nullable FloatBuffer rawUvBuffer) {
+  public void setRawUvBuffer(@Nullable Buffer rawUvBuffer) {
     // Not Implemented
   }
 
   @Nullable
   @Override
-  public FloatBuffer getRawUvBuffer() {
+  public Buffer getRawUvBuffer() {
     // Not Implemented
     return null;
   }
 
   @Override
-  public void setRawColorBuffer(@Nullable FloatBuffer rawColorBuffer) {
+  public void setRawColorBuffer(@Nullable Buffer rawColorBuffer) {
     // Not Implemented
   }
 
   @Nullable
   @Override
-  public FloatBuffer getRawColorBuffer() {
+  public Buffer getRawColorBuffer() {
     // Not Implemented
     return null;
   }
@@ -27,6 +27,7 @@ import com.gorisse.thomas.sceneform.scene.CameraKt;
 import com.gorisse.thomas.sceneform.scene.SceneKt;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -46,6 +47,14 @@ public class Renderer implements UiHelper.RendererCallback {
     private final SurfaceView surfaceView;
     private final ViewAttachmentManager viewAttachmentManager;
     private final ArrayList<RenderableInstance> renderableInstances = new ArrayList<>();
+    private final ArrayList<RenderableInstance> visibleInstances = new ArrayList<>();
+    private final List<RenderableInstance> unmodifiableVisibleInstances =
+            Collections.unmodifiableList(visibleInstances);
+    private final ViewFrustum viewFrustum = new ViewFrustum();
+    private boolean isFrustumCullingEnabled = true;
+    // The first frame is always rendered.
+    private boolean isRenderRequested = true;
+    private int renderedChangeCount = RenderInvalidation.getChangeCount();
     private final ArrayList<LightInstance> lightInstances = new ArrayList<>();
     private final double[] cameraProjectionMatrix = new double[16];
     private final List<Mirror> mirrors = new ArrayList<>();
@@ -71,6 +80,15 @@ public class Renderer implements UiHelper.RendererCallback {
     @Nullable
     private PreRenderCallback preRenderCallback;
 
+    // The options set explicitly by the app, which the quality levels then leave as they are.
+    @Nullable
+    private com.google.android.filament.View.AntiAliasing antiAliasing;
+    @Nullable
+    private com.google.android.filament.View.MultiSampleAntiAliasingOptions msaaOptions;
+    private boolean isDynamicResolutionSetByApp = false;
+    @Nullable
+    private QualityLevel qualityLevel;
+
     /**
      * @hide
      */
@@ -116,6 +134,7 @@ public class Renderer implements UiHelper.RendererCallback {
         synchronized (mirrors) {
             mirrors.add(mirror);
         }
+        requestRender();
     }
 
     /**
@@ -159,6 +178,7 @@ public class Renderer implements UiHelper.RendererCallback {
      * @hide
      */
     public void setClearColor(Color color) {
+        requestRender();
         com.google.android.filament.Renderer.ClearOptions options = new com.google.android.filament.Renderer.ClearOptions();
         options.clear = true;
         if (color.a > 0) {
@@ -195,6 +215,31 @@ public class Renderer implements UiHelper.RendererCallback {
 
     public void setFrontFaceWindingInverted(Boolean inverted) {
         view.setFrontFaceWindingInverted(inverted);
+        requestRender();
+    }
+
+    /**
+     * Requests the next frame to be rendered. Only needed in on-demand mode, for changes that are
+     * not made through the scene graph or the Sceneform rendering resources.
+     */
+    public void requestRender() {
+        isRenderRequested = true;
+    }
+
+    /**
+     * Returns true if something changed since the last rendered frame: a render was requested, the
+     * scene graph or a shared rendering resource changed, or a renderable is still loading.
+     */
+    public boolean needsRender() {
+        if (isRenderRequested || renderedChangeCount != RenderInvalidation.getChangeCount()) {
+            return true;
+        }
+        for (RenderableInstance renderableInstance : renderableInstances) {
+            if (renderableInstance.hasPendingChanges()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -204,6 +249,37 @@ public class Renderer implements UiHelper.RendererCallback {
         this.cameraProvider = cameraProvider;
     }
 
+    /**
+     * Sets whether instances outside of the camera frustum skip their per-frame work (animation
+     * evaluation, skinning, texture streaming and view texture updates).
+     *
+     * <p>Culling uses the render bounds of each {@link Renderable}, the bounds of its geometry in
+     * its rest pose, not its collision shape. Disable it if animations move the geometry outside of
+     * these bounds. The default is true.
+     */
+    public void setFrustumCullingEnabled(boolean isFrustumCullingEnabled) {
+        this.isFrustumCullingEnabled = isFrustumCullingEnabled;
+    }
+
+    /**
+     * Returns true if instances outside of the camera frustum skip their per-frame work.
+     *
+     * @see #setFrustumCullingEnabled(boolean)
+     */
+    public boolean isFrustumCullingEnabled() {
+        return isFrustumCullingEnabled;
+    }
+
+    /**
+     * Returns the instances that were inside the camera frustum during the last rendered frame. When
+     * frustum culling is disabled this contains every attached instance.
+     *
+     * <p>The returned list is read only and is updated in place on each frame.
+     */
+    public List<RenderableInstance> getVisibleInstances() {
+        return unmodifiableVisibleInstances;
+    }
+
     /**
      * @hide
      */
@@ -317,6 +393,9 @@ public class Renderer implements UiHelper.RendererCallback {
             updateInstances();
             updateLights();
 
+            // Changes made while preparing the instances are part of this frame.
+            int changeCount = RenderInvalidation.getChangeCount();
+
             CameraProvider cameraProvider = this.cameraProvider;
             if (cameraProvider != null) {
 
@@ -352,7 +431,13 @@ public class Renderer implements UiHelper.RendererCallback {
                 }
                 renderer.endFrame();
 
-                reclaimReleasedResources();
+                // Nothing changed since the previous frame, the frame can spend more time disposing
+                // released resources.
+                boolean isIdleFrame = renderedChangeCount == changeCount;
+                isRenderRequested = false;
+                renderedChangeCount = changeCount;
+
+                ResourceManager.getInstance().reclaimReleasedResources(isIdleFrame);
             }
         }
     }
@@ -397,6 +482,7 @@ public class Renderer implements UiHelper.RendererCallback {
     public void setEnvironment(Environment environment) {
         this.environment = environment;
         SceneKt.setEnvironment(scene, environment);
+        requestRender();
     }
 
     /**
@@ -431,6 +517,7 @@ public class Renderer implements UiHelper.RendererCallback {
      */
     public void setIndirectLight(IndirectLight indirectLight) {
         scene.setIndirectLight(indirectLight);
+        requestRender();
     }
 
     /**
@@ -440,6 +527,7 @@ public class Renderer implements UiHelper.RendererCallback {
      */
     public void setSkybox(Skybox skybox) {
         scene.setSkybox(skybox);
+        requestRender();
     }
 
     public void setDesiredSize(int width, int height) {
@@ -480,6 +568,7 @@ public class Renderer implements UiHelper.RendererCallback {
         synchronized (this) {
             this.surface = surface;
             recreateSwapChain = true;
+            isRenderRequested = true;
         }
     }
 
@@ -501,9 +590,13 @@ public class Renderer implements UiHelper.RendererCallback {
     }
 
     /**
+     * Enables or disables dynamic resolution. Once set, the resolution scale of the quality levels
+     * is no longer applied.
+     *
      * @hide Only used for scuba testing for now.
      */
     public void setDynamicResolutionEnabled(boolean isEnabled) {
+        isDynamicResolutionSetByApp = true;
         // Enable dynamic resolution. By default it will scale down to 25% of the screen area
         // (i.e.: 50% on each axis, e.g.: reducing a 1080p image down to 720p).
         // This can be changed in the options below.
@@ -511,14 +604,33 @@ public class Renderer implements UiHelper.RendererCallback {
         DynamicResolutionOptions options = new DynamicResolutionOptions();
         options.enabled = isEnabled;
         view.setDynamicResolutionOptions(options);
+        requestRender();
     }
 
     /**
-     * @hide Only used for scuba testing for now.
+     * Sets the post-processing anti-aliasing of the view, which the quality levels then leave as
+     * it is. Pass null to have it follow the quality level again.
+     *
+     * <p>Options set directly on the filament view are overwritten when the quality level changes.
      */
-    @VisibleForTesting
-    public void setAntiAliasing(com.google.android.filament.View.AntiAliasing antiAliasing) {
-        view.setAntiAliasing(antiAliasing);
+    public void setAntiAliasing(
+            @Nullable com.google.android.filament.View.AntiAliasing antiAliasing) {
+        this.antiAliasing = antiAliasing;
+        applyAntiAliasing();
+        requestRender();
+    }
+
+    /**
+     * Sets the multi-sample anti-aliasing options of the view, which the quality levels then leave
+     * as they are. Pass null to have them follow the quality level again.
+     *
+     * <p>Options set directly on the filament view are overwritten when the quality level changes.
+     */
+    public void setMultiSampleAntiAliasingOptions(
+            @Nullable com.google.android.filament.View.MultiSampleAntiAliasingOptions options) {
+        this.msaaOptions = options;
+        applyAntiAliasing();
+        requestRender();
     }
 
     /**
@@ -527,6 +639,7 @@ public class Renderer implements UiHelper.RendererCallback {
     @VisibleForTesting
     public void setDithering(com.google.android.filament.View.Dithering dithering) {
         view.setDithering(dithering);
+        requestRender();
     }
 
     /**
@@ -546,6 +659,58 @@ public class Renderer implements UiHelper.RendererCallback {
         return;
     }
 
+    /**
+     * Applies the resolution, anti-aliasing and shadow settings of a quality level to the view.
+     * The frame rate and plane settings are applied by the SceneView. The options set by the app
+     * with {@link #setAntiAliasing}, {@link #setMultiSampleAntiAliasingOptions} or
+     * {@link #setDynamicResolutionEnabled} are kept.
+     *
+     * @hide Used internally by SceneView
+     */
+    public void setQualityLevel(QualityLevel qualityLevel) {
+        Preconditions.checkNotNull(qualityLevel, "Parameter \"qualityLevel\" was null.");
+        this.qualityLevel = qualityLevel;
+
+        if (!isDynamicResolutionSetByApp) {
+            // A fixed scale rather than a range so that the resolution only changes with the level.
+            DynamicResolutionOptions resolutionOptions = new DynamicResolutionOptions();
+            resolutionOptions.enabled = qualityLevel.getResolutionScale() < 1.0f;
+            resolutionOptions.minScale = qualityLevel.getResolutionScale();
+            resolutionOptions.maxScale = qualityLevel.getResolutionScale();
+            view.setDynamicResolutionOptions(resolutionOptions);
+        }
+
+        applyAntiAliasing();
+        view.setShadowingEnabled(qualityLevel.isShadowingEnabled());
+        requestRender();
+    }
+
+    /**
+     * Applies the anti-aliasing set by the app, or else the one of the quality level if any.
+     */
+    private void applyAntiAliasing() {
+        com.google.android.filament.View.MultiSampleAntiAliasingOptions msaaOptions =
+                this.msaaOptions;
+        if (msaaOptions == null && qualityLevel != null) {
+            msaaOptions = new com.google.android.filament.View.MultiSampleAntiAliasingOptions();
+            msaaOptions.enabled = qualityLevel.getMsaaSampleCount() > 1;
+            msaaOptions.sampleCount = qualityLevel.getMsaaSampleCount();
+        }
+        if (msaaOptions != null) {
+            view.setMultiSampleAntiAliasingOptions(msaaOptions);
+        }
+
+        com.google.android.filament.View.AntiAliasing antiAliasing = this.antiAliasing;
+        if (antiAliasing == null && qualityLevel != null) {
+            antiAliasing = qualityLevel.isFxaaEnabled()
+                    ? com.google.android.filament.View.AntiAliasing.FXAA
+                    : com.google.android.filament.View.AntiAliasing.NONE;
+        }
+        if (antiAliasing != null) {
+            view.setAntiAliasing(antiAliasing);
+        }
+    }
+
 
     /**
      * Sets a high performance configuration for the filament view. Disables MSAA, disables
@@ -565,14 +730,17 @@ public class Renderer implements UiHelper.RendererCallback {
     public void onResized(int width, int height) {
         view.setViewport(new Viewport(0, 0, width, height));
         emptyView.setViewport(new Viewport(0, 0, width, height));
+        requestRender();
     }
 
     public void addEntity(@Entity int entity) {
         scene.addEntity(entity);
+        requestRender();
     }
 
     public void removeEntity(@Entity int entity) {
         scene.removeEntity(entity);
+        requestRender();
     }
 
     public void addLight(@Entity int entity) {
@@ -619,6 +787,7 @@ public class Renderer implements UiHelper.RendererCallback {
     void removeInstance(RenderableInstance instance) {
         removeEntity(instance.getRenderedEntity());
         renderableInstances.remove(instance);
+        visibleInstances.remove(instance);
     }
 
     @NonNull
@@ -661,8 +830,24 @@ public class Renderer implements UiHelper.RendererCallback {
         final TransformManager transformManager = engine.getTransformManager();
         transformManager.openLocalTransformTransaction();
 
+        @Nullable ViewFrustum frustum = null;
+        CameraProvider cameraProvider = this.cameraProvider;
+        if (cameraProvider != null && cameraProvider.isActive()) {
+            viewFrustum.update(cameraProvider);
+            frustum = viewFrustum;
+        }
+
+        visibleInstances.clear();
         for (RenderableInstance renderableInstance : renderableInstances) {
-            renderableInstance.prepareForDraw();
+            // Instances outside of the frustum are still rendered by Filament (which does its own
+            // culling) but skip their CPU side per-frame work.
+            if (renderableInstance.updateFrustumVisibility(isFrustumCullingEnabled ? frustum : null)) {
+                if (frustum != null) {
+                    renderableInstance.updateLodLevel(frustum);
+                }
+                renderableInstance.prepareForDraw();
+                visibleInstances.add(renderableInstance);
+            }
 
             float[] transform = renderableInstance.getWorldModelMatrix().data;
             renderableInstance.setModelMatrix(transformManager, transform);
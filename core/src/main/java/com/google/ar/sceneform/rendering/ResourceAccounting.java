@@ -0,0 +1,311 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accounts the native and GPU resources held by Sceneform, with their estimated bytes.
+ *
+ * <p>Each filament object is tracked from its creation to its destruction, attributed to the
+ * registry id or source uri of the resource it was created for when it is known. A {@link
+ * Snapshot} of the live resources gives the counts and bytes per {@link Category} and per source,
+ * and can be exported as JSON to enforce budgets or find resources that are never released.
+ */
+public final class ResourceAccounting {
+  /** Kinds of accounted resources. */
+  public enum Category {
+    TEXTURE,
+    VERTEX_BUFFER,
+    INDEX_BUFFER,
+    MATERIAL_INSTANCE,
+    ENTITY,
+    GLTF_ASSET,
+    EXTERNAL_TEXTURE
+  }
+
+  /** Source of the resources that are not attributed to a registry id or uri. */
+  public static final String UNATTRIBUTED_SOURCE = "unattributed";
+
+  @Nullable private static ResourceAccounting instance = null;
+
+  private final EnumMap<Category, ConcurrentHashMap<Object, Entry>> liveEntries =
+      new EnumMap<>(Category.class);
+
+  private ResourceAccounting() {
+    for (Category category : Category.values()) {
+      liveEntries.put(category, new ConcurrentHashMap<>());
+    }
+  }
+
+  public static synchronized ResourceAccounting getInstance() {
+    if (instance == null) {
+      instance = new ResourceAccounting();
+    }
+    return instance;
+  }
+
+  /** Returns the resources alive at the moment. */
+  public Snapshot snapshot() {
+    ArrayList<Entry> entries = new ArrayList<>();
+    for (ConcurrentHashMap<Object, Entry> categoryEntries : liveEntries.values()) {
+      entries.addAll(categoryEntries.values());
+    }
+    return new Snapshot(System.currentTimeMillis(), entries);
+  }
+
+  /**
+   * Starts accounting a resource.
+   *
+   * @param handle the filament object, or the {@link Integer} of an entity
+   * @param description what is known of the resource, e.g. its format and dimensions
+   * @param source the registry id or uri the resource was created for, or null if unknown
+   */
+  void track(
+      Category category,
+      Object handle,
+      long byteSize,
+      String description,
+      @Nullable Object source) {
+    liveEntries
+        .get(category)
+        .put(
+            handle,
+            new Entry(
+                category,
+                byteSize,
+                description,
+                source != null ? source.toString() : UNATTRIBUTED_SOURCE,
+                System.currentTimeMillis()));
+  }
+
+  /** Stops accounting a resource once it is destroyed. */
+  void untrack(Category category, @Nullable Object handle) {
+    if (handle != null) {
+      liveEntries.get(category).remove(handle);
+    }
+  }
+
+  /** Returns the bytes of a 2D texture and of its mip chain. */
+  static long estimateTextureBytes(
+      int width, int height, int levels, com.google.android.filament.Texture.InternalFormat format) {
+    long bytesPerTexel = getBytesPerTexel(format);
+    long byteSize = 0;
+    for (int level = 0; level < Math.max(1, levels); level++) {
+      byteSize += (long) Math.max(1, width >> level) * Math.max(1, height >> level) * bytesPerTexel;
+    }
+    return byteSize;
+  }
+
+  static String describeTexture(
+      int width, int height, int levels, com.google.android.filament.Texture.InternalFormat format) {
+    return format + " " + width + "x" + height + " levels=" + levels;
+  }
+
+  private static int getBytesPerTexel(com.google.android.filament.Texture.InternalFormat format) {
+    switch (format) {
+      case R8:
+        return 1;
+      case RG8:
+      case R16F:
+        return 2;
+      case RGB8:
+      case SRGB8:
+        return 3;
+      case RGBA16F:
+        return 8;
+      case RGBA32F:
+        return 16;
+      default:
+        return 4;
+    }
+  }
+
+  /** A live resource. */
+  public static final class Entry {
+    private final Category category;
+    private final long byteSize;
+    private final String description;
+    private final String source;
+    private final long createdTimeMillis;
+
+    Entry(
+        Category category,
+        long byteSize,
+        String description,
+        String source,
+        long createdTimeMillis) {
+      this.category = category;
+      this.byteSize = byteSize;
+      this.description = description;
+      this.source = source;
+      this.createdTimeMillis = createdTimeMillis;
+    }
+
+    public Category getCategory() {
+      return category;
+    }
+
+    /** Returns the estimated bytes, zero if they are not known. */
+    public long getByteSize() {
+      return byteSize;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    /** Returns the registry id or uri, or {@link #UNATTRIBUTED_SOURCE}. */
+    public String getSource() {
+      return source;
+    }
+
+    /** Returns the {@link System#currentTimeMillis()} when the resource was created. */
+    public long getCreatedTimeMillis() {
+      return createdTimeMillis;
+    }
+  }
+
+  /** The resources alive at a point in time. */
+  public static final class Snapshot {
+    private final long timeMillis;
+    private final List<Entry> entries;
+    private final EnumMap<Category, Integer> counts = new EnumMap<>(Category.class);
+    private final EnumMap<Category, Long> byteSizes = new EnumMap<>(Category.class);
+
+    Snapshot(long timeMillis, List<Entry> entries) {
+      this.timeMillis = timeMillis;
+      this.entries = Collections.unmodifiableList(entries);
+      for (Category category : Category.values()) {
+        counts.put(category, 0);
+        byteSizes.put(category, 0L);
+      }
+      for (Entry entry : entries) {
+        counts.merge(entry.category, 1, Integer::sum);
+        byteSizes.merge(entry.category, entry.byteSize, Long::sum);
+      }
+    }
+
+    public long getTimeMillis() {
+      return timeMillis;
+    }
+
+    public List<Entry> getEntries() {
+      return entries;
+    }
+
+    public int getCount(Category category) {
+      return counts.get(category);
+    }
+
+    public long getByteSize(Category category) {
+      return byteSizes.get(category);
+    }
+
+    public long getTotalByteSize() {
+      long totalByteSize = 0;
+      for (long byteSize : byteSizes.values()) {
+        totalByteSize += byteSize;
+      }
+      return totalByteSize;
+    }
+
+    /** Returns the estimated bytes of the resources of each source. */
+    public Map<String, Long> getByteSizesBySource() {
+      LinkedHashMap<String, Long> bySource = new LinkedHashMap<>();
+      for (Entry entry : entries) {
+        bySource.merge(entry.source, entry.byteSize, Long::sum);
+      }
+      return bySource;
+    }
+
+    /**
+     * Returns the snapshot as a JSON object with the totals per category and the list of entries.
+     */
+    public String toJson() {
+      StringBuilder json = new StringBuilder();
+      json.append("{\"timeMillis\":").append(timeMillis);
+      json.append(",\"totalBytes\":").append(getTotalByteSize());
+      json.append(",\"categories\":{");
+      boolean isFirst = true;
+      for (Category category : Category.values()) {
+        if (!isFirst) {
+          json.append(',');
+        }
+        isFirst = false;
+        json.append('"').append(category.name().toLowerCase(Locale.US)).append("\":{");
+        json.append("\"count\":").append(getCount(category));
+        json.append(",\"bytes\":").append(getByteSize(category)).append('}');
+      }
+      json.append("},\"entries\":[");
+      for (int i = 0; i < entries.size(); i++) {
+        Entry entry = entries.get(i);
+        if (i > 0) {
+          json.append(',');
+        }
+        json.append("{\"category\":\"")
+            .append(entry.category.name().toLowerCase(Locale.US))
+            .append("\",\"bytes\":")
+            .append(entry.byteSize)
+            .append(",\"description\":");
+        appendJsonString(json, entry.description);
+        json.append(",\"source\":");
+        appendJsonString(json, entry.source);
+        json.append(",\"createdTimeMillis\":").append(entry.createdTimeMillis).append('}');
+      }
+      return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder string = new StringBuilder("ResourceAccounting.Snapshot{");
+      for (Category category : Category.values()) {
+        string
+            .append(category.name().toLowerCase(Locale.US))
+            .append('=')
+            .append(getCount(category))
+            .append('/')
+            .append(getByteSize(category))
+            .append("B, ");
+      }
+      return string.append("totalBytes=").append(getTotalByteSize()).append('}').toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+      json.append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '"':
+            json.append("\\\"");
+            break;
+          case '\\':
+            json.append("\\\\");
+            break;
+          case '\n':
+            json.append("\\n");
+            break;
+          case '\r':
+            json.append("\\r");
+            break;
+          case '\t':
+            json.append("\\t");
+            break;
+          default:
+            if (c < 0x20) {
+              json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+              json.append(c);
+            }
+        }
+      }
+      json.append('"');
+    }
+  }
+}
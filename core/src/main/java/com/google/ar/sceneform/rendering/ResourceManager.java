@@ -1,10 +1,20 @@
 package com.google.ar.sceneform.rendering;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
 import androidx.annotation.Nullable;
 
+import com.google.android.filament.IndexBuffer;
+import com.google.android.filament.VertexBuffer;
+import com.google.ar.sceneform.resources.ReclaimBudget;
+import com.google.ar.sceneform.resources.ResourceCache;
 import com.google.ar.sceneform.resources.ResourceHolder;
 import com.google.ar.sceneform.resources.ResourceRegistry;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Minimal resource manager. Maintains mappings from ids to created resources and a task executor
@@ -14,9 +24,15 @@ import java.util.ArrayList;
  */
 @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
 public class ResourceManager {
+  public static final float DEFAULT_RECLAIM_BUDGET_MILLIS = 1.0f;
+  public static final int DEFAULT_RECLAIM_BUDGET_COUNT = 64;
+  public static final float DEFAULT_IDLE_RECLAIM_BUDGET_MILLIS = 4.0f;
+  public static final int DEFAULT_IDLE_RECLAIM_BUDGET_COUNT = 512;
+
   @Nullable private static ResourceManager instance = null;
 
   private final ArrayList<ResourceHolder> resourceHolders = new ArrayList<>();
+  private final ArrayList<String> resourceHolderNames = new ArrayList<>();
   private final ResourceRegistry<Texture> textureRegistry = new ResourceRegistry<>();
   private final ResourceRegistry<Material> materialRegistry = new ResourceRegistry<>();
   private final ResourceRegistry<ModelRenderable> modelRenderableRegistry =
@@ -33,6 +49,26 @@ public class ResourceManager {
   private final CleanupRegistry<RenderableInstance> renderableInstanceCleanupRegistry =
       new CleanupRegistry<>();
   private final CleanupRegistry<Texture> textureCleanupRegistry = new CleanupRegistry<>();
+  private final CleanupRegistry<RenderableInternalData> renderableDataCleanupRegistry =
+      new CleanupRegistry<>();
+  private final CleanupRegistry<ViewRenderable> viewRenderableCleanupRegistry =
+      new CleanupRegistry<>();
+  private final CleanupRegistry<LightInstance> lightInstanceCleanupRegistry =
+      new CleanupRegistry<>();
+  private final MaterialInstancePool materialInstancePool = new MaterialInstancePool();
+  private final ResourceCache resourceCache = new ResourceCache();
+  private boolean isTrimMemoryRegistered = false;
+  private float reclaimBudgetMillis = DEFAULT_RECLAIM_BUDGET_MILLIS;
+  private int reclaimBudgetCount = DEFAULT_RECLAIM_BUDGET_COUNT;
+  private float idleReclaimBudgetMillis = DEFAULT_IDLE_RECLAIM_BUDGET_MILLIS;
+  private int idleReclaimBudgetCount = DEFAULT_IDLE_RECLAIM_BUDGET_COUNT;
+  // The holder reclaimed first by the next budgeted call.
+  private int firstReclaimedHolder = 0;
+
+  // Rough estimates of the resources whose size is not known.
+  private static final long MATERIAL_BYTES_ESTIMATE = 16 * 1024;
+  private static final long VERTEX_BYTES_ESTIMATE = 48;
+  private static final long INDEX_BYTES_ESTIMATE = 4;
 
   ResourceRegistry<Texture> getTextureRegistry() {
     return textureRegistry;
@@ -75,6 +111,69 @@ public class ResourceManager {
     return textureCleanupRegistry;
   }
 
+  CleanupRegistry<RenderableInternalData> getRenderableDataCleanupRegistry() {
+    return renderableDataCleanupRegistry;
+  }
+
+  CleanupRegistry<ViewRenderable> getViewRenderableCleanupRegistry() {
+    return viewRenderableCleanupRegistry;
+  }
+
+  CleanupRegistry<LightInstance> getLightInstanceCleanupRegistry() {
+    return lightInstanceCleanupRegistry;
+  }
+
+  /** Returns the pool of material instances shared by materials with identical parameters. */
+  public MaterialInstancePool getMaterialInstancePool() {
+    return materialInstancePool;
+  }
+
+  /**
+   * Returns the cache keeping the recently used textures, materials and model renderables up to a
+   * budget of estimated bytes.
+   */
+  public ResourceCache getResourceCache() {
+    return resourceCache;
+  }
+
+  /**
+   * Returns the counts and estimated bytes of the native and GPU resources alive at the moment, by
+   * category and source.
+   */
+  public ResourceAccounting.Snapshot getResourceSnapshot() {
+    return ResourceAccounting.getInstance().snapshot();
+  }
+
+  /** Evicts cached resources depending on the {@link ComponentCallbacks2} trim memory level. */
+  public void onTrimMemory(int level) {
+    resourceCache.onTrimMemory(level);
+  }
+
+  /** Forwards the trim memory callbacks of the application to the resource cache, once. */
+  public void registerTrimMemoryCallbacks(Context context) {
+    if (isTrimMemoryRegistered) {
+      return;
+    }
+    isTrimMemoryRegistered = true;
+    context
+        .getApplicationContext()
+        .registerComponentCallbacks(
+            new ComponentCallbacks2() {
+              @Override
+              public void onTrimMemory(int level) {
+                ResourceManager.this.onTrimMemory(level);
+              }
+
+              @Override
+              public void onConfigurationChanged(Configuration configuration) {}
+
+              @Override
+              public void onLowMemory() {
+                ResourceManager.this.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+              }
+            });
+  }
+
   public long reclaimReleasedResources() {
     long resourcesInUse = 0;
     for (ResourceHolder registry : resourceHolders) {
@@ -83,15 +182,90 @@ public class ResourceManager {
     return resourcesInUse;
   }
 
+  /**
+   * Disposes released resources within the budget of a frame. The resources that do not fit are
+   * disposed by the next frames.
+   *
+   * @param isIdleFrame true if nothing changed in the frame, the idle budget is used then
+   * @return Count of resources in use.
+   */
+  public long reclaimReleasedResources(boolean isIdleFrame) {
+    return reclaimReleasedResources(
+        isIdleFrame
+            ? ReclaimBudget.of(idleReclaimBudgetMillis, idleReclaimBudgetCount)
+            : ReclaimBudget.of(reclaimBudgetMillis, reclaimBudgetCount));
+  }
+
+  /**
+   * Disposes released resources until the budget is spent.
+   *
+   * @return Count of resources in use.
+   */
+  public long reclaimReleasedResources(ReclaimBudget budget) {
+    int holderCount = resourceHolders.size();
+    if (holderCount == 0) {
+      return 0;
+    }
+    // Starts from another holder each time, so that the backlog of a holder doesn't hold back the
+    // reclamation of the next ones.
+    long resourcesInUse = 0;
+    for (int i = 0; i < holderCount; i++) {
+      resourcesInUse +=
+          resourceHolders
+              .get((firstReclaimedHolder + i) % holderCount)
+              .reclaimReleasedResources(budget);
+    }
+    firstReclaimedHolder = (firstReclaimedHolder + 1) % holderCount;
+    return resourcesInUse;
+  }
+
+  /** Sets the time and the number of resources disposed in each rendered frame. */
+  public void setReclaimBudget(float maxMillis, int maxCount) {
+    reclaimBudgetMillis = maxMillis;
+    reclaimBudgetCount = maxCount;
+  }
+
+  /** Sets the time and the number of resources disposed in the frames where nothing changed. */
+  public void setIdleReclaimBudget(float maxMillis, int maxCount) {
+    idleReclaimBudgetMillis = maxMillis;
+    idleReclaimBudgetCount = maxCount;
+  }
+
+  /** Returns the number of released resources waiting to be disposed. */
+  public int getPendingReclaimCount() {
+    int pendingCount = 0;
+    for (ResourceHolder resourceHolder : resourceHolders) {
+      pendingCount += resourceHolder.getPendingReclaimCount();
+    }
+    return pendingCount;
+  }
+
+  /** Returns the number of released resources waiting to be disposed by name of their holder. */
+  public Map<String, Integer> getPendingReclaimCounts() {
+    Map<String, Integer> pendingCounts = new LinkedHashMap<>();
+    for (int i = 0; i < resourceHolders.size(); i++) {
+      pendingCounts.merge(
+          resourceHolderNames.get(i), resourceHolders.get(i).getPendingReclaimCount(), Integer::sum);
+    }
+    return pendingCounts;
+  }
+
   /** Forcibly deletes all tracked references */
   public void destroyAllResources() {
     for (ResourceHolder resourceHolder : resourceHolders) {
       resourceHolder.destroyAllResources();
     }
+    materialInstancePool.clear();
   }
 
   public void addResourceHolder(ResourceHolder resource) {
+    addResourceHolder(resource.getClass().getSimpleName(), resource);
+  }
+
+  /** Adds a holder, named in the metrics by the given name. */
+  public void addResourceHolder(String name, ResourceHolder resource) {
     resourceHolders.add(resource);
+    resourceHolderNames.add(name);
   }
 
   public static ResourceManager getInstance() {
@@ -103,20 +277,70 @@ public class ResourceManager {
   }
 
   private ResourceManager() {
-    addResourceHolder(textureRegistry);
-    addResourceHolder(materialRegistry);
-    addResourceHolder(modelRenderableRegistry);
+    textureRegistry.setCache(resourceCache, ResourceManager::estimateTextureBytes);
+    materialRegistry.setCache(resourceCache, material -> MATERIAL_BYTES_ESTIMATE);
+    modelRenderableRegistry.setCache(resourceCache, ResourceManager::estimateRenderableBytes);
+    addResourceHolder("textureRegistry", textureRegistry);
+    addResourceHolder("materialRegistry", materialRegistry);
+    addResourceHolder("modelRenderableRegistry", modelRenderableRegistry);
     addViewRenderableRegistry();
-    addResourceHolder(cameraStreamCleanupRegistry);
-    addResourceHolder(externalTextureCleanupRegistry);
-    addResourceHolder(depthTextureCleanupRegistry);
-    addResourceHolder(materialCleanupRegistry);
-    addResourceHolder(renderableInstanceCleanupRegistry);
-    addResourceHolder(textureCleanupRegistry);
+    addResourceHolder("cameraStreamCleanup", cameraStreamCleanupRegistry);
+    addResourceHolder("externalTextureCleanup", externalTextureCleanupRegistry);
+    addResourceHolder("depthTextureCleanup", depthTextureCleanupRegistry);
+    addResourceHolder("materialCleanup", materialCleanupRegistry);
+    addResourceHolder("renderableInstanceCleanup", renderableInstanceCleanupRegistry);
+    addResourceHolder("textureCleanup", textureCleanupRegistry);
+    addResourceHolder("renderableDataCleanup", renderableDataCleanupRegistry);
+    addResourceHolder("viewRenderableCleanup", viewRenderableCleanupRegistry);
+    addResourceHolder("lightInstanceCleanup", lightInstanceCleanupRegistry);
   }
 
   
   private void addViewRenderableRegistry() {
-    addResourceHolder(viewRenderableRegistry);
+    addResourceHolder("viewRenderableRegistry", viewRenderableRegistry);
+  }
+
+  /**
+   * Estimates the GPU bytes of a texture from its format and mip levels, like the resource
+   * snapshots.
+   */
+  private static long estimateTextureBytes(Texture texture) {
+    com.google.android.filament.Texture filamentTexture = texture.getFilamentTexture();
+    return ResourceAccounting.estimateTextureBytes(
+        filamentTexture.getWidth(0),
+        filamentTexture.getHeight(0),
+        filamentTexture.getLevels(),
+        filamentTexture.getFormat());
+  }
+
+  /**
+   * Estimates the bytes of the geometry of a renderable. Its materials and textures are accounted
+   * in their own registries.
+   */
+  static long estimateRenderableBytes(Renderable renderable) {
+    IRenderableInternalData renderableData = renderable.getRenderableData();
+    if (renderableData instanceof RenderableInternalFilamentAssetData) {
+      // The buffers of glTF models are uploaded as they are.
+      RenderableInternalFilamentAssetData assetData =
+          (RenderableInternalFilamentAssetData) renderableData;
+      long byteSize = assetData.gltfByteBuffer != null ? assetData.gltfByteBuffer.capacity() : 0;
+      if (assetData.resolvedResources != null) {
+        for (ByteBuffer buffer : assetData.resolvedResources.values()) {
+          byteSize += buffer.capacity();
+        }
+      }
+      return byteSize;
+    }
+
+    long byteSize = 0;
+    @Nullable VertexBuffer vertexBuffer = renderableData.getVertexBuffer();
+    if (vertexBuffer != null) {
+      byteSize += vertexBuffer.getVertexCount() * VERTEX_BYTES_ESTIMATE;
+    }
+    @Nullable IndexBuffer indexBuffer = renderableData.getIndexBuffer();
+    if (indexBuffer != null) {
+      byteSize += indexBuffer.getIndexCount() * INDEX_BYTES_ESTIMATE;
+    }
+    return byteSize;
   }
 }
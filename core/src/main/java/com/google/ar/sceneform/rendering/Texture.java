@@ -268,14 +268,15 @@ public class Texture {
       AndroidPreconditions.checkUiThread();
       Object registryId = this.registryId;
       if (registryId != null) {
-        // See if a texture has already been registered by this id, if so re-use it.
+        // See if a texture has already been registered by this id, if so re-use it. Concurrent
+        // builds of the same id share a single load.
         ResourceRegistry<Texture> registry = ResourceManager.getInstance().getTextureRegistry();
-        @Nullable CompletableFuture<Texture> textureFuture = registry.get(registryId);
-        if (textureFuture != null) {
-          return textureFuture;
-        }
+        return registry.getOrLoad(registryId, () -> load(registryId));
       }
+      return load(null);
+    }
 
+    private CompletableFuture<Texture> load(@Nullable Object registryId) {
       if (textureInternalData != null && registryId != null) {
         throw new IllegalStateException("Builder must not set both a bitmap and filament texture");
       }
@@ -297,15 +298,15 @@ public class Texture {
                 bitmapFuture.thenApplyAsync(
                         loadedBitmap -> {
                           TextureInternalData textureData =
-                                  makeTextureData(loadedBitmap, sampler, usage, MIP_LEVELS_TO_GENERATE);
+                                  makeTextureData(
+                                          loadedBitmap,
+                                          sampler,
+                                          usage,
+                                          MIP_LEVELS_TO_GENERATE,
+                                          registryId);
                           return new Texture(textureData);
                         },
-                        ThreadPools.getMainExecutor());
-      }
-
-      if (registryId != null) {
-        ResourceRegistry<Texture> registry = ResourceManager.getInstance().getTextureRegistry();
-        registry.register(registryId, result);
+                        GpuUploadQueue.getInstance().getExecutor(null));
       }
 
       FutureHelper.logOnException(
@@ -345,7 +346,7 @@ public class Texture {
     }
 
     private static TextureInternalData makeTextureData(
-            Bitmap bitmap, Sampler sampler, Usage usage, int mipLevels) {
+            Bitmap bitmap, Sampler sampler, Usage usage, int mipLevels, @Nullable Object source) {
       IEngine engine = EngineInstance.getEngine();
 
       // Due to fun ambiguities between Texture (RenderCore) and Texture (Filament)
@@ -372,6 +373,17 @@ public class Texture {
         filamentTexture.generateMipmaps(engine.getFilamentEngine());
       }
 
+      int levels = filamentTexture.getLevels();
+      ResourceAccounting.getInstance()
+              .track(
+                      ResourceAccounting.Category.TEXTURE,
+                      filamentTexture,
+                      ResourceAccounting.estimateTextureBytes(
+                              bitmap.getWidth(), bitmap.getHeight(), levels, textureInternalFormat),
+                      ResourceAccounting.describeTexture(
+                              bitmap.getWidth(), bitmap.getHeight(), levels, textureInternalFormat),
+                      source);
+
       return new TextureInternalData(filamentTexture, sampler);
     }
   }
@@ -43,6 +43,8 @@ public class TextureInternalData extends SharedReference {
     IEngine engine = EngineInstance.getEngine();
     com.google.android.filament.Texture filamentTexture = this.filamentTexture;
     this.filamentTexture = null;
+    ResourceAccounting.getInstance()
+        .untrack(ResourceAccounting.Category.TEXTURE, filamentTexture);
     if (filamentTexture != null && engine != null && engine.isValid()) {
       engine.destroyTexture(filamentTexture);
     }
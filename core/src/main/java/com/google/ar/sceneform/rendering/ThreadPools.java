@@ -1,9 +1,10 @@
 package com.google.ar.sceneform.rendering;
 
-import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Provides access to default {@link Executor}s to be used
@@ -19,15 +20,7 @@ public class ThreadPools {
   /** {@link Executor} for anything that that touches {@link Renderer} state */
   public static Executor getMainExecutor() {
     if (mainExecutor == null) {
-      mainExecutor =
-          new Executor() {
-            private final Handler handler = new Handler(Looper.getMainLooper());
-
-            @Override
-            public void execute(Runnable runnable) {
-              handler.post(runnable);
-            }
-          };
+      mainExecutor = new MainThreadExecutor();
     }
     return mainExecutor;
   }
@@ -37,10 +30,15 @@ public class ThreadPools {
     mainExecutor = executor;
   }
 
-  /** Default background {@link Executor} for async operations including file reading. */
+  /**
+   * Default background {@link Executor} for async operations including file reading.
+   *
+   * <p>Runs on the I/O pool of the {@link LoadScheduler} with the default priority. The stages of
+   * loads with a {@link LoadRequest} are queued on the scheduler for their request instead.
+   */
   public static Executor getThreadPoolExecutor() {
     if (threadPoolExecutor == null) {
-      return AsyncTask.THREAD_POOL_EXECUTOR;
+      return LoadScheduler.getInstance().getIoExecutor();
     }
     return threadPoolExecutor;
   }
@@ -53,4 +51,40 @@ public class ThreadPools {
   public static void setThreadPoolExecutor(Executor executor) {
     threadPoolExecutor = executor;
   }
+
+  /**
+   * Runs the continuations posted from the loader threads in batches, with a single message of the
+   * main looper for all the continuations queued since the last batch.
+   */
+  private static final class MainThreadExecutor implements Executor {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<Runnable> runnables = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isPosted = new AtomicBoolean(false);
+    private final Runnable runBatch = this::runBatch;
+
+    @Override
+    public void execute(Runnable runnable) {
+      runnables.add(runnable);
+      if (isPosted.compareAndSet(false, true)) {
+        handler.post(runBatch);
+      }
+    }
+
+    private void runBatch() {
+      isPosted.set(false);
+      // Continuations queued while the batch runs wait for the next message, so that a chain of
+      // continuations can't hold the main thread.
+      int count = runnables.size();
+      for (int i = 0; i < count; i++) {
+        Runnable runnable = runnables.poll();
+        if (runnable == null) {
+          break;
+        }
+        runnable.run();
+      }
+      if (!runnables.isEmpty() && isPosted.compareAndSet(false, true)) {
+        handler.post(runBatch);
+      }
+    }
+  }
 }
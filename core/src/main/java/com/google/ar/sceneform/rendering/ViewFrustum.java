@@ -0,0 +1,137 @@
+package com.google.ar.sceneform.rendering;
+
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.utilities.Preconditions;
+
+/**
+ * The six clip planes of a camera, used to test world space bounds against what the camera can
+ * see.
+ *
+ * <p>Planes are extracted from the combined view-projection matrix and are not normalized, which is
+ * sufficient for the conservative inside/outside tests performed here. The frustum also estimates
+ * how much of the view is covered by bounds, which is used to select levels of detail.
+ *
+ * @hide
+ */
+class ViewFrustum {
+  private static final int PLANE_COUNT = 6;
+
+  // Each plane is stored as (a, b, c, d) such that a point p is inside when a*x + b*y + c*z + d >= 0.
+  private final float[] planes = new float[PLANE_COUNT * 4];
+  private final Matrix viewMatrix = new Matrix();
+  private final Matrix viewProjectionMatrix = new Matrix();
+  private final Vector3 cameraPosition = new Vector3();
+  private float projectionScaleY = 1.0f;
+
+  /**
+   * Updates the frustum planes from the given camera.
+   *
+   * <p>The view matrix is derived from the camera world model matrix, which is what the Filament
+   * camera is given when rendering.
+   */
+  void update(CameraProvider cameraProvider) {
+    Preconditions.checkNotNull(cameraProvider, "Parameter \"cameraProvider\" was null.");
+
+    Matrix.invert(cameraProvider.getWorldModelMatrix(), viewMatrix);
+    Matrix.multiply(cameraProvider.getProjectionMatrix(), viewMatrix, viewProjectionMatrix);
+    cameraProvider.getWorldModelMatrix().decomposeTranslation(cameraPosition);
+    projectionScaleY = Math.abs(cameraProvider.getProjectionMatrix().data[5]);
+
+    float[] m = viewProjectionMatrix.data;
+    for (int i = 0; i < 3; i++) {
+      // Column major: row i is (m[i], m[4 + i], m[8 + i], m[12 + i]).
+      setPlane(i * 2, m, i, 1.0f);
+      setPlane(i * 2 + 1, m, i, -1.0f);
+    }
+  }
+
+  /**
+   * Returns true if the local space box, transformed by the world model matrix, intersects the
+   * frustum.
+   */
+  boolean intersectsBox(Vector3 localCenter, Vector3 localExtents, Matrix worldModelMatrix) {
+    float[] w = worldModelMatrix.data;
+
+    // Transform the box into a world space axis aligned box enclosing it.
+    float cx = w[0] * localCenter.x + w[4] * localCenter.y + w[8] * localCenter.z + w[12];
+    float cy = w[1] * localCenter.x + w[5] * localCenter.y + w[9] * localCenter.z + w[13];
+    float cz = w[2] * localCenter.x + w[6] * localCenter.y + w[10] * localCenter.z + w[14];
+    float ex =
+        Math.abs(w[0]) * localExtents.x
+            + Math.abs(w[4]) * localExtents.y
+            + Math.abs(w[8]) * localExtents.z;
+    float ey =
+        Math.abs(w[1]) * localExtents.x
+            + Math.abs(w[5]) * localExtents.y
+            + Math.abs(w[9]) * localExtents.z;
+    float ez =
+        Math.abs(w[2]) * localExtents.x
+            + Math.abs(w[6]) * localExtents.y
+            + Math.abs(w[10]) * localExtents.z;
+
+    for (int i = 0; i < PLANE_COUNT; i++) {
+      int offset = i * 4;
+      float a = planes[offset];
+      float b = planes[offset + 1];
+      float c = planes[offset + 2];
+      float d = planes[offset + 3];
+
+      float distance = a * cx + b * cy + c * cz + d;
+      float radius = Math.abs(a) * ex + Math.abs(b) * ey + Math.abs(c) * ez;
+      if (distance + radius < 0.0f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the approximate fraction of the view height, between 0 and 1, covered by the given
+   * local space box transformed by the world model matrix. The bounding sphere of the box is
+   * projected, which is independent of the camera orientation. Called for every instance with
+   * levels of detail each frame, it doesn't allocate.
+   */
+  float getScreenCoverage(Vector3 localCenter, Vector3 localExtents, Matrix worldModelMatrix) {
+    float[] w = worldModelMatrix.data;
+
+    // The extents are scaled by the lengths of the axes of the world model matrix.
+    float ex = localExtents.x * getColumnLength(w, 0);
+    float ey = localExtents.y * getColumnLength(w, 4);
+    float ez = localExtents.z * getColumnLength(w, 8);
+    float radius = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+
+    float dx =
+        w[0] * localCenter.x + w[4] * localCenter.y + w[8] * localCenter.z + w[12]
+            - cameraPosition.x;
+    float dy =
+        w[1] * localCenter.x + w[5] * localCenter.y + w[9] * localCenter.z + w[13]
+            - cameraPosition.y;
+    float dz =
+        w[2] * localCenter.x + w[6] * localCenter.y + w[10] * localCenter.z + w[14]
+            - cameraPosition.z;
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    if (distance <= radius) {
+      return 1.0f;
+    }
+
+    // The projection scale maps a view space height at distance 1 to half the view height.
+    return Math.min(1.0f, radius * projectionScaleY / distance);
+  }
+
+  private static float getColumnLength(float[] m, int offset) {
+    return (float)
+        Math.sqrt(
+            m[offset] * m[offset]
+                + m[offset + 1] * m[offset + 1]
+                + m[offset + 2] * m[offset + 2]);
+  }
+
+  private void setPlane(int planeIndex, float[] m, int row, float sign) {
+    int offset = planeIndex * 4;
+    planes[offset] = m[3] + sign * m[row];
+    planes[offset + 1] = m[7] + sign * m[4 + row];
+    planes[offset + 2] = m[11] + sign * m[8 + row];
+    planes[offset + 3] = m[15] + sign * m[12 + row];
+  }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Build;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,6 +17,7 @@ import com.google.ar.sceneform.resources.ResourceRegistry;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.Preconditions;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.OptionalInt;
@@ -38,7 +38,6 @@ import java.util.concurrent.CompletableFuture;
 @RequiresApi(api = Build.VERSION_CODES.N)
 
 public class ViewRenderable extends Renderable {
-  private static final String TAG = ViewRenderable.class.getSimpleName();
 
   /**
    * Controls the horizontal alignment of the {@link ViewRenderable} relative to the {@link
@@ -74,13 +73,12 @@ public class ViewRenderable extends Renderable {
   @Nullable private Renderer renderer;
   private boolean isInitialized;
 
+  // Held by the render view, the listener must not keep this renderable from being collected.
   @SuppressWarnings({"initialization"})
   private final RenderViewToExternalTexture.OnViewSizeChangedListener onViewSizeChangedListener =
-      (int width, int height) -> {
-        if (isInitialized) {
-          updateSuggestedCollisionShapeAsync();
-        }
-      };
+      new ViewSizeChangedListener(this);
+
+  @Nullable private CleanupCallback cleanupCallback;
 
   /** The 2D Android {@link View} that is rendered by this {@link ViewRenderable}. */
   public View getView() {
@@ -117,6 +115,7 @@ public class ViewRenderable extends Renderable {
     renderView.addOnViewSizeChangedListener(onViewSizeChangedListener);
     viewRenderableData = new ViewRenderableInternalData(renderView);
     viewRenderableData.retain();
+    registerCleanup(viewRenderableData);
 
     // Empty collision box. Will be modified to fit the size of the view after the view is measured.
     // If the size of the view changes, the collision shape will change too.
@@ -133,6 +132,7 @@ public class ViewRenderable extends Renderable {
     viewRenderableData = Preconditions.checkNotNull(other.viewRenderableData);
     viewRenderableData.retain();
     viewRenderableData.getRenderView().addOnViewSizeChangedListener(onViewSizeChangedListener);
+    registerCleanup(viewRenderableData);
   }
 
   /**
@@ -263,6 +263,12 @@ public class ViewRenderable extends Renderable {
     super.prepareForDraw();
   }
 
+  /** The view is only sized once it has been drawn, so it must not be culled before that. */
+  @Override
+  boolean hasCullingBounds() {
+    return isInitialized && super.hasCullingBounds();
+  }
+
   @Override
   void attachToRenderer(Renderer renderer) {
     Preconditions.checkNotNull(viewRenderableData)
@@ -343,26 +349,66 @@ public class ViewRenderable extends Renderable {
   }
 
   /** @hide */
-  @Override
-  protected void finalize() throws Throwable {
-    try {
-      ThreadPools.getMainExecutor().execute(() -> dispose());
-    } catch (Exception e) {
-      Log.e(TAG, "Error while Finalizing View Renderable.", e);
-    } finally {
-      super.finalize();
+  void dispose() {
+    AndroidPreconditions.checkUiThread();
+
+    CleanupCallback cleanupCallback = this.cleanupCallback;
+    if (cleanupCallback != null) {
+      cleanupCallback.run();
     }
+    this.viewRenderableData = null;
   }
 
-  /** @hide */
-  void dispose() {
-    AndroidPreconditions.checkUiThread();
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
+  private void registerCleanup(ViewRenderableInternalData viewRenderableData) {
+    cleanupCallback = new CleanupCallback(viewRenderableData, onViewSizeChangedListener);
+    ResourceManager.getInstance()
+        .getViewRenderableCleanupRegistry()
+        .register(this, cleanupCallback);
+  }
+
+  /** Forwards the size changes of the view to a renderable that was not collected. */
+  private static final class ViewSizeChangedListener
+      implements RenderViewToExternalTexture.OnViewSizeChangedListener {
+    private final WeakReference<ViewRenderable> viewRenderable;
 
-    ViewRenderableInternalData viewRenderableData = this.viewRenderableData;
-    if (viewRenderableData != null) {
-      viewRenderableData.getRenderView().removeOnViewSizeChangedListener(onViewSizeChangedListener);
-      viewRenderableData.release();
-      this.viewRenderableData = null;
+    ViewSizeChangedListener(ViewRenderable viewRenderable) {
+      this.viewRenderable = new WeakReference<>(viewRenderable);
+    }
+
+    @Override
+    public void onViewSizeChanged(int width, int height) {
+      @Nullable ViewRenderable viewRenderable = this.viewRenderable.get();
+      if (viewRenderable != null && viewRenderable.isInitialized) {
+        viewRenderable.updateSuggestedCollisionShapeAsync();
+      }
+    }
+  }
+
+  /** Releases the {@link ViewRenderableInternalData} when disposed or after garbage collection. */
+  private static final class CleanupCallback implements Runnable {
+    @Nullable private ViewRenderableInternalData viewRenderableData;
+    private final RenderViewToExternalTexture.OnViewSizeChangedListener onViewSizeChangedListener;
+
+    CleanupCallback(
+        ViewRenderableInternalData viewRenderableData,
+        RenderViewToExternalTexture.OnViewSizeChangedListener onViewSizeChangedListener) {
+      this.viewRenderableData = viewRenderableData;
+      this.onViewSizeChangedListener = onViewSizeChangedListener;
+    }
+
+    @Override
+    public void run() {
+      AndroidPreconditions.checkUiThread();
+
+      ViewRenderableInternalData viewRenderableData = this.viewRenderableData;
+      if (viewRenderableData != null) {
+        viewRenderableData
+            .getRenderView()
+            .removeOnViewSizeChangedListener(onViewSizeChangedListener);
+        viewRenderableData.release();
+        this.viewRenderableData = null;
+      }
     }
   }
 
@@ -0,0 +1,54 @@
+package com.google.ar.sceneform.resources;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the time and the number of released resources disposed by a call to {@link
+ * ResourceHolder#reclaimReleasedResources(ReclaimBudget)}. A budget is shared by the holders
+ * reclaimed in the same frame.
+ *
+ * @hide
+ */
+public final class ReclaimBudget {
+  private final boolean isUnlimited;
+  private final long deadlineNanos;
+  private int remainingCount;
+
+  private ReclaimBudget(boolean isUnlimited, long deadlineNanos, int remainingCount) {
+    this.isUnlimited = isUnlimited;
+    this.deadlineNanos = deadlineNanos;
+    this.remainingCount = remainingCount;
+  }
+
+  /** Returns a budget disposing every released resource. */
+  public static ReclaimBudget unlimited() {
+    return new ReclaimBudget(true, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a budget starting now.
+   *
+   * @param maxMillis the time after which no more resources are disposed
+   * @param maxCount the maximum number of resources disposed
+   */
+  public static ReclaimBudget of(float maxMillis, int maxCount) {
+    long maxNanos = (long) (maxMillis * TimeUnit.MILLISECONDS.toNanos(1));
+    return new ReclaimBudget(false, System.nanoTime() + maxNanos, maxCount);
+  }
+
+  /** Returns true and counts a disposed resource if the budget is not spent. */
+  public boolean tryConsume() {
+    if (isUnlimited) {
+      return true;
+    }
+    if (remainingCount <= 0 || System.nanoTime() - deadlineNanos >= 0) {
+      return false;
+    }
+    remainingCount--;
+    return true;
+  }
+
+  public boolean isExhausted() {
+    return !isUnlimited && (remainingCount <= 0 || System.nanoTime() - deadlineNanos >= 0);
+  }
+}
@@ -0,0 +1,238 @@
+package com.google.ar.sceneform.resources;
+
+import android.content.ComponentCallbacks2;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps strong references to the most recently used resources of {@link ResourceRegistry}s, up to
+ * a budget of estimated bytes, so that resources that are not used at the moment are not collected
+ * and loaded again the next time they are needed.
+ *
+ * <p>The least recently used resources are evicted first once the budget is exceeded, or when the
+ * system asks to trim memory. An evicted resource stays in its registry as long as it is used
+ * elsewhere.
+ *
+ * @hide
+ */
+public class ResourceCache {
+  public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  @GuardedBy("lock")
+  private long budgetBytes;
+
+  @GuardedBy("lock")
+  private long sizeBytes = 0;
+
+  @GuardedBy("lock")
+  private long hitCount = 0;
+
+  @GuardedBy("lock")
+  private long missCount = 0;
+
+  @GuardedBy("lock")
+  private long evictionCount = 0;
+
+  public ResourceCache() {
+    this(DEFAULT_BUDGET_BYTES);
+  }
+
+  public ResourceCache(long budgetBytes) {
+    this.budgetBytes = budgetBytes;
+  }
+
+  /** Sets the budget of estimated bytes, evicting resources if the cache is larger. */
+  public void setBudgetBytes(long budgetBytes) {
+    synchronized (lock) {
+      this.budgetBytes = budgetBytes;
+      trimToSizeLocked(budgetBytes);
+    }
+  }
+
+  public long getBudgetBytes() {
+    synchronized (lock) {
+      return budgetBytes;
+    }
+  }
+
+  /** Returns the estimated bytes of the cached resources. */
+  public long getSizeBytes() {
+    synchronized (lock) {
+      return sizeBytes;
+    }
+  }
+
+  public int getEntryCount() {
+    synchronized (lock) {
+      return entries.size();
+    }
+  }
+
+  /** Returns the number of lookups in the registries that found a resource. */
+  public long getHitCount() {
+    synchronized (lock) {
+      return hitCount;
+    }
+  }
+
+  /** Returns the number of lookups in the registries that had to load the resource. */
+  public long getMissCount() {
+    synchronized (lock) {
+      return missCount;
+    }
+  }
+
+  /** Returns the number of resources evicted from the cache. */
+  public long getEvictionCount() {
+    synchronized (lock) {
+      return evictionCount;
+    }
+  }
+
+  /**
+   * Evicts resources depending on the {@link ComponentCallbacks2} trim memory level: all of them
+   * when the app is about to be killed or the device is critically low on memory, half of the
+   * budget when the app is in the background or the device is low on memory.
+   */
+  public void onTrimMemory(int level) {
+    synchronized (lock) {
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+          || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+        trimToSizeLocked(0);
+      } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+          || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+        trimToSizeLocked(budgetBytes / 2);
+      } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+        trimToSizeLocked(budgetBytes * 3 / 4);
+      }
+    }
+  }
+
+  /** Evicts resources until the cache holds at most the given estimated bytes. */
+  public void trimToSize(long maxSizeBytes) {
+    synchronized (lock) {
+      trimToSizeLocked(maxSizeBytes);
+    }
+  }
+
+  /** Evicts all the resources. */
+  public void clear() {
+    trimToSize(0);
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return "ResourceCache{entries="
+          + entries.size()
+          + ", sizeBytes="
+          + sizeBytes
+          + ", budgetBytes="
+          + budgetBytes
+          + ", hits="
+          + hitCount
+          + ", misses="
+          + missCount
+          + ", evictions="
+          + evictionCount
+          + "}";
+    }
+  }
+
+  /** Keeps a resource that finished loading, evicting older resources beyond the budget. */
+  void put(ResourceRegistry<?> registry, Object id, Object resource, long byteSize) {
+    synchronized (lock) {
+      @Nullable Entry previous = entries.put(new Key(registry, id), new Entry(resource, byteSize));
+      if (previous != null) {
+        sizeBytes -= previous.byteSize;
+      }
+      sizeBytes += byteSize;
+      trimToSizeLocked(budgetBytes);
+    }
+  }
+
+  /** Marks a resource as the most recently used one and counts the lookup. */
+  void onLookup(ResourceRegistry<?> registry, Object id, boolean isHit) {
+    synchronized (lock) {
+      if (isHit) {
+        hitCount++;
+        entries.get(new Key(registry, id));
+      } else {
+        missCount++;
+      }
+    }
+  }
+
+  /** Removes the resources of a registry, once all its resources are destroyed. */
+  void removeAll(ResourceRegistry<?> registry) {
+    synchronized (lock) {
+      Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Key, Entry> entry = iterator.next();
+        if (entry.getKey().registry == registry) {
+          sizeBytes -= entry.getValue().byteSize;
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private void trimToSizeLocked(long maxSizeBytes) {
+    // Iterates from the least recently used entry.
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      iterator.remove();
+      sizeBytes -= entry.byteSize;
+      evictionCount++;
+    }
+  }
+
+  private static final class Key {
+    private final ResourceRegistry<?> registry;
+    private final Object id;
+
+    Key(ResourceRegistry<?> registry, Object id) {
+      this.registry = registry;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return registry == other.registry && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(registry) + id.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    // Only held to keep the resource from being collected.
+    @SuppressWarnings("unused")
+    private final Object resource;
+    private final long byteSize;
+
+    Entry(Object resource, long byteSize) {
+      this.resource = resource;
+      this.byteSize = byteSize;
+    }
+  }
+}
@@ -9,6 +9,21 @@ public interface ResourceHolder {
    */
   long reclaimReleasedResources();
 
+  /**
+   * Polls for garbage collected objects and disposes associated data until the budget is spent.
+   * The objects that are not disposed are kept for a later call.
+   *
+   * @return Count of resources in use.
+   */
+  default long reclaimReleasedResources(ReclaimBudget budget) {
+    return reclaimReleasedResources();
+  }
+
+  /** Returns the number of garbage collected objects whose data is waiting to be disposed. */
+  default int getPendingReclaimCount() {
+    return 0;
+  }
+
   /** Ignores reference count and disposes any associated resources. */
   void destroyAllResources();
 }
@@ -1,33 +1,47 @@
 package com.google.ar.sceneform.resources;
 
-import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import com.google.ar.sceneform.utilities.Preconditions;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * ResourceRegistry keeps track of resources that have been loaded and are in the process of being
  * loaded. The registry maintains only weak references and doesn't prevent resources from being
- * collected.
+ * collected, unless it is given a {@link ResourceCache} keeping the recently used ones. The
+ * references of collected resources are pruned a few at a time on each lookup.
+ *
+ * <p>The registry is safe to use from several threads without a global lock. Loads started with
+ * {@link #getOrLoad(Object, Supplier)} are coalesced: concurrent requests for the same id share a
+ * single load.
  *
  * @hide
  */
-// TODO: Automatically prune dead WeakReferences from ResourceRegistry when the
-// ResourceRegistry becomes large.
 public class ResourceRegistry<T> implements ResourceHolder {
   private static final String TAG = ResourceRegistry.class.getSimpleName();
+  // Maximum number of collected references pruned per lookup.
+  private static final int PRUNE_BATCH_SIZE = 16;
+
+  private final ConcurrentHashMap<Object, IdWeakReference<T>> registry = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<Object, CompletableFuture<T>> futureRegistry =
+      new ConcurrentHashMap<>();
+
+  private final ReferenceQueue<T> collectedReferences = new ReferenceQueue<>();
 
-  private final Object lock = new Object();
+  private final ConcurrentHashMap<Object, Integer> pinCounts = new ConcurrentHashMap<>();
 
-  @GuardedBy("lock")
-  private final Map<Object, WeakReference<T>> registry = new HashMap<>();
+  // Strong references to the pinned resources that finished loading.
+  private final ConcurrentHashMap<Object, T> pinnedResources = new ConcurrentHashMap<>();
 
-  @GuardedBy("lock")
-  private final Map<Object, CompletableFuture<T>> futureRegistry = new HashMap<>();
+  @Nullable private volatile ResourceCache cache = null;
+  @Nullable private volatile ToLongFunction<T> byteSizeEstimator = null;
 
   /**
    * Returns a future to a resource previously registered with the same id. If resource has not yet
@@ -38,22 +52,51 @@ public class ResourceRegistry<T> implements ResourceHolder {
   public CompletableFuture<T> get(Object id) {
     Preconditions.checkNotNull(id, "Parameter 'id' was null.");
 
-    synchronized (lock) {
-      // If the resource has already finished loading, return a completed future to that resource.
-      WeakReference<T> reference = registry.get(id);
-      if (reference != null) {
-        T resource = reference.get();
-        if (resource != null) {
-          return CompletableFuture.completedFuture(resource);
-        } else {
-          registry.remove(id);
-        }
-      }
+    @Nullable CompletableFuture<T> futureResource = getWithoutLookup(id);
+    onLookup(id, futureResource != null);
+    return futureResource;
+  }
+
+  /**
+   * Returns a future to the resource registered with the id, or registers the future returned by
+   * the loader if there is none. Concurrent calls for the same id atomically share a single load,
+   * the loader is only called once.
+   *
+   * <p>The loader should only start the load, it must not use this registry.
+   */
+  public CompletableFuture<T> getOrLoad(Object id, Supplier<CompletableFuture<T>> loader) {
+    Preconditions.checkNotNull(id, "Parameter 'id' was null.");
+    Preconditions.checkNotNull(loader, "Parameter 'loader' was null.");
+
+    pruneCollectedReferences();
+    @Nullable T resource = getLoaded(id);
+    if (resource != null) {
+      onLookup(id, true);
+      return CompletableFuture.completedFuture(resource);
+    }
 
-      // If the resource is in the process of loading, return the future directly.
-      // If the id is not registered, this will be null.
-      return futureRegistry.get(id);
+    boolean[] isLoadStarted = {false};
+    CompletableFuture<T> futureResource =
+        futureRegistry.computeIfAbsent(
+            id,
+            key -> {
+              // The resource may have finished loading since it was looked up.
+              @Nullable T loadedResource = getLoaded(key);
+              if (loadedResource != null) {
+                return CompletableFuture.completedFuture(loadedResource);
+              }
+              isLoadStarted[0] = true;
+              return Preconditions.checkNotNull(loader.get());
+            });
+
+    onLookup(id, !isLoadStarted[0]);
+    if (isLoadStarted[0]) {
+      onLoadCompleted(id, futureResource);
+    } else if (futureResource.isDone()) {
+      // Only the futures of loads in progress are kept.
+      futureRegistry.remove(id, futureResource);
     }
+    return futureResource;
   }
 
   /**
@@ -76,43 +119,61 @@ public class ResourceRegistry<T> implements ResourceHolder {
       @SuppressWarnings("nullness")
       T resource = Preconditions.checkNotNull(futureResource.getNow(null));
 
-      synchronized (lock) {
-        registry.put(id, new WeakReference<>(resource));
-
-        // If the id was previously registered in the futureRegistry, make sure it is removed.
-        futureRegistry.remove(id);
-      }
-
+      registry.put(id, new IdWeakReference<>(id, resource, collectedReferences));
+      // If the id was previously registered in the futureRegistry, make sure it is removed.
+      futureRegistry.remove(id);
+      onLoaded(id, resource);
       return;
     }
 
-    synchronized (lock) {
-      futureRegistry.put(id, futureResource);
+    futureRegistry.put(id, futureResource);
+    // If the id was previously registered in the completed registry, make sure it is removed.
+    registry.remove(id);
+    onLoadCompleted(id, futureResource);
+  }
+
+  /**
+   * Keeps the recently used resources of the registry in a cache, up to its budget of estimated
+   * bytes.
+   *
+   * @param byteSizeEstimator estimates the GPU and native bytes held by a resource
+   */
+  public void setCache(ResourceCache cache, ToLongFunction<T> byteSizeEstimator) {
+    Preconditions.checkNotNull(cache, "Parameter 'cache' was null.");
+    Preconditions.checkNotNull(byteSizeEstimator, "Parameter 'byteSizeEstimator' was null.");
+    this.byteSizeEstimator = byteSizeEstimator;
+    this.cache = cache;
+  }
+
+  /**
+   * Keeps a strong reference to the resource registered by an id once it has finished loading, so
+   * that it is not collected while nothing uses it. Each call must be balanced by a call to {@link
+   * #unpin(Object)}.
+   */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void pin(Object id) {
+    Preconditions.checkNotNull(id, "Parameter 'id' was null.");
 
-      // If the id was previously registered in the completed registry, make sure it is removed.
-      registry.remove(id);
+    pinCounts.merge(id, 1, Integer::sum);
+    @Nullable CompletableFuture<T> futureResource = getWithoutLookup(id);
+    if (futureResource != null) {
+      futureResource.thenAccept(
+          resource -> {
+            if (pinCounts.containsKey(id)) {
+              pinnedResources.put(id, resource);
+            }
+          });
     }
+  }
 
-    @SuppressWarnings({"FutureReturnValueIgnored", "unused"})
-    CompletableFuture<Void> registerFuture =
-        futureResource.handle(
-            (result, throwable) -> {
-              synchronized (this) {
-                // Check to make sure that the future in the registry is this future.
-                // Otherwise, this id has already been overwritten with another resource.
-                synchronized (lock) {
-                  CompletableFuture<T> futureReference = futureRegistry.get(id);
-                  if (futureReference == futureResource) {
-                    futureRegistry.remove(id);
-                    if (throwable == null) {
-                      // Only add a reference if there was no exception.
-                      registry.put(id, new WeakReference<>(result));
-                    }
-                  }
-                }
-              }
-              return null;
-            });
+  /** Releases a reference taken by {@link #pin(Object)}. */
+  public void unpin(Object id) {
+    Preconditions.checkNotNull(id, "Parameter 'id' was null.");
+
+    if (pinCounts.computeIfPresent(id, (key, pinCount) -> pinCount > 1 ? pinCount - 1 : null)
+        == null) {
+      pinnedResources.remove(id);
+    }
   }
 
   /**
@@ -121,19 +182,24 @@ public class ResourceRegistry<T> implements ResourceHolder {
    */
   @Override
   public void destroyAllResources() {
-    synchronized (lock) {
-      Iterator<Map.Entry<Object, CompletableFuture<T>>> iterator =
-          futureRegistry.entrySet().iterator();
-      while (iterator.hasNext()) {
-        Map.Entry<Object, CompletableFuture<T>> entry = iterator.next();
-        iterator.remove();
-        CompletableFuture<T> futureResource = entry.getValue();
-        if (!futureResource.isDone()) {
-          futureResource.cancel(true);
-        }
+    Iterator<Map.Entry<Object, CompletableFuture<T>>> iterator =
+        futureRegistry.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Object, CompletableFuture<T>> entry = iterator.next();
+      iterator.remove();
+      CompletableFuture<T> futureResource = entry.getValue();
+      if (!futureResource.isDone()) {
+        futureResource.cancel(true);
       }
+    }
 
-      registry.clear();
+    registry.clear();
+    pinCounts.clear();
+    pinnedResources.clear();
+
+    ResourceCache cache = this.cache;
+    if (cache != null) {
+      cache.removeAll(this);
     }
   }
 
@@ -144,4 +210,93 @@ public class ResourceRegistry<T> implements ResourceHolder {
     // counting in the other holders.
     return 0;
   }
+
+  @Nullable
+  private CompletableFuture<T> getWithoutLookup(Object id) {
+    pruneCollectedReferences();
+
+    // If the resource has already finished loading, return a completed future to that resource.
+    @Nullable T resource = getLoaded(id);
+    if (resource != null) {
+      return CompletableFuture.completedFuture(resource);
+    }
+
+    // If the resource is in the process of loading, return the future directly.
+    // If the id is not registered, this will be null.
+    return futureRegistry.get(id);
+  }
+
+  /** Returns the resource registered with the id if it finished loading and was not collected. */
+  @Nullable
+  private T getLoaded(Object id) {
+    @Nullable IdWeakReference<T> reference = registry.get(id);
+    if (reference == null) {
+      return null;
+    }
+    @Nullable T resource = reference.get();
+    if (resource == null) {
+      registry.remove(id, reference);
+    }
+    return resource;
+  }
+
+  /** Moves the resource to the registry of loaded resources once its future completes. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  private void onLoadCompleted(Object id, CompletableFuture<T> futureResource) {
+    futureResource.handle(
+        (result, throwable) -> {
+          // Check to make sure that the future in the registry is this future.
+          // Otherwise, this id has already been overwritten with another resource.
+          if (futureRegistry.get(id) != futureResource) {
+            return null;
+          }
+          if (throwable == null) {
+            // Only add a reference if there was no exception. The reference is added before the
+            // future is removed, so that lookups always find one of them.
+            registry.put(id, new IdWeakReference<>(id, result, collectedReferences));
+          }
+          if (futureRegistry.remove(id, futureResource) && throwable == null) {
+            onLoaded(id, result);
+          }
+          return null;
+        });
+  }
+
+  /** Removes a few of the references of collected resources. */
+  private void pruneCollectedReferences() {
+    for (int i = 0; i < PRUNE_BATCH_SIZE; i++) {
+      @SuppressWarnings("unchecked")
+      IdWeakReference<T> reference = (IdWeakReference<T>) collectedReferences.poll();
+      if (reference == null) {
+        return;
+      }
+      // The id may have been registered again since.
+      registry.remove(reference.id, reference);
+    }
+  }
+
+  private void onLookup(Object id, boolean isHit) {
+    ResourceCache cache = this.cache;
+    if (cache != null) {
+      cache.onLookup(this, id, isHit);
+    }
+  }
+
+  private void onLoaded(Object id, T resource) {
+    ResourceCache cache = this.cache;
+    ToLongFunction<T> byteSizeEstimator = this.byteSizeEstimator;
+    if (cache != null && byteSizeEstimator != null) {
+      cache.put(this, id, resource, byteSizeEstimator.applyAsLong(resource));
+    }
+  }
+
+  /** Weak reference remembering its id, to be pruned from the registry once it is collected. */
+  private static final class IdWeakReference<T> extends WeakReference<T> {
+    private final Object id;
+
+    IdWeakReference(Object id, T resource, ReferenceQueue<? super T> queue) {
+      super(resource, queue);
+      this.id = id;
+    }
+  }
 }
@@ -0,0 +1,49 @@
+package com.google.ar.sceneform.utilities;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes strong hashes of resource contents, used to identify identical resources loaded from
+ * different sources.
+ *
+ * <p>Hashing reads the whole content, so it should be done on a loader thread.
+ *
+ * @hide
+ */
+public final class ContentHash {
+  private static final String ALGORITHM = "SHA-256";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private ContentHash() {}
+
+  /**
+   * Returns the SHA-256 hash of the remaining bytes of the buffer, as a hexadecimal string. The
+   * position of the buffer is not changed.
+   */
+  public static String of(ByteBuffer buffer) {
+    Preconditions.checkNotNull(buffer, "Parameter \"buffer\" was null.");
+    MessageDigest digest = createDigest();
+    digest.update(buffer.duplicate());
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new AssertionError(ALGORITHM + " is not available.", e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -15,6 +15,7 @@ import android.util.Log;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -188,6 +189,33 @@ public class LoadHelper {
     }
   }
 
+  /**
+   * Enables the persistent cache of remote glTF models with default settings, models and their
+   * resources are cached to the model_cache folder of the application cache directory.
+   *
+   * @see ModelCache
+   */
+  public static void enableModelCaching(Context context) {
+    enableModelCaching(DEFAULT_CACHE_SIZE_BYTES, context.getCacheDir(), "model_cache");
+  }
+
+  /**
+   * Enables the persistent cache of remote glTF models, models and their resources are cached to
+   * cacheBaseDir/cacheFolderName
+   *
+   * @see ModelCache
+   */
+  public static void enableModelCaching(
+      long cacheByteSize, File cacheBaseDir, String cacheFolderName) {
+    if (ModelCache.getInstalled() == null) {
+      ModelCache.install(
+          new ModelCache(
+              new File(cacheBaseDir, cacheFolderName),
+              cacheByteSize,
+              ModelCache.DEFAULT_MAX_STALE_MILLIS));
+    }
+  }
+
   public static void flushHttpCache() {
     HttpResponseCache cache = HttpResponseCache.getInstalled();
     if (cache != null) {
@@ -218,7 +246,7 @@ public class LoadHelper {
     return () -> {
       if (assetExists(assetManager, scrubbedFilename)) {
         // Open Android Asset if an Asset was found
-        return assetManager.open(scrubbedFilename);
+        return openAsset(assetManager, scrubbedFilename);
       } else {
         // Open file from storage or other non asset location.
         return new FileInputStream(new File(filename));
@@ -226,6 +254,20 @@ public class LoadHelper {
     };
   }
 
+  /**
+   * Opens an asset from its file descriptor when it is stored uncompressed, which allows it to be
+   * memory-mapped, and as a stream otherwise.
+   */
+  private static InputStream openAsset(AssetManager assetManager, String filename)
+      throws IOException {
+    try {
+      return SceneformBufferUtils.newAssetInputStream(assetManager.openFd(filename));
+    } catch (FileNotFoundException e) {
+      // Compressed assets have no file descriptor.
+      return assetManager.open(filename);
+    }
+  }
+
   private static String removeAndroidAssetPath(String filename) {
     // Remove "android_asset/" from URI paths like "file:///android_asset/...".
     String scrubbedFilename = filename;
@@ -292,7 +334,9 @@ public class LoadHelper {
           conn.addRequestProperty(entry.getKey(), entry.getValue());
         }
       }
-      return () -> conn.getInputStream();
+      // The content length lets the response be read into a buffer of the right size.
+      return () ->
+          SceneformBufferUtils.withLength(conn.getInputStream(), conn.getContentLengthLong());
     } catch (MalformedURLException ex) {
       // This is rare. Most bad URL's get filtered out when the URL class is constructed.
       throw new IllegalArgumentException("Unable to parse url: \'" + sourceUri + "'", ex);
@@ -0,0 +1,467 @@
+package com.google.ar.sceneform.utilities;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of remote models along with their resolved external resources.
+ *
+ * <p>Each model is stored in a single packed file: a header indexing the main buffer and the
+ * resources by their uri as written in the model, followed by their content. A cached model is
+ * loaded with a single memory mapping, the buffers are slices of it, without downloading or
+ * resolving its resources again.
+ *
+ * <p>Models are identified by their source uri and validated with their ETag and Last-Modified
+ * headers: a model younger than the max stale duration is used as it is, an older one is
+ * revalidated with a conditional request and is still used if the network is unavailable. Files
+ * are written atomically and the least recently used ones are deleted to stay within the size
+ * budget.
+ *
+ * @hide
+ */
+public final class ModelCache {
+  private static final String TAG = ModelCache.class.getSimpleName();
+
+  public static final long DEFAULT_MAX_STALE_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final String FILE_EXTENSION = ".model";
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
+  private static final int MAGIC = 0x53464d43; // "SFMC"
+  private static final int VERSION = 1;
+  private static final String MAIN_BUFFER_NAME = "";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Nullable private static ModelCache installed = null;
+
+  private final File directory;
+  private final long maxSizeBytes;
+  private final long maxStaleMillis;
+  private final Object lock = new Object();
+
+  /**
+   * @param directory the directory the models are stored in, used by this cache only
+   * @param maxSizeBytes the size budget of the stored models
+   * @param maxStaleMillis how long a stored model is used without being revalidated
+   */
+  public ModelCache(File directory, long maxSizeBytes, long maxStaleMillis) {
+    Preconditions.checkNotNull(directory, "Parameter \"directory\" was null.");
+    if (maxSizeBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive.");
+    }
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+    this.maxStaleMillis = maxStaleMillis;
+  }
+
+  /** Sets the cache used to load remote models, or null to disable it. */
+  public static void install(@Nullable ModelCache modelCache) {
+    installed = modelCache;
+  }
+
+  /** Returns the cache used to load remote models, or null if none was installed. */
+  @Nullable
+  public static ModelCache getInstalled() {
+    return installed;
+  }
+
+  /** Returns true if models of the given uri can be cached. */
+  public static boolean isCacheable(String sourceUri) {
+    return sourceUri.startsWith("http://") || sourceUri.startsWith("https://");
+  }
+
+  /**
+   * Returns the model of the given uri, from the cache when it is stored and still valid and from
+   * the network otherwise. Called on a loader thread.
+   *
+   * @param sourceUri the http or https uri of the model
+   * @param requestProperties the properties added to the request, or null
+   * @throws IOException if the model is not cached and cannot be downloaded
+   */
+  public Entry fetch(String sourceUri, @Nullable Map<String, String> requestProperties)
+      throws IOException {
+    @Nullable Entry cachedEntry = read(sourceUri);
+    if (cachedEntry != null
+        && System.currentTimeMillis() - cachedEntry.storedTimeMillis < maxStaleMillis) {
+      return cachedEntry;
+    }
+
+    try {
+      URLConnection connection = new URL(sourceUri).openConnection();
+      if (requestProperties != null) {
+        for (Map.Entry<String, String> property : requestProperties.entrySet()) {
+          connection.addRequestProperty(property.getKey(), property.getValue());
+        }
+      }
+      if (cachedEntry != null) {
+        if (cachedEntry.etag != null) {
+          connection.addRequestProperty("If-None-Match", cachedEntry.etag);
+        }
+        if (cachedEntry.lastModified != null) {
+          connection.addRequestProperty("If-Modified-Since", cachedEntry.lastModified);
+        }
+      }
+
+      if (connection instanceof HttpURLConnection) {
+        int responseCode = ((HttpURLConnection) connection).getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedEntry != null) {
+          // The model is used without being revalidated again for the max stale duration.
+          writeStoredTime(cachedEntry, System.currentTimeMillis());
+          return cachedEntry;
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+          throw new IOException("Unexpected response " + responseCode + " for " + sourceUri);
+        }
+      }
+
+      ByteBuffer mainBuffer;
+      try (InputStream inputStream =
+          SceneformBufferUtils.withLength(
+              connection.getInputStream(), connection.getContentLengthLong())) {
+        mainBuffer = SceneformBufferUtils.readStreamToDirectBuffer(inputStream);
+      }
+      return new Entry(
+          sourceUri,
+          mainBuffer,
+          Collections.emptyMap(),
+          connection.getHeaderField("ETag"),
+          connection.getHeaderField("Last-Modified"),
+          System.currentTimeMillis(),
+          false);
+    } catch (IOException e) {
+      if (cachedEntry != null) {
+        Log.w(TAG, "Unable to revalidate " + sourceUri + ", using the cached model.", e);
+        return cachedEntry;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stores a downloaded model along with its resolved resources, replacing the previous version.
+   * Called on a background thread, the buffers must not be changed meanwhile.
+   *
+   * @param entry the model returned by {@link #fetch}
+   * @param resources the resources of the model, by their uri as written in the model
+   */
+  public void put(Entry entry, Map<String, ByteBuffer> resources) {
+    LinkedHashMap<String, ByteBuffer> buffers = new LinkedHashMap<>();
+    buffers.put(MAIN_BUFFER_NAME, entry.mainBuffer);
+    buffers.putAll(resources);
+
+    long dataSize = 0;
+    for (ByteBuffer buffer : buffers.values()) {
+      dataSize += buffer.remaining();
+    }
+    if (dataSize > maxSizeBytes) {
+      return;
+    }
+
+    synchronized (lock) {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        Log.w(TAG, "Unable to create the model cache directory " + directory);
+        return;
+      }
+
+      File file = getFile(entry.sourceUri);
+      File tempFile = new File(directory, file.getName() + TEMP_FILE_EXTENSION);
+      try {
+        byte[] header = writeHeader(entry, buffers);
+        try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+          FileChannel channel = outputStream.getChannel();
+          writeFully(channel, ByteBuffer.wrap(header));
+          for (ByteBuffer buffer : buffers.values()) {
+            writeFully(channel, buffer.duplicate());
+          }
+          outputStream.getFD().sync();
+        }
+        // Readers either see the previous file or the complete new one.
+        if (!tempFile.renameTo(file)) {
+          throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to cache model " + entry.sourceUri, e);
+        tempFile.delete();
+        return;
+      }
+
+      trimToSize();
+    }
+  }
+
+  /** Deletes every stored model. */
+  public void clear() {
+    synchronized (lock) {
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  /** Returns the total size of the stored models. */
+  public long getSize() {
+    long size = 0;
+    for (File file : listModelFiles()) {
+      size += file.length();
+    }
+    return size;
+  }
+
+  @Nullable
+  private Entry read(String sourceUri) {
+    File file = getFile(sourceUri);
+    ByteBuffer mappedFile;
+    synchronized (lock) {
+      if (!file.isFile()) {
+        return null;
+      }
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        FileChannel channel = randomAccessFile.getChannel();
+        mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to map cached model " + file, e);
+        return null;
+      }
+    }
+
+    try {
+      Entry entry = readEntry(sourceUri, mappedFile);
+      touch(sourceUri);
+      return entry;
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Discarding corrupted cached model " + file, e);
+      synchronized (lock) {
+        file.delete();
+      }
+      return null;
+    }
+  }
+
+  private static Entry readEntry(String sourceUri, ByteBuffer mappedFile) throws IOException {
+    DataInputStream input = new DataInputStream(SceneformBufferUtils.newInputStream(mappedFile));
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      throw new IOException("Unknown model cache format.");
+    }
+    if (!sourceUri.equals(input.readUTF())) {
+      throw new IOException("Cached model of another uri.");
+    }
+    String etag = readOptionalString(input);
+    String lastModified = readOptionalString(input);
+    long storedTimeMillis = input.readLong();
+
+    int bufferCount = input.readInt();
+    @Nullable ByteBuffer mainBuffer = null;
+    HashMap<String, ByteBuffer> resources = new HashMap<>();
+    for (int i = 0; i < bufferCount; i++) {
+      String name = input.readUTF();
+      long offset = input.readLong();
+      long length = input.readLong();
+      if (offset < 0 || length < 0 || offset + length > mappedFile.capacity()) {
+        throw new IOException("Cached buffer out of bounds.");
+      }
+      ByteBuffer buffer = mappedFile.duplicate();
+      buffer.position((int) offset);
+      buffer.limit((int) (offset + length));
+      if (name.equals(MAIN_BUFFER_NAME)) {
+        mainBuffer = buffer.slice();
+      } else {
+        resources.put(name, buffer.slice());
+      }
+    }
+    if (mainBuffer == null) {
+      throw new IOException("Cached model has no main buffer.");
+    }
+    return new Entry(
+        sourceUri,
+        mainBuffer,
+        Collections.unmodifiableMap(resources),
+        etag,
+        lastModified,
+        storedTimeMillis,
+        true);
+  }
+
+  private static byte[] writeHeader(Entry entry, Map<String, ByteBuffer> buffers)
+      throws IOException {
+    // The offsets are stored in fixed size fields, so the header size does not depend on them.
+    int headerSize = writeHeader(entry, buffers, 0).length;
+    return writeHeader(entry, buffers, headerSize);
+  }
+
+  private static byte[] writeHeader(Entry entry, Map<String, ByteBuffer> buffers, long dataOffset)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    writeHeaderStart(output, entry);
+    output.writeLong(entry.storedTimeMillis);
+    output.writeInt(buffers.size());
+    long offset = dataOffset;
+    for (Map.Entry<String, ByteBuffer> buffer : buffers.entrySet()) {
+      long length = buffer.getValue().remaining();
+      output.writeUTF(buffer.getKey());
+      output.writeLong(offset);
+      output.writeLong(length);
+      offset += length;
+    }
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /** Writes the fields of the header preceding the stored time. */
+  private static void writeHeaderStart(DataOutputStream output, Entry entry) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeUTF(entry.sourceUri);
+    writeOptionalString(output, entry.etag);
+    writeOptionalString(output, entry.lastModified);
+  }
+
+  /**
+   * Rewrites the stored time in the header of a cached model in place, and marks it as recently
+   * used. The fields preceding it are unchanged, so are its offset and the rest of the file, unless
+   * the model was replaced meanwhile, in which case it is left as it is.
+   */
+  private void writeStoredTime(Entry entry, long storedTimeMillis) {
+    ByteArrayOutputStream headerStart = new ByteArrayOutputStream();
+    synchronized (lock) {
+      File file = getFile(entry.sourceUri);
+      if (!file.isFile()) {
+        return;
+      }
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+        writeHeaderStart(new DataOutputStream(headerStart), entry);
+        byte[] expectedHeaderStart = headerStart.toByteArray();
+        byte[] currentHeaderStart = new byte[expectedHeaderStart.length];
+        randomAccessFile.readFully(currentHeaderStart);
+        if (Arrays.equals(expectedHeaderStart, currentHeaderStart)) {
+          randomAccessFile.writeLong(storedTimeMillis);
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to update cached model " + file, e);
+      }
+      file.setLastModified(System.currentTimeMillis());
+    }
+  }
+
+  @Nullable
+  private static String readOptionalString(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  private static void writeOptionalString(DataOutputStream output, @Nullable String value)
+      throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /** Marks a model as recently used. */
+  private void touch(String sourceUri) {
+    synchronized (lock) {
+      getFile(sourceUri).setLastModified(System.currentTimeMillis());
+    }
+  }
+
+  /** Deletes the least recently used models until the cache fits in its size budget. */
+  private void trimToSize() {
+    File[] files = listModelFiles();
+    Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    for (File file : files) {
+      if (size <= maxSizeBytes) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+      }
+    }
+  }
+
+  private File[] listModelFiles() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+    return files != null ? files : new File[0];
+  }
+
+  private File getFile(String sourceUri) {
+    return new File(
+        directory, ContentHash.of(ByteBuffer.wrap(sourceUri.getBytes(UTF_8))) + FILE_EXTENSION);
+  }
+
+  /** A model with its resources, either loaded from the cache or downloaded. */
+  public static final class Entry {
+    private final String sourceUri;
+    private final ByteBuffer mainBuffer;
+    private final Map<String, ByteBuffer> resources;
+    @Nullable private final String etag;
+    @Nullable private final String lastModified;
+    private final long storedTimeMillis;
+    private final boolean isFromCache;
+
+    private Entry(
+        String sourceUri,
+        ByteBuffer mainBuffer,
+        Map<String, ByteBuffer> resources,
+        @Nullable String etag,
+        @Nullable String lastModified,
+        long storedTimeMillis,
+        boolean isFromCache) {
+      this.sourceUri = sourceUri;
+      this.mainBuffer = mainBuffer;
+      this.resources = resources;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.storedTimeMillis = storedTimeMillis;
+      this.isFromCache = isFromCache;
+    }
+
+    /** Returns the content of the model file. */
+    public ByteBuffer getMainBuffer() {
+      return mainBuffer.duplicate();
+    }
+
+    /**
+     * Returns the resolved resources of a cached model by their uri as written in the model, empty
+     * for a downloaded model.
+     */
+    public Map<String, ByteBuffer> getResources() {
+      return resources;
+    }
+
+    /** Returns true if the model was loaded from the cache. */
+    public boolean isFromCache() {
+      return isFromCache;
+    }
+  }
+}
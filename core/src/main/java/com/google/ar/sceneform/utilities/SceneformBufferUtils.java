@@ -1,19 +1,29 @@
 package com.google.ar.sceneform.utilities;
 
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import androidx.annotation.Nullable;
 import android.util.Log;
-import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionException;
 
 /**
  * A simple class to read InputStreams Once the data is read it can be accessed as a ByteBuffer.
  *
+ * <p>Reads use the length of the stream when it is known, from {@link #withLength(InputStream,
+ * long)} or {@link InputStream#available()}, to read the data once into a buffer of the right
+ * size. Streams of files, and of assets opened with {@link
+ * #newAssetInputStream(AssetFileDescriptor)}, are memory-mapped. Buffers only grow in chunks when
+ * the length is unknown.
+ *
  * @hide
  */
 public final class SceneformBufferUtils {
@@ -46,6 +56,10 @@ public final class SceneformBufferUtils {
     return buffer;
   }
 
+  /**
+   * Reads a stream into a heap buffer wrapping a byte array, which {@link ByteBuffer#array()}
+   * returns. Use {@link #readStreamToDirectBuffer(InputStream)} for data given to filament.
+   */
   @Nullable
   public static ByteBuffer readStream(@Nullable InputStream inputStream) {
     // TODO: this method/class may be replaceable by SourceBytes
@@ -65,41 +79,17 @@ public final class SceneformBufferUtils {
     return buffer;
   }
 
-  private static int copy(InputStream in, OutputStream out) throws IOException {
-    // TODO: this method/class may be replaceable by SourceBytes
-    byte[] buffer = new byte[DEFAULT_BLOCK_SIZE];
-    int size = 0;
-    int n;
-    while ((n = in.read(buffer)) > 0) {
-      size += n;
-      out.write(buffer, 0, n);
-    }
-    out.flush();
-    return size;
-  }
-
   public static byte[] copyByteBufferToArray(ByteBuffer in) throws IOException {
-    // TODO: this method/class may be replaceable by SourceBytes
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    byte[] buffer = new byte[DEFAULT_BLOCK_SIZE];
-    int end = in.limit();
-    int bytesRead;
-    while (in.position() < end) {
-      int lastPosition = in.position();
-
-      in.get(buffer, 0, Math.min(DEFAULT_BLOCK_SIZE, end - lastPosition));
-      bytesRead = in.position() - lastPosition;
-
-      out.write(buffer, 0, bytesRead);
-    }
-    out.flush();
-    return out.toByteArray();
+    byte[] out = new byte[in.remaining()];
+    in.get(out);
+    return out;
   }
 
   public static ByteBuffer copyByteBuffer(ByteBuffer in) throws IOException {
     return ByteBuffer.wrap(copyByteBufferToArray(in));
   }
 
+  /** Reads the stream supplied by the creator into a heap buffer, see {@link #readStream}. */
   public static ByteBuffer inputStreamToByteBuffer(Callable<InputStream> inputStreamCreator) {
     ByteBuffer result;
     try (InputStream inputStream = inputStreamCreator.call()) {
@@ -113,6 +103,126 @@ public final class SceneformBufferUtils {
     return result;
   }
 
+  /**
+   * Reads a stream into a direct buffer. Streams of files, and the streams of uncompressed assets
+   * opened with {@link #newAssetInputStream(AssetFileDescriptor)}, are memory-mapped instead of
+   * being read.
+   *
+   * <p>Unlike {@link #inputStreamToByteBuffer(Callable)} the data is not copied through the Java
+   * heap, and slices of the buffer can be given to filament as they are.
+   */
+  public static ByteBuffer inputStreamToDirectByteBuffer(Callable<InputStream> inputStreamCreator) {
+    try (InputStream inputStream = inputStreamCreator.call()) {
+      if (inputStream == null) {
+        throw new AssertionError("Failed reading data from stream");
+      }
+      return readStreamToDirectBuffer(inputStream);
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /** Reads a stream into a direct buffer, memory-mapping it if it is the stream of a file. */
+  public static ByteBuffer readStreamToDirectBuffer(InputStream inputStream) throws IOException {
+    if (inputStream instanceof AssetInputStream) {
+      @Nullable ByteBuffer mappedBuffer = mapAssetStream((AssetInputStream) inputStream);
+      if (mappedBuffer != null) {
+        return mappedBuffer;
+      }
+    } else if (inputStream instanceof FileInputStream) {
+      @Nullable ByteBuffer mappedBuffer = mapFileStream((FileInputStream) inputStream);
+      if (mappedBuffer != null) {
+        return mappedBuffer;
+      }
+    }
+
+    // The length is only a hint, the buffer grows if the stream is longer.
+    int length = getLengthHint(inputStream);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length > 0 ? length : DEFAULT_BLOCK_SIZE);
+    byte[] block = new byte[DEFAULT_BLOCK_SIZE];
+    int n;
+    while ((n = inputStream.read(block)) > 0) {
+      if (buffer.remaining() < n) {
+        ByteBuffer grownBuffer =
+            ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + n));
+        buffer.flip();
+        grownBuffer.put(buffer);
+        buffer = grownBuffer;
+      }
+      buffer.put(block, 0, n);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Maps the remaining content of a file stream, returns null if the stream is not backed by a
+   * regular file.
+   *
+   * <p>Only streams of whole files are mapped from their channel: the channel of an asset file
+   * descriptor stream is positioned relative to the asset from API 34 and can't be mapped, such
+   * streams are mapped by {@link #mapAssetStream(AssetInputStream)}.
+   */
+  @Nullable
+  private static ByteBuffer mapFileStream(FileInputStream inputStream) {
+    try {
+      FileChannel channel = inputStream.getChannel();
+      long position = channel.position();
+      long length = inputStream.available();
+      if (length <= 0) {
+        return null;
+      }
+      // The mapping stays valid once the stream is closed.
+      return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    } catch (IOException | RuntimeException e) {
+      // Some file streams have channels that can't be mapped, e.g. UnsupportedOperationException.
+      Log.w(TAG, "Unable to map stream, reading it instead - " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Maps the content of an asset from the start offset and the length of its file descriptor,
+   * returns null if it can't be mapped. The stream must not have been read yet.
+   */
+  @Nullable
+  private static ByteBuffer mapAssetStream(AssetInputStream inputStream) {
+    AssetFileDescriptor assetFileDescriptor = inputStream.assetFileDescriptor;
+    long length = assetFileDescriptor.getLength();
+    if (inputStream.hasBeenRead || length <= 0) {
+      return null;
+    }
+    // The channel of a stream created from a descriptor uses the absolute offsets of the file, the
+    // stream doesn't own the descriptor and is not closed, the asset stream closes it.
+    FileDescriptor fileDescriptor = assetFileDescriptor.getFileDescriptor();
+    try {
+      FileChannel channel = new FileInputStream(fileDescriptor).getChannel();
+      return channel.map(
+          FileChannel.MapMode.READ_ONLY, assetFileDescriptor.getStartOffset(), length);
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Unable to map asset, reading it instead - " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns a stream reading an uncompressed asset or raw resource opened from its file
+   * descriptor, which {@link #readStreamToDirectBuffer(InputStream)} memory-maps. The descriptor
+   * is closed along with the stream.
+   */
+  public static InputStream newAssetInputStream(AssetFileDescriptor assetFileDescriptor)
+      throws IOException {
+    return new AssetInputStream(assetFileDescriptor);
+  }
+
+  /**
+   * Returns a stream reading the remaining bytes of the buffer without copying them. The position
+   * of the buffer is not changed.
+   */
+  public static InputStream newInputStream(ByteBuffer buffer) {
+    return new ByteBufferInputStream(buffer.duplicate());
+  }
+
   public static byte[] inputStreamCallableToByteArray(Callable<InputStream> inputStreamCreator)
       throws Exception {
     try (InputStream input = inputStreamCreator.call()) {
@@ -123,8 +233,122 @@ public final class SceneformBufferUtils {
   }
 
   public static byte[] inputStreamToByteArray(InputStream input) throws IOException {
-    ByteArrayOutputStream output = new ByteArrayOutputStream();
-    copy(input, output);
-    return output.toByteArray();
+    // The length is only a hint, the array grows if the stream is longer and is trimmed if it is
+    // shorter.
+    int length = getLengthHint(input);
+    byte[] bytes = new byte[length > 0 ? length : DEFAULT_BLOCK_SIZE];
+    int size = 0;
+    int n;
+    while (true) {
+      if (size == bytes.length) {
+        if ((n = input.read()) < 0) {
+          break;
+        }
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        bytes[size++] = (byte) n;
+      }
+      if ((n = input.read(bytes, size, bytes.length - size)) < 0) {
+        break;
+      }
+      size += n;
+    }
+    return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+  }
+
+  /**
+   * Returns a stream reading the given stream, along with the length of its content, e.g. the
+   * Content-Length of a response, so that it can be read into a buffer of the right size.
+   *
+   * @param length the length of the content, or a negative value if it is unknown
+   */
+  public static InputStream withLength(InputStream inputStream, long length) {
+    return new LengthInputStream(inputStream, length);
+  }
+
+  /** Returns the expected length of the stream, or 0 if it is unknown. */
+  private static int getLengthHint(InputStream inputStream) throws IOException {
+    if (inputStream instanceof LengthInputStream) {
+      long length = ((LengthInputStream) inputStream).length;
+      if (length > 0 && length <= Integer.MAX_VALUE) {
+        return (int) length;
+      }
+    }
+    // The remaining length of assets and files, but only what is buffered for network streams.
+    return inputStream.available();
+  }
+
+  private static final class LengthInputStream extends FilterInputStream {
+    private final long length;
+
+    LengthInputStream(InputStream inputStream, long length) {
+      super(inputStream);
+      this.length = length;
+    }
+  }
+
+  private static final class AssetInputStream extends FilterInputStream {
+    private final AssetFileDescriptor assetFileDescriptor;
+    private boolean hasBeenRead = false;
+
+    AssetInputStream(AssetFileDescriptor assetFileDescriptor) throws IOException {
+      super(assetFileDescriptor.createInputStream());
+      this.assetFileDescriptor = assetFileDescriptor;
+    }
+
+    @Override
+    public int read() throws IOException {
+      hasBeenRead = true;
+      return super.read();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      hasBeenRead = true;
+      return super.read(bytes, offset, length);
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+      hasBeenRead = true;
+      return super.skip(count);
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
   }
 }
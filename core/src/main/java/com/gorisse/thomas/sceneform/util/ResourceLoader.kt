@@ -2,12 +2,15 @@ package com.gorisse.thomas.sceneform.util
 
 import android.content.ContentResolver
 import android.content.Context
+import android.content.res.Resources
 import android.net.Uri
 import androidx.annotation.IdRes
 import com.github.kittinunf.fuel.core.*
 import com.github.kittinunf.fuel.coroutines.awaitByteArray
+import com.google.ar.sceneform.utilities.SceneformBufferUtils
 import kotlinx.coroutines.*
 import java.io.File
+import java.io.FileNotFoundException
 import java.io.InputStream
 import java.nio.ByteBuffer
 
@@ -42,28 +45,46 @@ object ResourceLoader {
         val uri = Uri.parse(fileLocation)
         when (uri.scheme) {
             ContentResolver.SCHEME_FILE -> if (uri.firstPathSegment == ASSET_FILE_PATH_ROOT) {
-                context.assets.open(
-                    uri.pathSegments.drop(1).joinToString("/")
-                ).toByteArray()
+                context.openAsset(uri.pathSegments.drop(1).joinToString("/")).readBuffer()
             } else {
-                File(uri.path!!).inputStream().toByteArray()
+                File(uri.path!!).inputStream().readBuffer()
             }
             ContentResolver.SCHEME_CONTENT -> {
-                context.contentResolver.openInputStream(uri)?.toByteArray()
+                context.contentResolver.openInputStream(uri)?.readBuffer()
             }
             ContentResolver.SCHEME_ANDROID_RESOURCE ->
                 // Expected format: android.resource://example.package.name/12345678
-                context.resources.openRawResource(uri.pathSegments.lastOrNull()?.toInt()!!)
-                    .toByteArray()
+                context.openRawResource(uri.pathSegments.lastOrNull()?.toInt()!!).readBuffer()
             "http", "https" -> {
-                fuelManager.get(fileLocation).awaitByteArray()
+                ByteBuffer.wrap(fuelManager.get(fileLocation).awaitByteArray())
             }
-            else -> context.assets.open(fileLocation).toByteArray()
-        }?.let { byteArray ->
-            ByteBuffer.wrap(byteArray)
+            else -> context.openAsset(fileLocation).readBuffer()
         }
     }
 
+    /**
+     * Opens uncompressed assets from their file descriptor so that they can be memory-mapped.
+     */
+    @JvmStatic
+    private fun Context.openAsset(fileName: String): InputStream = try {
+        SceneformBufferUtils.newAssetInputStream(assets.openFd(fileName))
+    } catch (e: FileNotFoundException) {
+        // Compressed assets have no file descriptor.
+        assets.open(fileName)
+    }
+
+    /**
+     * Opens uncompressed raw resources from their file descriptor so that they can be
+     * memory-mapped.
+     */
+    @JvmStatic
+    private fun Context.openRawResource(resId: Int): InputStream = try {
+        SceneformBufferUtils.newAssetInputStream(resources.openRawResourceFd(resId))
+    } catch (e: Resources.NotFoundException) {
+        // Compressed resources have no file descriptor.
+        resources.openRawResource(resId)
+    }
+
     @JvmStatic
     private val Uri.firstPathSegment: String?
         get() = pathSegments.firstOrNull()
@@ -84,18 +105,22 @@ fun Context.getResourceUri(@IdRes resId: Int): String {
     return "${ContentResolver.SCHEME_ANDROID_RESOURCE}://$packageName/$resId"
 }
 
-fun InputStream.toByteArray() = use {
-    ByteArray(this.available()).apply {
-        read(this)
-    }
+fun InputStream.toByteArray(): ByteArray = use {
+    SceneformBufferUtils.inputStreamToByteArray(it)
 }
 
-fun <R> InputStream.useBuffer(block: (ByteBuffer) -> R): R = use { inputStream ->
-    val bytes = ByteArray(inputStream.available())
-    inputStream.read(bytes)
-    block(ByteBuffer.wrap(bytes))
+/**
+ * ### Read the stream content into a direct buffer
+ *
+ * File streams are memory-mapped, other streams are read once into a buffer of their length when
+ * it is known.
+ */
+fun InputStream.readBuffer(): ByteBuffer = use {
+    SceneformBufferUtils.readStreamToDirectBuffer(it)
 }
 
+fun <R> InputStream.useBuffer(block: (ByteBuffer) -> R): R = block(readBuffer())
+
 fun <R> InputStream.useText(block: (String) -> R): R = use { inputStream ->
     inputStream.bufferedReader().use {
         block(it.readText())
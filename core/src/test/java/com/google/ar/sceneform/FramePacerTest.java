@@ -0,0 +1,155 @@
+package com.google.ar.sceneform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FramePacer}, driven by a simulated Choreographer clock. */
+@RunWith(JUnit4.class)
+public class FramePacerTest {
+  private static final long REFRESH_PERIOD_60HZ = TimeUnit.SECONDS.toNanos(1) / 60;
+  private static final long REFRESH_PERIOD_120HZ = TimeUnit.SECONDS.toNanos(1) / 120;
+  // The Choreographer time base starts at boot, not at 0.
+  private static final long FIRST_VSYNC_NANOS = TimeUnit.SECONDS.toNanos(100);
+
+  private FakeClock clock;
+  private FramePacer framePacer;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    framePacer = new FramePacer(clock);
+  }
+
+  @Test
+  public void getSwapInterval_matchesRefreshRateToMaxFrameRate() {
+    assertSwapInterval(60.0f, 60.0f, 1);
+    assertSwapInterval(59.94f, 60.0f, 1);
+    assertSwapInterval(120.0f, 60.0f, 2);
+    assertSwapInterval(90.0f, 30.0f, 3);
+    assertSwapInterval(60.0f, 45.0f, 2);
+    assertSwapInterval(60.0f, 120.0f, 1);
+  }
+
+  @Test
+  public void beginFrame_swapIntervalTwo_producesEveryOtherVsync() {
+    framePacer.setRefreshRate(120.0f);
+    framePacer.setMaxFramesPerSecond(60.0f);
+
+    for (int vsync = 0; vsync < 20; vsync++) {
+      boolean isFrameProduced = runCallback(vsync * REFRESH_PERIOD_120HZ, millis(1), millis(5));
+      assertEquals(vsync % 2 == 0, isFrameProduced);
+    }
+    assertEquals(10, framePacer.getStats().getFrameCount());
+    assertEquals(0, framePacer.getStats().getSkippedFrameCount());
+    assertEquals(2 * REFRESH_PERIOD_120HZ, framePacer.getStats().getLastFrameIntervalNanos());
+  }
+
+  @Test
+  public void beginFrame_framesMeetingDeadline_neverSkip() {
+    // Slow frames starting right after vsync, so that the expected duration is high.
+    for (int vsync = 0; vsync < 30; vsync++) {
+      assertTrue(runCallback(vsync * REFRESH_PERIOD_60HZ, millis(1), millis(15)));
+    }
+    // Callbacks starting later, the expected duration would miss the next vsync but the frames
+    // still meet their deadline.
+    for (int vsync = 30; vsync < 60; vsync++) {
+      assertTrue(runCallback(vsync * REFRESH_PERIOD_60HZ, millis(4), millis(12)));
+    }
+
+    assertEquals(60, framePacer.getStats().getFrameCount());
+    assertEquals(0, framePacer.getStats().getSkippedFrameCount());
+    assertEquals(0, framePacer.getStats().getMissedDeadlineCount());
+  }
+
+  @Test
+  public void beginFrame_framesMissingDeadline_skipAtMostOnceInARow() {
+    boolean wasSkipped = false;
+    for (int vsync = 0; vsync < 60; vsync++) {
+      boolean isFrameProduced = runCallback(vsync * REFRESH_PERIOD_60HZ, millis(2), millis(20));
+      assertFalse(wasSkipped && !isFrameProduced);
+      wasSkipped = !isFrameProduced;
+    }
+
+    FramePacer.Stats stats = framePacer.getStats();
+    assertTrue(stats.getSkippedFrameCount() > 0);
+    assertEquals(60, stats.getFrameCount() + stats.getSkippedFrameCount());
+  }
+
+  @Test
+  public void beginFrame_afterSkip_skipsAgainOnlyOnceDeadlineMissed() {
+    for (int vsync = 0; vsync < 30; vsync++) {
+      runCallback(vsync * REFRESH_PERIOD_60HZ, millis(2), millis(20));
+    }
+    long skippedFrameCount = framePacer.getStats().getSkippedFrameCount();
+
+    // The scene gets lighter and its frames meet their deadline again.
+    for (int vsync = 30; vsync < 60; vsync++) {
+      runCallback(vsync * REFRESH_PERIOD_60HZ, millis(2), millis(10));
+    }
+
+    // At most the callback right after the last slow frame is skipped.
+    assertTrue(framePacer.getStats().getSkippedFrameCount() <= skippedFrameCount + 1);
+  }
+
+  @Test
+  public void getNextFrameDelayMillis_swapIntervalTwo_aimsBeforeNextFrameVsync() {
+    framePacer.setRefreshRate(120.0f);
+    framePacer.setMaxFramesPerSecond(60.0f);
+    assertEquals(0, framePacer.getNextFrameDelayMillis());
+
+    runCallback(0, 0, millis(1));
+
+    // Half a refresh period before the vsync of the next frame, 16.7ms - 4.2ms - 1ms.
+    assertEquals(11, framePacer.getNextFrameDelayMillis());
+  }
+
+  @Test
+  public void getNextFrameDelayMillis_swapIntervalOne_isZero() {
+    runCallback(0, 0, millis(1));
+
+    assertEquals(0, framePacer.getNextFrameDelayMillis());
+  }
+
+  private void assertSwapInterval(float refreshRate, float maxFramesPerSecond, int swapInterval) {
+    FramePacer framePacer = new FramePacer(clock);
+    framePacer.setRefreshRate(refreshRate);
+    framePacer.setMaxFramesPerSecond(maxFramesPerSecond);
+    assertEquals(swapInterval, framePacer.getSwapInterval());
+  }
+
+  /**
+   * Simulates the Choreographer callback of a vsync, given relative to the first one, which starts
+   * with a delay after the vsync or once the previous frame is done, and the frame it produces if
+   * it is due.
+   */
+  private boolean runCallback(long vsyncNanos, long startDelayNanos, long durationNanos) {
+    long frameTimeNanos = FIRST_VSYNC_NANOS + vsyncNanos;
+    clock.nanos = Math.max(clock.nanos, frameTimeNanos + startDelayNanos);
+    if (!framePacer.beginFrame(frameTimeNanos)) {
+      return false;
+    }
+    clock.nanos += durationNanos;
+    framePacer.endFrame();
+    return true;
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static final class FakeClock implements FramePacer.Clock {
+    private long nanos = 0;
+
+    @Override
+    public long getNanoseconds() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.sceneform.resources.ReclaimBudget;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CleanupRegistry}, relying on the garbage collector of the JVM. */
+@RunWith(JUnit4.class)
+public class CleanupRegistryTest {
+  private static final int OBJECT_COUNT = 10_000;
+  private static final int MAX_GC_ATTEMPTS = 100;
+  private static final float BUDGET_MILLIS = 10_000.0f;
+
+  private CleanupRegistry<Object> registry;
+  private AtomicInteger cleanupCount;
+
+  @Before
+  public void setUp() {
+    registry = new CleanupRegistry<>();
+    cleanupCount = new AtomicInteger();
+  }
+
+  @Test
+  public void reclaimReleasedResources_droppedObjects_runsEachCallbackOnce() throws Exception {
+    registerDroppedObjects(OBJECT_COUNT);
+    awaitCollected(OBJECT_COUNT);
+
+    assertEquals(0, registry.reclaimReleasedResources());
+    assertEquals(OBJECT_COUNT, cleanupCount.get());
+
+    assertEquals(0, registry.reclaimReleasedResources());
+    assertEquals(OBJECT_COUNT, cleanupCount.get());
+  }
+
+  @Test
+  public void reclaimReleasedResources_budget_runsCallbacksInBatches() throws Exception {
+    registerDroppedObjects(OBJECT_COUNT);
+    awaitCollected(OBJECT_COUNT);
+
+    int batchSize = 100;
+    for (int batch = 1; batch <= OBJECT_COUNT / batchSize; batch++) {
+      long remainingCount =
+          registry.reclaimReleasedResources(ReclaimBudget.of(BUDGET_MILLIS, batchSize));
+
+      assertEquals(batch * batchSize, cleanupCount.get());
+      assertEquals(OBJECT_COUNT - batch * batchSize, remainingCount);
+      assertEquals(OBJECT_COUNT - batch * batchSize, registry.getPendingReclaimCount());
+    }
+  }
+
+  @Test
+  public void reclaimReleasedResources_reachableObject_keepsCallback() throws Exception {
+    Object trackedObject = new Object();
+    registry.register(trackedObject, cleanupCount::incrementAndGet);
+    registerDroppedObjects(1);
+    awaitCollected(1);
+
+    assertEquals(1, registry.reclaimReleasedResources());
+    assertEquals(1, cleanupCount.get());
+    // Keeps the object reachable until now.
+    assertEquals(Object.class, trackedObject.getClass());
+  }
+
+  @Test
+  public void destroyAllResources_runsCallbacksOfReachableAndCollectedObjects() throws Exception {
+    Object trackedObject = new Object();
+    registry.register(trackedObject, cleanupCount::incrementAndGet);
+    registerDroppedObjects(OBJECT_COUNT);
+    awaitCollected(OBJECT_COUNT);
+
+    registry.destroyAllResources();
+
+    assertEquals(OBJECT_COUNT + 1, cleanupCount.get());
+    assertEquals(0, registry.getPendingReclaimCount());
+    assertEquals(0, registry.reclaimReleasedResources());
+    assertEquals(OBJECT_COUNT + 1, cleanupCount.get());
+    assertEquals(Object.class, trackedObject.getClass());
+  }
+
+  /** Registers objects that are immediately unreachable, with callbacks not referencing them. */
+  private void registerDroppedObjects(int count) {
+    for (int i = 0; i < count; i++) {
+      registry.register(new Object(), cleanupCount::incrementAndGet);
+    }
+  }
+
+  /** Collects garbage until the given number of objects wait for their callback. */
+  private void awaitCollected(int count) throws InterruptedException {
+    for (int attempt = 0;
+        attempt < MAX_GC_ATTEMPTS && registry.getPendingReclaimCount() < count;
+        attempt++) {
+      System.gc();
+      Thread.sleep(10);
+      // An empty budget only moves the collected objects to the pending ones.
+      registry.reclaimReleasedResources(ReclaimBudget.of(BUDGET_MILLIS, 0));
+    }
+    assertEquals(count, registry.getPendingReclaimCount());
+  }
+}
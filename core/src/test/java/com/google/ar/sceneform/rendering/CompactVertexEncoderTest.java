@@ -0,0 +1,64 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.math.Vector3;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompactVertexEncoder}. */
+@RunWith(JUnit4.class)
+public class CompactVertexEncoderTest {
+
+  @Test
+  public void toHalf_exactValues() {
+    assertEquals(0x0000, CompactVertexEncoder.toHalf(0.0f));
+    assertEquals((short) 0x8000, CompactVertexEncoder.toHalf(-0.0f));
+    assertEquals(0x3C00, CompactVertexEncoder.toHalf(1.0f));
+    assertEquals((short) 0xC000, CompactVertexEncoder.toHalf(-2.0f));
+    assertEquals(0x7BFF, CompactVertexEncoder.toHalf(65504.0f));
+    // Smallest subnormal.
+    assertEquals(0x0001, CompactVertexEncoder.toHalf((float) Math.pow(2, -24)));
+  }
+
+  @Test
+  public void toHalf_roundsToNearestEven() {
+    // 1 + 2^-11 is halfway between 1 and the next half float, 1 is even.
+    assertEquals(0x3C00, CompactVertexEncoder.toHalf(1.0f + (float) Math.pow(2, -11)));
+    // 1 + 3 * 2^-11 is halfway between two half floats, the upper one is even.
+    assertEquals(0x3C02, CompactVertexEncoder.toHalf(1.0f + 3 * (float) Math.pow(2, -11)));
+  }
+
+  @Test
+  public void toHalf_outOfRange_isInfinity() {
+    assertEquals(0x7C00, CompactVertexEncoder.toHalf(65536.0f));
+    assertEquals((short) 0xFC00, CompactVertexEncoder.toHalf(-1.0e6f));
+    assertEquals(0x7C00, CompactVertexEncoder.toHalf(Float.POSITIVE_INFINITY));
+  }
+
+  @Test
+  public void canEncodePositions_withinHalfRange() {
+    assertTrue(
+        CompactVertexEncoder.canEncodePositions(
+            new Vector3(0.0f, 0.0f, 0.0f), new Vector3(1000.0f, 1000.0f, 1000.0f)));
+    assertTrue(
+        CompactVertexEncoder.canEncodePositions(
+            new Vector3(-60000.0f, 0.0f, 0.0f), new Vector3(5000.0f, 1.0f, 1.0f)));
+  }
+
+  @Test
+  public void canEncodePositions_beyondHalfRange() {
+    assertFalse(
+        CompactVertexEncoder.canEncodePositions(
+            new Vector3(0.0f, 0.0f, 0.0f), new Vector3(1.0f, 70000.0f, 1.0f)));
+    assertFalse(
+        CompactVertexEncoder.canEncodePositions(
+            new Vector3(0.0f, 0.0f, -65000.0f), new Vector3(1.0f, 1.0f, 1000.0f)));
+    assertFalse(
+        CompactVertexEncoder.canEncodePositions(
+            new Vector3(Float.NaN, 0.0f, 0.0f), new Vector3(1.0f, 1.0f, 1.0f)));
+  }
+}
@@ -0,0 +1,207 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.os.PowerManager;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DefaultQualityPolicy}, driven by a fake clock. */
+@RunWith(JUnit4.class)
+public class DefaultQualityPolicyTest {
+  private static final int LEVEL_COUNT = 4;
+  private static final float BUDGET_MILLIS = 16.0f;
+  // Over the downgrade threshold, under the upgrade threshold and in between.
+  private static final float SLOW_FRAME_MILLIS = 20.0f;
+  private static final float FAST_FRAME_MILLIS = 5.0f;
+  private static final float STEADY_FRAME_MILLIS = 12.0f;
+
+  private DefaultQualityPolicy policy;
+  private long nowNanos;
+
+  @Before
+  public void setUp() {
+    policy = new DefaultQualityPolicy();
+    nowNanos = TimeUnit.SECONDS.toNanos(100);
+  }
+
+  @Test
+  public void selectLevel_overBudget_downgradesAfterDelay() {
+    assertEquals(0, selectLevel(SLOW_FRAME_MILLIS, 0));
+
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS - 1);
+    assertEquals(0, selectLevel(SLOW_FRAME_MILLIS, 0));
+
+    advanceMillis(1);
+    assertEquals(1, selectLevel(SLOW_FRAME_MILLIS, 0));
+  }
+
+  @Test
+  public void selectLevel_underBudget_upgradesAfterLongerDelay() {
+    assertEquals(2, selectLevel(FAST_FRAME_MILLIS, 2));
+
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS);
+    assertEquals(2, selectLevel(FAST_FRAME_MILLIS, 2));
+
+    advanceMillis(
+        DefaultQualityPolicy.DEFAULT_UPGRADE_DELAY_MILLIS
+            - DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS
+            - 1);
+    assertEquals(2, selectLevel(FAST_FRAME_MILLIS, 2));
+
+    advanceMillis(1);
+    assertEquals(1, selectLevel(FAST_FRAME_MILLIS, 2));
+  }
+
+  @Test
+  public void selectLevel_betweenThresholds_keepsLevel() {
+    for (int i = 0; i < 100; i++) {
+      assertEquals(1, selectLevel(STEADY_FRAME_MILLIS, 1));
+      advanceMillis(500);
+    }
+  }
+
+  @Test
+  public void selectLevel_frameTimeBackInBetweenThresholds_restartsDelay() {
+    selectLevel(SLOW_FRAME_MILLIS, 0);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS / 2);
+    selectLevel(STEADY_FRAME_MILLIS, 0);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS / 2);
+
+    assertEquals(0, selectLevel(SLOW_FRAME_MILLIS, 0));
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS - 1);
+    assertEquals(0, selectLevel(SLOW_FRAME_MILLIS, 0));
+    advanceMillis(1);
+    assertEquals(1, selectLevel(SLOW_FRAME_MILLIS, 0));
+  }
+
+  @Test
+  public void selectLevel_lowestLevel_doesNotDowngradeFurther() {
+    selectLevel(SLOW_FRAME_MILLIS, LEVEL_COUNT - 1);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS * 10);
+
+    assertEquals(LEVEL_COUNT - 1, selectLevel(SLOW_FRAME_MILLIS, LEVEL_COUNT - 1));
+  }
+
+  @Test
+  public void selectLevel_highestLevel_doesNotUpgradeFurther() {
+    selectLevel(FAST_FRAME_MILLIS, 0);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_UPGRADE_DELAY_MILLIS * 10);
+
+    assertEquals(0, selectLevel(FAST_FRAME_MILLIS, 0));
+  }
+
+  @Test
+  public void reset_discardsPendingDowngrade() {
+    selectLevel(SLOW_FRAME_MILLIS, 0);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS);
+
+    policy.reset();
+
+    assertEquals(0, selectLevel(SLOW_FRAME_MILLIS, 0));
+  }
+
+  @Test
+  public void selectLevel_lightThermalStatus_doesNotUpgrade() {
+    selectLevel(FAST_FRAME_MILLIS, 1, PowerManager.THERMAL_STATUS_LIGHT);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_UPGRADE_DELAY_MILLIS * 10);
+
+    assertEquals(1, selectLevel(FAST_FRAME_MILLIS, 1, PowerManager.THERMAL_STATUS_LIGHT));
+  }
+
+  @Test
+  public void selectLevel_lightThermalStatus_stillDowngrades() {
+    selectLevel(SLOW_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_LIGHT);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS);
+
+    assertEquals(1, selectLevel(SLOW_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_LIGHT));
+  }
+
+  @Test
+  public void selectLevel_highThermalStatus_capsLevelImmediately() {
+    assertEquals(1, selectLevel(FAST_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_MODERATE));
+    assertEquals(2, selectLevel(FAST_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_SEVERE));
+    assertEquals(
+        LEVEL_COUNT - 1, selectLevel(FAST_FRAME_MILLIS, 1, PowerManager.THERMAL_STATUS_CRITICAL));
+    assertEquals(
+        LEVEL_COUNT - 1, selectLevel(FAST_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_SHUTDOWN));
+  }
+
+  @Test
+  public void selectLevel_highThermalStatus_neverUpgradesPastCap() {
+    selectLevel(FAST_FRAME_MILLIS, 2, PowerManager.THERMAL_STATUS_SEVERE);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_UPGRADE_DELAY_MILLIS * 10);
+
+    assertEquals(2, selectLevel(FAST_FRAME_MILLIS, 2, PowerManager.THERMAL_STATUS_SEVERE));
+  }
+
+  @Test
+  public void selectLevel_thermalCapAboveLevelCount_clampsToLowestLevel() {
+    assertEquals(1, selectLevel(FAST_FRAME_MILLIS, 0, PowerManager.THERMAL_STATUS_SEVERE, 2));
+  }
+
+  @Test
+  public void selectLevel_usesNinetiethPercentile() {
+    // One slow frame out of ten stays under the 90th percentile.
+    float[] frameTimes = new float[10];
+    Arrays.fill(frameTimes, STEADY_FRAME_MILLIS);
+    frameTimes[9] = SLOW_FRAME_MILLIS * 10;
+    QualityGovernor.FrameStats stats =
+        new QualityGovernor.FrameStats(
+            nowNanos, frameTimes, BUDGET_MILLIS, PowerManager.THERMAL_STATUS_NONE);
+
+    policy.selectLevel(stats, 0, LEVEL_COUNT);
+    advanceMillis(DefaultQualityPolicy.DEFAULT_DOWNGRADE_DELAY_MILLIS);
+    stats =
+        new QualityGovernor.FrameStats(
+            nowNanos, frameTimes, BUDGET_MILLIS, PowerManager.THERMAL_STATUS_NONE);
+
+    assertEquals(0, policy.selectLevel(stats, 0, LEVEL_COUNT));
+  }
+
+  @Test
+  public void constructor_upgradeThresholdNotUnderDowngradeThreshold_throws() {
+    try {
+      new DefaultQualityPolicy(0.8f, 0.8f, 1000, 5000);
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void constructor_negativeDelay_throws() {
+    try {
+      new DefaultQualityPolicy(1.0f, 0.6f, -1, 5000);
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  private int selectLevel(float frameTimeMillis, int currentLevel) {
+    return selectLevel(frameTimeMillis, currentLevel, PowerManager.THERMAL_STATUS_NONE);
+  }
+
+  private int selectLevel(float frameTimeMillis, int currentLevel, int thermalStatus) {
+    return selectLevel(frameTimeMillis, currentLevel, thermalStatus, LEVEL_COUNT);
+  }
+
+  private int selectLevel(
+      float frameTimeMillis, int currentLevel, int thermalStatus, int levelCount) {
+    float[] frameTimes = new float[10];
+    Arrays.fill(frameTimes, frameTimeMillis);
+    QualityGovernor.FrameStats stats =
+        new QualityGovernor.FrameStats(nowNanos, frameTimes, BUDGET_MILLIS, thermalStatus);
+    return policy.selectLevel(stats, currentLevel, levelCount);
+  }
+
+  private void advanceMillis(long millis) {
+    nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
@@ -0,0 +1,94 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LoadRequest} shared by the builds of the same renderable. */
+@RunWith(JUnit4.class)
+public class LoadRequestTest {
+
+  @Test
+  public void cancel_buildRequest_onlyCancelsItsFuture() {
+    LoadRequest sharedRequest = new LoadRequest();
+    CompletableFuture<Object> stage = sharedRequest.track(new CompletableFuture<>());
+    LoadRequest firstRequest = new LoadRequest();
+    LoadRequest secondRequest = new LoadRequest();
+    CompletableFuture<Object> firstFuture = new CompletableFuture<>();
+    CompletableFuture<Object> secondFuture = new CompletableFuture<>();
+    sharedRequest.addConsumer(firstFuture, firstRequest);
+    sharedRequest.addConsumer(secondFuture, secondRequest);
+
+    firstRequest.cancel();
+
+    assertTrue(firstFuture.isCancelled());
+    assertFalse(secondFuture.isDone());
+    assertFalse(sharedRequest.isCancelled());
+    assertFalse(stage.isDone());
+  }
+
+  @Test
+  public void cancel_everyBuildRequest_cancelsSharedLoad() {
+    LoadRequest sharedRequest = new LoadRequest();
+    CompletableFuture<Object> stage = sharedRequest.track(new CompletableFuture<>());
+    LoadRequest firstRequest = new LoadRequest();
+    CompletableFuture<Object> firstFuture = new CompletableFuture<>();
+    CompletableFuture<Object> secondFuture = new CompletableFuture<>();
+    sharedRequest.addConsumer(firstFuture, firstRequest);
+    sharedRequest.addConsumer(secondFuture, null);
+
+    firstRequest.cancel();
+    secondFuture.cancel(false);
+
+    assertTrue(sharedRequest.isCancelled());
+    assertTrue(stage.isCancelled());
+  }
+
+  @Test
+  public void setPriority_buildRequest_sharedLoadFollowsHighestPriority() {
+    LoadRequest sharedRequest = new LoadRequest();
+    LoadRequest lowRequest = new LoadRequest(LoadRequest.PRIORITY_LOW);
+    LoadRequest highRequest = new LoadRequest(LoadRequest.PRIORITY_LOW);
+    sharedRequest.addConsumer(new CompletableFuture<>(), lowRequest);
+    CompletableFuture<Object> highFuture = new CompletableFuture<>();
+    sharedRequest.addConsumer(highFuture, highRequest);
+    assertEquals(LoadRequest.PRIORITY_LOW, sharedRequest.getPriority());
+
+    highRequest.setPriority(LoadRequest.PRIORITY_HIGH);
+    assertEquals(LoadRequest.PRIORITY_HIGH, sharedRequest.getPriority());
+
+    highRequest.cancel();
+    assertEquals(LoadRequest.PRIORITY_LOW, sharedRequest.getPriority());
+  }
+
+  @Test
+  public void track_cancelledRequest_cancelsStage() {
+    LoadRequest request = new LoadRequest();
+    request.cancel();
+
+    CompletableFuture<Object> stage = request.track(new CompletableFuture<>());
+
+    assertTrue(stage.isCancelled());
+  }
+
+  @Test
+  public void supplyIoAsync_cancelledRequest_completesStageWithoutRunningWork() {
+    LoadRequest request = new LoadRequest();
+    request.cancel();
+
+    CompletableFuture<Object> stage =
+        LoadScheduler.getInstance()
+            .supplyIoAsync(
+                request,
+                () -> {
+                  throw new AssertionError("The work of a cancelled request was run.");
+                });
+
+    assertTrue(stage.isCompletedExceptionally());
+  }
+}
@@ -0,0 +1,203 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.PowerManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link QualityGovernor} with the {@link DefaultQualityPolicy}, on a fake clock. */
+@RunWith(JUnit4.class)
+public class QualityGovernorTest {
+  private static final long FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+  private static final long TARGET_FRAME_TIME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+  private static final long SLOW_FRAME_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(25);
+  private static final long FAST_FRAME_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private static final long STEADY_FRAME_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(13);
+
+  private FakeClock clock;
+  private FakeThermalStatusProvider thermalStatusProvider;
+  private QualityGovernor governor;
+  private final List<QualityLevel> changedLevels = new ArrayList<>();
+  private final List<QualityGovernor.FrameStats> changedStats = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    thermalStatusProvider = new FakeThermalStatusProvider();
+    governor =
+        new QualityGovernor(
+            QualityLevel.createDefaultLevels(),
+            new DefaultQualityPolicy(),
+            clock,
+            thermalStatusProvider);
+    governor.addOnQualityChangedListener(
+        (changedGovernor, level, stats) -> {
+          assertSame(governor, changedGovernor);
+          changedLevels.add(level);
+          changedStats.add(stats);
+        });
+  }
+
+  @Test
+  public void onFrameRendered_steadyFrames_keepsHighestLevel() {
+    renderFrames(TimeUnit.SECONDS.toMillis(30), STEADY_FRAME_TIME_NANOS);
+
+    assertEquals(0, governor.getLevelIndex());
+    assertTrue(changedLevels.isEmpty());
+    assertNotNull(governor.getLastFrameStats());
+  }
+
+  @Test
+  public void onFrameRendered_slowFrames_downgradesAfterDelay() {
+    // The first evaluation happens after 512ms of frames, the policy then waits for 1 second.
+    renderFrames(1500, SLOW_FRAME_TIME_NANOS);
+    assertEquals(0, governor.getLevelIndex());
+
+    renderFrames(100, SLOW_FRAME_TIME_NANOS);
+
+    assertEquals(1, governor.getLevelIndex());
+    assertEquals(1, changedLevels.size());
+    assertSame(governor.getLevel(), changedLevels.get(0));
+    assertNotNull(changedStats.get(0));
+  }
+
+  @Test
+  public void onFrameRendered_sustainedSlowFrames_downgradesOneLevelPerDelay() {
+    // Each change clears the frame times and the policy, the next change needs a full delay.
+    renderFrames(1600, SLOW_FRAME_TIME_NANOS);
+    assertEquals(1, governor.getLevelIndex());
+
+    renderFrames(900, SLOW_FRAME_TIME_NANOS);
+    assertEquals(1, governor.getLevelIndex());
+
+    renderFrames(TimeUnit.SECONDS.toMillis(10), SLOW_FRAME_TIME_NANOS);
+    assertEquals(governor.getLevels().size() - 1, governor.getLevelIndex());
+  }
+
+  @Test
+  public void onFrameRendered_fastFrames_upgradesAfterLongerDelay() {
+    governor.setLevelIndex(2);
+    changedLevels.clear();
+
+    renderFrames(5500, FAST_FRAME_TIME_NANOS);
+    assertEquals(2, governor.getLevelIndex());
+
+    renderFrames(200, FAST_FRAME_TIME_NANOS);
+    assertEquals(1, governor.getLevelIndex());
+    assertEquals(1, changedLevels.size());
+  }
+
+  @Test
+  public void onFrameRendered_framesBetweenThresholds_keepsLevel() {
+    governor.setLevelIndex(1);
+
+    renderFrames(TimeUnit.SECONDS.toMillis(30), STEADY_FRAME_TIME_NANOS);
+
+    assertEquals(1, governor.getLevelIndex());
+  }
+
+  @Test
+  public void onFrameRendered_severeThermalStatus_capsLevelAtFirstEvaluation() {
+    thermalStatusProvider.thermalStatus = PowerManager.THERMAL_STATUS_SEVERE;
+
+    renderFrames(600, FAST_FRAME_TIME_NANOS);
+
+    assertEquals(2, governor.getLevelIndex());
+    assertEquals(
+        PowerManager.THERMAL_STATUS_SEVERE, governor.getLastFrameStats().getThermalStatus());
+  }
+
+  @Test
+  public void onFrameRendered_thermalStatusBackToNormal_upgradesAfterDelay() {
+    thermalStatusProvider.thermalStatus = PowerManager.THERMAL_STATUS_MODERATE;
+    renderFrames(600, FAST_FRAME_TIME_NANOS);
+    assertEquals(1, governor.getLevelIndex());
+
+    thermalStatusProvider.thermalStatus = PowerManager.THERMAL_STATUS_LIGHT;
+    renderFrames(TimeUnit.SECONDS.toMillis(30), FAST_FRAME_TIME_NANOS);
+    assertEquals(1, governor.getLevelIndex());
+
+    thermalStatusProvider.thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    renderFrames(TimeUnit.SECONDS.toMillis(6), FAST_FRAME_TIME_NANOS);
+    assertEquals(0, governor.getLevelIndex());
+  }
+
+  @Test
+  public void onFrameRendered_tooFewFrames_doesNotEvaluate() {
+    clock.nanos += TimeUnit.SECONDS.toNanos(10);
+
+    assertFalse(governor.onFrameRendered(SLOW_FRAME_TIME_NANOS, TARGET_FRAME_TIME_NANOS));
+
+    assertNull(governor.getLastFrameStats());
+  }
+
+  @Test
+  public void onFrameRendered_disabled_keepsLevelButComputesStats() {
+    governor.setEnabled(false);
+
+    renderFrames(TimeUnit.SECONDS.toMillis(10), SLOW_FRAME_TIME_NANOS);
+
+    assertEquals(0, governor.getLevelIndex());
+    assertTrue(changedLevels.isEmpty());
+    assertNotNull(governor.getLastFrameStats());
+  }
+
+  @Test
+  public void setLevelIndex_notifiesWithoutStats() {
+    governor.setLevelIndex(3);
+
+    assertEquals(3, governor.getLevelIndex());
+    assertEquals(1, changedLevels.size());
+    assertNull(changedStats.get(0));
+  }
+
+  @Test
+  public void setLevelIndex_outOfRange_throws() {
+    try {
+      governor.setLevelIndex(governor.getLevels().size());
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  /** Renders frames of the given duration, one every 16ms, for up to the given time. */
+  private void renderFrames(long durationMillis, long frameTimeNanos) {
+    long endNanos = clock.nanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    while (clock.nanos + FRAME_INTERVAL_NANOS <= endNanos) {
+      clock.nanos += FRAME_INTERVAL_NANOS;
+      governor.onFrameRendered(frameTimeNanos, TARGET_FRAME_TIME_NANOS);
+    }
+  }
+
+  private static final class FakeClock implements QualityGovernor.Clock {
+    private long nanos = 0;
+
+    @Override
+    public long getNanoseconds() {
+      return nanos;
+    }
+  }
+
+  private static final class FakeThermalStatusProvider
+      implements QualityGovernor.ThermalStatusProvider {
+    private int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+
+    @Override
+    public int getThermalStatus() {
+      return thermalStatus;
+    }
+  }
+}
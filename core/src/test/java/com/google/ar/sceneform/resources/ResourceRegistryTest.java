@@ -0,0 +1,163 @@
+package com.google.ar.sceneform.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ResourceRegistry}. */
+@RunWith(JUnit4.class)
+public class ResourceRegistryTest {
+  private static final int THREAD_COUNT = 8;
+  private static final int ITERATION_COUNT = 200;
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private ResourceRegistry<Object> registry;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    registry = new ResourceRegistry<>();
+    executor = Executors.newFixedThreadPool(THREAD_COUNT);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void getOrLoad_concurrentRequestsForSameId_shareSingleLoad() throws Exception {
+    for (int iteration = 0; iteration < ITERATION_COUNT; iteration++) {
+      Object id = "resource" + iteration;
+      AtomicInteger loadCount = new AtomicInteger();
+      CompletableFuture<Object> load = new CompletableFuture<>();
+
+      List<CompletableFuture<Object>> results =
+          getOrLoadConcurrently(
+              id,
+              () -> {
+                loadCount.incrementAndGet();
+                return load;
+              });
+
+      assertEquals(1, loadCount.get());
+      for (CompletableFuture<Object> result : results) {
+        assertSame(load, result);
+      }
+    }
+  }
+
+  @Test
+  public void getOrLoad_requestsDuringCompletion_neverStartSecondLoad() throws Exception {
+    for (int iteration = 0; iteration < ITERATION_COUNT; iteration++) {
+      Object id = "resource" + iteration;
+      Object resource = new Object();
+      AtomicInteger loadCount = new AtomicInteger();
+      CompletableFuture<Object> load = new CompletableFuture<>();
+
+      registry.getOrLoad(
+          id,
+          () -> {
+            loadCount.incrementAndGet();
+            return load;
+          });
+      // Completes the load while the other threads look the resource up.
+      executor.execute(() -> load.complete(resource));
+      List<CompletableFuture<Object>> results =
+          getOrLoadConcurrently(
+              id,
+              () -> {
+                loadCount.incrementAndGet();
+                return CompletableFuture.completedFuture(new Object());
+              });
+
+      assertEquals(1, loadCount.get());
+      for (CompletableFuture<Object> result : results) {
+        assertSame(resource, result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  @Test
+  public void getOrLoad_afterLoadCompleted_returnsLoadedResource() throws Exception {
+    Object resource = new Object();
+    registry.getOrLoad("id", () -> CompletableFuture.completedFuture(resource));
+
+    CompletableFuture<Object> result =
+        registry.getOrLoad(
+            "id",
+            () -> {
+              throw new AssertionError("The resource was loaded again.");
+            });
+
+    assertTrue(result.isDone());
+    assertSame(resource, result.get());
+  }
+
+  @Test
+  public void getOrLoad_afterLoadFailed_loadsAgain() throws Exception {
+    CompletableFuture<Object> failedLoad = new CompletableFuture<>();
+    registry.getOrLoad("id", () -> failedLoad);
+    failedLoad.completeExceptionally(new IllegalStateException("Load failed."));
+
+    assertNull(registry.get("id"));
+    Object resource = new Object();
+    CompletableFuture<Object> result =
+        registry.getOrLoad("id", () -> CompletableFuture.completedFuture(resource));
+
+    assertSame(resource, result.get());
+  }
+
+  @Test
+  public void destroyAllResources_cancelsLoadsInProgress() {
+    CompletableFuture<Object> load = new CompletableFuture<>();
+    registry.getOrLoad("id", () -> load);
+
+    registry.destroyAllResources();
+
+    assertTrue(load.isCancelled());
+    assertNull(registry.get("id"));
+  }
+
+  /** Calls {@link ResourceRegistry#getOrLoad} from all the threads at once, returns the results. */
+  private List<CompletableFuture<Object>> getOrLoadConcurrently(
+      Object id, Supplier<CompletableFuture<Object>> loader) throws Exception {
+    CountDownLatch ready = new CountDownLatch(THREAD_COUNT);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<CompletableFuture<Object>>> futures = new ArrayList<>();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                ready.countDown();
+                start.await();
+                return registry.getOrLoad(id, loader);
+              }));
+    }
+    assertTrue(ready.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    start.countDown();
+
+    List<CompletableFuture<Object>> results = new ArrayList<>();
+    for (Future<CompletableFuture<Object>> future : futures) {
+      results.add(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+    return results;
+  }
+}
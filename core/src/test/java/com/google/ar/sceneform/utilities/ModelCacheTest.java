@@ -0,0 +1,318 @@
+package com.google.ar.sceneform.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ModelCache}, against a local http server. */
+@RunWith(JUnit4.class)
+public class ModelCacheTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long MAX_SIZE_BYTES = 1024 * 1024;
+  private static final long MAX_STALE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final Map<String, Model> models = new ConcurrentHashMap<>();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger notModifiedCount = new AtomicInteger();
+  private HttpServer server;
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    directory = Files.createTempDirectory("model-cache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void fetch_notCached_downloadsModel() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    serve("/model.glb", "model v1", "\"v1\"");
+
+    ModelCache.Entry entry = cache.fetch(uri("/model.glb"), null);
+
+    assertFalse(entry.isFromCache());
+    assertEquals("model v1", toString(entry.getMainBuffer()));
+    assertTrue(entry.getResources().isEmpty());
+    assertEquals(1, requestCount.get());
+  }
+
+  @Test
+  public void fetch_notCachedErrorResponse_throws() {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+
+    try {
+      cache.fetch(uri("/missing.glb"), null);
+      fail("Expected an IOException.");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void fetch_afterPut_returnsCachedModelAndResourcesWithoutRequest() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    serve("/model.gltf", "model v1", "\"v1\"");
+    ModelCache.Entry downloaded = cache.fetch(uri("/model.gltf"), null);
+    Map<String, ByteBuffer> resources = new HashMap<>();
+    resources.put("textures/albedo.png", toBuffer("albedo"));
+    resources.put("model.bin", toBuffer("geometry"));
+    cache.put(downloaded, resources);
+
+    ModelCache.Entry cached = cache.fetch(uri("/model.gltf"), null);
+
+    assertTrue(cached.isFromCache());
+    assertEquals("model v1", toString(cached.getMainBuffer()));
+    assertEquals(2, cached.getResources().size());
+    assertEquals("albedo", toString(cached.getResources().get("textures/albedo.png")));
+    assertEquals("geometry", toString(cached.getResources().get("model.bin")));
+    assertEquals(1, requestCount.get());
+  }
+
+  @Test
+  public void fetch_staleModelNotModified_revalidatesAndUsesCachedModel() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, 0);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+
+    ModelCache.Entry entry = cache.fetch(uri("/model.glb"), null);
+
+    assertTrue(entry.isFromCache());
+    assertEquals("model v1", toString(entry.getMainBuffer()));
+    assertEquals(2, requestCount.get());
+    assertEquals(1, notModifiedCount.get());
+  }
+
+  @Test
+  public void fetch_staleModelChanged_downloadsNewVersion() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, 0);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+    serve("/model.glb", "model v2", "\"v2\"");
+
+    ModelCache.Entry entry = cache.fetch(uri("/model.glb"), null);
+
+    assertFalse(entry.isFromCache());
+    assertEquals("model v2", toString(entry.getMainBuffer()));
+    assertEquals(0, notModifiedCount.get());
+  }
+
+  @Test
+  public void fetch_notModified_isNotRevalidatedAgainWithinMaxStale() throws Exception {
+    long maxStaleMillis = 200;
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, maxStaleMillis);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+    Thread.sleep(maxStaleMillis * 2);
+    assertTrue(cache.fetch(uri("/model.glb"), null).isFromCache());
+    assertEquals(1, notModifiedCount.get());
+
+    ModelCache.Entry entry = cache.fetch(uri("/model.glb"), null);
+
+    assertTrue(entry.isFromCache());
+    assertEquals(2, requestCount.get());
+  }
+
+  @Test
+  public void fetch_serverUnavailable_usesStaleCachedModel() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, 0);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+    String sourceUri = uri("/model.glb");
+    server.stop(0);
+
+    ModelCache.Entry entry = cache.fetch(sourceUri, null);
+
+    assertTrue(entry.isFromCache());
+    assertEquals("model v1", toString(entry.getMainBuffer()));
+  }
+
+  @Test
+  public void fetch_corruptedModel_isDiscardedAndDownloaded() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+    File[] files = modelFiles();
+    assertEquals(1, files.length);
+    try (FileOutputStream outputStream = new FileOutputStream(files[0])) {
+      outputStream.write("corrupted".getBytes(UTF_8));
+    }
+
+    ModelCache.Entry entry = cache.fetch(uri("/model.glb"), null);
+
+    assertFalse(entry.isFromCache());
+    assertEquals("model v1", toString(entry.getMainBuffer()));
+    assertEquals(0, modelFiles().length);
+  }
+
+  @Test
+  public void put_replacesPreviousVersionThroughTempFile() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, 0);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+    serve("/model.glb", "model v2 with more content", "\"v2\"");
+    ModelCache.Entry newVersion = cache.fetch(uri("/model.glb"), null);
+
+    cache.put(newVersion, Collections.emptyMap());
+
+    // The new version was renamed over the previous one, no temp file is left behind.
+    String[] names = directory.list();
+    assertEquals(1, names.length);
+    assertTrue(names[0].endsWith(".model"));
+    ModelCache offlineCache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    assertEquals(
+        "model v2 with more content",
+        toString(offlineCache.fetch(uri("/model.glb"), null).getMainBuffer()));
+  }
+
+  @Test
+  public void put_overSizeBudget_deletesLeastRecentlyUsedModels() throws IOException {
+    String content = repeat('x', 1000);
+    serve("/a.glb", content, "\"a\"");
+    serve("/b.glb", content, "\"b\"");
+    serve("/c.glb", content, "\"c\"");
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    cache.put(cache.fetch(uri("/a.glb"), null), Collections.emptyMap());
+    long modelSize = cache.getSize();
+    // Room for two models only.
+    cache = new ModelCache(directory, modelSize * 2 + modelSize / 2, MAX_STALE_MILLIS);
+    setAllLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2));
+    cache.put(cache.fetch(uri("/b.glb"), null), Collections.emptyMap());
+    setAllLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1));
+    // Reading a marks it as recently used, b becomes the least recently used model.
+    assertTrue(cache.fetch(uri("/a.glb"), null).isFromCache());
+
+    cache.put(cache.fetch(uri("/c.glb"), null), Collections.emptyMap());
+
+    assertEquals(2, modelFiles().length);
+    assertTrue(cache.getSize() <= modelSize * 2 + modelSize / 2);
+    int requestsBefore = requestCount.get();
+    assertTrue(cache.fetch(uri("/a.glb"), null).isFromCache());
+    assertTrue(cache.fetch(uri("/c.glb"), null).isFromCache());
+    assertEquals(requestsBefore, requestCount.get());
+    assertFalse(cache.fetch(uri("/b.glb"), null).isFromCache());
+  }
+
+  @Test
+  public void put_modelOverSizeBudget_isNotStored() throws IOException {
+    ModelCache cache = new ModelCache(directory, 16, MAX_STALE_MILLIS);
+    serve("/model.glb", repeat('x', 100), "\"v1\"");
+
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void clear_deletesEveryModel() throws IOException {
+    ModelCache cache = new ModelCache(directory, MAX_SIZE_BYTES, MAX_STALE_MILLIS);
+    serve("/model.glb", "model v1", "\"v1\"");
+    cache.put(cache.fetch(uri("/model.glb"), null), Collections.emptyMap());
+
+    cache.clear();
+
+    assertEquals(0, cache.getSize());
+    assertFalse(cache.fetch(uri("/model.glb"), null).isFromCache());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+    Model model = models.get(exchange.getRequestURI().getPath());
+    if (model == null) {
+      exchange.sendResponseHeaders(404, -1);
+    } else if (model.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      notModifiedCount.incrementAndGet();
+      exchange.sendResponseHeaders(304, -1);
+    } else {
+      exchange.getResponseHeaders().add("ETag", model.etag);
+      exchange.sendResponseHeaders(200, model.content.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(model.content);
+      }
+    }
+    exchange.close();
+  }
+
+  private void serve(String path, String content, String etag) {
+    models.put(path, new Model(content.getBytes(UTF_8), etag));
+  }
+
+  private String uri(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  private File[] modelFiles() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(".model"));
+    return files != null ? files : new File[0];
+  }
+
+  private void setAllLastModified(long timeMillis) {
+    for (File file : modelFiles()) {
+      assertTrue(file.setLastModified(timeMillis));
+    }
+  }
+
+  private static ByteBuffer toBuffer(String value) {
+    return ByteBuffer.wrap(value.getBytes(UTF_8));
+  }
+
+  private static String toString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  private static final class Model {
+    final byte[] content;
+    final String etag;
+
+    Model(byte[] content, String etag) {
+      this.content = content;
+      this.etag = etag;
+    }
+  }
+}
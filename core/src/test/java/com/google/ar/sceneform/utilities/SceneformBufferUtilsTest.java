@@ -0,0 +1,179 @@
+package com.google.ar.sceneform.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the length-aware reads of {@link SceneformBufferUtils}. */
+@RunWith(JUnit4.class)
+public class SceneformBufferUtilsTest {
+  private static final int CONTENT_LENGTH = 100_000;
+
+  private byte[] content;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    content = new byte[CONTENT_LENGTH];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i * 31);
+    }
+    file = File.createTempFile("buffer-utils", ".bin");
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(content);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void readStreamToDirectBuffer_knownLength_readsIntoSingleBufferOfThatLength()
+      throws IOException {
+    InputStream inputStream =
+        SceneformBufferUtils.withLength(new NetworkInputStream(content), content.length);
+
+    ByteBuffer buffer = SceneformBufferUtils.readStreamToDirectBuffer(inputStream);
+
+    assertTrue(buffer.isDirect());
+    assertEquals(content.length, buffer.capacity());
+    assertArrayEquals(content, toArray(buffer));
+  }
+
+  @Test
+  public void readStreamToDirectBuffer_unknownLength_growsToFitContent() throws IOException {
+    ByteBuffer buffer =
+        SceneformBufferUtils.readStreamToDirectBuffer(new NetworkInputStream(content));
+
+    assertTrue(buffer.isDirect());
+    assertArrayEquals(content, toArray(buffer));
+  }
+
+  @Test
+  public void readStreamToDirectBuffer_lengthShorterThanContent_growsToFitContent()
+      throws IOException {
+    InputStream inputStream =
+        SceneformBufferUtils.withLength(new NetworkInputStream(content), content.length / 10);
+
+    ByteBuffer buffer = SceneformBufferUtils.readStreamToDirectBuffer(inputStream);
+
+    assertArrayEquals(content, toArray(buffer));
+  }
+
+  @Test
+  public void readStreamToDirectBuffer_fileStream_mapsRemainingContent() throws IOException {
+    ByteBuffer buffer;
+    try (FileInputStream inputStream = new FileInputStream(file)) {
+      assertEquals(10, inputStream.skip(10));
+      buffer = SceneformBufferUtils.readStreamToDirectBuffer(inputStream);
+    }
+
+    // The mapping stays valid once the stream is closed.
+    assertTrue(buffer instanceof MappedByteBuffer);
+    byte[] expected = new byte[content.length - 10];
+    System.arraycopy(content, 10, expected, 0, expected.length);
+    assertArrayEquals(expected, toArray(buffer));
+  }
+
+  @Test
+  public void inputStreamToByteArray_knownLength_returnsContent() throws IOException {
+    InputStream inputStream =
+        SceneformBufferUtils.withLength(new NetworkInputStream(content), content.length);
+
+    assertArrayEquals(content, SceneformBufferUtils.inputStreamToByteArray(inputStream));
+  }
+
+  @Test
+  public void inputStreamToByteArray_lengthLongerThanContent_trimsArray() throws IOException {
+    InputStream inputStream =
+        SceneformBufferUtils.withLength(new NetworkInputStream(content), content.length * 2);
+
+    assertArrayEquals(content, SceneformBufferUtils.inputStreamToByteArray(inputStream));
+  }
+
+  @Test
+  public void inputStreamToByteArray_unknownLength_growsToFitContent() throws IOException {
+    assertArrayEquals(
+        content, SceneformBufferUtils.inputStreamToByteArray(new NetworkInputStream(content)));
+  }
+
+  @Test
+  public void inputStreamToByteArray_emptyStream_returnsEmptyArray() throws IOException {
+    assertEquals(
+        0, SceneformBufferUtils.inputStreamToByteArray(new NetworkInputStream(new byte[0])).length);
+  }
+
+  @Test
+  public void readStream_returnsHeapBufferBackedByArray() {
+    ByteBuffer buffer = SceneformBufferUtils.readStream(new ByteArrayInputStream(content));
+
+    assertFalse(buffer.isDirect());
+    assertTrue(buffer.hasArray());
+    assertArrayEquals(content, buffer.array());
+  }
+
+  @Test
+  public void newInputStream_readsRemainingBytesWithoutMovingPosition() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    buffer.position(10);
+
+    byte[] bytes =
+        SceneformBufferUtils.inputStreamToByteArray(SceneformBufferUtils.newInputStream(buffer));
+
+    assertEquals(10, buffer.position());
+    assertEquals(content.length - 10, bytes.length);
+    assertEquals(content[10], bytes[0]);
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** A stream returning a few bytes at a time, with no length available, like a response body. */
+  private static final class NetworkInputStream extends InputStream {
+    private static final int MAX_READ_LENGTH = 1500;
+
+    private final ByteArrayInputStream content;
+
+    NetworkInputStream(byte[] content) {
+      this.content = new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public int read() {
+      return content.read();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      return content.read(bytes, offset, Math.min(length, MAX_READ_LENGTH));
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+  }
+}
@@ -326,8 +326,13 @@ public class AugmentedFaceNode extends Node {
 
         if (faceMeshRenderable == null) {
             try {
+                // The face mesh is updated from its definition every frame.
                 faceMeshRenderable =
-                        ModelRenderable.builder().setSource(checkNotNull(faceMeshDefinition)).build().get();
+                        ModelRenderable.builder()
+                                .setSource(checkNotNull(faceMeshDefinition))
+                                .setDynamicMeshEnabled(true)
+                                .build()
+                                .get();
                 faceMeshRenderable.setRenderPriority(FACE_MESH_RENDER_PRIORITY);
             } catch (InterruptedException | ExecutionException ex) {
                 Log.e(TAG, "Failed to build faceMeshRenderable from definition", ex);